@@ -0,0 +1,152 @@
+package net.trajano.gasprices;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.ListAdapter;
+import android.widget.TextView;
+
+/**
+ * Lists the cities in the {@link CityDirectory} grouped under their region
+ * headers. Region headers are not selectable. The list can be filtered to the
+ * cities matching a type-ahead query using the {@link CityNameIndex}. The list
+ * is empty until the directory is loaded by {@link CityListLoader}.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class CityListAdapter extends BaseAdapter implements ListAdapter {
+	private CityDirectory directory = new CityDirectory(new String[0]);
+
+	private final LayoutInflater inflater;
+
+	/**
+	 * Current type-ahead query. This is <code>null</code> if the list is not
+	 * filtered.
+	 */
+	private String query;
+
+	/**
+	 * Directory positions that are shown. This is <code>null</code> if the
+	 * list is not filtered.
+	 */
+	private int[] visiblePositions;
+
+	public CityListAdapter(final Context context) {
+		inflater = (LayoutInflater) context
+				.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+	}
+
+	@Override
+	public int getCount() {
+		if (visiblePositions == null) {
+			return directory.size();
+		}
+		return visiblePositions.length;
+	}
+
+	/**
+	 * Maps the list position to the directory position.
+	 * 
+	 * @param position
+	 *            list position
+	 * @return directory position
+	 */
+	private int getDirectoryPosition(final int position) {
+		if (visiblePositions == null) {
+			return position;
+		}
+		return visiblePositions[position];
+	}
+
+	@Override
+	public Object getItem(final int position) {
+		return directory.getName(getDirectoryPosition(position));
+	}
+
+	@Override
+	public long getItemId(final int position) {
+		return directory.getId(getDirectoryPosition(position));
+	}
+
+	@Override
+	public int getItemViewType(final int position) {
+		if (isEnabled(position)) {
+			return 0;
+		} else {
+			return 1;
+		}
+	}
+
+	@Override
+	public View getView(final int position, final View convertView,
+			final ViewGroup parent) {
+		final TextView view;
+		if (convertView != null) {
+			view = (TextView) convertView;
+		} else if (isEnabled(position)) {
+			view = (TextView) inflater.inflate(
+					android.R.layout.simple_expandable_list_item_1, parent,
+					false);
+		} else {
+			view = (TextView) inflater.inflate(
+					android.R.layout.simple_list_item_1, parent, false);
+		}
+		view.setText((String) getItem(position));
+		return view;
+	}
+
+	@Override
+	public int getViewTypeCount() {
+		return 2;
+	}
+
+	@Override
+	public boolean hasStableIds() {
+		return true;
+	}
+
+	@Override
+	public boolean isEnabled(final int position) {
+		return !directory.isHeader(getDirectoryPosition(position));
+	}
+
+	/**
+	 * Checks if the list is filtered by a type-ahead query.
+	 * 
+	 * @return <code>true</code> if only the matching cities are shown.
+	 */
+	public boolean isFiltered() {
+		return visiblePositions != null;
+	}
+
+	/**
+	 * Shows the cities in the directory. The current filter is applied to
+	 * them.
+	 * 
+	 * @param directory
+	 *            directory
+	 */
+	public void setDirectory(final CityDirectory directory) {
+		this.directory = directory;
+		if (query != null) {
+			visiblePositions = directory.getNameIndex().search(query);
+		}
+		notifyDataSetChanged();
+	}
+
+	/**
+	 * Filters the list to the cities with a word starting with the query.
+	 * 
+	 * @param query
+	 *            query text. An empty query shows every city.
+	 */
+	public void setFilter(final CharSequence query) {
+		this.query = query.toString();
+		visiblePositions = directory.getNameIndex().search(query);
+		notifyDataSetChanged();
+	}
+
+}
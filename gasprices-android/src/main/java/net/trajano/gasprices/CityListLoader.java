@@ -0,0 +1,66 @@
+package net.trajano.gasprices;
+
+import android.content.Context;
+import android.os.AsyncTask;
+import android.widget.ListView;
+
+/**
+ * Loads the {@link CityDirectory} and its name index for a city list and
+ * finds the city nearest to the device. Restoring the directory, building the
+ * spatial index and asking the {@link android.location.LocationManager} for
+ * the last known location are done in the background so they do not delay
+ * showing the list. When it is done the list shows the directory and scrolls
+ * to the nearest city unless the user has started filtering it.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class CityListLoader extends AsyncTask<Void, Void, CityDirectory> {
+	private final CityListAdapter adapter;
+
+	/**
+	 * Application context.
+	 */
+	private final Context context;
+
+	private final ListView listView;
+
+	/**
+	 * Directory position of the nearest city or -1 if it is not known.
+	 */
+	private int nearestPosition = -1;
+
+	/**
+	 * Constructs the loader.
+	 * 
+	 * @param context
+	 *            context
+	 * @param adapter
+	 *            adapter that receives the directory
+	 * @param listView
+	 *            list that is scrolled to the nearest city
+	 */
+	public CityListLoader(final Context context, final CityListAdapter adapter,
+			final ListView listView) {
+		this.context = context.getApplicationContext();
+		this.adapter = adapter;
+		this.listView = listView;
+	}
+
+	@Override
+	protected CityDirectory doInBackground(final Void... params) {
+		final CityDirectory directory = CityResources.getDirectory(context);
+		directory.getNameIndex();
+		nearestPosition = directory.indexOf(CityResources
+				.findNearestCityId(context));
+		return directory;
+	}
+
+	@Override
+	protected void onPostExecute(final CityDirectory directory) {
+		adapter.setDirectory(directory);
+		if (nearestPosition != -1 && !adapter.isFiltered()) {
+			listView.setSelection(nearestPosition);
+		}
+	}
+}
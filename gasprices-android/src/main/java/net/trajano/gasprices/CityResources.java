@@ -0,0 +1,146 @@
+package net.trajano.gasprices;
+
+import android.content.Context;
+import android.location.Location;
+import android.location.LocationManager;
+
+/**
+ * <p>
+ * This holds the process wide {@link CityDirectory} and
+ * {@link CitySpatialIndex}. They are built from the resources and the files
+ * in {@link Context#getFilesDir()} on first use.
+ * </p>
+ * <p>
+ * The directory is seeded from the <code>city_list</code> array resource
+ * and the spatial index is built from the <code>city_coordinates</code> array
+ * resource. After every update the directory is replaced and persisted so it
+ * is used on the next start.
+ * </p>
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class CityResources {
+	/**
+	 * Process wide directory.
+	 */
+	private static volatile CityDirectory directory;
+
+	/**
+	 * Process wide spatial index.
+	 */
+	private static volatile CitySpatialIndex spatialIndex;
+
+	/**
+	 * Finds the city in the {@link CityDirectory} that is nearest to the last
+	 * known location of the device. Only the coarse location from the network
+	 * provider is used and no location updates are requested. This builds the
+	 * spatial index on the first call so it should not be called from the
+	 * main thread.
+	 * 
+	 * @param context
+	 *            context
+	 * @return city ID or -1 if the location is not known.
+	 */
+	public static long findNearestCityId(final Context context) {
+		final Location location;
+		try {
+			location = ((LocationManager) context
+					.getSystemService(Context.LOCATION_SERVICE))
+					.getLastKnownLocation(LocationManager.NETWORK_PROVIDER);
+		} catch (final IllegalArgumentException e) {
+			GasPricesLog.w(e.getMessage());
+			return -1;
+		} catch (final SecurityException e) {
+			GasPricesLog.w(e.getMessage());
+			return -1;
+		}
+		if (location == null) {
+			return -1;
+		}
+		return getSpatialIndex(context).findNearestCityId(
+				location.getLatitude(), location.getLongitude(),
+				getDirectory(context));
+	}
+
+	/**
+	 * Gets the process wide directory. On the first call it is restored from
+	 * the files directory or seeded from the <code>city_list</code> resource
+	 * if it has not been persisted yet.
+	 * 
+	 * @param context
+	 *            context used to get the resources.
+	 * @return the directory.
+	 */
+	public static CityDirectory getDirectory(final Context context) {
+		CityDirectory result = directory;
+		if (result == null) {
+			synchronized (CityResources.class) {
+				result = directory;
+				if (result == null) {
+					result = CityDirectory.restore(context.getFilesDir());
+					if (result == null) {
+						result = new CityDirectory(context.getResources()
+								.getStringArray(R.array.city_list));
+					}
+					directory = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the process wide spatial index. It is built on the first call.
+	 * 
+	 * @param context
+	 *            context used to get the resources.
+	 * @return the index.
+	 */
+	public static CitySpatialIndex getSpatialIndex(final Context context) {
+		CitySpatialIndex result = spatialIndex;
+		if (result == null) {
+			synchronized (CityResources.class) {
+				result = spatialIndex;
+				if (result == null) {
+					result = new CitySpatialIndex(context.getResources()
+							.getStringArray(R.array.city_coordinates));
+					spatialIndex = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Merges the process wide directory with the cities in a feed. If the
+	 * directory changed, it replaces the process wide instance and is
+	 * persisted. This performs disk access so it must not be called from the
+	 * main thread.
+	 * 
+	 * @param context
+	 *            context
+	 * @param feedIds
+	 *            city IDs in the feed
+	 * @param feedNames
+	 *            city names in the feed
+	 * @return the current directory.
+	 */
+	public static CityDirectory updateDirectory(final Context context,
+			final int[] feedIds, final String[] feedNames) {
+		synchronized (CityResources.class) {
+			final CityDirectory current = getDirectory(context);
+			final CityDirectory merged = current.merge(feedIds, feedNames,
+					context.getResources().getString(R.string.other_cities));
+			if (merged != current) {
+				merged.persist(context.getFilesDir());
+				directory = merged;
+			}
+			return merged;
+		}
+	}
+
+	private CityResources() {
+
+	}
+}
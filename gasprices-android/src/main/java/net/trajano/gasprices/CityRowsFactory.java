@@ -0,0 +1,169 @@
+package net.trajano.gasprices;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Color;
+import android.widget.RemoteViews;
+import android.widget.RemoteViewsService;
+
+/**
+ * <p>
+ * This provides the rows of the list widget. The rows are read from the
+ * {@link CityPriceTable} of the current {@link PriceSnapshot} and formatted
+ * into {@link WidgetRenderState} objects. They are only read again when the
+ * snapshot generation changes or the next price date of the snapshot passes,
+ * so scrolling and repeated refreshes of the same data only bind the views.
+ * </p>
+ * <p>
+ * The city ID is used as the item ID so the launcher can reuse row views.
+ * </p>
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class CityRowsFactory implements RemoteViewsService.RemoteViewsFactory {
+	/**
+	 * Orders the rows by city name.
+	 */
+	private static final Comparator<WidgetRenderState> NAME_ORDER = new Comparator<WidgetRenderState>() {
+
+		@Override
+		public int compare(final WidgetRenderState lhs,
+				final WidgetRenderState rhs) {
+			return lhs.getCityName().compareTo(rhs.getCityName());
+		}
+	};
+
+	private final Context context;
+
+	/**
+	 * Generation of the snapshot the rows were read from.
+	 */
+	private long generation = Long.MIN_VALUE;
+
+	/**
+	 * Number of times the rows were read from the snapshot.
+	 */
+	private int queryCount;
+
+	private WidgetRenderState[] rows = new WidgetRenderState[0];
+
+	/**
+	 * Time the rows are valid until. Today's price of some cities changes at
+	 * this time.
+	 */
+	private long validUntil;
+
+	public CityRowsFactory(final Context context) {
+		this.context = context;
+	}
+
+	@Override
+	public int getCount() {
+		return rows.length;
+	}
+
+	@Override
+	public long getItemId(final int position) {
+		return rows[position].getCityId();
+	}
+
+	@Override
+	public RemoteViews getLoadingView() {
+		return null;
+	}
+
+	/**
+	 * Returns the number of times the rows were read from the snapshot.
+	 * 
+	 * @return query count
+	 */
+	public int getQueryCount() {
+		return queryCount;
+	}
+
+	@Override
+	public RemoteViews getViewAt(final int position) {
+		final WidgetRenderState row = rows[position];
+		final RemoteViews remoteViews = new RemoteViews(
+				context.getPackageName(), R.layout.list_widget_row);
+		remoteViews.setTextViewText(R.id.list_widget_city, row.getCityName());
+		remoteViews.setTextViewText(R.id.list_widget_price, row.getPriceText());
+		remoteViews.setTextViewText(R.id.list_widget_price_change,
+				row.getPriceChangeText());
+		if (row.getBackgroundResource() == R.drawable.myshape_red) {
+			remoteViews.setTextColor(R.id.list_widget_price_change, Color.RED);
+		} else if (row.getBackgroundResource() == R.drawable.myshape_green) {
+			remoteViews
+					.setTextColor(R.id.list_widget_price_change, Color.GREEN);
+		} else {
+			remoteViews
+					.setTextColor(R.id.list_widget_price_change, Color.WHITE);
+		}
+		final Intent fillInIntent = new Intent();
+		fillInIntent.setData(GasPricesWidgetProvider.getLaunchUri(row
+				.getCityId()));
+		remoteViews.setOnClickFillInIntent(R.id.list_widget_row, fillInIntent);
+		return remoteViews;
+	}
+
+	@Override
+	public int getViewTypeCount() {
+		return 1;
+	}
+
+	@Override
+	public boolean hasStableIds() {
+		return true;
+	}
+
+	@Override
+	public void onCreate() {
+		// rows are read in onDataSetChanged
+	}
+
+	/**
+	 * Reads the rows from the snapshot if the generation has changed or the
+	 * rows are no longer valid. This is called by the system on a binder
+	 * thread so it is safe to do disk access.
+	 */
+	@Override
+	public void onDataSetChanged() {
+		final PriceSnapshot snapshot = new PreferenceAdaptor(context)
+				.getSnapshot();
+		final long now = System.currentTimeMillis();
+		if (snapshot.getGeneration() == generation && now < validUntil) {
+			return;
+		}
+		final CityPriceTable table = snapshot.getTable();
+		final WidgetRenderState[] sortedRows;
+		if (snapshot.isDataPresent()) {
+			final CityDirectory directory = CityResources.getDirectory(context);
+			final RegionAggregates regionAggregates = snapshot
+					.getRegionAggregates().at(now);
+			sortedRows = new WidgetRenderState[table.size()];
+			for (int row = 0; row < sortedRows.length; ++row) {
+				final int cityId = table.getCityId(row);
+				sortedRows[row] = new WidgetRenderState(context.getResources(),
+						cityId, new CityInfo(directory.getName(directory
+								.indexOf(cityId)), table, row, now),
+						regionAggregates);
+			}
+		} else {
+			sortedRows = new WidgetRenderState[0];
+		}
+		Arrays.sort(sortedRows, NAME_ORDER);
+		rows = sortedRows;
+		generation = snapshot.getGeneration();
+		validUntil = table.getNextPriceDate(now);
+		++queryCount;
+	}
+
+	@Override
+	public void onDestroy() {
+		rows = new WidgetRenderState[0];
+	}
+}
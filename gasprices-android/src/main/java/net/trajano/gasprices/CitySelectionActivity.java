@@ -5,17 +5,25 @@ import android.content.Intent;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.StrictMode;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.View;
 import android.widget.ListView;
+import android.widget.TextView;
 
 /**
  * This activity is shown to display a list of valid cities and allow the user
- * to select one.
+ * to select one. The list is filtered as the user types in the search field.
  * 
  * @author Archimedes Trajano (developer@trajano.net)
  * 
  */
 public class CitySelectionActivity extends ListActivity {
+	/**
+	 * Loads the directory and finds the nearest city.
+	 */
+	private CityListLoader loader;
+
 	/**
 	 * Preference data, stored in memory until destruction.
 	 */
@@ -31,8 +39,36 @@ public class CitySelectionActivity extends ListActivity {
 				&& Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD) {
 			StrictMode.enableDefaults();
 		}
+		setContentView(R.layout.city_selection);
 		preferences = new PreferenceAdaptor(this);
-		setListAdapter(new CityListAdapter(this));
+		final CityListAdapter adapter = new CityListAdapter(this);
+		setListAdapter(adapter);
+		loader = new CityListLoader(this, adapter, getListView());
+		loader.execute();
+		((TextView) findViewById(R.id.CitySearchText))
+				.addTextChangedListener(new TextWatcher() {
+
+					@Override
+					public void afterTextChanged(final Editable s) {
+						adapter.setFilter(s);
+					}
+
+					@Override
+					public void beforeTextChanged(final CharSequence s,
+							final int start, final int count, final int after) {
+					}
+
+					@Override
+					public void onTextChanged(final CharSequence s,
+							final int start, final int before, final int count) {
+					}
+				});
+	}
+
+	@Override
+	protected void onDestroy() {
+		loader.cancel(false);
+		super.onDestroy();
 	}
 
 	/**
@@ -0,0 +1,154 @@
+package net.trajano.gasprices;
+
+import android.app.Activity;
+import android.content.res.Resources;
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.widget.TextView;
+
+/**
+ * This shows the timings and counters of the update pipeline recorded by
+ * {@link PipelineMetrics} along with the counters kept by the
+ * {@link UpdateExecutor} and {@link WidgetBatchRenderer} and the recent
+ * failures in the {@link FailureLog}. The values are read again every time
+ * the activity is resumed.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class DiagnosticsActivity extends Activity {
+	/**
+	 * Maximum number of failures listed.
+	 */
+	private static final int MAX_FAILURES_SHOWN = 10;
+
+	/**
+	 * Formats the text in the background since the {@link FailureLog} may
+	 * need to be read.
+	 */
+	private AsyncTask<Void, Void, CharSequence> loader;
+
+	private TextView text;
+
+	/**
+	 * Formats the recent failures.
+	 * 
+	 * @param b
+	 *            receives the text
+	 * @param stageNames
+	 *            stage labels
+	 */
+	private void appendFailures(final StringBuilder b,
+			final String[] stageNames) {
+		final Resources resources = getResources();
+		final FailureLog failureLog = FailureLog.getInstance(getFilesDir());
+		synchronized (failureLog) {
+			b.append(resources.getString(R.string.diagnostics_failures_format,
+					failureLog.getFailureRate(UpdateSchedule.RECENT_ATTEMPTS)
+							* 100,
+					Math.min(UpdateSchedule.RECENT_ATTEMPTS, failureLog.size()),
+					failureLog.getConsecutiveFailureCount()));
+			int shown = 0;
+			for (int age = 0; age < failureLog.size()
+					&& shown < MAX_FAILURES_SHOWN; ++age) {
+				final int stage = failureLog.getStage(age);
+				if (stage == FailureLog.SUCCESS) {
+					continue;
+				}
+				b.append(resources.getString(
+						R.string.diagnostics_failure_format,
+						failureLog.getTime(age), stageNames[stage],
+						failureLog.getFailureClassName(age),
+						failureLog.getHttpStatus(age),
+						failureLog.getLatencyMillis(age),
+						failureLog.getPayloadLength(age),
+						failureLog.getPayloadHash(age),
+						failureLog.getPayloadExcerpt(age)));
+				++shown;
+			}
+		}
+	}
+
+	/**
+	 * Formats the current values.
+	 * 
+	 * @return the text.
+	 */
+	private CharSequence format() {
+		final Resources resources = getResources();
+		final String[] stageNames = resources
+				.getStringArray(R.array.pipeline_stages);
+		final PipelineMetrics metrics = PipelineMetrics.getInstance();
+		final StringBuilder b = new StringBuilder();
+		for (int stage = 0; stage < PipelineMetrics.STAGE_COUNT; ++stage) {
+			final int sampleCount = metrics.getSampleCount(stage);
+			final long lastDuration = sampleCount == 0 ? 0 : metrics
+					.getDurationNanos(stage, 0);
+			final long lastCount = sampleCount == 0 ? 0 : metrics.getCount(
+					stage, 0);
+			b.append(resources.getString(R.string.diagnostics_stage_format,
+					stageNames[stage], PipelineMetrics.toMillis(lastDuration),
+					PipelineMetrics.toMillis(metrics
+							.getMeanDurationNanos(stage)),
+					PipelineMetrics.toMillis(metrics
+							.getMaxDurationNanos(stage)),
+					sampleCount, metrics.getTotalSampleCount(stage),
+					metrics.getErrorCount(stage), lastCount));
+		}
+		final UpdateExecutor executor = UpdateExecutor.getInstance();
+		b.append(resources.getString(R.string.diagnostics_updates_format,
+				executor.getCompletedCount(), executor.getQueueDepth(),
+				executor.getLastQueueWaitMillis(),
+				executor.getLastLatencyMillis()));
+		b.append(resources.getString(R.string.diagnostics_widgets_format,
+				WidgetBatchRenderer.getFullUpdateCount(),
+				WidgetBatchRenderer.getPartialUpdateCount(),
+				WidgetBatchRenderer.getSkippedUpdateCount()));
+		appendFailures(b, stageNames);
+		return b;
+	}
+
+	@Override
+	protected void onCreate(final Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+		setContentView(R.layout.diagnostics);
+		text = (TextView) findViewById(R.id.DiagnosticsText);
+	}
+
+	@Override
+	protected void onPause() {
+		if (loader != null) {
+			loader.cancel(false);
+			loader = null;
+		}
+		super.onPause();
+	}
+
+	@Override
+	protected void onResume() {
+		super.onResume();
+		updateView();
+	}
+
+	/**
+	 * Formats the current values in the background and shows them.
+	 */
+	private void updateView() {
+		if (loader != null) {
+			loader.cancel(false);
+		}
+		loader = new AsyncTask<Void, Void, CharSequence>() {
+
+			@Override
+			protected CharSequence doInBackground(final Void... params) {
+				return format();
+			}
+
+			@Override
+			protected void onPostExecute(final CharSequence result) {
+				loader = null;
+				text.setText(result);
+			}
+		}.execute();
+	}
+}
@@ -0,0 +1,228 @@
+package net.trajano.gasprices;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.style.ForegroundColorSpan;
+
+/**
+ * <p>
+ * This produces syntax highlighted rows for the feed viewer. Rows are
+ * tokenized by {@link JsonTokenizer} on a background thread and only the rows
+ * in the requested window get spans. The state at the start of each row is
+ * remembered so scrolling further only tokenizes the rows that were not seen
+ * before.
+ * </p>
+ * <p>
+ * The highlighted rows are cached for the snapshot generation, so reopening
+ * the feed for the same data does not highlight the rows again.
+ * </p>
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class FeedHighlighter {
+	/**
+	 * Maximum number of highlighted rows that are kept.
+	 */
+	private static final int CACHE_SIZE = 256;
+
+	/**
+	 * Highlighter for the last generation requested.
+	 */
+	private static FeedHighlighter current;
+
+	/**
+	 * All highlighting is done on this thread so the row states do not need
+	 * to be synchronized.
+	 */
+	private static final ExecutorService EXECUTOR = Executors
+			.newSingleThreadExecutor();
+
+	/**
+	 * Gets the highlighter for the feed data. If it is the same data as the
+	 * last time the highlighted rows are reused.
+	 * 
+	 * @param generation
+	 *            snapshot generation
+	 * @param error
+	 *            <code>true</code> if the feed is the error payload.
+	 * @return the highlighter.
+	 */
+	public static synchronized FeedHighlighter forFeed(final long generation,
+			final boolean error) {
+		if (current == null || current.generation != generation
+				|| current.error != error) {
+			current = new FeedHighlighter(generation, error);
+		}
+		return current;
+	}
+
+	private static int getColor(final int tokenType) {
+		switch (tokenType) {
+		case JsonTokenizer.TOKEN_KEY:
+			return 0xFF66BBFF;
+		case JsonTokenizer.TOKEN_STRING:
+			return 0xFF99CC33;
+		case JsonTokenizer.TOKEN_NUMBER:
+			return 0xFFFFAA33;
+		case JsonTokenizer.TOKEN_LITERAL:
+			return 0xFFCC99FF;
+		default:
+			return 0xFFFF4444;
+		}
+	}
+
+	/**
+	 * Highlighted rows with the least recently used rows removed first.
+	 */
+	private final Map<Integer, CharSequence> cache = new LinkedHashMap<Integer, CharSequence>(
+			CACHE_SIZE, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(
+				final Map.Entry<Integer, CharSequence> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	private final boolean error;
+
+	private final long generation;
+
+	private final Handler handler = new Handler(Looper.getMainLooper());
+
+	/**
+	 * Number of rows whose start state is known. Only accessed by the
+	 * highlighting thread.
+	 */
+	private int rowStateCount;
+
+	/**
+	 * Tokenizer state at the start of each row. Only accessed by the
+	 * highlighting thread.
+	 */
+	private byte[] rowStates = new byte[256];
+
+	/**
+	 * Only accessed by the highlighting thread.
+	 */
+	private final JsonTokenizer tokenizer = new JsonTokenizer();
+
+	private FeedHighlighter(final long generation, final boolean error) {
+		this.generation = generation;
+		this.error = error;
+	}
+
+	/**
+	 * Makes sure the state at the start of the row is known by tokenizing the
+	 * rows before it that have not been tokenized yet.
+	 */
+	private void ensureRowState(final FeedSource source, final int row) {
+		if (rowStateCount == 0) {
+			rowStates[0] = JsonTokenizer.STATE_DEFAULT;
+			rowStateCount = 1;
+		}
+		while (rowStateCount <= row) {
+			if (rowStateCount == rowStates.length) {
+				final byte[] newRowStates = new byte[rowStates.length * 2];
+				System.arraycopy(rowStates, 0, newRowStates, 0, rowStateCount);
+				rowStates = newRowStates;
+			}
+			final int previous = rowStateCount - 1;
+			rowStates[rowStateCount] = (byte) tokenizer.tokenize(
+					source.getRow(previous), rowStates[previous]);
+			++rowStateCount;
+		}
+	}
+
+	/**
+	 * Returns the highlighted row if it is available. Called on the UI thread.
+	 * 
+	 * @param row
+	 *            row
+	 * @return the highlighted row or <code>null</code>.
+	 */
+	public CharSequence getHighlightedRow(final int row) {
+		synchronized (cache) {
+			return cache.get(row);
+		}
+	}
+
+	/**
+	 * Highlights the rows in the window in the background. Rows that are
+	 * already highlighted are skipped. Nothing is kept after the listener is
+	 * posted, so the caller decides whether a request that is waiting is
+	 * still wanted. Called on the UI thread.
+	 * 
+	 * @param source
+	 *            feed source
+	 * @param firstRow
+	 *            first row
+	 * @param lastRow
+	 *            last row inclusive
+	 * @param listener
+	 *            run on the UI thread when the rows are highlighted.
+	 */
+	public void highlight(final FeedSource source, final int firstRow,
+			final int lastRow, final Runnable listener) {
+		EXECUTOR.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				for (int row = firstRow; row <= lastRow; ++row) {
+					if (getHighlightedRow(row) == null) {
+						highlightRow(source, row);
+					}
+				}
+				handler.post(listener);
+			}
+		});
+	}
+
+	/**
+	 * Tokenizes a single row and puts the result in the cache.
+	 */
+	private void highlightRow(final FeedSource source, final int row) {
+		ensureRowState(source, row);
+		final String text = source.getRow(row);
+		tokenizer.tokenize(text, rowStates[row]);
+		final SpannableString highlighted = new SpannableString(text);
+		for (int i = 0; i < tokenizer.getTokenCount(); ++i) {
+			highlighted.setSpan(
+					new ForegroundColorSpan(getColor(tokenizer.getTokenType(i))),
+					tokenizer.getTokenStart(i), tokenizer.getTokenEnd(i),
+					Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+		}
+		synchronized (cache) {
+			cache.put(row, highlighted);
+		}
+	}
+
+	/**
+	 * Checks if all the rows in the window are highlighted.
+	 * 
+	 * @param firstRow
+	 *            first row
+	 * @param lastRow
+	 *            last row inclusive
+	 * @return <code>true</code> if the rows are highlighted.
+	 */
+	public boolean isHighlighted(final int firstRow, final int lastRow) {
+		synchronized (cache) {
+			for (int row = firstRow; row <= lastRow; ++row) {
+				if (!cache.containsKey(row)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+}
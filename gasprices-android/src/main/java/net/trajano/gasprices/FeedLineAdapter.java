@@ -0,0 +1,332 @@
+package net.trajano.gasprices;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.AbsListView.OnScrollListener;
+import android.widget.BaseAdapter;
+import android.widget.ListAdapter;
+import android.widget.TextView;
+
+/**
+ * This presents the rows of a {@link FeedSource} in a list. Only the rows that
+ * are visible have views and the views are reused as the list scrolls. More
+ * rows are indexed as the user gets near the end of what has already been
+ * indexed. The indexing and searching are done on a background thread and
+ * the row count is posted back, so the list only sees the rows that were
+ * indexed when it was last notified. Rows are shown as plain text until the
+ * {@link FeedHighlighter} has highlighted the visible window in the
+ * background. Only one window is highlighted at a time and only the latest
+ * window requested while it runs is highlighted after it.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class FeedLineAdapter extends BaseAdapter implements ListAdapter,
+		OnScrollListener {
+	/**
+	 * Receives the result of {@link FeedLineAdapter#find}.
+	 */
+	public interface FindListener {
+		/**
+		 * Called on the UI thread after the list is notified of any rows that
+		 * were indexed by the search.
+		 * 
+		 * @param row
+		 *            row containing the text or -1 if not found.
+		 */
+		void onFound(int row);
+	}
+
+	/**
+	 * Indexing and searching are done on this thread so they do not block the
+	 * UI thread.
+	 */
+	private static final ExecutorService EXECUTOR = Executors
+			.newSingleThreadExecutor();
+
+	/**
+	 * Number of rows indexed at a time.
+	 */
+	private static final int PAGE_SIZE = 200;
+
+	/**
+	 * <code>true</code> once the adapter is no longer shown.
+	 */
+	private boolean closed;
+
+	/**
+	 * <code>true</code> when all the rows are indexed as of the last time the
+	 * list was notified.
+	 */
+	private boolean complete;
+
+	private final Handler handler = new Handler(Looper.getMainLooper());
+
+	private final FeedHighlighter highlighter;
+
+	/**
+	 * <code>true</code> while a window is being highlighted.
+	 */
+	private boolean highlighting;
+
+	/**
+	 * Notifies the list that the highlighted rows are available and
+	 * highlights the window that is waiting.
+	 */
+	private final Runnable highlightListener = new Runnable() {
+
+		@Override
+		public void run() {
+			highlighting = false;
+			if (closed) {
+				return;
+			}
+			notifyDataSetChanged();
+			if (pendingFirstRow != -1) {
+				final int first = pendingFirstRow;
+				pendingFirstRow = -1;
+				highlight(first, pendingLastRow);
+			}
+		}
+	};
+
+	private final LayoutInflater inflater;
+
+	/**
+	 * <code>true</code> while the next page is being indexed.
+	 */
+	private boolean paging;
+
+	/**
+	 * Window that is waiting to be highlighted after the one that is running.
+	 */
+	private int pendingFirstRow = -1;
+
+	private int pendingLastRow;
+
+	/**
+	 * Number of rows the list is showing. This is only changed on the UI
+	 * thread.
+	 */
+	private int rowCount;
+
+	private final FeedSource source;
+
+	/**
+	 * Constructs the adapter and indexes the first page. This reads the feed
+	 * so it is not called from the UI thread.
+	 * 
+	 * @param context
+	 *            context
+	 * @param source
+	 *            feed source
+	 * @param highlighter
+	 *            highlighter for the feed
+	 */
+	public FeedLineAdapter(final Context context, final FeedSource source,
+			final FeedHighlighter highlighter) {
+		inflater = (LayoutInflater) context
+				.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+		this.source = source;
+		this.highlighter = highlighter;
+		source.indexMore(PAGE_SIZE);
+		rowCount = source.getRowCount();
+		complete = source.isComplete();
+	}
+
+	/**
+	 * Closes the source if it holds on to resources such as an open file and
+	 * drops the window that is waiting to be highlighted. The rows that have
+	 * been indexed are still shown.
+	 */
+	public void close() {
+		closed = true;
+		pendingFirstRow = -1;
+		if (source instanceof Closeable) {
+			try {
+				((Closeable) source).close();
+			} catch (final IOException e) {
+				GasPricesLog.w(e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Finds the next row containing the text in the background. If more rows
+	 * had to be indexed to find the text the list is notified before the
+	 * listener is called. The listener is not called if the adapter is closed
+	 * before the search is done.
+	 * 
+	 * @param text
+	 *            text to search for
+	 * @param fromRow
+	 *            row to start from
+	 * @param listener
+	 *            receives the row or -1 if not found.
+	 */
+	public void find(final String text, final int fromRow,
+			final FindListener listener) {
+		EXECUTOR.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				final int row = source.find(text, fromRow);
+				postRowCount(new Runnable() {
+
+					@Override
+					public void run() {
+						listener.onFound(row);
+					}
+				});
+			}
+		});
+	}
+
+	@Override
+	public int getCount() {
+		return rowCount;
+	}
+
+	/**
+	 * {@inheritDoc} Only rows that are available without reading the feed are
+	 * returned, the others are empty.
+	 */
+	@Override
+	public Object getItem(final int position) {
+		final String row = source.peekRow(position);
+		return row == null ? "" : row; // $NON-NLS-1$
+	}
+
+	@Override
+	public long getItemId(final int position) {
+		return position;
+	}
+
+	@Override
+	public View getView(final int position, final View convertView,
+			final ViewGroup parent) {
+		final TextView view;
+		if (convertView != null) {
+			view = (TextView) convertView;
+		} else {
+			view = (TextView) inflater.inflate(R.layout.feed_row, parent,
+					false);
+		}
+		final CharSequence highlighted = highlighter
+				.getHighlightedRow(position);
+		if (highlighted != null) {
+			view.setText(highlighted);
+		} else {
+			view.setText((String) getItem(position));
+		}
+		return view;
+	}
+
+	@Override
+	public boolean hasStableIds() {
+		return true;
+	}
+
+	/**
+	 * Requests the rows in the window to be highlighted. If a window is being
+	 * highlighted the request replaces any other request that is waiting.
+	 * 
+	 * @param firstRow
+	 *            first row
+	 * @param lastRow
+	 *            last row inclusive
+	 */
+	private void highlight(final int firstRow, final int lastRow) {
+		if (highlighter.isHighlighted(firstRow, lastRow)) {
+			return;
+		}
+		if (highlighting) {
+			pendingFirstRow = firstRow;
+			pendingLastRow = lastRow;
+			return;
+		}
+		highlighting = true;
+		highlighter.highlight(source, firstRow, lastRow, highlightListener);
+	}
+
+	@Override
+	public boolean isEnabled(final int position) {
+		return false;
+	}
+
+	/**
+	 * Requests the visible rows to be highlighted and indexes the next page
+	 * in the background when the last visible row is within a page of the end
+	 * of what has been indexed.
+	 */
+	@Override
+	public void onScroll(final AbsListView view, final int firstVisibleItem,
+			final int visibleItemCount, final int totalItemCount) {
+		if (visibleItemCount > 0) {
+			highlight(firstVisibleItem, Math.min(firstVisibleItem
+					+ visibleItemCount, totalItemCount) - 1);
+		}
+		if (!complete && !paging
+				&& firstVisibleItem + visibleItemCount + PAGE_SIZE / 2 >= totalItemCount) {
+			paging = true;
+			EXECUTOR.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					source.indexMore(PAGE_SIZE);
+					postRowCount(new Runnable() {
+
+						@Override
+						public void run() {
+							paging = false;
+						}
+					});
+				}
+			});
+		}
+	}
+
+	@Override
+	public void onScrollStateChanged(final AbsListView view,
+			final int scrollState) {
+		// does nothing
+	}
+
+	/**
+	 * Posts the current row count of the source to the UI thread and notifies
+	 * the list if it changed. This is called from the background thread.
+	 * 
+	 * @param then
+	 *            run on the UI thread after the list is notified unless the
+	 *            adapter is closed.
+	 */
+	private void postRowCount(final Runnable then) {
+		final int newRowCount = source.getRowCount();
+		final boolean newComplete = source.isComplete();
+		handler.post(new Runnable() {
+
+			@Override
+			public void run() {
+				if (closed) {
+					return;
+				}
+				complete = newComplete;
+				if (newRowCount != rowCount) {
+					rowCount = newRowCount;
+					notifyDataSetChanged();
+				}
+				then.run();
+			}
+		});
+	}
+}
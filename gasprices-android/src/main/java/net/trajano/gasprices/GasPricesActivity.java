@@ -0,0 +1,332 @@
+package net.trajano.gasprices;
+
+import java.util.List;
+
+import android.app.Activity;
+import android.app.AlertDialog;
+import android.app.ProgressDialog;
+import android.content.Context;
+import android.content.DialogInterface;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.StrictMode;
+import android.view.MenuInflater;
+import android.view.MenuItem;
+import android.view.View;
+import android.widget.TextView;
+
+public class GasPricesActivity extends Activity implements
+		GasPricesViewModelLoader.Callback, UpdateExecutor.Listener {
+	/**
+	 * Thresholds in cents matching the items of
+	 * <code>R.array.price_alert_choices</code>. Zero removes the alert.
+	 */
+	private static final float[] PRICE_ALERT_THRESHOLDS = { 1, 2, 5, -1, -2,
+			-5, 0 };
+
+	/**
+	 * Forced update progress dialog.
+	 */
+	private ProgressDialog forcedUpdateDialog;
+
+	/**
+	 * When the preference change on lastUpdated is detected it will update the
+	 * view.
+	 */
+	private final OnSharedPreferenceChangeListener preferenceChangeListener = new OnSharedPreferenceChangeListener() {
+
+		@Override
+		public void onSharedPreferenceChanged(
+				final SharedPreferences sharedPreferences, final String key) {
+			if (!PreferenceAdaptor.isKeyAffectGasPricesView(key)) {
+				return;
+			}
+			loadViewModel();
+		}
+	};
+
+	/**
+	 * Preference data, stored in memory until destruction.
+	 */
+	private PreferenceAdaptor preferences;
+
+	/**
+	 * This is set to <code>true</code> when the activity is created so the
+	 * first loaded model is checked to see if an update is needed.
+	 */
+	private boolean updateCheckPending;
+
+	/**
+	 * Loader that is currently running.
+	 */
+	private GasPricesViewModelLoader viewModelLoader;
+
+	/**
+	 * Binds the model to the views. This does not do any disk access or
+	 * formatting as the model already contains the formatted text. It will also
+	 * dismiss the {@link #forcedUpdateDialog} if it is visible.
+	 * 
+	 * @param model
+	 *            view model
+	 */
+	private void bindViewModel(final GasPricesViewModel model) {
+		if (model.isError() && forcedUpdateDialog != null) {
+			forcedUpdateDialog.dismiss();
+			forcedUpdateDialog = null;
+			return;
+		}
+
+		if (!model.isDataPresent()) {
+			return;
+		}
+		((TextView) findViewById(R.id.LastUpdatedText)).setText(model
+				.getLastUpdatedText());
+		((TextView) findViewById(R.id.city)).setText(model.getCityName());
+		((TextView) findViewById(R.id.PriceTodayText)).setText(model
+				.getPriceTodayText());
+		if (model.getOtherPriceLabelText() != null) {
+			((TextView) findViewById(R.id.OtherPriceLabelText)).setText(model
+					.getOtherPriceLabelText());
+			((TextView) findViewById(R.id.OtherPriceText)).setText(model
+					.getOtherPriceText());
+		}
+		final TextView regionComparisonText = (TextView) findViewById(R.id.RegionComparisonText);
+		if (model.getRegionComparisonText() != null) {
+			regionComparisonText.setText(model.getRegionComparisonText());
+			regionComparisonText.setVisibility(View.VISIBLE);
+		} else {
+			regionComparisonText.setVisibility(View.GONE);
+		}
+		((TextView) findViewById(R.id.GasPriceStatusText)).setText(model
+				.getNextUpdateText());
+		findViewById(R.id.StaleIndicatorText).setVisibility(
+				model.isUpdateNeeded() ? View.VISIBLE : View.GONE);
+		if (forcedUpdateDialog != null) {
+			forcedUpdateDialog.dismiss();
+			forcedUpdateDialog = null;
+		}
+	}
+
+	/**
+	 * Starts loading the view model in the background. Any loader that is
+	 * already running is cancelled.
+	 */
+	private void loadViewModel() {
+		if (viewModelLoader != null) {
+			viewModelLoader.cancel(false);
+		}
+		viewModelLoader = new GasPricesViewModelLoader(this, this,
+				updateCheckPending);
+		viewModelLoader.execute();
+	}
+
+	/**
+	 * Called when the activity is first created.
+	 */
+	@Override
+	public void onCreate(final Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+		if (Build.PRODUCT.endsWith("sdk")
+				&& Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD) {
+			StrictMode.enableDefaults();
+		}
+
+		preferences = new PreferenceAdaptor(this);
+		setContentView(R.layout.main);
+		updateCheckPending = true;
+	}
+
+	@Override
+	public boolean onCreateOptionsMenu(final android.view.Menu menu) {
+		final MenuInflater inflater = getMenuInflater();
+		inflater.inflate(R.menu.menu, menu);
+		return true;
+	}
+
+	@Override
+	public boolean onOptionsItemSelected(final MenuItem item) {
+		// Handle item selection
+		if (R.id.UpdateMenuItem == item.getItemId()) {
+			startUpdate(true);
+			return true;
+		} else if (R.id.ShowFeedData == item.getItemId()) {
+			final Intent intent = new Intent(this, GasPricesFeedActivity.class);
+			startActivity(intent);
+			return true;
+		} else if (R.id.PriceAlertMenuItem == item.getItemId()) {
+			new AlertDialog.Builder(this)
+					.setTitle(R.string.price_alert_prompt)
+					.setItems(R.array.price_alert_choices,
+							new DialogInterface.OnClickListener() {
+
+								@Override
+								public void onClick(
+										final DialogInterface dialog,
+										final int which) {
+									savePriceAlert(PRICE_ALERT_THRESHOLDS[which]);
+								}
+							}).show();
+			return true;
+		} else if (R.id.RankingMenuItem == item.getItemId()) {
+			final Intent intent = new Intent(this, RankingActivity.class);
+			startActivity(intent);
+			return true;
+		} else if (R.id.CitySelectMenuItem == item.getItemId()) {
+			final Intent intent = new Intent(this, CitySelectionActivity.class);
+			startActivityForResult(intent, 1);
+			return true;
+		} else {
+			return super.onOptionsItemSelected(item);
+		}
+	}
+
+	/**
+	 * When the application pauses, it deregisters itself from listening to
+	 * changes.
+	 */
+	@Override
+	protected void onPause() {
+		preferences
+				.unregisterOnSharedPreferenceChangeListener(preferenceChangeListener);
+		if (viewModelLoader != null) {
+			viewModelLoader.cancel(false);
+			viewModelLoader = null;
+		}
+		UpdateExecutor.getInstance().detach(this);
+		if (forcedUpdateDialog != null) {
+			forcedUpdateDialog.dismiss();
+			forcedUpdateDialog = null;
+		}
+		super.onPause();
+	}
+
+	/**
+	 * When the application resumes it will update the view and wait for any
+	 * preference changes. If it was launched from a widget then it will set
+	 * the current selected city to the one shown by the widget.
+	 */
+	@Override
+	protected void onResume() {
+		super.onResume();
+		final Uri widgetUri = getIntent().getData();
+		if (widgetUri != null) {
+			GasPricesLog.d("Resumed from widget uri = {}", widgetUri);
+			final List<String> pathSegments = widgetUri.getPathSegments();
+			final long cityId;
+			if (pathSegments.size() == 2 && "city".equals(pathSegments.get(0))) {
+				cityId = Long.parseLong(pathSegments.get(1));
+			} else {
+				// widgets from earlier versions pass the widget ID
+				final int widgetId = Integer.parseInt(widgetUri.getPath());
+				cityId = preferences.getWidgetCityId(widgetId);
+				GasPricesLog.d("widget id = {} has city {}", widgetId, cityId);
+			}
+			final PreferenceAdaptorEditor editor = preferences.edit();
+			editor.setSelectedCityId(cityId);
+			editor.apply();
+		}
+		final GasPricesViewModel cachedModel = GasPricesViewModelLoader
+				.getCachedModel();
+		if (cachedModel != null) {
+			bindViewModel(cachedModel);
+		}
+		loadViewModel();
+		preferences
+				.registerOnSharedPreferenceChangeListener(preferenceChangeListener);
+		UpdateExecutor.getInstance().attach(this);
+	}
+
+	/**
+	 * Dismisses the {@link #forcedUpdateDialog} and shows the error if the
+	 * update failed. The view itself is updated by the preference change.
+	 */
+	@Override
+	public void onUpdateFinished(final Exception error) {
+		if (forcedUpdateDialog != null) {
+			forcedUpdateDialog.dismiss();
+			forcedUpdateDialog = null;
+		}
+		if (error != null) {
+			new AlertDialog.Builder(this)
+					.setTitle(R.string.error)
+					.setMessage(
+							getString(R.string.problem_loading_format,
+									error.getLocalizedMessage())).show();
+		}
+	}
+
+	/**
+	 * Binds the model that was loaded in the background. If this is the first
+	 * current model since the activity was created, it will start an update if
+	 * the data is stale. The persisted model is only shown, it is not used to
+	 * decide whether to update because it may predate an update done by the
+	 * service. The blocking progress dialog is only shown if there is no data
+	 * to show at all, otherwise the last known prices are shown with a stale
+	 * indicator while the update runs in the background.
+	 */
+	@Override
+	public void onViewModelLoaded(final GasPricesViewModel model,
+			final boolean current) {
+		bindViewModel(model);
+		if (current && updateCheckPending) {
+			updateCheckPending = false;
+			if (!model.isDataPresent()) {
+				startUpdate(true);
+			} else if (model.isUpdateNeeded()) {
+				startUpdate(false);
+			}
+		}
+	}
+
+	/**
+	 * Replaces the price alert of the selected city in the background.
+	 * 
+	 * @param threshold
+	 *            threshold in cents or zero to remove the alert.
+	 */
+	private void savePriceAlert(final float threshold) {
+		final Context context = getApplicationContext();
+		new AsyncTask<Void, Void, Void>() {
+			@Override
+			protected Void doInBackground(final Void... params) {
+				final long cityId = preferences.getSelectedCityId();
+				PriceAlertRules rules = PriceAlertRules.getInstance(
+						context.getFilesDir()).without(cityId);
+				if (threshold != 0) {
+					rules = rules.with(cityId, threshold);
+				}
+				PriceAlertRules.update(context.getFilesDir(), rules);
+				return null;
+			}
+		}.execute();
+	}
+
+	/**
+	 * Requests an update through the {@link UpdateExecutor}. If an update is
+	 * already running this joins it.
+	 * 
+	 * @param showProgress
+	 *            show the {@link #forcedUpdateDialog} until the update
+	 *            finishes. Cancelling the dialog cancels the update.
+	 */
+	private void startUpdate(final boolean showProgress) {
+		if (showProgress && forcedUpdateDialog == null) {
+			forcedUpdateDialog = ProgressDialog.show(this, "", getResources()
+					.getString(R.string.loading), true, true,
+					new DialogInterface.OnCancelListener() {
+
+						@Override
+						public void onCancel(final DialogInterface dialog) {
+							forcedUpdateDialog = null;
+							UpdateExecutor.getInstance().cancel();
+						}
+					});
+		}
+		UpdateExecutor.getInstance().requestUpdate(this);
+	}
+}
@@ -0,0 +1,42 @@
+package net.trajano.gasprices;
+
+import android.app.Application;
+import android.content.pm.ApplicationInfo;
+import android.util.Log;
+
+/**
+ * This routes {@link GasPricesLog} to {@link Log} before any other component
+ * is created. Debug messages are written when the application is debuggable
+ * or when the <code>GasPrices</code> tag is set to debug with
+ * <code>adb shell setprop log.tag.GasPrices DEBUG</code>.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class GasPricesApplication extends Application {
+	/**
+	 * Writes to {@link Log}.
+	 */
+	private static final class AndroidLogSink implements GasPricesLog.Sink {
+		@Override
+		public void write(final int level, final String message,
+				final Throwable throwable) {
+			if (throwable == null) {
+				Log.println(level, GasPricesLog.TAG, message);
+			} else {
+				Log.println(level, GasPricesLog.TAG, message + '\n'
+						+ Log.getStackTraceString(throwable));
+			}
+		}
+	}
+
+	@Override
+	public void onCreate() {
+		super.onCreate();
+		GasPricesLog.setSink(new AndroidLogSink());
+		final boolean debuggable = (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+		GasPricesLog.setLevel(debuggable
+				|| Log.isLoggable(GasPricesLog.TAG, Log.DEBUG) ? GasPricesLog.DEBUG
+				: GasPricesLog.INFO);
+	}
+}
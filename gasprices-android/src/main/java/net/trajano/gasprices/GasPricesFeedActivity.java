@@ -0,0 +1,284 @@
+package net.trajano.gasprices;
+
+import android.app.Activity;
+import android.app.AlertDialog;
+import android.app.ProgressDialog;
+import android.content.DialogInterface;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
+import android.os.AsyncTask;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.StrictMode;
+import android.view.KeyEvent;
+import android.view.MenuInflater;
+import android.view.MenuItem;
+import android.view.inputmethod.EditorInfo;
+import android.widget.ListView;
+import android.widget.TextView;
+import android.widget.TextView.OnEditorActionListener;
+import android.widget.Toast;
+
+/**
+ * This activity is shown to display the feed data. The feed is shown in a
+ * list one row at a time so only the visible rows have views.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class GasPricesFeedActivity extends Activity implements
+		UpdateExecutor.Listener {
+	/**
+	 * Adapter for the feed that is currently shown.
+	 */
+	private FeedLineAdapter feedAdapter;
+
+	/**
+	 * Loads the feed text.
+	 */
+	private AsyncTask<Void, Void, FeedLineAdapter> feedLoader;
+
+	/**
+	 * Forced update progress dialog.
+	 */
+	private ProgressDialog forcedUpdateDialog;
+
+	/**
+	 * When the preference change on lastUpdated is detected it will update the
+	 * view.
+	 */
+	private final OnSharedPreferenceChangeListener preferenceChangeListener = new OnSharedPreferenceChangeListener() {
+
+		@Override
+		public void onSharedPreferenceChanged(
+				final SharedPreferences sharedPreferences, final String key) {
+			if (!PreferenceAdaptor.isKeyAffectGasPricesView(key)) {
+				return;
+			}
+			updateView();
+		}
+	};
+
+	/**
+	 * Preference data, stored in memory until destruction.
+	 */
+	private PreferenceAdaptor preferences;
+
+	/**
+	 * Search listener.
+	 */
+	private final OnEditorActionListener searchListener = new OnEditorActionListener() {
+
+		@Override
+		public boolean onEditorAction(final TextView v, final int actionId,
+				final KeyEvent event) {
+			if (actionId != EditorInfo.IME_ACTION_SEARCH
+					&& (event == null || event.getAction() != KeyEvent.ACTION_DOWN)) {
+				return false;
+			}
+			search(v.getText().toString());
+			return true;
+		}
+	};
+
+	/**
+	 * Called when the activity is first created.
+	 */
+	@Override
+	public void onCreate(final Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+		if (Build.PRODUCT.endsWith("sdk")
+				&& Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD) {
+			StrictMode.enableDefaults();
+		}
+		preferences = new PreferenceAdaptor(this);
+		setContentView(R.layout.feed);
+		((TextView) findViewById(R.id.FeedSearchText))
+				.setOnEditorActionListener(searchListener);
+	}
+
+	@Override
+	public boolean onCreateOptionsMenu(final android.view.Menu menu) {
+		final MenuInflater inflater = getMenuInflater();
+		inflater.inflate(R.menu.feedmenu, menu);
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+			getActionBar().setHomeButtonEnabled(true);
+		}
+		return true;
+	}
+
+	@Override
+	protected void onDestroy() {
+		if (feedAdapter != null) {
+			feedAdapter.close();
+			feedAdapter = null;
+		}
+		super.onDestroy();
+	}
+
+	@Override
+	public boolean onOptionsItemSelected(final MenuItem item) {
+		// Handle item selection
+		if (R.id.UpdateMenuItem == item.getItemId()) {
+			if (forcedUpdateDialog == null) {
+				forcedUpdateDialog = ProgressDialog.show(this, "",
+						getResources().getString(R.string.loading), true, true,
+						new DialogInterface.OnCancelListener() {
+
+							@Override
+							public void onCancel(final DialogInterface dialog) {
+								forcedUpdateDialog = null;
+								UpdateExecutor.getInstance().cancel();
+							}
+						});
+			}
+			UpdateExecutor.getInstance().requestUpdate(this);
+			return true;
+		} else if (R.id.DiagnosticsMenuItem == item.getItemId()) {
+			startActivity(new Intent(this, DiagnosticsActivity.class));
+			return true;
+		} else if (android.R.id.home == item.getItemId()) {
+			// app icon in action bar clicked; go home
+			final Intent intent = new Intent(this, GasPricesActivity.class);
+			intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
+			startActivity(intent);
+			return true;
+		} else {
+			return super.onOptionsItemSelected(item);
+		}
+	}
+
+	@Override
+	protected void onPause() {
+		preferences
+				.unregisterOnSharedPreferenceChangeListener(preferenceChangeListener);
+		if (feedLoader != null) {
+			feedLoader.cancel(false);
+			feedLoader = null;
+		}
+		UpdateExecutor.getInstance().detach(this);
+		if (forcedUpdateDialog != null) {
+			forcedUpdateDialog.dismiss();
+			forcedUpdateDialog = null;
+		}
+		super.onPause();
+	}
+
+	@Override
+	protected void onResume() {
+		super.onResume();
+		updateView();
+		preferences
+				.registerOnSharedPreferenceChangeListener(preferenceChangeListener);
+		UpdateExecutor.getInstance().attach(this);
+	}
+
+	/**
+	 * Dismisses the {@link #forcedUpdateDialog} and shows the error if the
+	 * update failed. The feed itself is reloaded by the preference change.
+	 */
+	@Override
+	public void onUpdateFinished(final Exception error) {
+		if (forcedUpdateDialog != null) {
+			forcedUpdateDialog.dismiss();
+			forcedUpdateDialog = null;
+		}
+		if (error != null) {
+			new AlertDialog.Builder(this)
+					.setTitle(R.string.error)
+					.setMessage(
+							getString(R.string.problem_loading_format,
+									error.getLocalizedMessage())).show();
+		}
+	}
+
+	/**
+	 * Searches in the background for the next row containing the text after
+	 * the first visible row and scrolls to it. The adapter does not report
+	 * the result if it is replaced before the search is done.
+	 * 
+	 * @param text
+	 *            text to search for
+	 */
+	private void search(final String text) {
+		if (feedAdapter == null || text.length() == 0) {
+			return;
+		}
+		final ListView feedList = (ListView) findViewById(R.id.FeedList);
+		feedAdapter.find(text, feedList.getFirstVisiblePosition() + 1,
+				new FeedLineAdapter.FindListener() {
+
+					@Override
+					public void onFound(final int row) {
+						if (row == -1) {
+							Toast.makeText(GasPricesFeedActivity.this,
+									R.string.search_not_found,
+									Toast.LENGTH_SHORT).show();
+						} else {
+							feedList.setSelection(row);
+						}
+					}
+				});
+	}
+
+	/**
+	 * Updates the view with the information stored in the {@link #preferences}
+	 * object. The feed text is read in the background and the list is replaced
+	 * when it is available.
+	 */
+	private void updateView() {
+		if (feedLoader != null) {
+			feedLoader.cancel(false);
+		}
+		feedLoader = new AsyncTask<Void, Void, FeedLineAdapter>() {
+
+			@Override
+			protected FeedLineAdapter doInBackground(final Void... params) {
+				final boolean error = preferences.isError();
+				final FeedHighlighter highlighter = FeedHighlighter.forFeed(
+						preferences.getLastUpdated().getTime(), error);
+				if (error) {
+					final FailureLog failureLog = FailureLog
+							.getInstance(getFilesDir());
+					final String excerpt = failureLog.size() == 0 ? null
+							: failureLog.getPayloadExcerpt(0);
+					return new FeedLineAdapter(GasPricesFeedActivity.this,
+							new StringFeedSource(excerpt == null ? ""
+									: excerpt), highlighter);
+				} else {
+					return new FeedLineAdapter(GasPricesFeedActivity.this,
+							preferences.openFeedSource(), highlighter);
+				}
+			}
+
+			/**
+			 * Closes the source of an adapter that will not be shown. This is
+			 * only called from Honeycomb on, earlier versions leave the source
+			 * to be closed when it is collected.
+			 */
+			@Override
+			protected void onCancelled(final FeedLineAdapter adapter) {
+				if (adapter != null) {
+					adapter.close();
+				}
+			}
+
+			@Override
+			protected void onPostExecute(final FeedLineAdapter adapter) {
+				feedLoader = null;
+				final ListView feedList = (ListView) findViewById(R.id.FeedList);
+				if (feedAdapter != null) {
+					feedAdapter.close();
+				}
+				feedAdapter = adapter;
+				feedList.setAdapter(feedAdapter);
+				feedList.setOnScrollListener(feedAdapter);
+				if (forcedUpdateDialog != null) {
+					forcedUpdateDialog.dismiss();
+					forcedUpdateDialog = null;
+				}
+			}
+		}.execute();
+	}
+}
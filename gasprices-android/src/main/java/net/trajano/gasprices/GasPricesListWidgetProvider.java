@@ -0,0 +1,69 @@
+package net.trajano.gasprices;
+
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProvider;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.widget.RemoteViews;
+
+/**
+ * This is the provider for the scrollable list widget that shows every city.
+ * It requires API level 11 and is only enabled on those devices through the
+ * <code>list_widget_enabled</code> resource.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class GasPricesListWidgetProvider extends AppWidgetProvider {
+	/**
+	 * Tells the list widgets that the snapshot may have changed.
+	 * {@link CityRowsFactory} only reads the rows again if the generation has
+	 * changed.
+	 * 
+	 * @param context
+	 *            context
+	 * @param appWidgetManager
+	 *            app widget manager
+	 */
+	public static void notifyDataChanged(final Context context,
+			final AppWidgetManager appWidgetManager) {
+		final int[] appWidgetIds = appWidgetManager
+				.getAppWidgetIds(new ComponentName(context,
+						GasPricesListWidgetProvider.class));
+		if (appWidgetIds.length > 0) {
+			appWidgetManager.notifyAppWidgetViewDataChanged(appWidgetIds,
+					R.id.list_widget_list);
+		}
+	}
+
+	@Override
+	public void onEnabled(final Context context) {
+		GasPricesUpdateService.scheduleUpdate(context);
+	}
+
+	@Override
+	public void onUpdate(final Context context,
+			final AppWidgetManager appWidgetManager, final int[] appWidgetIds) {
+		final Intent launchIntent = GasPricesWidgetProvider
+				.getLaunchIntent(context);
+		final PendingIntent pendingIntentTemplate = PendingIntent.getActivity(
+				context, 0, launchIntent, PendingIntent.FLAG_UPDATE_CURRENT);
+		for (final int appWidgetId : appWidgetIds) {
+			final Intent serviceIntent = new Intent(context,
+					GasPricesListWidgetService.class);
+			final RemoteViews remoteViews = new RemoteViews(
+					context.getPackageName(), R.layout.list_widget_layout);
+			remoteViews.setRemoteAdapter(appWidgetId, R.id.list_widget_list,
+					serviceIntent);
+			remoteViews.setEmptyView(R.id.list_widget_list,
+					R.id.list_widget_empty);
+			remoteViews.setPendingIntentTemplate(R.id.list_widget_list,
+					pendingIntentTemplate);
+			appWidgetManager.updateAppWidget(appWidgetId, remoteViews);
+		}
+		notifyDataChanged(context, appWidgetManager);
+		WidgetRefreshDispatcher.schedulePriceDateRefresh(context);
+	}
+}
@@ -0,0 +1,17 @@
+package net.trajano.gasprices;
+
+import android.content.Intent;
+import android.widget.RemoteViewsService;
+
+/**
+ * This provides the {@link CityRowsFactory} for the list widget.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class GasPricesListWidgetService extends RemoteViewsService {
+	@Override
+	public RemoteViewsFactory onGetViewFactory(final Intent intent) {
+		return new CityRowsFactory(getApplicationContext());
+	}
+}
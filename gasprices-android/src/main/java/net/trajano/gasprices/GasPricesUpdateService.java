@@ -1,6 +1,7 @@
 package net.trajano.gasprices;
 
 import java.io.IOException;
+import java.util.Date;
 
 import android.app.AlarmManager;
 import android.app.IntentService;
@@ -8,12 +9,10 @@ import android.app.Notification;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.appwidget.AppWidgetManager;
-import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.net.ConnectivityManager;
-import android.util.Log;
 
 /**
  * <p>
@@ -39,10 +38,15 @@ public class GasPricesUpdateService extends IntentService {
 	/**
 	 * This will schedule an update using the AlarmManager, that way the service
 	 * is not continuously running. It will cancel any previously defined alarms
-	 * before creating a new one.
+	 * before creating a new one. If the last attempt failed the update may be
+	 * retried before the next scheduled update as determined by
+	 * {@link UpdateSchedule#nextAttemptTime(long, FailureLog)}.
 	 */
 	public static void scheduleUpdate(final Context context) {
 		final PreferenceAdaptor preferences = new PreferenceAdaptor(context);
+		final long nextAttemptTime = UpdateSchedule.nextAttemptTime(
+				preferences.getNextUpdateTime(),
+				FailureLog.getInstance(context.getFilesDir()));
 		final AlarmManager alarmManager = (AlarmManager) context
 				.getApplicationContext()
 				.getSystemService(Context.ALARM_SERVICE);
@@ -50,11 +54,11 @@ public class GasPricesUpdateService extends IntentService {
 		final PendingIntent pendingIntent = PendingIntent.getService(context,
 				0, intent, PendingIntent.FLAG_CANCEL_CURRENT);
 		alarmManager.cancel(pendingIntent);
-		alarmManager.set(AlarmManager.RTC, preferences.getNextUpdateTime(),
-				pendingIntent);
-		Log.d("GasPrices",
-				"Setting next update time to "
-						+ preferences.getNextUpdateDate());
+		alarmManager.set(AlarmManager.RTC, nextAttemptTime, pendingIntent);
+		if (GasPricesLog.isLoggable(GasPricesLog.DEBUG)) {
+			GasPricesLog.d("Setting next update time to {}", new Date(
+					nextAttemptTime));
+		}
 	}
 
 	/**
@@ -74,8 +78,10 @@ public class GasPricesUpdateService extends IntentService {
 	 * <ul>
 	 * <li>reschedule itself to be started up again using the
 	 * {@link AlarmManager}</li>
-	 * <li>send an {@link AppWidgetManager#ACTION_APPWIDGET_UPDATE} to all the
-	 * widgets.</li>
+	 * <li>request an {@link AppWidgetManager#ACTION_APPWIDGET_UPDATE} for the
+	 * widgets whose city changed through {@link WidgetRefreshDispatcher}.</li>
+	 * <li>evaluate the {@link PriceAlertRules} of the cities that changed
+	 * through {@link PriceAlertNotifier}.</li>
 	 * </ul>
 	 * <p>
 	 * Note there is no need to use a custom intent because
@@ -90,10 +96,13 @@ public class GasPricesUpdateService extends IntentService {
 	 */
 	@Override
 	protected void onHandleIntent(final Intent intent) {
-		Log.d("GasPrices", "Service started by " + intent);
+		GasPricesLog.d("Service started by {}", intent);
+		final PipelineMetrics metrics = PipelineMetrics.getInstance();
+		final long start = PipelineMetrics.start();
 		final NotificationManager notificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
 		final PreferenceAdaptor preferences = new PreferenceAdaptor(this);
 		final PreferenceAdaptorEditor editor = preferences.edit();
+		long[] changedCityIds = new long[0];
 
 		try {
 			final ConnectivityManager cm = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
@@ -101,11 +110,21 @@ public class GasPricesUpdateService extends IntentService {
 			if (!backgroundEnabled) {
 				return;
 			}
-			editor.setJsonData(GetDataUtil.getGasPricesDataFromInternet());
+			changedCityIds = editor.setJsonData(GetDataUtil
+					.getGasPricesDataFromInternet());
 			notificationManager.cancel(1);
 			editor.removeLastError();
+			FailureLog.getInstance(getFilesDir()).recordSuccess(
+					System.currentTimeMillis(),
+					(long) PipelineMetrics
+							.toMillis(PipelineMetrics.start() - start));
 		} catch (final IOException e) {
-			Log.e("GasPrices", e.getMessage() + " and cry");
+			metrics.recordError(PipelineMetrics.STAGE_UPDATE);
+			FailureLog.getInstance(getFilesDir()).recordFailure(
+					System.currentTimeMillis(),
+					(long) PipelineMetrics
+							.toMillis(PipelineMetrics.start() - start), e);
+			GasPricesLog.e("{} and cry", e.getMessage());
 			final Notification notification = new Notification.Builder(this)
 					.setSmallIcon(R.drawable.ic_launcher)
 					.setAutoCancel(true)
@@ -115,28 +134,17 @@ public class GasPricesUpdateService extends IntentService {
 					.setWhen(System.currentTimeMillis()).getNotification();
 			notificationManager.notify(1, notification);
 		} finally {
-			// schedule the next update.
-			scheduleUpdate(this);
-			// update the widgets
-			{
-				final AppWidgetManager widgetManager = AppWidgetManager
-						.getInstance(this);
-				final ComponentName widgetComponent = new ComponentName(this,
-						GasPricesWidgetProvider.class);
-				final int[] widgetIds = widgetManager
-						.getAppWidgetIds(widgetComponent);
-				if (widgetIds.length > 0) {
-					final Intent update = new Intent();
-					update.putExtra(AppWidgetManager.EXTRA_APPWIDGET_IDS,
-							widgetIds);
-					update.setAction(AppWidgetManager.ACTION_APPWIDGET_UPDATE);
-					sendBroadcast(update);
-				}
-			}
 			editor.setLastUpdatedToNow();
+			final long applyStart = PipelineMetrics.start();
 			editor.apply();
-			Log.d("GasPrices", "done update");
+			metrics.record(PipelineMetrics.STAGE_APPLY, applyStart, 0);
+			// schedule the next update from the published snapshot.
+			scheduleUpdate(this);
+			// update the widgets
+			WidgetRefreshDispatcher.requestRefresh(this, changedCityIds);
+			PriceAlertNotifier.notifyPriceAlerts(this, changedCityIds);
+			metrics.record(PipelineMetrics.STAGE_UPDATE, start, 0);
+			GasPricesLog.d("done update");
 		}
 	}
-
 }
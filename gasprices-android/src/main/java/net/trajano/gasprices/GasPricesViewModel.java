@@ -0,0 +1,346 @@
+package net.trajano.gasprices;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.util.Date;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.os.Looper;
+
+/**
+ * This is an immutable, fully formatted model of what is displayed by
+ * {@link GasPricesActivity}. It is built off the main thread by
+ * {@link GasPricesViewModelLoader} so that the UI thread only has to bind the
+ * strings to the views.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class GasPricesViewModel {
+	/**
+	 * Name of the file in {@link Context#getFilesDir()} that stores the last
+	 * rendered model.
+	 */
+	private static final String PERSISTED_MODEL_FILE_NAME = "screen_model.bin"; // $NON-NLS-1$
+
+	/**
+	 * Format version of {@link #PERSISTED_MODEL_FILE_NAME}. Increment if the
+	 * fields that are written change.
+	 */
+	private static final int PERSISTED_MODEL_VERSION = 2;
+
+	/**
+	 * Removes the persisted model. Used by tests to simulate a first start.
+	 * 
+	 * @param context
+	 *            context
+	 */
+	public static void deletePersisted(final Context context) {
+		new File(context.getFilesDir(), PERSISTED_MODEL_FILE_NAME).delete();
+	}
+
+	private static String readNullableString(final DataInputStream in)
+			throws IOException {
+		if (in.readBoolean()) {
+			return in.readUTF();
+		}
+		return null;
+	}
+
+	/**
+	 * Restores the model that was last persisted using {@link #persist(Context)}
+	 * . This is a small file so it is quicker to read than the preferences.
+	 * 
+	 * @param context
+	 *            context
+	 * @return the persisted model or <code>null</code> if it is not available.
+	 */
+	public static GasPricesViewModel restore(final Context context) {
+		try {
+			final DataInputStream in = new DataInputStream(new FileInputStream(
+					new File(context.getFilesDir(), PERSISTED_MODEL_FILE_NAME)));
+			try {
+				if (in.readInt() != PERSISTED_MODEL_VERSION) {
+					return null;
+				}
+				return new GasPricesViewModel(in);
+			} finally {
+				in.close();
+			}
+		} catch (final FileNotFoundException e) {
+			return null;
+		} catch (final IOException e) {
+			GasPricesLog.e(e.getMessage());
+			return null;
+		}
+	}
+
+	private static void writeNullableString(final DataOutputStream out,
+			final String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	/**
+	 * Builds the model from the current {@link PriceSnapshot}. The snapshot is
+	 * read once so every value, including the {@link RegionAggregates}, comes
+	 * from the same update. This performs disk access so it must not be
+	 * called from the main thread.
+	 * 
+	 * @param context
+	 *            context used to get the resources.
+	 * @param preferences
+	 *            preferences.
+	 * @return the view model.
+	 * @throws IllegalStateException
+	 *             if called on the main thread.
+	 */
+	public static GasPricesViewModel load(final Context context,
+			final PreferenceAdaptor preferences) {
+		if (Looper.myLooper() == Looper.getMainLooper()) {
+			throw new IllegalStateException(
+					"view model must not be loaded on the main thread");
+		}
+		return new GasPricesViewModel(context.getResources(),
+				preferences.getSnapshot(), CityResources.getDirectory(context),
+				preferences.getSelectedCityId(), System.currentTimeMillis());
+	}
+
+	private final String cityName;
+
+	private final boolean dataPresent;
+
+	private final boolean error;
+
+	/**
+	 * Snapshot generation the model was built from. This is the last updated
+	 * time.
+	 */
+	private final long generation;
+
+	private final String lastUpdatedText;
+
+	private final String nextUpdateText;
+
+	/**
+	 * Next update time in milliseconds since epoch.
+	 */
+	private final long nextUpdateTime;
+
+	/**
+	 * Label for the other price. This is <code>null</code> if there is no
+	 * other price.
+	 */
+	private final String otherPriceLabelText;
+
+	private final String otherPriceText;
+
+	private final String priceTodayText;
+
+	/**
+	 * Comparison of today's price with the average of the region. This is
+	 * <code>null</code> if the city is not in a region.
+	 */
+	private final String regionComparisonText;
+
+	private final long selectedCityId;
+
+	/**
+	 * Reads the model from the persisted form.
+	 * 
+	 * @param in
+	 *            input stream
+	 * @throws IOException
+	 *             I/O error
+	 */
+	private GasPricesViewModel(final DataInputStream in) throws IOException {
+		generation = in.readLong();
+		nextUpdateTime = in.readLong();
+		selectedCityId = in.readLong();
+		error = in.readBoolean();
+		dataPresent = in.readBoolean();
+		cityName = readNullableString(in);
+		lastUpdatedText = readNullableString(in);
+		nextUpdateText = readNullableString(in);
+		otherPriceLabelText = readNullableString(in);
+		otherPriceText = readNullableString(in);
+		priceTodayText = readNullableString(in);
+		regionComparisonText = readNullableString(in);
+	}
+
+	private GasPricesViewModel(final Resources resources,
+			final PriceSnapshot snapshot, final CityDirectory directory,
+			final long selectedCityId, final long now) {
+		error = snapshot.isError();
+		dataPresent = snapshot.isDataPresent();
+		nextUpdateTime = snapshot.getNextUpdateTime();
+		generation = snapshot.getGeneration();
+		this.selectedCityId = selectedCityId;
+		final CityPriceTable table = snapshot.getTable();
+		final int row = table.indexOf(selectedCityId);
+		if (!dataPresent || row == -1) {
+			cityName = null;
+			lastUpdatedText = null;
+			nextUpdateText = null;
+			otherPriceLabelText = null;
+			otherPriceText = null;
+			priceTodayText = null;
+			regionComparisonText = null;
+			return;
+		}
+		final DateFormat dateFormat = DateFormat.getDateTimeInstance(
+				DateFormat.LONG, DateFormat.LONG);
+		cityName = directory.getName(directory.indexOf(selectedCityId));
+		lastUpdatedText = resources.getString(R.string.last_updated,
+				dateFormat.format(new Date(snapshot.getLastUpdated())).replace(
+						' ', '\u00A0'));
+		nextUpdateText = resources.getString(R.string.next_update, dateFormat
+				.format(new Date(nextUpdateTime)).replace(' ', '\u00A0'));
+		final float currentPrice = table.getCurrentPrice(row, now);
+		priceTodayText = resources.getString(R.string.cents_per_liter_format,
+				currentPrice);
+		if (table.isTomorrowsPriceAvailable(row, now)) {
+			otherPriceLabelText = resources.getString(R.string.tomorrow);
+			otherPriceText = resources.getString(
+					R.string.cents_per_liter_format, table.getRegularPrice(row));
+		} else {
+			otherPriceLabelText = resources.getString(R.string.yesterday);
+			otherPriceText = resources.getString(
+					R.string.cents_per_liter_format,
+					table.getRegularPrice(row) - table.getPriceDifference(row));
+		}
+		final RegionAggregates regionAggregates = snapshot
+				.getRegionAggregates().at(now);
+		final int region = regionAggregates.regionOf(selectedCityId);
+		if (region == -1) {
+			regionComparisonText = null;
+			return;
+		}
+		final String regionName = regionAggregates.getRegionName(region);
+		final float mean = regionAggregates.getMean(region);
+		final float difference = currentPrice - mean;
+		if (Math.abs(difference) < 0.05f) {
+			regionComparisonText = resources.getString(
+					R.string.region_at_average_format, regionName, mean);
+		} else if (difference > 0) {
+			regionComparisonText = resources.getString(
+					R.string.region_above_average_format, difference,
+					regionName, mean);
+		} else {
+			regionComparisonText = resources.getString(
+					R.string.region_below_average_format, -difference,
+					regionName, mean);
+		}
+	}
+
+	public String getCityName() {
+		return cityName;
+	}
+
+	public long getGeneration() {
+		return generation;
+	}
+
+	public String getLastUpdatedText() {
+		return lastUpdatedText;
+	}
+
+	public String getNextUpdateText() {
+		return nextUpdateText;
+	}
+
+	public String getOtherPriceLabelText() {
+		return otherPriceLabelText;
+	}
+
+	public String getOtherPriceText() {
+		return otherPriceText;
+	}
+
+	public String getPriceTodayText() {
+		return priceTodayText;
+	}
+
+	public String getRegionComparisonText() {
+		return regionComparisonText;
+	}
+
+	public long getSelectedCityId() {
+		return selectedCityId;
+	}
+
+	public boolean isDataPresent() {
+		return dataPresent;
+	}
+
+	public boolean isError() {
+		return error;
+	}
+
+	/**
+	 * Checks if the model was built from the same data that is referenced by
+	 * the arguments.
+	 * 
+	 * @param generation
+	 *            snapshot generation.
+	 * @param selectedCityId
+	 *            selected city ID.
+	 * @param error
+	 *            error flag.
+	 * @return <code>true</code> if the model can be reused.
+	 */
+	boolean isSameSnapshot(final long generation, final long selectedCityId,
+			final boolean error) {
+		return this.generation == generation
+				&& this.selectedCityId == selectedCityId && this.error == error;
+	}
+
+	/**
+	 * An update is needed if the next update time occurs in the past. The
+	 * screen shows the data as stale when this is <code>true</code>.
+	 * 
+	 * @return
+	 */
+	public boolean isUpdateNeeded() {
+		return nextUpdateTime < System.currentTimeMillis();
+	}
+
+	/**
+	 * Writes the model to {@link #PERSISTED_MODEL_FILE_NAME} so it can be shown
+	 * immediately the next time the application is started.
+	 * 
+	 * @param context
+	 *            context
+	 */
+	void persist(final Context context) {
+		PersistedFile.write(context.getFilesDir(), PERSISTED_MODEL_FILE_NAME,
+				new PersistedFile.Content() {
+
+					@Override
+					public void write(final DataOutputStream out)
+							throws IOException {
+						out.writeInt(PERSISTED_MODEL_VERSION);
+						out.writeLong(generation);
+						out.writeLong(nextUpdateTime);
+						out.writeLong(selectedCityId);
+						out.writeBoolean(error);
+						out.writeBoolean(dataPresent);
+						writeNullableString(out, cityName);
+						writeNullableString(out, lastUpdatedText);
+						writeNullableString(out, nextUpdateText);
+						writeNullableString(out, otherPriceLabelText);
+						writeNullableString(out, otherPriceText);
+						writeNullableString(out, priceTodayText);
+						writeNullableString(out, regionComparisonText);
+					}
+				});
+	}
+}
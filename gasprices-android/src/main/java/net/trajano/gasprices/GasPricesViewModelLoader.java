@@ -0,0 +1,152 @@
+package net.trajano.gasprices;
+
+import android.content.Context;
+import android.os.AsyncTask;
+
+/**
+ * <p>
+ * This loads the {@link GasPricesViewModel} in the background and delivers it
+ * to a {@link Callback} on the UI thread. The last model that was built is
+ * kept in memory and is reused as long as the snapshot generation, selected
+ * city and error state have not changed.
+ * </p>
+ * <p>
+ * On a cold start, the model that was persisted by the previous run is
+ * delivered first as a progress update so the screen has content before the
+ * preferences are loaded and decoded.
+ * </p>
+ * <p>
+ * If the user has not selected a city yet, the city nearest to the last known
+ * location is selected.
+ * </p>
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class GasPricesViewModelLoader extends
+		AsyncTask<Void, GasPricesViewModel, GasPricesViewModel> {
+	/**
+	 * Receives the loaded model on the UI thread.
+	 */
+	public interface Callback {
+		/**
+		 * Called on the UI thread when the model has been loaded. This may be
+		 * called twice on a cold start, once with the persisted model and once
+		 * with the model that was built from the current data.
+		 * 
+		 * @param model
+		 *            view model.
+		 * @param current
+		 *            <code>false</code> if this is the persisted model which
+		 *            may be out of date, for example when the update service
+		 *            ran while the application was closed.
+		 */
+		void onViewModelLoaded(GasPricesViewModel model, boolean current);
+	}
+
+	/**
+	 * Last model that was built.
+	 */
+	private static volatile GasPricesViewModel cachedModel;
+
+	/**
+	 * Clears the model that is kept in memory. Used by tests to simulate a
+	 * cold start.
+	 */
+	public static void clearCachedModel() {
+		cachedModel = null;
+	}
+
+	/**
+	 * Returns the last model that was built in this process. This does not
+	 * perform any disk access so it is safe to call from the UI thread to
+	 * display something while the loader is running.
+	 * 
+	 * @return the cached model or <code>null</code> if none has been built.
+	 */
+	public static GasPricesViewModel getCachedModel() {
+		return cachedModel;
+	}
+
+	private final Callback callback;
+
+	private final Context context;
+
+	/**
+	 * If <code>true</code> the next update will also be scheduled as part of
+	 * the background work.
+	 */
+	private final boolean scheduleUpdate;
+
+	/**
+	 * Constructs the loader.
+	 * 
+	 * @param context
+	 *            context
+	 * @param callback
+	 *            callback that receives the model
+	 * @param scheduleUpdate
+	 *            schedule the next update using
+	 *            {@link GasPricesUpdateService#scheduleUpdate(Context)} while
+	 *            in the background.
+	 */
+	public GasPricesViewModelLoader(final Context context,
+			final Callback callback, final boolean scheduleUpdate) {
+		this.context = context.getApplicationContext();
+		this.callback = callback;
+		this.scheduleUpdate = scheduleUpdate;
+	}
+
+	/**
+	 * Delivers the persisted model before anything else is done so the first
+	 * content does not wait on loading the preferences, scheduling the update
+	 * or looking up the nearest city.
+	 */
+	@Override
+	protected GasPricesViewModel doInBackground(final Void... params) {
+		GasPricesViewModel cached = cachedModel;
+		if (cached == null) {
+			cached = GasPricesViewModel.restore(context);
+			if (cached != null) {
+				cachedModel = cached;
+				publishProgress(cached);
+			}
+		}
+		final PreferenceAdaptor preferences = new PreferenceAdaptor(context);
+		if (scheduleUpdate) {
+			GasPricesUpdateService.scheduleUpdate(context);
+		}
+		if (!preferences.isSelectedCityIdSet()) {
+			final long nearestCityId = CityResources.findNearestCityId(context);
+			if (nearestCityId != -1) {
+				final PreferenceAdaptorEditor editor = preferences.edit();
+				editor.setSelectedCityId(nearestCityId);
+				editor.commit();
+			}
+		}
+		final PriceSnapshot snapshot = preferences.getSnapshot();
+		if (cached != null
+				&& cached.isSameSnapshot(snapshot.getGeneration(),
+						preferences.getSelectedCityId(), snapshot.isError())) {
+			return cached;
+		}
+		final GasPricesViewModel model = GasPricesViewModel.load(context,
+				preferences);
+		cachedModel = model;
+		model.persist(context);
+		return model;
+	}
+
+	@Override
+	protected void onPostExecute(final GasPricesViewModel model) {
+		callback.onViewModelLoaded(model, true);
+	}
+
+	/**
+	 * Delivers the persisted model.
+	 */
+	@Override
+	protected void onProgressUpdate(final GasPricesViewModel... values) {
+		callback.onViewModelLoaded(values[0], false);
+	}
+}
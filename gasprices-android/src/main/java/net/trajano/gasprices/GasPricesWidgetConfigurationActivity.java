@@ -8,12 +8,16 @@ import android.os.Bundle;
 import android.os.StrictMode;
 import android.view.View;
 import android.widget.ListView;
-import android.widget.RemoteViews;
 
 public class GasPricesWidgetConfigurationActivity extends ListActivity {
 
 	private int appWidgetId = AppWidgetManager.INVALID_APPWIDGET_ID;
 
+	/**
+	 * Loads the directory and finds the nearest city.
+	 */
+	private CityListLoader loader;
+
 	/**
 	 * Preference data, stored in memory until destruction.
 	 */
@@ -30,7 +34,10 @@ public class GasPricesWidgetConfigurationActivity extends ListActivity {
 		setResult(RESULT_CANCELED);
 
 		preferences = new PreferenceAdaptor(this);
-		setListAdapter(new CityListAdapter(this));
+		final CityListAdapter adapter = new CityListAdapter(this);
+		setListAdapter(adapter);
+		loader = new CityListLoader(this, adapter, getListView());
+		loader.execute();
 
 		// listView.set
 		final Intent intent = getIntent();
@@ -47,6 +54,12 @@ public class GasPricesWidgetConfigurationActivity extends ListActivity {
 
 	}
 
+	@Override
+	protected void onDestroy() {
+		loader.cancel(false);
+		super.onDestroy();
+	}
+
 	/**
 	 * When the item is selected, it updates the selected city preference rather
 	 * than sending the data back. It is this activity that is setting what it
@@ -61,13 +74,8 @@ public class GasPricesWidgetConfigurationActivity extends ListActivity {
 		// update.
 		editor.commit();
 
-		final RemoteViews remoteViews = new RemoteViews(getPackageName(),
-				R.layout.widget_layout);
-		if (!preferences.isUpdateNeeded()) {
-			GasPricesWidgetProvider.updateAppWidget(this,
-					AppWidgetManager.getInstance(this), appWidgetId,
-					preferences, remoteViews);
-		}
+		WidgetBatchRenderer.render(this, AppWidgetManager.getInstance(this),
+				new int[] { appWidgetId }, preferences);
 		{
 			// Make sure we pass back the original appWidgetId
 			final Intent intent = new Intent();
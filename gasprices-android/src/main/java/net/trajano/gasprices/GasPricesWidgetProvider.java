@@ -0,0 +1,146 @@
+package net.trajano.gasprices;
+
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProvider;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+import android.os.Build;
+
+public class GasPricesWidgetProvider extends AppWidgetProvider {
+	/**
+	 * Action of the broadcast scheduled by
+	 * {@link WidgetRefreshDispatcher#schedulePriceDateRefresh(Context)} to
+	 * render every widget again when the next price date passes.
+	 */
+	static final String ACTION_PRICE_DATE_PASSED = "net.trajano.gasprices.PRICE_DATE_PASSED"; // $NON-NLS-1$
+
+	/**
+	 * Builds the intent that launches the application without a city. Used as
+	 * the template for the list widget rows which fill in the city.
+	 * 
+	 * @param context
+	 *            context
+	 * @return launch intent
+	 */
+	static Intent getLaunchIntent(final Context context) {
+		final PackageManager manager = context.getPackageManager();
+		final Intent intent = manager
+				.getLaunchIntentForPackage("net.trajano.gasprices");
+		intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK
+				| Intent.FLAG_ACTIVITY_CLEAR_TASK);
+		return intent;
+	}
+
+	/**
+	 * Builds the intent that launches the application on the city shown by a
+	 * widget. The city ID is passed as the path of the data URI prefixed with
+	 * <code>city/</code>.
+	 * 
+	 * @param context
+	 *            context
+	 * @param cityId
+	 *            city ID
+	 * @return launch intent
+	 */
+	static Intent getLaunchIntent(final Context context, final long cityId) {
+		final Intent intent = getLaunchIntent(context);
+		intent.setData(getLaunchUri(cityId));
+		return intent;
+	}
+
+	/**
+	 * Builds the data URI used to launch the application on a city.
+	 * 
+	 * @param cityId
+	 *            city ID
+	 * @return data URI
+	 */
+	static Uri getLaunchUri(final long cityId) {
+		return new Uri.Builder().appendPath("city")
+				.appendPath(String.valueOf(cityId)).build();
+	}
+
+	/**
+	 * Builds the intent that was used by earlier versions to launch the
+	 * application from a widget. It is only used to cancel the intents that
+	 * may still be registered.
+	 */
+	private static Intent getLegacyLaunchIntent(final Context context,
+			final int appWidgetId) {
+		final Intent intent = getLaunchIntent(context);
+		intent.setData(new Uri.Builder().path(String.valueOf(appWidgetId))
+				.build());
+		return intent;
+
+	}
+
+	/**
+	 * This will remove all the preferences along with all the
+	 * {@link PendingIntent} associated with the widget.
+	 */
+	@Override
+	public void onDeleted(final Context context, final int[] appWidgetIds) {
+		super.onDeleted(context, appWidgetIds);
+		final PreferenceAdaptor preferences = new PreferenceAdaptor(context);
+		final PreferenceAdaptorEditor editor = preferences.edit();
+		editor.removeWidgetCityId(appWidgetIds);
+		editor.apply();
+		WidgetBatchRenderer.forget(appWidgetIds);
+		for (final int appWidgetId : appWidgetIds) {
+			final PendingIntent pendingIntent = PendingIntent.getActivity(
+					context, appWidgetId,
+					getLegacyLaunchIntent(context, appWidgetId),
+					PendingIntent.FLAG_NO_CREATE);
+			if (pendingIntent != null) {
+				pendingIntent.cancel();
+			}
+		}
+	}
+
+	@Override
+	public void onEnabled(final Context context) {
+		GasPricesUpdateService.scheduleUpdate(context);
+	}
+
+	/**
+	 * Renders every widget again when the price date passes. The list widgets
+	 * are told their data may have changed. Other broadcasts are handled by
+	 * {@link AppWidgetProvider}.
+	 */
+	@Override
+	public void onReceive(final Context context, final Intent intent) {
+		if (!ACTION_PRICE_DATE_PASSED.equals(intent.getAction())) {
+			super.onReceive(context, intent);
+			return;
+		}
+		final AppWidgetManager appWidgetManager = AppWidgetManager
+				.getInstance(context);
+		onUpdate(context, appWidgetManager,
+				appWidgetManager.getAppWidgetIds(new ComponentName(context,
+						GasPricesWidgetProvider.class)));
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+			GasPricesListWidgetProvider.notifyDataChanged(context,
+					appWidgetManager);
+		}
+	}
+
+	@Override
+	public void onUpdate(final Context context,
+			final AppWidgetManager appWidgetManager, final int[] appWidgetIds) {
+		final PreferenceAdaptor preferences = new PreferenceAdaptor(context);
+		WidgetBatchRenderer.render(context, appWidgetManager, appWidgetIds,
+				preferences);
+		WidgetRefreshDispatcher.schedulePriceDateRefresh(context);
+		if (preferences.isUpdateNeeded()) {
+			// Build the intent to call the service
+			final Intent intent = new Intent(context.getApplicationContext(),
+					GasPricesUpdateService.class);
+			context.startService(intent);
+		}
+	}
+
+}
@@ -10,8 +10,6 @@ import org.json.JSONObject;
 import android.app.Activity;
 import android.content.Context;
 import android.content.SharedPreferences;
-import android.text.format.Time;
-import android.util.Log;
 
 /**
  * <p>
@@ -30,24 +28,23 @@ import android.util.Log;
  * @author Archimedes Trajano (developer@trajano.net)
  * 
  */
-public final class PreferenceAdaptor implements SharedPreferences {
+public final class PreferenceAdaptor implements SharedPreferences,
+		PriceSnapshot.Loader {
 	/**
 	 * City data key prefix.
 	 */
 	static final String CITY_DATA_KEY_PREFIX = "city_";
 
 	/**
-	 * Default city ID. Uses Toronto.
-	 */
-	private static final long DEFAULT_CITY_ID = 133;
-
-	/**
-	 * This is the actual data, but it is only for error situations.
+	 * This was the actual data stored in error situations. Failures are now
+	 * kept in the {@link FailureLog} so this is only removed.
 	 */
 	static final String FEED_DATA_KEY = "data";
 
 	/**
-	 * JSON data key.
+	 * JSON data key. The formatted feed is now kept in the
+	 * {@link CompressedFeedStore}, this is only read if the feed was stored by
+	 * an earlier version and has not been updated since.
 	 */
 	static final String JSON_DATA_KEY = "json_data";
 
@@ -114,25 +111,14 @@ public final class PreferenceAdaptor implements SharedPreferences {
 	 * @return the next update time.
 	 */
 	public static Date nextUpdateDate(final long lastUpdateTime) {
-		final Time t = new Time();
-		t.set(lastUpdateTime);
-		if (t.hour < 17) {
-			t.hour = 17;
-			t.minute = 0;
-			t.second = 0;
-		} else if (t.hour < 20) {
-			t.hour = 20;
-			t.minute = 0;
-			t.second = 0;
-		} else {
-			t.monthDay += 1;
-			t.hour = 0;
-			t.minute = 0;
-			t.second = 0;
-		}
-		return new Date(t.normalize(false));
+		return new Date(UpdateSchedule.nextUpdateTime(lastUpdateTime));
 	}
 
+	/**
+	 * Application context. Used to get the current {@link CityDirectory}.
+	 */
+	private final Context context;
+
 	/**
 	 * This is the {@link SharedPreferences} object that is being wrapped.
 	 */
@@ -148,7 +134,7 @@ public final class PreferenceAdaptor implements SharedPreferences {
 	public PreferenceAdaptor(final Context context) {
 		preferences = context.getSharedPreferences(SHARED_PREFERENCES_NAME,
 				Context.MODE_PRIVATE);
-
+		this.context = context.getApplicationContext();
 	}
 
 	/**
@@ -165,7 +151,8 @@ public final class PreferenceAdaptor implements SharedPreferences {
 	 */
 	@Override
 	public PreferenceAdaptorEditor edit() {
-		return new PreferenceAdaptorEditor(preferences.edit());
+		return new PreferenceAdaptorEditor(context, preferences,
+				preferences.edit());
 	}
 
 	/**
@@ -184,18 +171,25 @@ public final class PreferenceAdaptor implements SharedPreferences {
 		return preferences.getBoolean(key, defValue);
 	}
 
+	/**
+	 * Gets the {@link CityInfo} of a city from the {@link CityPriceTable} of
+	 * the current {@link PriceSnapshot}.
+	 * 
+	 * @param cityId
+	 *            city ID
+	 * @return the city information.
+	 * @throws IllegalArgumentException
+	 *             if the city is not in the snapshot.
+	 */
 	public CityInfo getCityInfo(final long cityId) {
-		try {
-			return new CityInfo(new JSONObject(preferences.getString(
-					CITY_DATA_KEY_PREFIX + cityId, "")));
-		} catch (final JSONException e) {
-			Log.e("GasPrices", e.getMessage());
-			throw new RuntimeException(e);
+		final CityPriceTable table = getSnapshot().getTable();
+		final int row = table.indexOf(cityId);
+		if (row == -1) {
+			throw new IllegalArgumentException("no prices for city " + cityId);
 		}
-	}
-
-	public String getFeedData() {
-		return preferences.getString(FEED_DATA_KEY, "");
+		final CityDirectory directory = CityResources.getDirectory(context);
+		return new CityInfo(directory.getName(directory.indexOf(cityId)),
+				table, row, System.currentTimeMillis());
 	}
 
 	/**
@@ -214,26 +208,19 @@ public final class PreferenceAdaptor implements SharedPreferences {
 		return preferences.getInt(key, defValue);
 	}
 
-	/**
-	 * This gets the preference data pointed to by {@link #JSON_DATA_KEY}.
-	 * 
-	 * @return JSON data as string.
-	 */
-	public String getJsonDataString() {
-		return preferences.getString(JSON_DATA_KEY, null);
-	}
-
 	public String getLastError() {
-		return preferences.getString(LAST_ERROR_KEY, "");
+		final String lastError = getSnapshot().getLastError();
+		return lastError == null ? "" : lastError;
 	}
 
 	/**
-	 * This returns the {@link Date} represening the last updated timestamp.
+	 * This returns the {@link Date} represening the last updated timestamp
+	 * from the current {@link PriceSnapshot}.
 	 * 
 	 * @return
 	 */
 	public Date getLastUpdated() {
-		return new Date(preferences.getLong(LAST_UPDATED_KEY, 0));
+		return new Date(getSnapshot().getLastUpdated());
 	}
 
 	/**
@@ -245,24 +232,23 @@ public final class PreferenceAdaptor implements SharedPreferences {
 	}
 
 	/**
-	 * This returns the next update date based on the {@link #LAST_UPDATED_KEY}.
+	 * This returns the next update date from the current
+	 * {@link PriceSnapshot}.
 	 * 
 	 * @return
 	 */
 	public Date getNextUpdateDate() {
-		return nextUpdateDate(preferences.getLong(LAST_UPDATED_KEY,
-				Long.MIN_VALUE));
+		return new Date(getNextUpdateTime());
 	}
 
 	/**
-	 * This provides the next update time as seconds since epoch.
+	 * This provides the next update time as seconds since epoch from the
+	 * current {@link PriceSnapshot}.
 	 * 
 	 * @return
 	 */
 	public long getNextUpdateTime() {
-		return nextUpdateDate(
-				preferences.getLong(LAST_UPDATED_KEY, Long.MIN_VALUE))
-				.getTime();
+		return getSnapshot().getNextUpdateTime();
 	}
 
 	/**
@@ -272,8 +258,30 @@ public final class PreferenceAdaptor implements SharedPreferences {
 	 * @return
 	 */
 	public CityInfo getSelectedCityInfo() {
-		return getCityInfo(preferences.getLong(SELECTED_CITY_ID_KEY,
-				DEFAULT_CITY_ID));
+		return getCityInfo(getSelectedCityId());
+	}
+
+	/**
+	 * This will return the currently selected city ID or Toronto if not set or
+	 * no longer in the {@link CityDirectory}.
+	 * 
+	 * @return
+	 */
+	public long getSelectedCityId() {
+		return CityResources.getDirectory(context).getValidCityId(
+				preferences.getLong(SELECTED_CITY_ID_KEY,
+						CityDirectory.DEFAULT_CITY_ID));
+	}
+
+	/**
+	 * Gets the current {@link PriceSnapshot}. If it has not been loaded yet it
+	 * is loaded from the preferences, so this performs disk access on the
+	 * first call.
+	 * 
+	 * @return the current snapshot.
+	 */
+	public PriceSnapshot getSnapshot() {
+		return PriceSnapshot.getInstance(this);
 	}
 
 	/**
@@ -299,8 +307,9 @@ public final class PreferenceAdaptor implements SharedPreferences {
 	 * @return
 	 */
 	public long getWidgetCityId(final long appWidgetId) {
-		return preferences.getLong(WIDGET_CITY_ID_PREFERENCE_KEY_PREFIX
-				+ appWidgetId, DEFAULT_CITY_ID);
+		return CityResources.getDirectory(context).getValidCityId(
+				preferences.getLong(WIDGET_CITY_ID_PREFERENCE_KEY_PREFIX
+						+ appWidgetId, CityDirectory.DEFAULT_CITY_ID));
 	}
 
 	/**
@@ -319,8 +328,7 @@ public final class PreferenceAdaptor implements SharedPreferences {
 	 * @return
 	 */
 	public boolean isDataPresent() {
-		return preferences.contains(LAST_UPDATED_KEY)
-				&& preferences.contains(JSON_DATA_KEY);
+		return getSnapshot().isDataPresent();
 	}
 
 	/**
@@ -329,7 +337,16 @@ public final class PreferenceAdaptor implements SharedPreferences {
 	 * @return
 	 */
 	public boolean isError() {
-		return preferences.contains(LAST_ERROR_KEY);
+		return getSnapshot().isError();
+	}
+
+	/**
+	 * Checks if the user has selected a city.
+	 * 
+	 * @return
+	 */
+	public boolean isSelectedCityIdSet() {
+		return preferences.contains(SELECTED_CITY_ID_KEY);
 	}
 
 	/**
@@ -341,6 +358,104 @@ public final class PreferenceAdaptor implements SharedPreferences {
 		return getNextUpdateTime() < System.currentTimeMillis();
 	}
 
+	/**
+	 * Loads the snapshot from the raw preference values, the persisted
+	 * {@link CityPriceTable} and the persisted {@link RegionAggregates}.
+	 * 
+	 * @return the loaded snapshot.
+	 */
+	@Override
+	public PriceSnapshot load() {
+		final boolean updated = preferences.contains(LAST_UPDATED_KEY);
+		final long lastUpdated = preferences.getLong(LAST_UPDATED_KEY, 0);
+		final CityPriceTable table = loadPriceTable();
+		return PriceSnapshot.EMPTY.with(table, loadRegionAggregates(table),
+				lastUpdated,
+				UpdateSchedule.nextUpdateTime(updated ? lastUpdated
+						: Long.MIN_VALUE),
+				updated
+						&& (CompressedFeedStore.exists(context.getFilesDir()) || preferences
+								.contains(JSON_DATA_KEY)),
+				preferences.getString(LAST_ERROR_KEY, null));
+	}
+
+	/**
+	 * Reads the persisted {@link CityPriceTable}. If the snapshot was stored
+	 * before the table was persisted, the table is built from the city data in
+	 * the preferences and persisted.
+	 * 
+	 * @return the table.
+	 */
+	private CityPriceTable loadPriceTable() {
+		final CityPriceTable persisted = CityPriceTable.restore(context
+				.getFilesDir());
+		if (persisted != null) {
+			return persisted;
+		}
+		final Map<String, ?> all = preferences.getAll();
+		final CityPriceTable.Builder builder = new CityPriceTable.Builder(
+				all.size());
+		for (final Map.Entry<String, ?> entry : all.entrySet()) {
+			if (!entry.getKey().startsWith(CITY_DATA_KEY_PREFIX)) {
+				continue;
+			}
+			try {
+				builder.add(
+						Long.parseLong(entry.getKey().substring(
+								CITY_DATA_KEY_PREFIX.length())),
+						new CityInfo(new JSONObject((String) entry.getValue())));
+			} catch (final JSONException e) {
+				GasPricesLog.e(e.getMessage());
+			}
+		}
+		final CityPriceTable table = builder.build();
+		if (table.size() > 0) {
+			table.persist(context.getFilesDir());
+		}
+		return table;
+	}
+
+	/**
+	 * Reads the persisted {@link RegionAggregates}. If they were not persisted
+	 * in the current format, they are computed from the table and persisted.
+	 * 
+	 * @param table
+	 *            price table of the snapshot
+	 * @return the aggregates.
+	 */
+	private RegionAggregates loadRegionAggregates(final CityPriceTable table) {
+		final long now = System.currentTimeMillis();
+		final RegionAggregates persisted = RegionAggregates.restore(
+				context.getFilesDir(), now);
+		if (persisted != null) {
+			return persisted;
+		}
+		if (table.size() == 0) {
+			return RegionAggregates.EMPTY;
+		}
+		final RegionAggregates aggregates = RegionAggregates.EMPTY.update(
+				CityResources.getDirectory(context), table, new long[0],
+				new long[0], now);
+		aggregates.persist(context.getFilesDir());
+		return aggregates;
+	}
+
+	/**
+	 * Opens the formatted feed for the feed view. The feed is decompressed
+	 * from the {@link CompressedFeedStore} as rows are read. This performs
+	 * disk access so it should not be called from the main thread.
+	 * 
+	 * @return the feed source. It should be closed if it is
+	 *         {@link java.io.Closeable}.
+	 */
+	public FeedSource openFeedSource() {
+		if (CompressedFeedStore.exists(context.getFilesDir())) {
+			return new ReaderFeedSource(CompressedFeedStore.opener(context
+					.getFilesDir()));
+		}
+		return new StringFeedSource(preferences.getString(JSON_DATA_KEY, null));
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -0,0 +1,408 @@
+package net.trajano.gasprices;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.text.format.Time;
+
+/**
+ * This is an internal class to adapt the editor to add a few methods to hide
+ * knowledge from clients what the keys are. Changes to the feed data, last
+ * updated time or error are published together as a new
+ * {@link PriceSnapshot} before the preferences are written.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class PreferenceAdaptorEditor implements
+		android.content.SharedPreferences.Editor {
+	/**
+	 * Application context. Used to update the {@link CityDirectory}.
+	 */
+	private final Context context;
+
+	private final android.content.SharedPreferences.Editor editor;
+
+	/**
+	 * Last error set by {@link #setLastError(String)}. This is
+	 * <code>null</code> if the error was removed.
+	 */
+	private String lastError;
+
+	/**
+	 * <code>true</code> if the last error was set or removed.
+	 */
+	private boolean lastErrorSet;
+
+	/**
+	 * Last updated time set in this edit.
+	 */
+	private long lastUpdated;
+
+	/**
+	 * <code>true</code> if {@link #lastUpdated} was set.
+	 */
+	private boolean lastUpdatedSet;
+
+	/**
+	 * Preferences being edited. Used to determine what has changed.
+	 */
+	private final SharedPreferences preferences;
+
+	/**
+	 * Price table built by {@link #setJsonData(JSONObject)}. This is
+	 * <code>null</code> if the feed was not set.
+	 */
+	private CityPriceTable priceTable;
+
+	/**
+	 * Region aggregates updated by {@link #setJsonData(JSONObject)}. This is
+	 * <code>null</code> if the feed was not set.
+	 */
+	private RegionAggregates regionAggregates;
+
+	public PreferenceAdaptorEditor(final Context context,
+			final SharedPreferences preferences,
+			final android.content.SharedPreferences.Editor editor) {
+		this.context = context;
+		this.preferences = preferences;
+		this.editor = editor;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * However, if it detects that we are using an API level of less than 9
+	 * which is when {@link #apply()} was first introduced it will default to
+	 * commit.
+	 */
+	@Override
+	public void apply() {
+		publishSnapshot();
+		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.GINGERBREAD) {
+			editor.commit();
+		} else {
+			editor.apply();
+		}
+	}
+
+	@Override
+	public android.content.SharedPreferences.Editor clear() {
+		return editor.clear();
+	}
+
+	@Override
+	public boolean commit() {
+		publishSnapshot();
+		return editor.commit();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @deprecated should not be used as it allows access to modify the
+	 *             preferences directly.
+	 */
+	@Override
+	@Deprecated
+	public android.content.SharedPreferences.Editor putBoolean(
+			final String key, final boolean value) {
+		return editor.putBoolean(key, value);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @deprecated should not be used as it allows access to modify the
+	 *             preferences directly.
+	 */
+	@Override
+	@Deprecated
+	public android.content.SharedPreferences.Editor putFloat(final String key,
+			final float value) {
+		return editor.putFloat(key, value);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @deprecated should not be used as it allows access to modify the
+	 *             preferences directly.
+	 */
+	@Override
+	@Deprecated
+	public android.content.SharedPreferences.Editor putInt(final String key,
+			final int value) {
+		return editor.putInt(key, value);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @deprecated should not be used as it allows access to modify the
+	 *             preferences directly.
+	 */
+	@Override
+	@Deprecated
+	public android.content.SharedPreferences.Editor putLong(final String key,
+			final long value) {
+		return editor.putLong(key, value);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @deprecated should not be used as it allows access to modify the
+	 *             preferences directly.
+	 */
+	@Override
+	@Deprecated
+	public android.content.SharedPreferences.Editor putString(final String key,
+			final String value) {
+		return editor.putString(key, value);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @deprecated should not be used as it allows access to modify the
+	 *             preferences directly.
+	 */
+	@Override
+	@Deprecated
+	public android.content.SharedPreferences.Editor putStringSet(
+			final String arg0, final Set<String> arg1) {
+		return editor.putStringSet(arg0, arg1);
+	}
+
+	/**
+	 * Publishes a {@link PriceSnapshot} with the {@link CityPriceTable} and
+	 * {@link RegionAggregates} built by {@link #setJsonData(JSONObject)}, the
+	 * last updated time and error. Those were already persisted so this does
+	 * not touch the disk. This is done before the preferences are written so
+	 * that listeners notified of the change read the new snapshot.
+	 */
+	private void publishSnapshot() {
+		final boolean feedSet = priceTable != null;
+		if (!feedSet && !lastUpdatedSet && !lastErrorSet) {
+			return;
+		}
+		final boolean lastUpdatedPresent = lastUpdatedSet
+				|| preferences.contains(PreferenceAdaptor.LAST_UPDATED_KEY);
+		final PreferenceAdaptor adaptor = new PreferenceAdaptor(context);
+		PriceSnapshot current;
+		PriceSnapshot next;
+		do {
+			current = adaptor.getSnapshot();
+			next = current.with(
+					feedSet ? priceTable : current.getTable(),
+					feedSet ? regionAggregates : current
+							.getRegionAggregates(),
+					lastUpdatedSet ? lastUpdated : current.getLastUpdated(),
+					lastUpdatedSet ? UpdateSchedule.nextUpdateTime(lastUpdated)
+							: current.getNextUpdateTime(),
+					current.isDataPresent() || feedSet && lastUpdatedPresent,
+					lastErrorSet ? lastError : current.getLastError());
+		} while (!PriceSnapshot.publish(current, next));
+		lastError = null;
+		lastErrorSet = false;
+		lastUpdatedSet = false;
+		priceTable = null;
+		regionAggregates = null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @deprecated should not be used as it allows access to modify the
+	 *             preferences directly.
+	 */
+	@Override
+	@Deprecated
+	public android.content.SharedPreferences.Editor remove(final String key) {
+		return editor.remove(key);
+	}
+
+	public void removeLastError() {
+		lastError = null;
+		lastErrorSet = true;
+		editor.remove(PreferenceAdaptor.LAST_ERROR_KEY);
+		editor.remove(PreferenceAdaptor.FEED_DATA_KEY);
+	}
+
+	/**
+	 * This removes the selected city id for the widgets.
+	 * 
+	 * @param appWidgetIds
+	 *            appwidget ID.
+	 * @return itself
+	 */
+	public PreferenceAdaptorEditor removeWidgetCityId(final int... appWidgetIds) {
+		for (final int appWidgetId : appWidgetIds) {
+			remove(PreferenceAdaptor.WIDGET_CITY_ID_PREFERENCE_KEY_PREFIX
+					+ appWidgetId);
+		}
+		return this;
+	}
+
+	/**
+	 * This updates the selected city id for the widget
+	 * 
+	 * @param appWidgetId
+	 *            appwidget ID.
+	 * @param cityId
+	 *            city id
+	 * @return itself
+	 */
+	public PreferenceAdaptorEditor saveWidgetCityId(final int appWidgetId,
+			final long cityId) {
+		putLong(PreferenceAdaptor.WIDGET_CITY_ID_PREFERENCE_KEY_PREFIX
+				+ appWidgetId, cityId);
+		return this;
+	}
+
+	/**
+	 * This will break apart the JSON data for each city and store it in the
+	 * preferences. The city records are decoded in parallel by a
+	 * {@link FeedDecoder}. Only the main JSON feed is formatted, the individual
+	 * city data is kept small. The formatted feed is kept out of the
+	 * preferences in the {@link CompressedFeedStore}. The data of cities that
+	 * are no longer in the feed is removed. The {@link CityDirectory} is
+	 * merged with the cities in the feed, and the {@link CityPriceTable} and
+	 * the {@link RegionAggregates} of the cities that changed are built and
+	 * persisted here so that committing the changes only publishes a new
+	 * {@link PriceSnapshot}. This performs disk access so it must not be
+	 * called from the main thread.
+	 * 
+	 * @param gasPrices
+	 *            gas prices JSON data object.
+	 * @return the IDs of the cities whose data is different from what was
+	 *         stored.
+	 */
+	public long[] setJsonData(final JSONObject gasPrices) {
+		final long start = PipelineMetrics.start();
+		try {
+			final String feedText = gasPrices.toString(3);
+			editor.remove(PreferenceAdaptor.JSON_DATA_KEY);
+			final FeedDecoder decoder = new FeedDecoder(
+					gasPrices.getJSONArray("gasprices"));
+			decoder.decode(FeedDecoder.getDefaultThreadCount());
+			final int cityCount = decoder.getCityCount();
+			final long[] changed = new long[cityCount];
+			final int[] feedCityIds = new int[cityCount];
+			final String[] feedCityNames = new String[cityCount];
+			final Set<String> staleKeys = new HashSet<String>();
+			for (final String key : preferences.getAll().keySet()) {
+				if (key.startsWith(PreferenceAdaptor.CITY_DATA_KEY_PREFIX)) {
+					staleKeys.add(key);
+				}
+			}
+			int changedCount = 0;
+			for (int i = cityCount - 1; i >= 0; --i) {
+				final long cityId = decoder.getCityId(i);
+				feedCityIds[i] = (int) cityId;
+				feedCityNames[i] = decoder.getCityName(i);
+				final String key = PreferenceAdaptor.CITY_DATA_KEY_PREFIX
+						+ cityId;
+				staleKeys.remove(key);
+				final String cityDataString = decoder.getCityData(i);
+				if (!cityDataString.equals(preferences.getString(key, null))) {
+					changed[changedCount++] = cityId;
+				}
+				editor.putString(key, cityDataString);
+			}
+			final long[] removedCityIds = new long[staleKeys.size()];
+			int removedCount = 0;
+			for (final String key : staleKeys) {
+				editor.remove(key);
+				removedCityIds[removedCount++] = Long.parseLong(key
+						.substring(PreferenceAdaptor.CITY_DATA_KEY_PREFIX
+								.length()));
+			}
+			final long[] changedCityIds = new long[changedCount];
+			System.arraycopy(changed, 0, changedCityIds, 0, changedCount);
+			final CityDirectory directory = CityResources.updateDirectory(
+					context, feedCityIds, feedCityNames);
+			CompressedFeedStore.write(context.getFilesDir(), feedText);
+			priceTable = decoder.toPriceTable();
+			priceTable.persist(context.getFilesDir());
+			regionAggregates = new PreferenceAdaptor(context).getSnapshot()
+					.getRegionAggregates().update(directory, priceTable,
+							changedCityIds, removedCityIds,
+							System.currentTimeMillis());
+			regionAggregates.persist(context.getFilesDir());
+			PipelineMetrics.getInstance().record(PipelineMetrics.STAGE_STORE,
+					start, cityCount);
+			return changedCityIds;
+		} catch (final JSONException e) {
+			PipelineMetrics.getInstance().recordError(
+					PipelineMetrics.STAGE_STORE);
+			GasPricesLog.e(e.getMessage());
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Sets the last error text. The details of the failure are kept in the
+	 * {@link FailureLog} rather than the preferences. The payload stored by
+	 * earlier versions is removed.
+	 * 
+	 * @param errorMessage
+	 *            error message. May be <code>null</code> to remove the message.
+	 */
+	public void setLastError(final String errorMessage) {
+		lastError = errorMessage;
+		lastErrorSet = true;
+		editor.putString(PreferenceAdaptor.LAST_ERROR_KEY, errorMessage);
+		editor.remove(PreferenceAdaptor.FEED_DATA_KEY);
+	}
+
+	/**
+	 * Sets the last updated time preference. Internally it will convert it to a
+	 * long before storing it in the shared preferences.
+	 * 
+	 * @param lastUpdated
+	 * @return itself
+	 */
+	public PreferenceAdaptorEditor setLastUpdated(final Date lastUpdated) {
+		this.lastUpdated = lastUpdated.getTime();
+		lastUpdatedSet = true;
+		putLong(PreferenceAdaptor.LAST_UPDATED_KEY, lastUpdated.getTime());
+		return this;
+	}
+
+	/**
+	 * Sets the last updated time preference to right now. Internally it will
+	 * convert it to a long before storing it in the shared preferences.
+	 * 
+	 * @return itself
+	 */
+	public PreferenceAdaptorEditor setLastUpdatedToNow() {
+		final Time time = new Time();
+		time.setToNow();
+		lastUpdated = time.normalize(false);
+		lastUpdatedSet = true;
+		putLong(PreferenceAdaptor.LAST_UPDATED_KEY, lastUpdated);
+		return this;
+	}
+
+	/**
+	 * This updates the selected city name.
+	 * 
+	 * @param cityId
+	 *            city id
+	 * @return
+	 */
+	public PreferenceAdaptorEditor setSelectedCityId(final long cityId) {
+		putLong(PreferenceAdaptor.SELECTED_CITY_ID_KEY, cityId);
+		return this;
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,94 @@
+package net.trajano.gasprices;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * This evaluates the {@link PriceAlertRules} of the cities that changed with
+ * an update and shows one notification listing every city whose rule
+ * triggered. It is used by every path that stores a feed, the
+ * {@link GasPricesUpdateService} and the {@link UpdateTask}, so a change is
+ * never missed because the next update no longer sees it as a change.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class PriceAlertNotifier {
+	/**
+	 * Notification ID used for the coalesced price alerts.
+	 */
+	private static final int PRICE_ALERT_NOTIFICATION_ID = 2;
+
+	/**
+	 * Evaluates the rules of the cities that changed and shows the
+	 * notification if any triggered. This must be called after the snapshot
+	 * is published and not from the main thread as it reads the rules from
+	 * the disk.
+	 * 
+	 * @param context
+	 *            context
+	 * @param changedCityIds
+	 *            IDs of the cities that changed with the update as returned
+	 *            by {@link PreferenceAdaptorEditor#setJsonData}.
+	 */
+	public static void notifyPriceAlerts(final Context context,
+			final long[] changedCityIds) {
+		final PriceAlertRules rules = PriceAlertRules.getInstance(context
+				.getFilesDir());
+		if (rules.size() == 0 || changedCityIds.length == 0) {
+			return;
+		}
+		final CityPriceTable table = new PreferenceAdaptor(context)
+				.getSnapshot().getTable();
+		final long[] triggeredCityIds = new long[changedCityIds.length];
+		final int count = rules.evaluate(table, changedCityIds,
+				System.currentTimeMillis(), triggeredCityIds);
+		if (count == 0) {
+			return;
+		}
+		final CityDirectory directory = CityResources.getDirectory(context);
+		final StringBuilder text = new StringBuilder();
+		for (int i = 0; i < count; ++i) {
+			final int position = directory.indexOf(triggeredCityIds[i]);
+			if (position == -1) {
+				continue;
+			}
+			final float change = table.getPriceDifference(table
+					.indexOf(triggeredCityIds[i]));
+			if (text.length() > 0) {
+				text.append(", ");
+			}
+			text.append(context.getString(
+					change > 0 ? R.string.price_alert_up_format
+							: R.string.price_alert_down_format, directory
+							.getName(position), Math.abs(change)));
+		}
+		final Intent launchIntent;
+		if (count == 1) {
+			launchIntent = GasPricesWidgetProvider.getLaunchIntent(context,
+					triggeredCityIds[0]);
+		} else {
+			launchIntent = GasPricesWidgetProvider.getLaunchIntent(context);
+		}
+		final Notification notification = new Notification.Builder(context)
+				.setSmallIcon(R.drawable.ic_launcher)
+				.setAutoCancel(true)
+				.setContentTitle(
+						context.getResources().getText(R.string.price_alerts))
+				.setContentText(text)
+				.setContentIntent(
+						PendingIntent.getActivity(context, 0, launchIntent,
+								PendingIntent.FLAG_UPDATE_CURRENT))
+				.setWhen(System.currentTimeMillis()).getNotification();
+		((NotificationManager) context
+				.getSystemService(Context.NOTIFICATION_SERVICE)).notify(
+				PRICE_ALERT_NOTIFICATION_ID, notification);
+	}
+
+	private PriceAlertNotifier() {
+
+	}
+}
@@ -0,0 +1,268 @@
+package net.trajano.gasprices;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.app.ListActivity;
+import android.content.SharedPreferences;
+import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
+import android.os.AsyncTask;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.StrictMode;
+import android.view.View;
+import android.widget.AbsListView;
+import android.widget.AbsListView.OnScrollListener;
+import android.widget.AdapterView;
+import android.widget.AdapterView.OnItemSelectedListener;
+import android.widget.ArrayAdapter;
+import android.widget.ListView;
+import android.widget.Spinner;
+
+/**
+ * This activity ranks every city in the current snapshot by today's price or
+ * by the latest price change, optionally limited to a region. The prices come
+ * from the {@link CityPriceTable} so ranking again when the order, region or
+ * snapshot changes is a primitive sort rather than decoding every city. Only
+ * the first page is ranked at first using {@link CityRanker#topK} and the rest
+ * of the cities are ranked when the list is scrolled near the end of it.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class RankingActivity extends ListActivity {
+	/**
+	 * Number of cities ranked before the list is scrolled.
+	 */
+	private static final int FIRST_PAGE_SIZE = 30;
+
+	private RankingAdapter adapter;
+
+	private CityDirectory directory;
+
+	/**
+	 * <code>true</code> when every city is ranked rather than only the first
+	 * page.
+	 */
+	private boolean fullyRanked;
+
+	/**
+	 * Loads the price table and directory.
+	 */
+	private AsyncTask<Void, Void, CityPriceTable> loader;
+
+	/**
+	 * Reranks when the order or region changes.
+	 */
+	private final OnItemSelectedListener orderOrRegionListener = new OnItemSelectedListener() {
+
+		@Override
+		public void onItemSelected(final AdapterView<?> parent,
+				final View view, final int position, final long id) {
+			rank(false);
+		}
+
+		@Override
+		public void onNothingSelected(final AdapterView<?> parent) {
+		}
+	};
+
+	private Spinner orderSpinner;
+
+	/**
+	 * Reloads the table when a new snapshot is stored.
+	 */
+	private final OnSharedPreferenceChangeListener preferenceChangeListener = new OnSharedPreferenceChangeListener() {
+
+		@Override
+		public void onSharedPreferenceChanged(
+				final SharedPreferences sharedPreferences, final String key) {
+			if (PreferenceAdaptor.isKeyAffectGasPricesView(key)) {
+				load();
+			}
+		}
+	};
+
+	/**
+	 * Preference data, stored in memory until destruction.
+	 */
+	private PreferenceAdaptor preferences;
+
+	private final CityRanker ranker = new CityRanker();
+
+	/**
+	 * Ranked rows. Reused between rankings.
+	 */
+	private int[] rankedRows = new int[0];
+
+	/**
+	 * Ranks the rest of the cities when the last visible row is near the end
+	 * of the first page.
+	 */
+	private final OnScrollListener rankingScrollListener = new OnScrollListener() {
+
+		@Override
+		public void onScroll(final AbsListView view,
+				final int firstVisibleItem, final int visibleItemCount,
+				final int totalItemCount) {
+			if (!fullyRanked
+					&& firstVisibleItem + visibleItemCount + FIRST_PAGE_SIZE / 2 >= totalItemCount) {
+				rank(true);
+			}
+		}
+
+		@Override
+		public void onScrollStateChanged(final AbsListView view,
+				final int scrollState) {
+		}
+	};
+
+	/**
+	 * Directory positions of the region headers shown by the region spinner
+	 * after the first entry for every region.
+	 */
+	private int[] regionPositions = new int[0];
+
+	private Spinner regionSpinner;
+
+	private CityPriceTable table = CityPriceTable.EMPTY;
+
+	/**
+	 * Loads the price table and directory in the background and ranks them.
+	 */
+	private void load() {
+		if (loader != null) {
+			loader.cancel(false);
+		}
+		loader = new AsyncTask<Void, Void, CityPriceTable>() {
+
+			private CityDirectory loadedDirectory;
+
+			@Override
+			protected CityPriceTable doInBackground(final Void... params) {
+				loadedDirectory = CityResources.getDirectory(RankingActivity.this);
+				return preferences.getSnapshot().getTable();
+			}
+
+			@Override
+			protected void onPostExecute(final CityPriceTable result) {
+				loader = null;
+				table = result;
+				if (loadedDirectory != directory) {
+					directory = loadedDirectory;
+					updateRegions();
+				}
+				rank(false);
+			}
+		};
+		loader.execute();
+	}
+
+	/**
+	 * Called when the activity is first created.
+	 */
+	@Override
+	public void onCreate(final Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+		if (Build.PRODUCT.endsWith("sdk")
+				&& Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD) {
+			StrictMode.enableDefaults();
+		}
+		setContentView(R.layout.ranking);
+		preferences = new PreferenceAdaptor(this);
+		adapter = new RankingAdapter(this);
+		setListAdapter(adapter);
+		getListView().setOnScrollListener(rankingScrollListener);
+		orderSpinner = (Spinner) findViewById(R.id.RankingOrderSpinner);
+		regionSpinner = (Spinner) findViewById(R.id.RankingRegionSpinner);
+		orderSpinner.setOnItemSelectedListener(orderOrRegionListener);
+		regionSpinner.setOnItemSelectedListener(orderOrRegionListener);
+	}
+
+	/**
+	 * Selects the city and returns to the previous screen.
+	 */
+	@Override
+	protected void onListItemClick(final ListView l, final View v,
+			final int position, final long id) {
+		final PreferenceAdaptorEditor editor = preferences.edit();
+		editor.setSelectedCityId(id);
+		editor.apply();
+		finish();
+	}
+
+	@Override
+	protected void onPause() {
+		preferences
+				.unregisterOnSharedPreferenceChangeListener(preferenceChangeListener);
+		if (loader != null) {
+			loader.cancel(false);
+			loader = null;
+		}
+		super.onPause();
+	}
+
+	@Override
+	protected void onResume() {
+		super.onResume();
+		preferences
+				.registerOnSharedPreferenceChangeListener(preferenceChangeListener);
+		load();
+	}
+
+	/**
+	 * Ranks the table using the selected order and region. The order of the
+	 * first page is the same either way so the rows that are shown do not
+	 * move when the rest are ranked.
+	 * 
+	 * @param all
+	 *            <code>true</code> to rank every city, <code>false</code> to
+	 *            rank only the first page.
+	 */
+	private void rank(final boolean all) {
+		if (directory == null) {
+			return;
+		}
+		if (rankedRows.length < table.size()) {
+			rankedRows = new int[table.size()];
+		}
+		final int regionIndex = regionSpinner.getSelectedItemPosition();
+		final int regionPosition = regionIndex <= 0 ? -1
+				: regionPositions[regionIndex - 1];
+		final long now = System.currentTimeMillis();
+		final int order = orderSpinner.getSelectedItemPosition();
+		final int count;
+		if (all) {
+			count = ranker.rank(table, order, directory, regionPosition, now,
+					rankedRows);
+		} else {
+			count = ranker.topK(table, order, directory, regionPosition, now,
+					Math.min(FIRST_PAGE_SIZE, rankedRows.length), rankedRows);
+		}
+		fullyRanked = all || count < FIRST_PAGE_SIZE;
+		adapter.setRanking(table, directory, rankedRows, count, now);
+	}
+
+	/**
+	 * Fills the region spinner with the region headers in the directory.
+	 */
+	private void updateRegions() {
+		final List<String> regionNames = new ArrayList<String>();
+		regionNames.add(getString(R.string.all_regions));
+		final int[] headers = new int[directory.size()];
+		int headerCount = 0;
+		for (int i = 0; i < directory.size(); ++i) {
+			if (directory.isHeader(i)) {
+				headers[headerCount++] = i;
+				regionNames.add(directory.getName(i));
+			}
+		}
+		regionPositions = new int[headerCount];
+		System.arraycopy(headers, 0, regionPositions, 0, headerCount);
+		final ArrayAdapter<String> regionAdapter = new ArrayAdapter<String>(
+				this, android.R.layout.simple_spinner_item, regionNames);
+		regionAdapter
+				.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+		regionSpinner.setAdapter(regionAdapter);
+	}
+}
@@ -0,0 +1,118 @@
+package net.trajano.gasprices;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+
+/**
+ * Shows the cities ranked by {@link CityRanker}. The rows are table rows of a
+ * {@link CityPriceTable} and the text is only formatted for the visible rows.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class RankingAdapter extends BaseAdapter {
+	private int count;
+
+	private CityDirectory directory;
+
+	private final LayoutInflater inflater;
+
+	/**
+	 * Time used to determine whether tomorrow's price is available.
+	 */
+	private long now;
+
+	private final Resources resources;
+
+	/**
+	 * Ranked table rows. Only the first {@link #count} are used.
+	 */
+	private int[] rows = new int[0];
+
+	private CityPriceTable table = CityPriceTable.EMPTY;
+
+	public RankingAdapter(final Context context) {
+		inflater = (LayoutInflater) context
+				.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+		resources = context.getResources();
+	}
+
+	@Override
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * {@inheritDoc} This is the city name or the city ID if the city is not
+	 * in the directory.
+	 */
+	@Override
+	public Object getItem(final int position) {
+		final long cityId = getItemId(position);
+		final int cityPosition = directory.indexOf(cityId);
+		return cityPosition == -1 ? String.valueOf(cityId) : directory
+				.getName(cityPosition);
+	}
+
+	@Override
+	public long getItemId(final int position) {
+		return table.getCityId(rows[position]);
+	}
+
+	@Override
+	public View getView(final int position, final View convertView,
+			final ViewGroup parent) {
+		final View view;
+		if (convertView != null) {
+			view = convertView;
+		} else {
+			view = inflater.inflate(android.R.layout.simple_list_item_2,
+					parent, false);
+		}
+		final int row = rows[position];
+		((TextView) view.findViewById(android.R.id.text1)).setText(resources
+				.getString(R.string.ranking_row_format, position + 1,
+						getItem(position)));
+		((TextView) view.findViewById(android.R.id.text2)).setText(resources
+				.getString(R.string.ranking_price_format,
+						table.getCurrentPrice(row, now),
+						table.getPriceDifference(row)));
+		return view;
+	}
+
+	@Override
+	public boolean hasStableIds() {
+		return true;
+	}
+
+	/**
+	 * Sets the ranking to show.
+	 * 
+	 * @param table
+	 *            price table
+	 * @param directory
+	 *            directory used for the city names
+	 * @param rankedRows
+	 *            ranked table rows. The array is used directly rather than
+	 *            copied.
+	 * @param rankedCount
+	 *            number of ranked rows
+	 * @param rankingTime
+	 *            time the ranking was done
+	 */
+	public void setRanking(final CityPriceTable table,
+			final CityDirectory directory, final int[] rankedRows,
+			final int rankedCount, final long rankingTime) {
+		this.table = table;
+		this.directory = directory;
+		rows = rankedRows;
+		count = rankedCount;
+		now = rankingTime;
+		notifyDataSetChanged();
+	}
+}
@@ -0,0 +1,329 @@
+package net.trajano.gasprices;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+
+/**
+ * <p>
+ * This runs the updates requested by the screens on a dedicated background
+ * thread with a bounded queue. Only one update is outstanding at a time, a
+ * request made while one is queued or running joins it rather than starting
+ * another download.
+ * </p>
+ * <p>
+ * The result is delivered on the UI thread to the {@link Listener} that is
+ * attached at the time it completes. Screens attach when they resume and
+ * detach when they pause so a screen that is rotated or closed during an
+ * update is never referenced. If no screen is attached the result is kept and
+ * delivered to the next one that attaches.
+ * </p>
+ * <p>
+ * The queue depth and the time each update spent queued and in total are
+ * recorded so they can be reported.
+ * </p>
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class UpdateExecutor {
+	/**
+	 * Receives the result of an update on the UI thread.
+	 */
+	public interface Listener {
+		/**
+		 * Called on the UI thread when an update has finished.
+		 * 
+		 * @param error
+		 *            <code>null</code> if the update was successful or the
+		 *            exception that caused it to fail.
+		 */
+		void onUpdateFinished(Exception error);
+	}
+
+	/**
+	 * An update that was submitted to the executor.
+	 */
+	private final class UpdateJob implements Runnable {
+		/**
+		 * Set when the job is cancelled. A cancelled job that has not started
+		 * is skipped and the result of one that is running is not delivered.
+		 */
+		private volatile boolean cancelled;
+
+		/**
+		 * Time the job was submitted from {@link SystemClock#elapsedRealtime()}.
+		 */
+		private final long submitTime;
+
+		private final UpdateTask task;
+
+		/**
+		 * Constructs the job.
+		 * 
+		 * @param task
+		 *            update task
+		 */
+		UpdateJob(final UpdateTask task) {
+			this.task = task;
+			submitTime = SystemClock.elapsedRealtime();
+		}
+
+		@Override
+		public void run() {
+			final long startTime = SystemClock.elapsedRealtime();
+			final Exception error;
+			if (cancelled) {
+				error = null;
+			} else {
+				error = task.call();
+			}
+			final long endTime = SystemClock.elapsedRealtime();
+			synchronized (UpdateExecutor.this) {
+				if (currentJob == this) {
+					currentJob = null;
+				}
+				lastQueueWaitMillis = startTime - submitTime;
+				lastLatencyMillis = endTime - submitTime;
+				++completedCount;
+			}
+			GasPricesLog.d(
+					"update finished in {} ms after waiting {} ms, queue depth {}",
+					endTime - submitTime, startTime - submitTime, getQueueDepth());
+			if (!cancelled) {
+				handler.post(new Runnable() {
+
+					@Override
+					public void run() {
+						deliver(error);
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * Process wide instance.
+	 */
+	private static final UpdateExecutor INSTANCE = new UpdateExecutor();
+
+	/**
+	 * Maximum number of jobs waiting to run. A cancelled job that is still
+	 * running may have a new job waiting behind it.
+	 */
+	private static final int MAX_QUEUED_JOBS = 2;
+
+	/**
+	 * Gets the process wide instance.
+	 * 
+	 * @return the executor.
+	 */
+	public static UpdateExecutor getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Number of jobs that have finished.
+	 */
+	private long completedCount;
+
+	/**
+	 * Job that is queued or running and has not been cancelled. This is
+	 * <code>null</code> if there is none.
+	 */
+	private UpdateJob currentJob;
+
+	/**
+	 * Runs the jobs.
+	 */
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * Handler on the main thread.
+	 */
+	private final Handler handler = new Handler(Looper.getMainLooper());
+
+	/**
+	 * Time between submitting and finishing the last job in milliseconds.
+	 */
+	private long lastLatencyMillis;
+
+	/**
+	 * Time the last job waited before running in milliseconds.
+	 */
+	private long lastQueueWaitMillis;
+
+	/**
+	 * Listener that receives the results. Only accessed on the UI thread.
+	 */
+	private Listener listener;
+
+	/**
+	 * Result that finished while no listener was attached. Only accessed on
+	 * the UI thread.
+	 */
+	private Exception pendingError;
+
+	/**
+	 * <code>true</code> if {@link #pendingError} holds a result that has not
+	 * been delivered. Only accessed on the UI thread.
+	 */
+	private boolean resultPending;
+
+	private UpdateExecutor() {
+		executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(MAX_QUEUED_JOBS),
+				new ThreadFactory() {
+
+					@Override
+					public Thread newThread(final Runnable r) {
+						return new Thread(new Runnable() {
+
+							@Override
+							public void run() {
+								Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+								r.run();
+							}
+						}, "GasPricesUpdate");
+					}
+				});
+	}
+
+	/**
+	 * Attaches the listener that receives the results. If a result finished
+	 * while no listener was attached it is delivered immediately. Must be
+	 * called on the UI thread.
+	 * 
+	 * @param listener
+	 *            listener
+	 */
+	public void attach(final Listener listener) {
+		this.listener = listener;
+		if (resultPending) {
+			resultPending = false;
+			final Exception error = pendingError;
+			pendingError = null;
+			listener.onUpdateFinished(error);
+		}
+	}
+
+	/**
+	 * Cancels the update that is queued or running. A queued update is not
+	 * run and the result of a running update is not delivered, though the
+	 * download itself is allowed to finish.
+	 */
+	public synchronized void cancel() {
+		if (currentJob != null) {
+			currentJob.cancelled = true;
+			executor.remove(currentJob);
+			currentJob = null;
+		}
+	}
+
+	/**
+	 * Delivers the result to the attached listener or keeps it for the next
+	 * one. Called on the UI thread.
+	 * 
+	 * @param error
+	 *            result of the update
+	 */
+	private void deliver(final Exception error) {
+		if (listener != null) {
+			listener.onUpdateFinished(error);
+		} else {
+			resultPending = true;
+			pendingError = error;
+		}
+	}
+
+	/**
+	 * Detaches the listener if it is the one that is attached. Must be called
+	 * on the UI thread.
+	 * 
+	 * @param listener
+	 *            listener
+	 */
+	public void detach(final Listener listener) {
+		if (this.listener == listener) {
+			this.listener = null;
+		}
+	}
+
+	/**
+	 * Number of jobs that have finished since the process started.
+	 * 
+	 * @return job count
+	 */
+	public synchronized long getCompletedCount() {
+		return completedCount;
+	}
+
+	/**
+	 * Time between submitting and finishing the last job.
+	 * 
+	 * @return latency in milliseconds
+	 */
+	public synchronized long getLastLatencyMillis() {
+		return lastLatencyMillis;
+	}
+
+	/**
+	 * Time the last job waited in the queue before running.
+	 * 
+	 * @return wait time in milliseconds
+	 */
+	public synchronized long getLastQueueWaitMillis() {
+		return lastQueueWaitMillis;
+	}
+
+	/**
+	 * Number of jobs that are queued or running.
+	 * 
+	 * @return queue depth
+	 */
+	public int getQueueDepth() {
+		return executor.getQueue().size() + executor.getActiveCount();
+	}
+
+	/**
+	 * Checks if an update is queued or running.
+	 * 
+	 * @return <code>true</code> if an update is outstanding.
+	 */
+	public synchronized boolean isUpdating() {
+		return currentJob != null;
+	}
+
+	/**
+	 * Requests an update. If one is already queued or running the request
+	 * joins it.
+	 * 
+	 * @param context
+	 *            context. Only the application context is kept.
+	 * @return <code>true</code> if a new update was started,
+	 *         <code>false</code> if the request joined an update that is
+	 *         outstanding or the queue is full.
+	 */
+	public synchronized boolean requestUpdate(final Context context) {
+		if (currentJob != null) {
+			return false;
+		}
+		final UpdateJob job = new UpdateJob(new UpdateTask(context));
+		try {
+			executor.execute(job);
+		} catch (final RejectedExecutionException e) {
+			GasPricesLog.w("update queue is full");
+			return false;
+		}
+		currentJob = job;
+		return true;
+	}
+}
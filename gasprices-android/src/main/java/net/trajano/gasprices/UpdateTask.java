@@ -0,0 +1,76 @@
+package net.trajano.gasprices;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+import org.json.JSONObject;
+
+import android.content.Context;
+
+/**
+ * This downloads the feed and stores it in the preferences. It is run by the
+ * {@link UpdateExecutor} and only keeps the application context so it does
+ * not hold on to the screen that requested it.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+final class UpdateTask implements Callable<Exception> {
+	private final Context context;
+
+	/**
+	 * Constructs the task.
+	 * 
+	 * @param context
+	 *            context. Only the application context is kept.
+	 */
+	UpdateTask(final Context context) {
+		this.context = context.getApplicationContext();
+	}
+
+	/**
+	 * Performs the update. The widgets of the cities that changed are
+	 * refreshed and their price alerts are evaluated if it was successful. The outcome is added to the
+	 * {@link FailureLog}.
+	 * 
+	 * @return <code>null</code> if the update was successful or the exception
+	 *         that caused it to fail.
+	 */
+	@Override
+	public Exception call() {
+		final PipelineMetrics metrics = PipelineMetrics.getInstance();
+		final long start = PipelineMetrics.start();
+		final PreferenceAdaptor preferences = new PreferenceAdaptor(context);
+		final PreferenceAdaptorEditor editor = preferences.edit();
+		editor.removeLastError();
+		long[] changedCityIds = null;
+		try {
+			final JSONObject data = GetDataUtil.getGasPricesDataFromInternet();
+			changedCityIds = editor.setJsonData(data);
+			editor.setLastUpdatedToNow();
+			FailureLog.getInstance(context.getFilesDir()).recordSuccess(
+					System.currentTimeMillis(),
+					(long) PipelineMetrics
+							.toMillis(PipelineMetrics.start() - start));
+			return null;
+		} catch (final IOException e) {
+			metrics.recordError(PipelineMetrics.STAGE_UPDATE);
+			GasPricesLog.e("{} and cry", e.getMessage());
+			editor.setLastError(e.getMessage());
+			FailureLog.getInstance(context.getFilesDir()).recordFailure(
+					System.currentTimeMillis(),
+					(long) PipelineMetrics
+							.toMillis(PipelineMetrics.start() - start), e);
+			return e;
+		} finally {
+			final long applyStart = PipelineMetrics.start();
+			editor.apply();
+			metrics.record(PipelineMetrics.STAGE_APPLY, applyStart, 0);
+			if (changedCityIds != null) {
+				WidgetRefreshDispatcher.requestRefresh(context, changedCityIds);
+				PriceAlertNotifier.notifyPriceAlerts(context, changedCityIds);
+			}
+			metrics.record(PipelineMetrics.STAGE_UPDATE, start, 0);
+		}
+	}
+}
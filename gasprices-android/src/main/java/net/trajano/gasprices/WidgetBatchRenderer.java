@@ -0,0 +1,287 @@
+package net.trajano.gasprices;
+
+import java.util.Arrays;
+
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.content.Context;
+import android.os.Build;
+import android.view.View;
+import android.widget.RemoteViews;
+
+/**
+ * <p>
+ * This renders a batch of widgets. Widgets are grouped by the city they show
+ * so each distinct city is decoded and formatted once, and a single
+ * {@link RemoteViews} is pushed to all the widgets in the group using
+ * {@link AppWidgetManager#updateAppWidget(int[], RemoteViews)}.
+ * </p>
+ * <p>
+ * The fingerprint of the content last pushed to each widget is remembered.
+ * Widgets whose content has not changed are skipped and widgets where only
+ * the price change and background changed get a partial update. Each push is
+ * an IPC to the launcher so the number of pushes saved is counted.
+ * </p>
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class WidgetBatchRenderer {
+	/**
+	 * Fingerprints of the content last pushed to each widget in this process.
+	 */
+	private static final WidgetFingerprints FINGERPRINTS = new WidgetFingerprints();
+
+	/**
+	 * Number of widgets that were given a full update.
+	 */
+	private static volatile long fullUpdateCount;
+
+	/**
+	 * Number of widgets that were given a partial update.
+	 */
+	private static volatile long partialUpdateCount;
+
+	/**
+	 * Number of widgets that were skipped because their content did not
+	 * change.
+	 */
+	private static volatile long skippedUpdateCount;
+
+	/**
+	 * Builds the {@link RemoteViews} that only replaces the price change text
+	 * and the background.
+	 * 
+	 * @param context
+	 *            context
+	 * @param state
+	 *            render state
+	 * @return remote views
+	 */
+	private static RemoteViews buildChangeRemoteViews(final Context context,
+			final WidgetRenderState state) {
+		final RemoteViews remoteViews = new RemoteViews(
+				context.getPackageName(), R.layout.widget_layout);
+		remoteViews.setTextViewText(R.id.widget_price_change,
+				state.getPriceChangeText());
+		setBackground(remoteViews, state.getBackgroundResource());
+		return remoteViews;
+	}
+	/**
+	 * Builds the {@link RemoteViews} for a render state. The click intent
+	 * opens the application on the city rather than the widget so it can be
+	 * shared by all the widgets showing the city.
+	 * 
+	 * @param context
+	 *            context
+	 * @param state
+	 *            render state
+	 * @return remote views
+	 */
+	public static RemoteViews buildRemoteViews(final Context context,
+			final WidgetRenderState state) {
+		final RemoteViews remoteViews = new RemoteViews(
+				context.getPackageName(), R.layout.widget_layout);
+		remoteViews.setTextViewText(R.id.widget_city, state.getCityName());
+		remoteViews.setTextViewText(R.id.widget_price, state.getPriceText());
+		if (state.getRegionComparisonText() == null) {
+			remoteViews.setViewVisibility(R.id.widget_region_comparison,
+					View.GONE);
+		} else {
+			remoteViews.setTextViewText(R.id.widget_region_comparison,
+					state.getRegionComparisonText());
+			remoteViews.setViewVisibility(R.id.widget_region_comparison,
+					View.VISIBLE);
+		}
+		remoteViews.setTextViewText(R.id.widget_price_change,
+				state.getPriceChangeText());
+		setBackground(remoteViews, state.getBackgroundResource());
+		final PendingIntent pendingIntent = PendingIntent.getActivity(context,
+				(int) state.getCityId(), GasPricesWidgetProvider
+						.getLaunchIntent(context, state.getCityId()), 0);
+		remoteViews.setOnClickPendingIntent(R.id.thelayout, pendingIntent);
+		return remoteViews;
+	}
+
+	private static int[] copyOf(final int[] array, final int length) {
+		final int[] copy = new int[length];
+		System.arraycopy(array, 0, copy, 0, length);
+		return copy;
+	}
+
+	/**
+	 * Forgets the content pushed to the widgets. Called when the widgets are
+	 * deleted.
+	 * 
+	 * @param appWidgetIds
+	 *            app widget IDs
+	 */
+	public static void forget(final int... appWidgetIds) {
+		FINGERPRINTS.remove(appWidgetIds);
+	}
+
+	public static long getFullUpdateCount() {
+		return fullUpdateCount;
+	}
+
+	public static long getPartialUpdateCount() {
+		return partialUpdateCount;
+	}
+
+	public static long getSkippedUpdateCount() {
+		return skippedUpdateCount;
+	}
+
+	/**
+	 * Checks if content has been pushed to the widget by this process.
+	 * 
+	 * @param appWidgetId
+	 *            app widget ID
+	 * @return <code>true</code> if the widget has been rendered.
+	 */
+	public static boolean isRendered(final int appWidgetId) {
+		return FINGERPRINTS.get(appWidgetId) != WidgetFingerprints.NONE;
+	}
+
+	/**
+	 * Pushes the render state to the widgets in a group whose content has
+	 * changed.
+	 * 
+	 * @param context
+	 *            context
+	 * @param appWidgetManager
+	 *            app widget manager
+	 * @param state
+	 *            render state for the group
+	 * @param cityWidgets
+	 *            sorted packed city ID and widget index values
+	 * @param groupStart
+	 *            start of the group in cityWidgets
+	 * @param groupEnd
+	 *            end of the group in cityWidgets exclusive
+	 * @param appWidgetIds
+	 *            app widget IDs indexed by the low bits of cityWidgets
+	 */
+	private static void pushGroup(final Context context,
+			final AppWidgetManager appWidgetManager,
+			final WidgetRenderState state, final long[] cityWidgets,
+			final int groupStart, final int groupEnd, final int[] appWidgetIds) {
+		final long fingerprint = state.getFingerprint();
+		final boolean partialSupported = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB;
+		final int[] fullIds = new int[groupEnd - groupStart];
+		final int[] partialIds = new int[groupEnd - groupStart];
+		int fullCount = 0;
+		int partialCount = 0;
+		for (int i = groupStart; i < groupEnd; ++i) {
+			final int appWidgetId = appWidgetIds[(int) cityWidgets[i]];
+			final long previous = FINGERPRINTS.get(appWidgetId);
+			if (previous == fingerprint) {
+				++skippedUpdateCount;
+			} else if (partialSupported && previous != WidgetFingerprints.NONE
+					&& WidgetRenderState.isChangeOnly(previous, fingerprint)) {
+				partialIds[partialCount++] = appWidgetId;
+			} else {
+				fullIds[fullCount++] = appWidgetId;
+			}
+		}
+		if (fullCount > 0) {
+			appWidgetManager.updateAppWidget(copyOf(fullIds, fullCount),
+					buildRemoteViews(context, state));
+			fullUpdateCount += fullCount;
+		}
+		if (partialCount > 0) {
+			appWidgetManager.partiallyUpdateAppWidget(
+					copyOf(partialIds, partialCount),
+					buildChangeRemoteViews(context, state));
+			partialUpdateCount += partialCount;
+		}
+		for (int i = 0; i < fullCount; ++i) {
+			FINGERPRINTS.put(fullIds[i], fingerprint);
+		}
+		for (int i = 0; i < partialCount; ++i) {
+			FINGERPRINTS.put(partialIds[i], fingerprint);
+		}
+	}
+
+	/**
+	 * This will update the app widgets provided that an update is not needed.
+	 * Because if an update is needed then there isn't a point of changing the
+	 * UI until the updates have been completed.
+	 * 
+	 * @param context
+	 *            context
+	 * @param appWidgetManager
+	 *            app widget manager
+	 * @param appWidgetIds
+	 *            app widget IDs to update
+	 * @param preferences
+	 *            preferences
+	 */
+	public static void render(final Context context,
+			final AppWidgetManager appWidgetManager, final int[] appWidgetIds,
+			final PreferenceAdaptor preferences) {
+		if (appWidgetIds.length == 0 || preferences.isUpdateNeeded()) {
+			return;
+		}
+		final long skippedBefore = skippedUpdateCount;
+		try {
+			renderGroups(context, appWidgetManager, appWidgetIds, preferences);
+		} finally {
+			if (GasPricesLog.isLoggable(GasPricesLog.DEBUG)) {
+				GasPricesLog.d("widget pushes saved = "
+						+ (skippedUpdateCount - skippedBefore) + " of "
+						+ appWidgetIds.length + ", total full = " + fullUpdateCount
+						+ " partial = " + partialUpdateCount + " skipped = "
+						+ skippedUpdateCount);
+			}
+		}
+	}
+
+	/**
+	 * Groups the widgets by city and pushes each group.
+	 */
+	private static void renderGroups(final Context context,
+			final AppWidgetManager appWidgetManager, final int[] appWidgetIds,
+			final PreferenceAdaptor preferences) {
+
+		// Sort the widgets by city by packing the city ID and the index of the
+		// widget into a single long.
+		final long[] cityWidgets = new long[appWidgetIds.length];
+		for (int i = 0; i < appWidgetIds.length; ++i) {
+			cityWidgets[i] = preferences.getWidgetCityId(appWidgetIds[i]) << 32
+					| i;
+		}
+		Arrays.sort(cityWidgets);
+
+		final RegionAggregates regionAggregates = preferences.getSnapshot()
+				.getRegionAggregates().at(System.currentTimeMillis());
+
+		int groupStart = 0;
+		while (groupStart < cityWidgets.length) {
+			final long cityId = cityWidgets[groupStart] >>> 32;
+			int groupEnd = groupStart + 1;
+			while (groupEnd < cityWidgets.length
+					&& cityWidgets[groupEnd] >>> 32 == cityId) {
+				++groupEnd;
+			}
+			final WidgetRenderState state = new WidgetRenderState(
+					context.getResources(), cityId,
+					preferences.getCityInfo(cityId), regionAggregates);
+			pushGroup(context, appWidgetManager, state, cityWidgets,
+					groupStart, groupEnd, appWidgetIds);
+			groupStart = groupEnd;
+		}
+	}
+
+	private static void setBackground(final RemoteViews remoteViews,
+			final int backgroundResource) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+			remoteViews.setInt(R.id.thelayout, "setBackgroundResource",
+					backgroundResource);
+		}
+	}
+
+	private WidgetBatchRenderer() {
+
+	}
+}
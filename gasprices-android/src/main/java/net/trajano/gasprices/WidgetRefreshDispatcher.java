@@ -0,0 +1,204 @@
+package net.trajano.gasprices;
+
+import java.util.Arrays;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+
+/**
+ * <p>
+ * This coalesces widget refresh requests from the update pipeline. The
+ * broadcast is sent on the thread that requests the refresh, before the
+ * update finishes, so it is not lost if the process ends afterwards. Requests
+ * made while a broadcast is being sent are merged and sent as one broadcast
+ * once it is done, so a manual refresh racing a scheduled one does not redraw
+ * the widgets twice.
+ * </p>
+ * <p>
+ * The broadcast only targets the widgets that show a city that changed or a
+ * city in the same region as one that changed, since the comparison with the
+ * region average changes with it, plus any widget that has not been rendered
+ * in this process yet. Widgets whose content turns out to be the same are
+ * skipped by {@link WidgetBatchRenderer}. The list widgets are told their
+ * data may have changed. Widgets whose price date passes
+ * without a change are refreshed by {@link WidgetBatchRenderer}.
+ * </p>
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class WidgetRefreshDispatcher {
+	/**
+	 * <code>true</code> while a thread is sending the broadcasts.
+	 */
+	private static boolean dispatching;
+
+	/**
+	 * Number of valid entries in {@link #pendingCityIds}.
+	 */
+	private static int pendingCityIdCount;
+
+	/**
+	 * City IDs that changed since the last broadcast.
+	 */
+	private static long[] pendingCityIds = new long[0];
+
+	/**
+	 * Application context of the pending requests. This is <code>null</code>
+	 * if there are none.
+	 */
+	private static Context pendingContext;
+
+	/**
+	 * Sends the broadcast to the widgets that are affected.
+	 * 
+	 * @param context
+	 *            application context
+	 * @param cityIds
+	 *            IDs of the cities that changed
+	 */
+	private static void dispatch(final Context context, final long[] cityIds) {
+		final long start = PipelineMetrics.start();
+		schedulePriceDateRefresh(context);
+		Arrays.sort(cityIds);
+		final AppWidgetManager appWidgetManager = AppWidgetManager
+				.getInstance(context);
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+			GasPricesListWidgetProvider.notifyDataChanged(context,
+					appWidgetManager);
+		}
+		final PreferenceAdaptor preferences = new PreferenceAdaptor(context);
+		final RegionAggregates regionAggregates = preferences.getSnapshot()
+				.getRegionAggregates();
+		final boolean[] changedRegions = new boolean[regionAggregates
+				.getRegionCount()];
+		for (final long cityId : cityIds) {
+			final int region = regionAggregates.regionOf(cityId);
+			if (region != -1) {
+				changedRegions[region] = true;
+			}
+		}
+		final int[] widgetIds = appWidgetManager
+				.getAppWidgetIds(new ComponentName(context,
+						GasPricesWidgetProvider.class));
+		final int[] targetIds = new int[widgetIds.length];
+		int targetCount = 0;
+		for (final int widgetId : widgetIds) {
+			final long cityId = preferences.getWidgetCityId(widgetId);
+			final int region = regionAggregates.regionOf(cityId);
+			if (!WidgetBatchRenderer.isRendered(widgetId)
+					|| Arrays.binarySearch(cityIds, cityId) >= 0
+					|| region != -1 && changedRegions[region]) {
+				targetIds[targetCount++] = widgetId;
+			}
+		}
+		GasPricesLog.d("refreshing {} of {} widgets", targetCount,
+				widgetIds.length);
+		if (targetCount == 0) {
+			PipelineMetrics.getInstance().record(PipelineMetrics.STAGE_WIDGETS,
+					start, 0);
+			return;
+		}
+		final int[] extraIds = new int[targetCount];
+		System.arraycopy(targetIds, 0, extraIds, 0, targetCount);
+		final Intent update = new Intent(context, GasPricesWidgetProvider.class);
+		update.setAction(AppWidgetManager.ACTION_APPWIDGET_UPDATE);
+		update.putExtra(AppWidgetManager.EXTRA_APPWIDGET_IDS, extraIds);
+		context.sendBroadcast(update);
+		PipelineMetrics.getInstance().record(PipelineMetrics.STAGE_WIDGETS,
+				start, targetCount);
+	}
+
+	/**
+	 * Schedules a refresh of every widget for when the next price date of the
+	 * current snapshot passes. Today's price changes at that time even though
+	 * the snapshot does not, so the widgets are rendered again and only the
+	 * ones whose content changed are pushed. Any refresh that was scheduled
+	 * before is replaced. The alarm does not wake the device since the
+	 * widgets are not visible while it is asleep.
+	 * 
+	 * @param context
+	 *            context
+	 */
+	public static void schedulePriceDateRefresh(final Context context) {
+		final long nextPriceDate = new PreferenceAdaptor(context).getSnapshot()
+				.getTable().getNextPriceDate(System.currentTimeMillis());
+		final AlarmManager alarmManager = (AlarmManager) context
+				.getApplicationContext()
+				.getSystemService(Context.ALARM_SERVICE);
+		final Intent intent = new Intent(context, GasPricesWidgetProvider.class);
+		intent.setAction(GasPricesWidgetProvider.ACTION_PRICE_DATE_PASSED);
+		final PendingIntent pendingIntent = PendingIntent.getBroadcast(context,
+				0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+		if (nextPriceDate == Long.MAX_VALUE) {
+			alarmManager.cancel(pendingIntent);
+			return;
+		}
+		alarmManager.set(AlarmManager.RTC, nextPriceDate, pendingIntent);
+	}
+
+	/**
+	 * Requests a refresh of the widgets. May be called from any thread but
+	 * not the main thread as it reads the preferences. If another thread is
+	 * sending the broadcasts the request is left for that thread to send,
+	 * otherwise the broadcasts are sent before this returns.
+	 * 
+	 * @param context
+	 *            context
+	 * @param changedCityIds
+	 *            IDs of the cities that changed in the latest snapshot.
+	 */
+	public static void requestRefresh(final Context context,
+			final long[] changedCityIds) {
+		synchronized (WidgetRefreshDispatcher.class) {
+			pendingContext = context.getApplicationContext();
+			if (pendingCityIdCount + changedCityIds.length > pendingCityIds.length) {
+				final long[] newPendingCityIds = new long[pendingCityIdCount
+						+ changedCityIds.length];
+				System.arraycopy(pendingCityIds, 0, newPendingCityIds, 0,
+						pendingCityIdCount);
+				pendingCityIds = newPendingCityIds;
+			}
+			System.arraycopy(changedCityIds, 0, pendingCityIds,
+					pendingCityIdCount, changedCityIds.length);
+			pendingCityIdCount += changedCityIds.length;
+			if (dispatching) {
+				return;
+			}
+			dispatching = true;
+		}
+		try {
+			while (true) {
+				final Context dispatchContext;
+				final long[] cityIds;
+				synchronized (WidgetRefreshDispatcher.class) {
+					if (pendingContext == null) {
+						dispatching = false;
+						return;
+					}
+					dispatchContext = pendingContext;
+					cityIds = new long[pendingCityIdCount];
+					System.arraycopy(pendingCityIds, 0, cityIds, 0,
+							pendingCityIdCount);
+					pendingContext = null;
+					pendingCityIdCount = 0;
+				}
+				dispatch(dispatchContext, cityIds);
+			}
+		} catch (final RuntimeException e) {
+			synchronized (WidgetRefreshDispatcher.class) {
+				dispatching = false;
+			}
+			throw e;
+		}
+	}
+
+	private WidgetRefreshDispatcher() {
+
+	}
+}
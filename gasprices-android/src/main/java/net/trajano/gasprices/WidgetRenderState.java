@@ -0,0 +1,185 @@
+package net.trajano.gasprices;
+
+import android.content.res.Resources;
+
+/**
+ * This is the fully formatted content of a widget. Widgets that show the same
+ * city have the same render state so it only needs to be built once.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class WidgetRenderState {
+	/**
+	 * Checks if two fingerprints only differ by the price change and
+	 * background.
+	 * 
+	 * @param fingerprint
+	 *            fingerprint
+	 * @param otherFingerprint
+	 *            other fingerprint
+	 * @return <code>true</code> if a partial update is sufficient.
+	 */
+	public static boolean isChangeOnly(final long fingerprint,
+			final long otherFingerprint) {
+		return fingerprint >>> 32 == otherFingerprint >>> 32;
+	}
+
+	/**
+	 * Drawable resource ID for the background.
+	 */
+	private final int backgroundResource;
+
+	private final long cityId;
+
+	private final String cityName;
+
+	/**
+	 * Text describing tomorrow's change. May be <code>null</code>.
+	 */
+	private final String priceChangeText;
+
+	private final String priceText;
+
+	/**
+	 * Text comparing the current price with the average of the region. May be
+	 * <code>null</code>.
+	 */
+	private final String regionComparisonText;
+
+	/**
+	 * Formats the city information for display in a widget.
+	 * 
+	 * @param resources
+	 *            resources
+	 * @param cityId
+	 *            city ID
+	 * @param city
+	 *            city information
+	 * @param regionAggregates
+	 *            region aggregates valid at the time the widget is rendered
+	 */
+	public WidgetRenderState(final Resources resources, final long cityId,
+			final CityInfo city, final RegionAggregates regionAggregates) {
+		this.cityId = cityId;
+		cityName = city.getName();
+		priceText = resources.getString(R.string.widget_price_format,
+				city.getCurrentGasPrice());
+		if (!city.isTomorrowsGasPriceAvailable()) {
+			backgroundResource = R.drawable.myshape;
+			priceChangeText = null;
+		} else if (city.isTomorrowsGasPriceUp()) {
+			backgroundResource = R.drawable.myshape_red;
+			priceChangeText = resources.getString(
+					R.string.widget_price_change_up_format,
+					city.getPriceDifferenceAbsoluteValue());
+		} else if (city.isTomorrowsGasPriceDown()) {
+			backgroundResource = R.drawable.myshape_green;
+			priceChangeText = resources.getString(
+					R.string.widget_price_change_down_format,
+					city.getPriceDifferenceAbsoluteValue());
+		} else {
+			backgroundResource = R.drawable.myshape;
+			priceChangeText = resources
+					.getString(R.string.widget_price_unchanged);
+		}
+		final int region = regionAggregates.regionOf(cityId);
+		if (region == -1) {
+			regionComparisonText = null;
+			return;
+		}
+		final float difference = city.getCurrentGasPrice()
+				- regionAggregates.getMean(region);
+		if (Math.abs(difference) < 0.05f) {
+			regionComparisonText = resources
+					.getString(R.string.widget_region_at_average);
+		} else if (difference > 0) {
+			regionComparisonText = resources.getString(
+					R.string.widget_region_above_average_format, difference);
+		} else {
+			regionComparisonText = resources.getString(
+					R.string.widget_region_below_average_format, -difference);
+		}
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof WidgetRenderState)) {
+			return false;
+		}
+		final WidgetRenderState other = (WidgetRenderState) obj;
+		return cityId == other.cityId
+				&& backgroundResource == other.backgroundResource
+				&& cityName.equals(other.cityName)
+				&& priceText.equals(other.priceText)
+				&& (regionComparisonText == null ? other.regionComparisonText == null
+						: regionComparisonText
+								.equals(other.regionComparisonText))
+				&& (priceChangeText == null ? other.priceChangeText == null
+						: priceChangeText.equals(other.priceChangeText));
+	}
+
+	public int getBackgroundResource() {
+		return backgroundResource;
+	}
+
+	/**
+	 * Hash of the part of the content that is replaced by a partial update,
+	 * that is the price change text and the background.
+	 */
+	private int getChangeHash() {
+		return 31 * backgroundResource
+				+ (priceChangeText == null ? 0 : priceChangeText.hashCode());
+	}
+
+	public long getCityId() {
+		return cityId;
+	}
+
+	public String getCityName() {
+		return cityName;
+	}
+
+	/**
+	 * Compact fingerprint of the content. The high 32 bits are a hash of the
+	 * city, price and region comparison and the low 32 bits are a hash of the
+	 * price change and background so {@link #isChangeOnly(long, long)} can
+	 * tell if a partial update is enough. It is never
+	 * {@link WidgetFingerprints#NONE}.
+	 * 
+	 * @return fingerprint
+	 */
+	public long getFingerprint() {
+		int baseHash = (int) (cityId ^ cityId >>> 32);
+		baseHash = 31 * baseHash + cityName.hashCode();
+		baseHash = 31 * baseHash + priceText.hashCode();
+		baseHash = 31
+				* baseHash
+				+ (regionComparisonText == null ? 0 : regionComparisonText
+						.hashCode());
+		final long fingerprint = (long) baseHash << 32 | getChangeHash()
+				& 0xFFFFFFFFL;
+		return fingerprint == WidgetFingerprints.NONE ? 1 : fingerprint;
+	}
+
+	public String getPriceChangeText() {
+		return priceChangeText;
+	}
+
+	public String getPriceText() {
+		return priceText;
+	}
+
+	public String getRegionComparisonText() {
+		return regionComparisonText;
+	}
+
+	@Override
+	public int hashCode() {
+		final long fingerprint = getFingerprint();
+		return (int) (fingerprint ^ fingerprint >>> 32);
+	}
+}
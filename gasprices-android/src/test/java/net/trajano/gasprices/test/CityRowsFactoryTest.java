@@ -0,0 +1,68 @@
+package net.trajano.gasprices.test;
+
+import net.trajano.gasprices.CityRowsFactory;
+import net.trajano.gasprices.GasPricesLog;
+import net.trajano.gasprices.PreferenceAdaptor;
+import net.trajano.gasprices.PreferenceAdaptorEditor;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+
+/**
+ * Measures the list widget row factory with a snapshot of more than 200
+ * cities.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class CityRowsFactoryTest extends AndroidTestCase {
+	/**
+	 * Number of cities in the synthetic snapshot.
+	 */
+	private static final int CITY_COUNT = 250;
+
+	private static long usedMemory() {
+		final Runtime runtime = Runtime.getRuntime();
+		runtime.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		final PreferenceAdaptorEditor editor = new PreferenceAdaptor(
+				getContext()).edit();
+		editor.setJsonData(SyntheticFeed.feed(CITY_COUNT));
+		editor.removeLastError();
+		editor.setLastUpdatedToNow();
+		editor.commit();
+	}
+
+	/**
+	 * Loads the rows, binds every row and then checks that refreshing the
+	 * same generation does not read the snapshot again.
+	 */
+	public void testBindAllRows() {
+		final long memoryBefore = usedMemory();
+		final CityRowsFactory factory = new CityRowsFactory(getContext());
+		factory.onCreate();
+		final long loadStart = SystemClock.elapsedRealtime();
+		factory.onDataSetChanged();
+		final long loadTime = SystemClock.elapsedRealtime() - loadStart;
+		final long memoryAfter = usedMemory();
+		assertTrue(factory.getCount() >= CITY_COUNT);
+
+		final long bindStart = SystemClock.elapsedRealtime();
+		for (int i = 0; i < factory.getCount(); ++i) {
+			assertNotNull(factory.getViewAt(i));
+		}
+		final long bindTime = SystemClock.elapsedRealtime() - bindStart;
+
+		factory.onDataSetChanged();
+		assertEquals(1, factory.getQueryCount());
+
+		GasPricesLog.i("rows = " + factory.getCount() + ", load = " + loadTime
+				+ "ms, bind per row = " + (double) bindTime / factory.getCount()
+				+ "ms, memory = " + (memoryAfter - memoryBefore) + " bytes");
+		factory.onDestroy();
+	}
+}
@@ -0,0 +1,155 @@
+package net.trajano.gasprices.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import net.trajano.gasprices.GasPricesActivity;
+import net.trajano.gasprices.GasPricesLog;
+import net.trajano.gasprices.GasPricesViewModel;
+import net.trajano.gasprices.GasPricesViewModelLoader;
+import net.trajano.gasprices.PreferenceAdaptor;
+import net.trajano.gasprices.PreferenceAdaptorEditor;
+import net.trajano.gasprices.R;
+import android.app.Activity;
+import android.content.Context;
+import android.os.SystemClock;
+import android.test.InstrumentationTestCase;
+import android.widget.TextView;
+
+/**
+ * Measures the time from launching {@link GasPricesActivity} to the city name
+ * being shown, with and without the persisted screen model, and ensures that
+ * on a cold start the persisted screen model is shown before the model that
+ * is built from the preferences.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class StartupTimeTest extends InstrumentationTestCase {
+	/**
+	 * Maximum time to wait for content.
+	 */
+	private static final long TIMEOUT_MILLIS = 30000;
+
+	/**
+	 * Runs the loader and collects the models in the order they are delivered.
+	 * 
+	 * @return delivered models.
+	 */
+	private List<GasPricesViewModel> load() throws Throwable {
+		final List<GasPricesViewModel> models = new ArrayList<GasPricesViewModel>();
+		final CountDownLatch latch = new CountDownLatch(1);
+		runTestOnUiThread(new Runnable() {
+			@Override
+			public void run() {
+				new GasPricesViewModelLoader(getInstrumentation()
+						.getTargetContext(),
+						new GasPricesViewModelLoader.Callback() {
+
+							@Override
+							public void onViewModelLoaded(
+									final GasPricesViewModel model,
+									final boolean current) {
+								models.add(model);
+							}
+						}, false) {
+					@Override
+					protected void onPostExecute(final GasPricesViewModel model) {
+						super.onPostExecute(model);
+						latch.countDown();
+					}
+				}.execute();
+			}
+		});
+		assertTrue(latch.await(30, TimeUnit.SECONDS));
+		getInstrumentation().waitForIdleSync();
+		return models;
+	}
+
+	/**
+	 * Launches the activity and waits until the city name is shown.
+	 * 
+	 * @return time to first meaningful content in milliseconds.
+	 */
+	private long measureTimeToContent() {
+		final long start = SystemClock.elapsedRealtime();
+		final Activity activity = launchActivity(getInstrumentation()
+				.getTargetContext().getPackageName(), GasPricesActivity.class,
+				null);
+		try {
+			final TextView city = (TextView) activity.findViewById(R.id.city);
+			while (city.getText().length() == 0) {
+				assertTrue(SystemClock.elapsedRealtime() - start < TIMEOUT_MILLIS);
+				getInstrumentation().waitForIdleSync();
+			}
+			return SystemClock.elapsedRealtime() - start;
+		} finally {
+			activity.finish();
+		}
+	}
+
+	/**
+	 * Stores synthetic data that is up to date so the activity does not
+	 * trigger a network update.
+	 */
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		storeFeed();
+	}
+
+	/**
+	 * Stores a new update of the synthetic feed.
+	 */
+	private void storeFeed() throws Exception {
+		final PreferenceAdaptorEditor editor = new PreferenceAdaptor(
+				getInstrumentation().getTargetContext()).edit();
+		editor.setJsonData(SyntheticFeed.feed(200));
+		editor.removeLastError();
+		editor.setLastUpdatedToNow();
+		editor.commit();
+	}
+
+	/**
+	 * The model persisted by the previous run is delivered first, followed by
+	 * the model of the update that was stored since.
+	 */
+	public void testPersistedModelDeliveredFirst() throws Throwable {
+		final Context context = getInstrumentation().getTargetContext();
+		GasPricesViewModel.deletePersisted(context);
+		GasPricesViewModelLoader.clearCachedModel();
+		final List<GasPricesViewModel> firstRun = load();
+		assertEquals(1, firstRun.size());
+		final long persistedGeneration = firstRun.get(0).getGeneration();
+
+		SystemClock.sleep(10);
+		storeFeed();
+		GasPricesViewModelLoader.clearCachedModel();
+		final List<GasPricesViewModel> coldStart = load();
+		assertEquals(2, coldStart.size());
+		assertEquals(persistedGeneration, coldStart.get(0).getGeneration());
+		assertFalse(persistedGeneration == coldStart.get(1).getGeneration());
+	}
+
+	/**
+	 * Compares a cold start that has to load and decode the preferences with
+	 * one that has the persisted screen model available. The first launch
+	 * persists the model that is used by the second.
+	 */
+	public void testTimeToFirstContent() {
+		final Context context = getInstrumentation().getTargetContext();
+		GasPricesViewModel.deletePersisted(context);
+		GasPricesViewModelLoader.clearCachedModel();
+		final long withoutPersistedModel = measureTimeToContent();
+		assertNotNull(GasPricesViewModel.restore(context));
+
+		GasPricesViewModelLoader.clearCachedModel();
+		final long withPersistedModel = measureTimeToContent();
+
+		GasPricesLog.i("time to first content without persisted model = {}ms, "
+				+ "with persisted model = {}ms", withoutPersistedModel,
+				withPersistedModel);
+	}
+}
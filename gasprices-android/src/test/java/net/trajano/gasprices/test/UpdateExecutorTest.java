@@ -0,0 +1,76 @@
+package net.trajano.gasprices.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import net.trajano.gasprices.UpdateExecutor;
+import android.os.Looper;
+import android.test.InstrumentationTestCase;
+
+/**
+ * Tests the update executor.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class UpdateExecutorTest extends InstrumentationTestCase {
+	/**
+	 * A second request while an update is outstanding joins it and the result
+	 * is delivered once on the main thread to the listener that is attached
+	 * when it finishes.
+	 */
+	public void testRequestsAreDeduplicated() throws Throwable {
+		final UpdateExecutor executor = UpdateExecutor.getInstance();
+		final CountDownLatch latch = new CountDownLatch(1);
+		final int[] deliveries = new int[1];
+		final boolean[] deliveredOnMainThread = new boolean[1];
+		final UpdateExecutor.Listener listener = new UpdateExecutor.Listener() {
+
+			@Override
+			public void onUpdateFinished(final Exception error) {
+				++deliveries[0];
+				deliveredOnMainThread[0] = Looper.myLooper() == Looper
+						.getMainLooper();
+				latch.countDown();
+			}
+		};
+		final UpdateExecutor.Listener detachedListener = new UpdateExecutor.Listener() {
+
+			@Override
+			public void onUpdateFinished(final Exception error) {
+				fail("detached listener must not receive results");
+			}
+		};
+		final long completedCount = executor.getCompletedCount();
+		runTestOnUiThread(new Runnable() {
+
+			@Override
+			public void run() {
+				executor.attach(detachedListener);
+				executor.detach(detachedListener);
+				executor.attach(listener);
+				assertTrue(executor.requestUpdate(getInstrumentation()
+						.getTargetContext()));
+				assertFalse(executor.requestUpdate(getInstrumentation()
+						.getTargetContext()));
+				assertTrue(executor.isUpdating());
+				assertTrue(executor.getQueueDepth() <= 1);
+			}
+		});
+		assertTrue(latch.await(60, TimeUnit.SECONDS));
+		getInstrumentation().waitForIdleSync();
+		assertEquals(1, deliveries[0]);
+		assertTrue(deliveredOnMainThread[0]);
+		assertFalse(executor.isUpdating());
+		assertEquals(completedCount + 1, executor.getCompletedCount());
+		assertTrue(executor.getLastLatencyMillis() >= executor
+				.getLastQueueWaitMillis());
+		runTestOnUiThread(new Runnable() {
+
+			@Override
+			public void run() {
+				executor.detach(listener);
+			}
+		});
+	}
+}
@@ -0,0 +1,77 @@
+package net.trajano.gasprices.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import net.trajano.gasprices.GasPricesViewModel;
+import net.trajano.gasprices.GasPricesViewModelLoader;
+import net.trajano.gasprices.PreferenceAdaptor;
+import android.os.Looper;
+import android.os.StrictMode;
+import android.test.InstrumentationTestCase;
+
+/**
+ * Ensures that the disk access and JSON decoding needed by the main screen do
+ * not happen on the main thread.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class ViewModelLoaderTest extends InstrumentationTestCase {
+	/**
+	 * Building the model on the main thread is rejected.
+	 */
+	public void testLoadOnMainThreadRejected() throws Throwable {
+		final boolean[] rejected = new boolean[1];
+		runTestOnUiThread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					GasPricesViewModel.load(getInstrumentation()
+							.getTargetContext(), new PreferenceAdaptor(
+							getInstrumentation().getTargetContext()));
+				} catch (final IllegalStateException e) {
+					rejected[0] = true;
+				}
+			}
+		});
+		assertTrue(rejected[0]);
+	}
+
+	/**
+	 * Runs the loader from the main thread with a {@link StrictMode} policy
+	 * that kills the process on any disk access. The model must be delivered
+	 * back on the main thread.
+	 */
+	public void testLoaderDoesNoDiskWorkOnMainThread() throws Throwable {
+		final CountDownLatch latch = new CountDownLatch(1);
+		final boolean[] deliveredOnMainThread = new boolean[1];
+		runTestOnUiThread(new Runnable() {
+			@Override
+			public void run() {
+				final StrictMode.ThreadPolicy originalPolicy = StrictMode
+						.getThreadPolicy();
+				StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+						.detectDiskReads().detectDiskWrites().penaltyDeath()
+						.build());
+				new GasPricesViewModelLoader(getInstrumentation()
+						.getTargetContext(),
+						new GasPricesViewModelLoader.Callback() {
+
+							@Override
+							public void onViewModelLoaded(
+									final GasPricesViewModel model,
+									final boolean current) {
+								deliveredOnMainThread[0] = Looper.myLooper() == Looper
+										.getMainLooper();
+								StrictMode.setThreadPolicy(originalPolicy);
+								latch.countDown();
+							}
+						}, false).execute();
+			}
+		});
+		assertTrue(latch.await(30, TimeUnit.SECONDS));
+		assertTrue(deliveredOnMainThread[0]);
+		assertNotNull(GasPricesViewModelLoader.getCachedModel());
+	}
+}
@@ -0,0 +1,231 @@
+package net.trajano.gasprices.benchmarks;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Scanner;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>
+ * Runs the benchmarks with the GC profiler and compares the results against
+ * a stored baseline. The results are written to
+ * <code>target/jmh-result.json</code>. If there is no baseline the results
+ * become the baseline, otherwise the throughput and the bytes allocated per
+ * operation of each benchmark are printed next to the baseline.
+ * </p>
+ * <p>
+ * The arguments are the baseline file, which defaults to
+ * <code>baseline.json</code>, and optionally a regular expression of the
+ * benchmarks to run. The process exits with 1 if the throughput of a benchmark
+ * is lower than the baseline by more than the tolerance, which is set with
+ * the <code>tolerance</code> system property and defaults to 10%. Set the
+ * <code>updateBaseline</code> system property to replace the baseline with
+ * the results.
+ * </p>
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class BaselineRunner {
+	/**
+	 * Name of the secondary metric of the GC profiler with the bytes
+	 * allocated per operation. Older versions of JMH prefix it with a dot.
+	 */
+	private static final String[] ALLOCATION_METRICS = {
+			"gc.alloc.rate.norm", "\u00B7gc.alloc.rate.norm" };
+
+	/**
+	 * Results file written by JMH.
+	 */
+	private static final String RESULT_FILE = "target/jmh-result.json"; // $NON-NLS-1$
+
+	/**
+	 * Gets the bytes allocated per operation of a result.
+	 * 
+	 * @param result
+	 *            result from the JMH JSON output
+	 * @return bytes per operation or NaN if it was not recorded.
+	 */
+	private static double getAllocation(final JSONObject result) {
+		final JSONObject metrics = result.optJSONObject("secondaryMetrics");
+		if (metrics != null) {
+			for (final String name : ALLOCATION_METRICS) {
+				final JSONObject metric = metrics.optJSONObject(name);
+				if (metric != null) {
+					return metric.optDouble("score");
+				}
+			}
+		}
+		return Double.NaN;
+	}
+
+	/**
+	 * Builds the key that identifies a benchmark and its parameters.
+	 * 
+	 * @param result
+	 *            result from the JMH JSON output
+	 * @return key
+	 * @throws JSONException
+	 */
+	private static String getKey(final JSONObject result)
+			throws JSONException {
+		final StringBuilder b = new StringBuilder(result.getString("benchmark"));
+		final JSONObject params = result.optJSONObject("params");
+		if (params != null) {
+			final String[] names = new String[params.length()];
+			int i = 0;
+			for (final Iterator<?> it = params.keys(); it.hasNext();) {
+				names[i++] = (String) it.next();
+			}
+			Arrays.sort(names);
+			for (final String name : names) {
+				b.append(' ').append(name).append('=')
+						.append(params.getString(name));
+			}
+		}
+		return b.toString();
+	}
+
+	/**
+	 * Runs the benchmarks.
+	 * 
+	 * @param args
+	 *            baseline file and a regular expression of the benchmarks
+	 * @throws IOException
+	 * @throws JSONException
+	 * @throws RunnerException
+	 */
+	public static void main(final String[] args) throws IOException,
+			JSONException, RunnerException {
+		final File baselineFile = new File(args.length > 0 ? args[0]
+				: "baseline.json");
+		final File resultFile = new File(RESULT_FILE);
+		if (resultFile.getParentFile() != null) {
+			resultFile.getParentFile().mkdirs();
+		}
+		new Runner(new OptionsBuilder()
+				.include(args.length > 1 ? args[1] : BaselineRunner.class
+						.getPackage().getName()).addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result(resultFile.getPath()).build()).run();
+		final String results = read(resultFile);
+		if (!baselineFile.exists() || Boolean.getBoolean("updateBaseline")) {
+			write(baselineFile, results);
+			System.out.println("Stored the results as the baseline in "
+					+ baselineFile);
+			return;
+		}
+		final double tolerance = Double.parseDouble(System.getProperty(
+				"tolerance", "0.1"));
+		if (!report(new JSONArray(read(baselineFile)), new JSONArray(results),
+				tolerance)) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Reads a file.
+	 * 
+	 * @param file
+	 *            file
+	 * @return contents
+	 * @throws FileNotFoundException
+	 */
+	private static String read(final File file) throws FileNotFoundException {
+		final Scanner scanner = new Scanner(file, "UTF-8");
+		try {
+			return scanner.useDelimiter("\\A").next();
+		} finally {
+			scanner.close();
+		}
+	}
+
+	/**
+	 * Prints the results next to the baseline.
+	 * 
+	 * @param baseline
+	 *            baseline results
+	 * @param results
+	 *            new results
+	 * @param tolerance
+	 *            fraction of the baseline throughput that may be lost before
+	 *            it is reported as a regression
+	 * @return <code>false</code> if there is a regression.
+	 * @throws JSONException
+	 */
+	private static boolean report(final JSONArray baseline,
+			final JSONArray results, final double tolerance)
+			throws JSONException {
+		final Map<String, JSONObject> baselineByKey = new HashMap<String, JSONObject>();
+		for (int i = 0; i < baseline.length(); ++i) {
+			final JSONObject result = baseline.getJSONObject(i);
+			baselineByKey.put(getKey(result), result);
+		}
+		boolean passed = true;
+		System.out.printf("%-70s %14s %14s %8s %14s %14s%n", "Benchmark",
+				"Baseline", "Current", "Change", "Baseline B/op",
+				"Current B/op");
+		for (int i = 0; i < results.length(); ++i) {
+			final JSONObject result = results.getJSONObject(i);
+			final String key = getKey(result);
+			final JSONObject previous = baselineByKey.get(key);
+			final double score = result.getJSONObject("primaryMetric")
+					.getDouble("score");
+			if (previous == null) {
+				System.out.printf("%-70s %14s %14.1f %8s %14s %14.0f%n", key,
+						"-", score, "new", "-", getAllocation(result));
+				continue;
+			}
+			final double previousScore = previous.getJSONObject(
+					"primaryMetric").getDouble("score");
+			final double change = (score - previousScore) / previousScore;
+			final boolean regressed = change < -tolerance;
+			passed &= !regressed;
+			System.out.printf("%-70s %14.1f %14.1f %+7.1f%% %14.0f %14.0f%s%n",
+					key, previousScore, score, change * 100,
+					getAllocation(previous), getAllocation(result),
+					regressed ? " REGRESSED" : "");
+		}
+		return passed;
+	}
+
+	/**
+	 * Writes a file.
+	 * 
+	 * @param file
+	 *            file
+	 * @param contents
+	 *            contents
+	 * @throws IOException
+	 */
+	private static void write(final File file, final String contents)
+			throws IOException {
+		final PrintWriter writer = new PrintWriter(file, "UTF-8");
+		try {
+			writer.print(contents);
+		} finally {
+			writer.close();
+		}
+		if (writer.checkError()) {
+			throw new IOException("unable to write " + file);
+		}
+	}
+
+	private BaselineRunner() {
+
+	}
+}
@@ -0,0 +1,130 @@
+package net.trajano.gasprices.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.trajano.gasprices.CityDirectory;
+import net.trajano.gasprices.CityNameIndex;
+import net.trajano.gasprices.test.SyntheticCities;
+
+/**
+ * Benchmarks the type-ahead filtering of the city picker. Each operation
+ * types one query a character at a time and searches after every keystroke,
+ * either with the {@link CityNameIndex} or with a linear scan over the
+ * directory.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CityNameIndexBenchmark {
+	/**
+	 * Cities per region of the directory.
+	 */
+	private static final int CITIES_PER_REGION = 100;
+
+	/**
+	 * Queries that are typed in turn.
+	 */
+	private static final String[] QUERIES = { "Martonba", "Queville",
+			"Saro Falls", "wickden" };
+
+	/**
+	 * Number of cities in the directory.
+	 */
+	@Param({ "100", "10000" })
+	public int cityCount;
+
+	/**
+	 * Directory that is searched.
+	 */
+	private CityDirectory directory;
+
+	/**
+	 * Index over {@link #directory}.
+	 */
+	private CityNameIndex index;
+
+	/**
+	 * Index of the next query in {@link #QUERIES}.
+	 */
+	private int next;
+
+	/**
+	 * Builds the name index.
+	 * 
+	 * @return the index.
+	 */
+	@Benchmark
+	public CityNameIndex buildIndex() {
+		return new CityNameIndex(directory);
+	}
+
+	/**
+	 * Gets the next query and advances to the one after it.
+	 * 
+	 * @return query
+	 */
+	private String nextQuery() {
+		final String query = QUERIES[next];
+		next = (next + 1) % QUERIES.length;
+		return query;
+	}
+
+	/**
+	 * Builds the directory and its index.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		directory = SyntheticCities.directory(cityCount / CITIES_PER_REGION,
+				CITIES_PER_REGION);
+		index = new CityNameIndex(directory);
+	}
+
+	/**
+	 * Types a query using the index.
+	 * 
+	 * @param blackhole
+	 *            consumes the results
+	 */
+	@Benchmark
+	public void typeAheadIndex(final Blackhole blackhole) {
+		final String query = nextQuery();
+		for (int i = 1; i <= query.length(); ++i) {
+			blackhole.consume(index.search(query.substring(0, i)));
+		}
+	}
+
+	/**
+	 * Types a query scanning every city name.
+	 * 
+	 * @param blackhole
+	 *            consumes the results
+	 */
+	@Benchmark
+	public void typeAheadLinear(final Blackhole blackhole) {
+		final String query = nextQuery();
+		for (int i = 1; i <= query.length(); ++i) {
+			blackhole.consume(SyntheticCities.linearSearch(directory,
+					query.substring(0, i)));
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package net.trajano.gasprices.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.trajano.gasprices.CityDirectory;
+import net.trajano.gasprices.CityPriceTable;
+import net.trajano.gasprices.CityRanker;
+import net.trajano.gasprices.test.SyntheticCities;
+
+/**
+ * Benchmarks ranking every city by today's price for the ranking screen
+ * against ranking only the top ten.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CityRankerBenchmark {
+	/**
+	 * Cities per region of the directory.
+	 */
+	private static final int CITIES_PER_REGION = 100;
+
+	/**
+	 * Number of rows ranked by {@link #topTen()}.
+	 */
+	private static final int K = 10;
+
+	/**
+	 * Price date in the past so the regular price is today's price.
+	 */
+	private static final long PAST = 0;
+
+	/**
+	 * Number of cities.
+	 */
+	@Param({ "100", "10000" })
+	public int cityCount;
+
+	/**
+	 * Directory of the cities in {@link #table}.
+	 */
+	private CityDirectory directory;
+
+	/**
+	 * Ranker, reused as it is on the ranking screen.
+	 */
+	private final CityRanker ranker = new CityRanker();
+
+	/**
+	 * Receives the ranked rows.
+	 */
+	private int[] rows;
+
+	/**
+	 * Price table.
+	 */
+	private CityPriceTable table;
+
+	/**
+	 * Ranks every city.
+	 * 
+	 * @return number of ranked rows.
+	 */
+	@Benchmark
+	public int rankAll() {
+		return ranker.rank(table, CityRanker.ORDER_PRICE_TODAY, directory, -1,
+				1, rows);
+	}
+
+	/**
+	 * Builds the directory and the price table.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		directory = SyntheticCities.directory(cityCount / CITIES_PER_REGION,
+				CITIES_PER_REGION);
+		final CityPriceTable.Builder builder = new CityPriceTable.Builder(
+				cityCount);
+		for (int i = 1; i <= cityCount; ++i) {
+			builder.add(i, 100 + i * 7919 % 500 / 10f, i % 41 / 10f - 2, PAST);
+		}
+		table = builder.build();
+		rows = new int[cityCount];
+	}
+
+	/**
+	 * Ranks the top ten cities.
+	 * 
+	 * @return number of ranked rows.
+	 */
+	@Benchmark
+	public int topTen() {
+		return ranker.topK(table, CityRanker.ORDER_PRICE_TODAY, directory, -1,
+				1, K, rows);
+	}
+}
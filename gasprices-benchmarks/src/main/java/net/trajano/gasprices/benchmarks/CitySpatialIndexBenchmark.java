@@ -0,0 +1,155 @@
+package net.trajano.gasprices.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.trajano.gasprices.CitySpatialIndex;
+import net.trajano.gasprices.test.SyntheticCities;
+
+/**
+ * Benchmarks finding the cities nearest to a location with the
+ * {@link CitySpatialIndex} and with a linear scan. The cities and the query
+ * locations are spread randomly over North America.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CitySpatialIndexBenchmark {
+	/**
+	 * Number of nearest cities requested.
+	 */
+	private static final int K = 5;
+
+	/**
+	 * Number of query locations that are used in turn.
+	 */
+	private static final int QUERY_COUNT = 200;
+
+	/**
+	 * Number of cities.
+	 */
+	@Param({ "100", "50000" })
+	public int cityCount;
+
+	/**
+	 * City IDs.
+	 */
+	private int[] ids;
+
+	/**
+	 * Index over the cities.
+	 */
+	private CitySpatialIndex index;
+
+	/**
+	 * Latitude of each city.
+	 */
+	private double[] latitudes;
+
+	/**
+	 * Longitude of each city.
+	 */
+	private double[] longitudes;
+
+	/**
+	 * Index of the next query location.
+	 */
+	private int next;
+
+	/**
+	 * Latitude of each query location.
+	 */
+	private double[] queryLatitudes;
+
+	/**
+	 * Longitude of each query location.
+	 */
+	private double[] queryLongitudes;
+
+	/**
+	 * Builds the index.
+	 * 
+	 * @return the index.
+	 */
+	@Benchmark
+	public CitySpatialIndex buildIndex() {
+		return new CitySpatialIndex(ids, latitudes, longitudes);
+	}
+
+	/**
+	 * Finds the nearest cities with the index.
+	 * 
+	 * @return the city IDs.
+	 */
+	@Benchmark
+	public int[] nearestIndex() {
+		final int i = nextQuery();
+		return index.nearest(queryLatitudes[i], queryLongitudes[i], K);
+	}
+
+	/**
+	 * Finds the nearest cities by computing the distance to every city.
+	 * 
+	 * @return the city IDs.
+	 */
+	@Benchmark
+	public int[] nearestLinear() {
+		final int i = nextQuery();
+		return SyntheticCities.linearNearest(ids, latitudes, longitudes,
+				queryLatitudes[i], queryLongitudes[i], K);
+	}
+
+	/**
+	 * Gets the index of the next query location and advances to the one
+	 * after it.
+	 * 
+	 * @return index of the query location
+	 */
+	private int nextQuery() {
+		final int i = next;
+		next = i + 1 == QUERY_COUNT ? 0 : i + 1;
+		return i;
+	}
+
+	/**
+	 * Generates the cities and query locations and builds the index.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		final Random random = new Random(37);
+		ids = new int[cityCount];
+		latitudes = new double[cityCount];
+		longitudes = new double[cityCount];
+		for (int i = 0; i < cityCount; ++i) {
+			ids[i] = i + 1;
+			latitudes[i] = 25 + random.nextDouble() * 35;
+			longitudes[i] = -135 + random.nextDouble() * 75;
+		}
+		queryLatitudes = new double[QUERY_COUNT];
+		queryLongitudes = new double[QUERY_COUNT];
+		for (int i = 0; i < QUERY_COUNT; ++i) {
+			queryLatitudes[i] = 25 + random.nextDouble() * 35;
+			queryLongitudes[i] = -135 + random.nextDouble() * 75;
+		}
+		index = new CitySpatialIndex(ids, latitudes, longitudes);
+	}
+}
@@ -0,0 +1,108 @@
+package net.trajano.gasprices.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import net.trajano.gasprices.CityInfo;
+import net.trajano.gasprices.CityPriceTable;
+import net.trajano.gasprices.test.SyntheticFeed;
+
+/**
+ * A synthetic feed in each of the forms the update pipeline sees it: the raw
+ * text that is downloaded, the parsed records, the decoded {@link CityInfo}
+ * and the {@link CityPriceTable}. The fields are public because JMH requires
+ * it.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+@State(Scope.Benchmark)
+public class FeedState {
+	/**
+	 * Decoded records.
+	 */
+	public CityInfo[] cities;
+
+	/**
+	 * Number of cities in the feed. 70 is about the size of the real feed.
+	 */
+	@Param({ "70", "10000", "1000000" })
+	public int cityCount;
+
+	/**
+	 * City IDs in feed order.
+	 */
+	public long[] cityIds;
+
+	/**
+	 * Directory that the price table is persisted to.
+	 */
+	public File directory;
+
+	/**
+	 * <code>gasprices</code> array of the parsed feed.
+	 */
+	public JSONArray gasPrices;
+
+	/**
+	 * Feed as it is downloaded, without the first character.
+	 */
+	public String rawFeed;
+
+	/**
+	 * Price table of the feed.
+	 */
+	public CityPriceTable table;
+
+	/**
+	 * Builds the feed.
+	 * 
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, JSONException {
+		final JSONObject feed = SyntheticFeed.feed(cityCount);
+		rawFeed = feed.toString();
+		gasPrices = feed.getJSONArray("gasprices");
+		cities = new CityInfo[cityCount];
+		cityIds = new long[cityCount];
+		final CityPriceTable.Builder builder = new CityPriceTable.Builder(
+				cityCount);
+		for (int i = 0; i < cityCount; ++i) {
+			final JSONObject record = gasPrices.getJSONObject(i);
+			cities[i] = new CityInfo(record);
+			cityIds[i] = record.getLong("city_id");
+			builder.add(cityIds[i], cities[i]);
+		}
+		table = builder.build();
+		directory = File.createTempFile("gasprices", "");
+		if (!directory.delete() || !directory.mkdir()) {
+			throw new IOException("unable to create " + directory);
+		}
+	}
+
+	/**
+	 * Removes the persisted files.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		final File[] files = directory.listFiles();
+		if (files != null) {
+			for (final File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+}
@@ -0,0 +1,209 @@
+package net.trajano.gasprices.benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.trajano.gasprices.CompressedFeedStore;
+import net.trajano.gasprices.ReaderFeedSource;
+import net.trajano.gasprices.test.SyntheticFeed;
+
+/**
+ * Benchmarks loading the formatted feed for the feed view from the
+ * {@link CompressedFeedStore} against reading it as the escaped string that
+ * used to be kept in the preferences XML. The sizes of both are printed when
+ * the trial is set up. The million city feed is not run because the
+ * formatted text does not fit in the heap.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FeedStorageBenchmark {
+	/**
+	 * Size of the read buffer.
+	 */
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * Number of rows the feed view indexes before it is first shown.
+	 */
+	private static final int FIRST_PAGE_ROWS = 200;
+
+	/**
+	 * Escapes the text the same way as the preferences XML.
+	 * 
+	 * @param text
+	 *            text
+	 * @return escaped text
+	 */
+	private static String escape(final String text) {
+		return text.replace("&", "&amp;").replace("<", "&lt;")
+				.replace(">", "&gt;").replace("\"", "&quot;");
+	}
+
+	/**
+	 * Number of cities in the feed.
+	 */
+	@Param({ "70", "10000" })
+	public int cityCount;
+
+	/**
+	 * Directory the feed is stored in.
+	 */
+	private File directory;
+
+	/**
+	 * Formatted feed.
+	 */
+	private String feedText;
+
+	/**
+	 * File with the feed as it was stored in the preferences XML.
+	 */
+	private File preferenceFile;
+
+	/**
+	 * Indexes the rows that are shown when the feed view opens.
+	 * 
+	 * @return the number of rows.
+	 */
+	@Benchmark
+	public int openFirstPage() {
+		final ReaderFeedSource source = new ReaderFeedSource(
+				CompressedFeedStore.opener(directory));
+		try {
+			return source.indexMore(FIRST_PAGE_ROWS);
+		} finally {
+			source.close();
+		}
+	}
+
+	/**
+	 * Indexes every row of the stored feed.
+	 * 
+	 * @return the number of rows.
+	 */
+	@Benchmark
+	public int readAllRows() {
+		final ReaderFeedSource source = new ReaderFeedSource(
+				CompressedFeedStore.opener(directory));
+		try {
+			while (source.indexMore(FIRST_PAGE_ROWS) > 0) {
+				continue;
+			}
+			return source.getRowCount();
+		} finally {
+			source.close();
+		}
+	}
+
+	/**
+	 * Reads the feed as it was stored in the preferences XML. This is a lower
+	 * bound since the XML is not parsed.
+	 * 
+	 * @return the number of characters.
+	 * @throws IOException
+	 */
+	@Benchmark
+	public int readPreferenceEntry() throws IOException {
+		final Reader in = new InputStreamReader(new BufferedInputStream(
+				new FileInputStream(preferenceFile)), "UTF-8");
+		try {
+			final char[] buffer = new char[BUFFER_SIZE];
+			final StringBuilder b = new StringBuilder();
+			int n = in.read(buffer);
+			while (n != -1) {
+				b.append(buffer, 0, n);
+				n = in.read(buffer);
+			}
+			return b.length();
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Builds and stores the feed in both forms.
+	 * 
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, JSONException {
+		feedText = SyntheticFeed.feed(cityCount).toString(3);
+		directory = File.createTempFile("gasprices", "");
+		if (!directory.delete() || !directory.mkdir()) {
+			throw new IOException("unable to create " + directory);
+		}
+		preferenceFile = new File(directory, "preferences.xml");
+		final Writer out = new OutputStreamWriter(new FileOutputStream(
+				preferenceFile), "UTF-8");
+		try {
+			out.write("<string name=\"json_data\">");
+			out.write(escape(feedText));
+			out.write("</string>");
+		} finally {
+			out.close();
+		}
+		CompressedFeedStore.write(directory, feedText);
+		long compressedSize = 0;
+		for (final File file : directory.listFiles()) {
+			if (!file.equals(preferenceFile)) {
+				compressedSize += file.length();
+			}
+		}
+		System.out.println(cityCount + " cities: preference entry "
+				+ preferenceFile.length() + " bytes, compressed "
+				+ compressedSize + " bytes");
+	}
+
+	/**
+	 * Stores the formatted feed.
+	 */
+	@Benchmark
+	public void storeFeed() {
+		CompressedFeedStore.write(directory, feedText);
+	}
+
+	/**
+	 * Removes the stored files.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		final File[] files = directory.listFiles();
+		if (files != null) {
+			for (final File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+}
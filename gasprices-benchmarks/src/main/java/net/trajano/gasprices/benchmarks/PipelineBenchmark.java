@@ -0,0 +1,208 @@
+package net.trajano.gasprices.benchmarks;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.trajano.gasprices.CityInfo;
+import net.trajano.gasprices.CityPriceTable;
+import net.trajano.gasprices.FeedDecoder;
+import net.trajano.gasprices.GetDataUtil;
+
+/**
+ * Benchmarks each step of the update pipeline, from parsing the downloaded
+ * feed to formatting the text of a widget. The steps that work on the whole
+ * feed process every city per operation. The lookups and formatting process
+ * one city per operation, going through the cities in feed order so the
+ * larger feeds show the cost of missing the cache.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Thread)
+public class PipelineBenchmark {
+	/**
+	 * Number of threads that the feed is decoded with. It is a separate state
+	 * so that only {@link PipelineBenchmark#decode} is run for each thread
+	 * count.
+	 */
+	@State(Scope.Benchmark)
+	public static class DecodeThreads {
+		/**
+		 * Number of threads.
+		 */
+		@Param({ "1", "2", "4", "8" })
+		public int threadCount;
+	}
+
+	/**
+	 * Same as <code>widget_price_change_down_format</code>.
+	 */
+	private static final String PRICE_CHANGE_DOWN_FORMAT = "down %.1f \u00A2"; // $NON-NLS-1$
+
+	/**
+	 * Same as <code>widget_price_change_up_format</code>.
+	 */
+	private static final String PRICE_CHANGE_UP_FORMAT = "up %.1f \u00A2"; // $NON-NLS-1$
+
+	/**
+	 * Same as <code>widget_price_format</code>.
+	 */
+	private static final String PRICE_FORMAT = "%.1f \u00A2/L"; // $NON-NLS-1$
+
+	/**
+	 * Index of the next city to look up or format.
+	 */
+	private int next;
+
+	/**
+	 * Decodes every record of the feed into a {@link CityInfo}.
+	 * 
+	 * @param feed
+	 *            feed
+	 * @param blackhole
+	 *            consumes the results
+	 * @throws JSONException
+	 */
+	@Benchmark
+	public void constructCityInfo(final FeedState feed,
+			final Blackhole blackhole) throws JSONException {
+		for (int i = 0; i < feed.cityCount; ++i) {
+			blackhole.consume(new CityInfo(feed.gasPrices.getJSONObject(i)));
+		}
+	}
+
+	/**
+	 * Decodes the records of the feed into the price table using the given
+	 * number of threads.
+	 * 
+	 * @param feed
+	 *            feed
+	 * @param threads
+	 *            number of threads
+	 * @return the price table.
+	 * @throws JSONException
+	 */
+	@Benchmark
+	public CityPriceTable decode(final FeedState feed,
+			final DecodeThreads threads) throws JSONException {
+		final FeedDecoder decoder = new FeedDecoder(feed.gasPrices);
+		decoder.decode(threads.threadCount);
+		return decoder.toPriceTable();
+	}
+
+	/**
+	 * Formats the widget text of a city the same way as
+	 * <code>WidgetRenderState</code>.
+	 * 
+	 * @param feed
+	 *            feed
+	 * @param blackhole
+	 *            consumes the results
+	 */
+	@Benchmark
+	public void formatWidget(final FeedState feed, final Blackhole blackhole) {
+		final CityInfo city = feed.cities[nextIndex(feed)];
+		blackhole.consume(city.getName());
+		blackhole.consume(String.format(PRICE_FORMAT,
+				city.getCurrentGasPrice()));
+		if (city.isTomorrowsGasPriceUp()) {
+			blackhole.consume(String.format(PRICE_CHANGE_UP_FORMAT,
+					city.getPriceDifferenceAbsoluteValue()));
+		} else if (city.isTomorrowsGasPriceDown()) {
+			blackhole.consume(String.format(PRICE_CHANGE_DOWN_FORMAT,
+					city.getPriceDifferenceAbsoluteValue()));
+		}
+	}
+
+	/**
+	 * Looks up the prices of a city in the price table the same way as
+	 * <code>PreferenceAdaptor.getCityInfo</code>.
+	 * 
+	 * @param feed
+	 *            feed
+	 * @return the city info.
+	 */
+	@Benchmark
+	public CityInfo lookupCityInfo(final FeedState feed) {
+		final int index = nextIndex(feed);
+		return new CityInfo(feed.cities[index].getName(), feed.table,
+				feed.table.indexOf(feed.cityIds[index]),
+				System.currentTimeMillis());
+	}
+
+	/**
+	 * Gets the index of the next city and advances to the one after it.
+	 * 
+	 * @param feed
+	 *            feed
+	 * @return index of the city
+	 */
+	private int nextIndex(final FeedState feed) {
+		final int i = next;
+		next = i + 1 == feed.cityCount ? 0 : i + 1;
+		return i;
+	}
+
+	/**
+	 * Parses the downloaded feed.
+	 * 
+	 * @param feed
+	 *            feed
+	 * @return the parsed feed.
+	 * @throws IOException
+	 */
+	@Benchmark
+	public JSONObject parseFeed(final FeedState feed) throws IOException {
+		return GetDataUtil.parseGasPricesData(feed.rawFeed);
+	}
+
+	/**
+	 * Stores a parsed feed the same way as
+	 * <code>PreferenceAdaptorEditor.setJsonData</code>: the records are
+	 * decoded, the city data is put in a map in place of the preferences and
+	 * the price table is persisted.
+	 * 
+	 * @param feed
+	 *            feed
+	 * @param blackhole
+	 *            consumes the results
+	 * @throws JSONException
+	 */
+	@Benchmark
+	public void persistFeed(final FeedState feed, final Blackhole blackhole)
+			throws JSONException {
+		final FeedDecoder decoder = new FeedDecoder(feed.gasPrices);
+		decoder.decode(FeedDecoder.getDefaultThreadCount());
+		final Map<String, String> cityData = new HashMap<String, String>(
+				decoder.getCityCount() * 2);
+		for (int i = decoder.getCityCount() - 1; i >= 0; --i) {
+			cityData.put("city_" + decoder.getCityId(i),
+					decoder.getCityData(i));
+		}
+		final CityPriceTable table = decoder.toPriceTable();
+		table.persist(feed.directory);
+		blackhole.consume(cityData);
+		blackhole.consume(table);
+	}
+}
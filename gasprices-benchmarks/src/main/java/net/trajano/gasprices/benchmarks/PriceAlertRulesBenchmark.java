@@ -0,0 +1,106 @@
+package net.trajano.gasprices.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.trajano.gasprices.CityPriceTable;
+import net.trajano.gasprices.PriceAlertRules;
+
+/**
+ * Benchmarks evaluating the price alert rules after an update. The same ten
+ * cities change for every rule count, so the throughput should not depend on
+ * the number of rules.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PriceAlertRulesBenchmark {
+	/**
+	 * Number of cities that changed.
+	 */
+	private static final int CHANGED_COUNT = 10;
+
+	/**
+	 * Current time. Price dates after this have tomorrow's price.
+	 */
+	private static final long NOW = 1000;
+
+	/**
+	 * IDs of the cities that changed.
+	 */
+	private long[] changed;
+
+	/**
+	 * Number of rules. The changed cities have one rule each and the rest are
+	 * on cities that did not change.
+	 */
+	@Param({ "10", "10000" })
+	public int ruleCount;
+
+	/**
+	 * Rules that are evaluated.
+	 */
+	private PriceAlertRules rules;
+
+	/**
+	 * Price table of the changed cities.
+	 */
+	private CityPriceTable table;
+
+	/**
+	 * Receives the triggered city IDs.
+	 */
+	private long[] triggered;
+
+	/**
+	 * Evaluates the rules of the changed cities.
+	 * 
+	 * @return number of triggered cities.
+	 */
+	@Benchmark
+	public int evaluate() {
+		return rules.evaluate(table, changed, NOW, triggered);
+	}
+
+	/**
+	 * Builds the rules and the price table.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		final CityPriceTable.Builder builder = new CityPriceTable.Builder(
+				CHANGED_COUNT);
+		changed = new long[CHANGED_COUNT];
+		PriceAlertRules built = PriceAlertRules.EMPTY;
+		for (int i = 0; i < CHANGED_COUNT; ++i) {
+			changed[i] = i * 1000;
+			builder.add(changed[i], 120f, 3f, NOW + 1);
+			built = built.with(changed[i], 2f);
+		}
+		for (int i = 0; built.size() < ruleCount; ++i) {
+			if (i % 1000 != 0) {
+				built = built.with(i, 1f);
+			}
+		}
+		rules = built;
+		table = builder.build();
+		triggered = new long[CHANGED_COUNT];
+	}
+}
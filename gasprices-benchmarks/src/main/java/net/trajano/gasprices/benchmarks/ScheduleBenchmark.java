@@ -0,0 +1,51 @@
+package net.trajano.gasprices.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.trajano.gasprices.UpdateSchedule;
+
+/**
+ * Benchmarks computing the next update time. This does not depend on the size
+ * of the feed so it is not run for each feed.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ScheduleBenchmark {
+	/**
+	 * Step between the last update times so every update slot is covered.
+	 */
+	private static final long STEP = TimeUnit.MINUTES.toMillis(7);
+
+	/**
+	 * Last update time of the next operation.
+	 */
+	private long lastUpdateTime = System.currentTimeMillis();
+
+	/**
+	 * Computes the next update time.
+	 * 
+	 * @return the next update time.
+	 */
+	@Benchmark
+	public long nextUpdateTime() {
+		lastUpdateTime += STEP;
+		return UpdateSchedule.nextUpdateTime(lastUpdateTime);
+	}
+}
@@ -0,0 +1,481 @@
+package net.trajano.gasprices;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * This is an immutable directory of the cities that can be selected. It is
+ * shared by the city lists, the widget configuration and the preferences.
+ * </p>
+ * <p>
+ * The directory is seeded from a list of entries in the form
+ * <code>Name=id</code>. Entries without an ID are region headers. After every
+ * update the directory is merged with the cities in the feed using
+ * {@link #merge(int[], String[], String)}. The merged directory is persisted
+ * to {@link #PERSISTED_FILE_NAME} so it is used instead of the seed on the
+ * next start.
+ * </p>
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class CityDirectory {
+	/**
+	 * Default city ID. Uses Toronto.
+	 */
+	public static final long DEFAULT_CITY_ID = 133;
+
+	/**
+	 * ID used for region headers.
+	 */
+	public static final int HEADER_ID = -1;
+
+	/**
+	 * Name of the file that stores the directory that was merged with the
+	 * last feed.
+	 */
+	private static final String PERSISTED_FILE_NAME = "city_directory.bin"; // $NON-NLS-1$
+
+	/**
+	 * Format version of {@link #PERSISTED_FILE_NAME}.
+	 */
+	private static final int PERSISTED_VERSION = 1;
+
+	private static int[] parseIds(final String[] entries) {
+		final int[] ids = new int[entries.length];
+		for (int i = 0; i < entries.length; ++i) {
+			final int equalIndex = entries[i].lastIndexOf('=');
+			if (equalIndex == -1) {
+				ids[i] = HEADER_ID;
+			} else {
+				ids[i] = Integer.parseInt(entries[i].substring(equalIndex + 1));
+			}
+		}
+		return ids;
+	}
+
+	private static String[] parseNames(final String[] entries) {
+		final String[] names = new String[entries.length];
+		for (int i = 0; i < entries.length; ++i) {
+			final int equalIndex = entries[i].lastIndexOf('=');
+			if (equalIndex == -1) {
+				names[i] = entries[i];
+			} else {
+				names[i] = entries[i].substring(0, equalIndex);
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * Finds the last region header before the end.
+	 * 
+	 * @param entryIds
+	 *            IDs
+	 * @param end
+	 *            end position exclusive
+	 * @return header position or -1 if there is none.
+	 */
+	private static int regionOf(final int[] entryIds, final int end) {
+		for (int i = end - 1; i >= 0; --i) {
+			if (entryIds[i] == HEADER_ID) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Reads the directory from {@link #PERSISTED_FILE_NAME}. This performs
+	 * disk access so it must not be called from the main thread.
+	 * 
+	 * @param directory
+	 *            directory containing the file
+	 * @return the persisted directory or <code>null</code> if it is not
+	 *         available.
+	 */
+	public static CityDirectory restore(final File directory) {
+		try {
+			final DataInputStream in = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(new File(
+							directory, PERSISTED_FILE_NAME))));
+			try {
+				if (in.readInt() != PERSISTED_VERSION) {
+					return null;
+				}
+				final int count = in.readInt();
+				final int[] ids = new int[count];
+				final String[] names = new String[count];
+				for (int i = 0; i < count; ++i) {
+					ids[i] = in.readInt();
+					names[i] = in.readUTF();
+				}
+				return new CityDirectory(ids, names);
+			} finally {
+				in.close();
+			}
+		} catch (final FileNotFoundException e) {
+			return null;
+		} catch (final IOException e) {
+			GasPricesLog.e(e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * City IDs by position. Region headers are {@link #HEADER_ID}.
+	 */
+	private final int[] ids;
+
+	/**
+	 * Name index. Built on first use.
+	 */
+	private CityNameIndex nameIndex;
+
+	/**
+	 * Names by position.
+	 */
+	private final String[] names;
+
+	/**
+	 * Position of the region header for each position. This is -1 if the
+	 * entry is not preceded by a header.
+	 */
+	private final int[] regionPositions;
+
+	/**
+	 * City IDs sorted in ascending order. Used with {@link #sortedPositions}
+	 * to look up the position of a city.
+	 */
+	private final int[] sortedIds;
+
+	/**
+	 * Positions matching {@link #sortedIds}.
+	 */
+	private final int[] sortedPositions;
+
+	/**
+	 * Builds the directory from <code>Name=id</code> entries.
+	 * 
+	 * @param entries
+	 *            entries
+	 */
+	public CityDirectory(final String[] entries) {
+		this(parseIds(entries), parseNames(entries));
+	}
+
+	/**
+	 * Builds the directory from parallel arrays. The arrays are not copied.
+	 * 
+	 * @param ids
+	 *            IDs by position, {@link #HEADER_ID} for region headers.
+	 * @param names
+	 *            names by position.
+	 */
+	private CityDirectory(final int[] ids, final String[] names) {
+		final int count = ids.length;
+		this.ids = ids;
+		this.names = names;
+		regionPositions = new int[count];
+		int cityCount = 0;
+		int region = -1;
+		for (int i = 0; i < count; ++i) {
+			if (ids[i] == HEADER_ID) {
+				region = i;
+			} else {
+				++cityCount;
+			}
+			regionPositions[i] = region;
+		}
+
+		final long[] keys = new long[cityCount];
+		int k = 0;
+		for (int i = 0; i < count; ++i) {
+			if (ids[i] != HEADER_ID) {
+				keys[k++] = (long) ids[i] << 32 | i;
+			}
+		}
+		Arrays.sort(keys);
+		sortedIds = new int[cityCount];
+		sortedPositions = new int[cityCount];
+		for (int i = 0; i < cityCount; ++i) {
+			sortedIds[i] = (int) (keys[i] >> 32);
+			sortedPositions[i] = (int) keys[i];
+		}
+	}
+
+	/**
+	 * Checks if the city ID is in the directory.
+	 * 
+	 * @param cityId
+	 *            city ID
+	 * @return <code>true</code> if the city is present.
+	 */
+	public boolean contains(final long cityId) {
+		return indexOf(cityId) != -1;
+	}
+
+	/**
+	 * Number of cities in the directory excluding region headers.
+	 * 
+	 * @return city count.
+	 */
+	public int getCityCount() {
+		return sortedIds.length;
+	}
+
+	/**
+	 * Gets the city ID at the position.
+	 * 
+	 * @param position
+	 *            position
+	 * @return city ID or {@link #HEADER_ID} if the position is a region
+	 *         header.
+	 */
+	public int getId(final int position) {
+		return ids[position];
+	}
+
+	/**
+	 * Gets the name at the position. This is the region name for headers.
+	 * 
+	 * @param position
+	 *            position
+	 * @return name
+	 */
+	public String getName(final int position) {
+		return names[position];
+	}
+
+	/**
+	 * Gets the prefix index over the city names. It is built on the first
+	 * call.
+	 * 
+	 * @return name index.
+	 */
+	public synchronized CityNameIndex getNameIndex() {
+		if (nameIndex == null) {
+			nameIndex = new CityNameIndex(this);
+		}
+		return nameIndex;
+	}
+
+	/**
+	 * Gets the position of the region header the position belongs to.
+	 * 
+	 * @param position
+	 *            position
+	 * @return region header position or -1 if there is no header.
+	 */
+	public int getRegionPosition(final int position) {
+		return regionPositions[position];
+	}
+
+	/**
+	 * Gets the selectable city ID. If the city ID is not in the directory,
+	 * {@link #DEFAULT_CITY_ID} is used. If that is not in the directory
+	 * either, the first city is used.
+	 * 
+	 * @param cityId
+	 *            city ID
+	 * @return city ID that is in the directory.
+	 */
+	public long getValidCityId(final long cityId) {
+		if (contains(cityId)) {
+			return cityId;
+		}
+		if (contains(DEFAULT_CITY_ID) || sortedIds.length == 0) {
+			return DEFAULT_CITY_ID;
+		}
+		for (final int id : ids) {
+			if (id != HEADER_ID) {
+				return id;
+			}
+		}
+		return DEFAULT_CITY_ID;
+	}
+
+	/**
+	 * Gets the position of the city in the directory.
+	 * 
+	 * @param cityId
+	 *            city ID
+	 * @return position or -1 if the city is not in the directory.
+	 */
+	public int indexOf(final long cityId) {
+		if (cityId < 0 || cityId > Integer.MAX_VALUE) {
+			return -1;
+		}
+		final int i = Arrays.binarySearch(sortedIds, (int) cityId);
+		if (i < 0) {
+			return -1;
+		}
+		return sortedPositions[i];
+	}
+
+	/**
+	 * Checks if the position is a region header.
+	 * 
+	 * @param position
+	 *            position
+	 * @return <code>true</code> if the position is a region header.
+	 */
+	public boolean isHeader(final int position) {
+		return ids[position] == HEADER_ID;
+	}
+
+	/**
+	 * <p>
+	 * Merges the directory with the cities in a feed. Cities that are no
+	 * longer in the feed are removed along with any region header that
+	 * becomes empty. Cities that remain keep their position and take the name
+	 * from the feed. Cities that are new are appended in name order under
+	 * the header for other cities.
+	 * </p>
+	 * <p>
+	 * The feed is only sorted once and each existing city is found with a
+	 * binary search so this is <code>O(n log n)</code>.
+	 * </p>
+	 * 
+	 * @param feedIds
+	 *            city IDs in the feed
+	 * @param feedNames
+	 *            city names in the feed
+	 * @param otherHeader
+	 *            name of the header for new cities
+	 * @return the merged directory or this directory if nothing changed or the
+	 *         feed is empty.
+	 */
+	public CityDirectory merge(final int[] feedIds, final String[] feedNames,
+			final String otherHeader) {
+		final int feedCount = feedIds.length;
+		if (feedCount == 0) {
+			return this;
+		}
+		final long[] feedKeys = new long[feedCount];
+		for (int i = 0; i < feedCount; ++i) {
+			feedKeys[i] = (long) feedIds[i] << 32 | i;
+		}
+		Arrays.sort(feedKeys);
+		final int[] sortedFeedIds = new int[feedCount];
+		for (int i = 0; i < feedCount; ++i) {
+			sortedFeedIds[i] = (int) (feedKeys[i] >> 32);
+		}
+		final boolean[] known = new boolean[feedCount];
+
+		final int[] mergedIds = new int[ids.length + feedCount + 1];
+		final String[] mergedNames = new String[mergedIds.length];
+		int count = 0;
+		int pendingHeader = -1;
+		boolean changed = false;
+		for (int i = 0; i < ids.length; ++i) {
+			if (ids[i] == HEADER_ID) {
+				if (pendingHeader != -1) {
+					changed = true;
+				}
+				pendingHeader = i;
+				continue;
+			}
+			final int sortedIndex = Arrays.binarySearch(sortedFeedIds, ids[i]);
+			if (sortedIndex < 0) {
+				changed = true;
+				continue;
+			}
+			final int feedIndex = (int) feedKeys[sortedIndex];
+			if (known[feedIndex]) {
+				changed = true;
+				continue;
+			}
+			known[feedIndex] = true;
+			if (pendingHeader != -1) {
+				mergedIds[count] = HEADER_ID;
+				mergedNames[count++] = names[pendingHeader];
+				pendingHeader = -1;
+			}
+			mergedIds[count] = ids[i];
+			mergedNames[count] = feedNames[feedIndex];
+			if (!names[i].equals(feedNames[feedIndex])) {
+				changed = true;
+			}
+			++count;
+		}
+		if (pendingHeader != -1) {
+			changed = true;
+		}
+
+		int newCount = 0;
+		final String[] newKeys = new String[feedCount];
+		for (int i = 0; i < feedCount; ++i) {
+			if (!known[i]) {
+				newKeys[newCount++] = feedNames[i] + '=' + feedIds[i];
+				known[i] = true;
+			}
+		}
+		if (newCount > 0) {
+			changed = true;
+			final int lastRegion = count == 0 ? -1 : regionOf(mergedIds, count);
+			if (lastRegion == -1 || !otherHeader.equals(mergedNames[lastRegion])) {
+				mergedIds[count] = HEADER_ID;
+				mergedNames[count++] = otherHeader;
+			}
+			Arrays.sort(newKeys, 0, newCount);
+			final String[] newEntries = new String[newCount];
+			System.arraycopy(newKeys, 0, newEntries, 0, newCount);
+			final int[] newIds = parseIds(newEntries);
+			final String[] newNames = parseNames(newEntries);
+			for (int i = 0; i < newCount; ++i) {
+				mergedIds[count] = newIds[i];
+				mergedNames[count++] = newNames[i];
+			}
+		}
+
+		if (!changed) {
+			return this;
+		}
+		final int[] resultIds = new int[count];
+		final String[] resultNames = new String[count];
+		System.arraycopy(mergedIds, 0, resultIds, 0, count);
+		System.arraycopy(mergedNames, 0, resultNames, 0, count);
+		return new CityDirectory(resultIds, resultNames);
+	}
+
+	/**
+	 * Writes the directory to {@link #PERSISTED_FILE_NAME}. This performs disk
+	 * access so it must not be called from the main thread.
+	 * 
+	 * @param directory
+	 *            directory to write the file to
+	 */
+	public void persist(final File directory) {
+		PersistedFile.write(directory, PERSISTED_FILE_NAME,
+				new PersistedFile.Content() {
+
+					@Override
+					public void write(final DataOutputStream out)
+							throws IOException {
+						out.writeInt(PERSISTED_VERSION);
+						out.writeInt(ids.length);
+						for (int i = 0; i < ids.length; ++i) {
+							out.writeInt(ids[i]);
+							out.writeUTF(names[i]);
+						}
+					}
+				});
+	}
+
+	/**
+	 * Number of entries including the region headers.
+	 * 
+	 * @return entry count.
+	 */
+	public int size() {
+		return ids.length;
+	}
+}
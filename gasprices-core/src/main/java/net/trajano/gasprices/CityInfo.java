@@ -8,9 +8,27 @@ import java.util.Locale;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import android.util.Log;
-
 public class CityInfo {
+	/**
+	 * Suffix that is present on the city names in the feed.
+	 */
+	private static final String CITY_NAME_SUFFIX = " Gas Prices"; // $NON-NLS-1$
+
+	/**
+	 * Removes the {@link #CITY_NAME_SUFFIX} from the city name in the feed if
+	 * it is present.
+	 * 
+	 * @param feedCityName
+	 *            city name from the feed
+	 * @return the name that is displayed.
+	 */
+	public static String toDisplayName(final String feedCityName) {
+		final int suffixIndex = feedCityName.indexOf(CITY_NAME_SUFFIX);
+		if (suffixIndex == -1) {
+			return feedCityName;
+		}
+		return feedCityName.substring(0, suffixIndex);
+	}
 
 	private final float currentGasPrice;
 
@@ -29,13 +47,9 @@ public class CityInfo {
 			priceDate = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss",
 					Locale.ENGLISH).parse(city.getString("price_date"));
 		} catch (final ParseException e) {
-			Log.e("GasPrices", e.getMessage());
 			throw new RuntimeException(e);
 		}
-		{
-			final String tempName = city.getString("city_name");
-			name = tempName.substring(0, tempName.indexOf(" Gas Prices"));
-		}
+		name = toDisplayName(city.getString("city_name"));
 		priceDifferenceAbsoluteValue = city.getDouble("price_difference");
 		priceDifference = priceDifferenceAbsoluteValue
 				* ("-".equals(city.getString("price_prefix")) ? -1 : 1);
@@ -56,6 +70,42 @@ public class CityInfo {
 		toStringValue = city.toString();
 	}
 
+	/**
+	 * Builds the city information from a row of a {@link CityPriceTable} so
+	 * the <code>city_</code> JSON string does not need to be decoded.
+	 * 
+	 * @param name
+	 *            display name of the city
+	 * @param table
+	 *            price table
+	 * @param row
+	 *            row of the city in the table
+	 * @param now
+	 *            current time in milliseconds since epoch
+	 */
+	public CityInfo(final String name, final CityPriceTable table,
+			final int row, final long now) {
+		this.name = name;
+		priceDate = new Date(table.getPriceDate(row));
+		priceDifference = table.getPriceDifference(row);
+		priceDifferenceAbsoluteValue = Math.abs(priceDifference);
+		final float regularPrice = table.getRegularPrice(row);
+		if (table.isTomorrowsPriceAvailable(row, now)) {
+			tomorrowsGasPriceAvailable = true;
+			yesterdaysGasPriceAvailable = false;
+			yesterdaysGasPrice = Float.NaN;
+			tomorrowsGasPrice = regularPrice;
+			currentGasPrice = (float) (regularPrice - priceDifference);
+		} else {
+			tomorrowsGasPriceAvailable = false;
+			yesterdaysGasPriceAvailable = true;
+			tomorrowsGasPrice = Float.NaN;
+			currentGasPrice = regularPrice;
+			yesterdaysGasPrice = (float) (regularPrice - priceDifference);
+		}
+		toStringValue = name;
+	}
+
 	public float getCurrentGasPrice() {
 		return currentGasPrice;
 	}
@@ -64,6 +114,10 @@ public class CityInfo {
 		return name;
 	}
 
+	public Date getPriceDate() {
+		return priceDate;
+	}
+
 	public double getPriceDifference() {
 		return priceDifference;
 	}
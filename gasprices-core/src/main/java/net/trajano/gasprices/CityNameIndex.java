@@ -0,0 +1,202 @@
+package net.trajano.gasprices;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * This is an immutable prefix index over the city names in a
+ * {@link CityDirectory}. Every word in a normalized city name is stored as a
+ * key in a sorted array so a prefix is found with a binary search and the
+ * matches are the contiguous keys that follow it.
+ * </p>
+ * <p>
+ * Names are normalized by converting them to lower case, removing the accents
+ * from Latin-1 letters and treating anything that is not a letter or digit as
+ * a word separator. This allows "que" to match "Qu&eacute;bec City" and
+ * "york" to match "North York".
+ * </p>
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class CityNameIndex {
+	/**
+	 * Key and directory position pair. Only used while building the index.
+	 */
+	private static final class Entry implements Comparable<Entry> {
+		private final String key;
+
+		private final int position;
+
+		Entry(final String key, final int position) {
+			this.key = key;
+			this.position = position;
+		}
+
+		@Override
+		public int compareTo(final Entry o) {
+			return key.compareTo(o.key);
+		}
+	}
+
+	/**
+	 * Accented Latin-1 letters. The replacement is at the same index in
+	 * {@link #UNACCENTED}.
+	 */
+	private static final String ACCENTED = "\u00e0\u00e1\u00e2\u00e3\u00e4\u00e5\u00e7\u00e8\u00e9\u00ea\u00eb\u00ec\u00ed\u00ee\u00ef\u00f1\u00f2\u00f3\u00f4\u00f5\u00f6\u00f9\u00fa\u00fb\u00fc\u00fd\u00ff"; // $NON-NLS-1$
+
+	/**
+	 * Replacements for {@link #ACCENTED}.
+	 */
+	private static final String UNACCENTED = "aaaaaaceeeeiiiinooooouuuuyy"; // $NON-NLS-1$
+
+	/**
+	 * Normalizes the text for indexing and searching. Words are separated by a
+	 * single space and there are no leading or trailing spaces.
+	 * 
+	 * @param text
+	 *            text to normalize
+	 * @return normalized text.
+	 */
+	public static String normalize(final CharSequence text) {
+		final StringBuilder b = new StringBuilder(text.length());
+		boolean separator = false;
+		for (int i = 0; i < text.length(); ++i) {
+			char c = Character.toLowerCase(text.charAt(i));
+			final int accentIndex = ACCENTED.indexOf(c);
+			if (accentIndex != -1) {
+				c = UNACCENTED.charAt(accentIndex);
+			}
+			if (Character.isLetterOrDigit(c)) {
+				if (separator && b.length() > 0) {
+					b.append(' ');
+				}
+				separator = false;
+				b.append(c);
+			} else {
+				separator = true;
+			}
+		}
+		return b.toString();
+	}
+
+	private final CityDirectory directory;
+
+	/**
+	 * Sorted keys. Each key is a normalized city name starting at one of its
+	 * words.
+	 */
+	private final String[] keys;
+
+	/**
+	 * Directory positions matching {@link #keys}.
+	 */
+	private final int[] positions;
+
+	/**
+	 * Builds the index for the directory.
+	 * 
+	 * @param directory
+	 *            directory
+	 */
+	public CityNameIndex(final CityDirectory directory) {
+		this.directory = directory;
+		Entry[] entries = new Entry[directory.getCityCount() * 2 + 1];
+		int count = 0;
+		for (int position = 0; position < directory.size(); ++position) {
+			if (directory.isHeader(position)) {
+				continue;
+			}
+			final String name = normalize(directory.getName(position));
+			int wordStart = 0;
+			while (wordStart < name.length()) {
+				if (count == entries.length) {
+					final Entry[] newEntries = new Entry[count * 2];
+					System.arraycopy(entries, 0, newEntries, 0, count);
+					entries = newEntries;
+				}
+				entries[count++] = new Entry(name.substring(wordStart),
+						position);
+				final int space = name.indexOf(' ', wordStart);
+				if (space == -1) {
+					break;
+				}
+				wordStart = space + 1;
+			}
+		}
+		Arrays.sort(entries, 0, count);
+		keys = new String[count];
+		positions = new int[count];
+		for (int i = 0; i < count; ++i) {
+			keys[i] = entries[i].key;
+			positions[i] = entries[i].position;
+		}
+	}
+
+	/**
+	 * Finds the first key that is greater than or equal to the prefix.
+	 * 
+	 * @param prefix
+	 *            normalized prefix
+	 * @return index into {@link #keys}.
+	 */
+	private int lowerBound(final String prefix) {
+		int low = 0;
+		int high = keys.length;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (keys[mid].compareTo(prefix) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Finds the directory positions of the cities that have a word that starts
+	 * with the normalized query. The region headers of the matching cities are
+	 * included so the result can be displayed the same way as the full
+	 * directory. The cost is a binary search plus the number of matches.
+	 * 
+	 * @param query
+	 *            query text
+	 * @return sorted directory positions or <code>null</code> if the query is
+	 *         empty and everything matches.
+	 */
+	public int[] search(final CharSequence query) {
+		final String prefix = normalize(query);
+		if (prefix.length() == 0) {
+			return null;
+		}
+		final int first = lowerBound(prefix);
+		int last = first;
+		while (last < keys.length && keys[last].startsWith(prefix)) {
+			++last;
+		}
+		final int[] matches = new int[last - first];
+		System.arraycopy(positions, first, matches, 0, matches.length);
+		Arrays.sort(matches);
+
+		final int[] result = new int[matches.length * 2];
+		int count = 0;
+		int lastRegion = -1;
+		int lastPosition = -1;
+		for (final int position : matches) {
+			if (position == lastPosition) {
+				continue;
+			}
+			final int region = directory.getRegionPosition(position);
+			if (region != -1 && region != lastRegion) {
+				result[count++] = region;
+				lastRegion = region;
+			}
+			result[count++] = position;
+			lastPosition = position;
+		}
+		final int[] trimmed = new int[count];
+		System.arraycopy(result, 0, trimmed, 0, count);
+		return trimmed;
+	}
+}
@@ -0,0 +1,350 @@
+package net.trajano.gasprices;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * This is an immutable, column oriented copy of the prices of every city in a
+ * snapshot. It is built while the feed is ingested so screens that need every
+ * city do not have to decode the <code>city_</code> JSON strings. Rows are
+ * ordered by city ID.
+ * </p>
+ * <p>
+ * The price date is kept rather than whether tomorrow's price is available
+ * because that depends on when the table is read. This follows the same rules
+ * as {@link CityInfo}.
+ * </p>
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class CityPriceTable {
+	/**
+	 * Builds a {@link CityPriceTable}.
+	 */
+	public static final class Builder {
+		private int count;
+
+		private final long[] priceDates;
+
+		private final float[] priceDifferences;
+
+		private final float[] regularPrices;
+
+		private final int[] rowCityIds;
+
+		/**
+		 * Constructs the builder.
+		 * 
+		 * @param capacity
+		 *            maximum number of cities.
+		 */
+		public Builder(final int capacity) {
+			rowCityIds = new int[capacity];
+			regularPrices = new float[capacity];
+			priceDifferences = new float[capacity];
+			priceDates = new long[capacity];
+		}
+
+		/**
+		 * Adds a city.
+		 * 
+		 * @param cityId
+		 *            city ID
+		 * @param cityInfo
+		 *            city info
+		 * @return itself
+		 */
+		public Builder add(final long cityId, final CityInfo cityInfo) {
+			return add(
+					cityId,
+					cityInfo.isTomorrowsGasPriceAvailable() ? cityInfo
+							.getTomorrowsGasPrice() : cityInfo
+							.getCurrentGasPrice(),
+					(float) cityInfo.getPriceDifference(), cityInfo
+							.getPriceDate().getTime());
+		}
+
+		/**
+		 * Adds a city.
+		 * 
+		 * @param cityId
+		 *            city ID
+		 * @param regularPrice
+		 *            price on the price date
+		 * @param priceDifference
+		 *            difference from the price on the day before the price
+		 *            date
+		 * @param priceDate
+		 *            price date in milliseconds since epoch
+		 * @return itself
+		 */
+		public Builder add(final long cityId, final float regularPrice,
+				final float priceDifference, final long priceDate) {
+			rowCityIds[count] = (int) cityId;
+			regularPrices[count] = regularPrice;
+			priceDifferences[count] = priceDifference;
+			priceDates[count] = priceDate;
+			++count;
+			return this;
+		}
+
+		/**
+		 * Builds the table.
+		 * 
+		 * @return the table.
+		 */
+		public CityPriceTable build() {
+			final long[] order = new long[count];
+			for (int i = 0; i < count; ++i) {
+				order[i] = (long) rowCityIds[i] << 32 | i;
+			}
+			Arrays.sort(order);
+			final CityPriceTable table = new CityPriceTable(count);
+			for (int i = 0; i < count; ++i) {
+				final int source = (int) order[i];
+				table.cityIds[i] = rowCityIds[source];
+				table.regularPrices[i] = regularPrices[source];
+				table.priceDifferences[i] = priceDifferences[source];
+				table.priceDates[i] = priceDates[source];
+			}
+			return table;
+		}
+	}
+
+	/**
+	 * Empty table used until the first snapshot is ingested.
+	 */
+	public static final CityPriceTable EMPTY = new CityPriceTable(0);
+
+	/**
+	 * Name of the file in the data directory that stores the table for the
+	 * last snapshot.
+	 */
+	private static final String PERSISTED_FILE_NAME = "city_prices.bin"; // $NON-NLS-1$
+
+	/**
+	 * Format version of {@link #PERSISTED_FILE_NAME}.
+	 */
+	private static final int PERSISTED_VERSION = 1;
+
+	/**
+	 * Reads the table from {@link #PERSISTED_FILE_NAME}. This performs disk
+	 * access so it should not be called from the main thread.
+	 * 
+	 * @param directory
+	 *            data directory
+	 * @return the persisted table, <code>null</code> if it was not persisted
+	 *         yet or {@link #EMPTY} if it is not readable.
+	 */
+	public static CityPriceTable restore(final File directory) {
+		try {
+			final DataInputStream in = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(new File(
+							directory, PERSISTED_FILE_NAME))));
+			try {
+				if (in.readInt() != PERSISTED_VERSION) {
+					return EMPTY;
+				}
+				final CityPriceTable table = new CityPriceTable(in.readInt());
+				for (int i = 0; i < table.cityIds.length; ++i) {
+					table.cityIds[i] = in.readInt();
+					table.regularPrices[i] = in.readFloat();
+					table.priceDifferences[i] = in.readFloat();
+					table.priceDates[i] = in.readLong();
+				}
+				return table;
+			} finally {
+				in.close();
+			}
+		} catch (final FileNotFoundException e) {
+			return null;
+		} catch (final IOException e) {
+			GasPricesLog.e(e.getMessage());
+			return EMPTY;
+		}
+	}
+
+	/**
+	 * City IDs in ascending order.
+	 */
+	private final int[] cityIds;
+
+	/**
+	 * Price dates in milliseconds since epoch.
+	 */
+	private final long[] priceDates;
+
+	/**
+	 * Difference between the regular price and the price on the day before the
+	 * price date.
+	 */
+	private final float[] priceDifferences;
+
+	/**
+	 * Price on the price date.
+	 */
+	private final float[] regularPrices;
+
+	private CityPriceTable(final int count) {
+		cityIds = new int[count];
+		regularPrices = new float[count];
+		priceDifferences = new float[count];
+		priceDates = new long[count];
+	}
+
+	/**
+	 * Gets the city ID of the row.
+	 * 
+	 * @param row
+	 *            row
+	 * @return city ID
+	 */
+	public int getCityId(final int row) {
+		return cityIds[row];
+	}
+
+	/**
+	 * Gets the price for today.
+	 * 
+	 * @param row
+	 *            row
+	 * @param now
+	 *            current time in milliseconds since epoch
+	 * @return today's price
+	 */
+	public float getCurrentPrice(final int row, final long now) {
+		if (isTomorrowsPriceAvailable(row, now)) {
+			return regularPrices[row] - priceDifferences[row];
+		}
+		return regularPrices[row];
+	}
+
+	/**
+	 * Gets the first price date after now. Today's price of the cities with
+	 * that price date changes when it passes even though the table does not.
+	 * 
+	 * @param now
+	 *            current time in milliseconds since epoch
+	 * @return price date in milliseconds since epoch or
+	 *         {@link Long#MAX_VALUE} if no price date is after now.
+	 */
+	public long getNextPriceDate(final long now) {
+		long next = Long.MAX_VALUE;
+		for (final long priceDate : priceDates) {
+			if (priceDate > now && priceDate < next) {
+				next = priceDate;
+			}
+		}
+		return next;
+	}
+
+	/**
+	 * Gets the price date. The regular price is today's price from this time.
+	 * 
+	 * @param row
+	 *            row
+	 * @return price date in milliseconds since epoch
+	 */
+	public long getPriceDate(final int row) {
+		return priceDates[row];
+	}
+
+	/**
+	 * Gets the latest price change. This is the change from today to tomorrow
+	 * if tomorrow's price is available, otherwise it is the change from
+	 * yesterday to today.
+	 * 
+	 * @param row
+	 *            row
+	 * @return price change
+	 */
+	public float getPriceDifference(final int row) {
+		return priceDifferences[row];
+	}
+
+	/**
+	 * Gets the price on the price date. This is tomorrow's price if it is
+	 * available.
+	 * 
+	 * @param row
+	 *            row
+	 * @return regular price
+	 */
+	public float getRegularPrice(final int row) {
+		return regularPrices[row];
+	}
+
+	/**
+	 * Finds the row of the city.
+	 * 
+	 * @param cityId
+	 *            city ID
+	 * @return row or -1 if the city is not in the table.
+	 */
+	public int indexOf(final long cityId) {
+		if (cityId < 0 || cityId > Integer.MAX_VALUE) {
+			return -1;
+		}
+		final int i = Arrays.binarySearch(cityIds, (int) cityId);
+		if (i < 0) {
+			return -1;
+		}
+		return i;
+	}
+
+	/**
+	 * Checks if tomorrow's price is available.
+	 * 
+	 * @param row
+	 *            row
+	 * @param now
+	 *            current time in milliseconds since epoch
+	 * @return <code>true</code> if the price date is after now.
+	 */
+	public boolean isTomorrowsPriceAvailable(final int row, final long now) {
+		return priceDates[row] > now;
+	}
+
+	/**
+	 * Writes the table to {@link #PERSISTED_FILE_NAME}. This performs disk
+	 * access so it must not be called from the main thread.
+	 * 
+	 * @param directory
+	 *            data directory
+	 */
+	public void persist(final File directory) {
+		PersistedFile.write(directory, PERSISTED_FILE_NAME,
+				new PersistedFile.Content() {
+
+					@Override
+					public void write(final DataOutputStream out)
+							throws IOException {
+						out.writeInt(PERSISTED_VERSION);
+						out.writeInt(cityIds.length);
+						for (int i = 0; i < cityIds.length; ++i) {
+							out.writeInt(cityIds[i]);
+							out.writeFloat(regularPrices[i]);
+							out.writeFloat(priceDifferences[i]);
+							out.writeLong(priceDates[i]);
+						}
+					}
+				});
+	}
+
+	/**
+	 * Number of cities in the table.
+	 * 
+	 * @return city count
+	 */
+	public int size() {
+		return cityIds.length;
+	}
+}
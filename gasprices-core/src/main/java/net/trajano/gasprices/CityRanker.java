@@ -0,0 +1,209 @@
+package net.trajano.gasprices;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Ranks the rows of a {@link CityPriceTable}. Each row is packed into a
+ * <code>long</code> with the sort key in the high 32 bits and the row in the
+ * low 32 bits so the ranking is a primitive sort with no comparator or boxing.
+ * The key buffer is kept between calls so ranking the same number of cities
+ * again does not allocate.
+ * </p>
+ * <p>
+ * This is not thread safe. Each screen uses its own instance on the UI thread.
+ * </p>
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class CityRanker {
+	/**
+	 * Largest absolute price change first.
+	 */
+	public static final int ORDER_ABSOLUTE_CHANGE = 2;
+
+	/**
+	 * Largest price increase first.
+	 */
+	public static final int ORDER_CHANGE = 1;
+
+	/**
+	 * Cheapest price today first.
+	 */
+	public static final int ORDER_PRICE_TODAY = 0;
+
+	/**
+	 * Converts the float to an int that has the same ordering when compared
+	 * as a signed int.
+	 * 
+	 * @param value
+	 *            value
+	 * @return sortable bits
+	 */
+	private static int toSortableBits(final float value) {
+		final int bits = Float.floatToIntBits(value);
+		return bits ^ bits >> 31 & 0x7fffffff;
+	}
+
+	/**
+	 * Packed keys. Reused between calls.
+	 */
+	private long[] keys = new long[0];
+
+	/**
+	 * Fills {@link #keys} with the rows that pass the filter.
+	 * 
+	 * @return number of keys.
+	 */
+	private int buildKeys(final CityPriceTable table, final int order,
+			final CityDirectory directory, final int regionPosition,
+			final long now) {
+		if (keys.length < table.size()) {
+			keys = new long[table.size()];
+		}
+		int count = 0;
+		for (int row = 0; row < table.size(); ++row) {
+			if (regionPosition != -1) {
+				final int position = directory.indexOf(table.getCityId(row));
+				if (position == -1
+						|| directory.getRegionPosition(position) != regionPosition) {
+					continue;
+				}
+			}
+			final int key;
+			if (order == ORDER_PRICE_TODAY) {
+				key = toSortableBits(table.getCurrentPrice(row, now));
+			} else if (order == ORDER_CHANGE) {
+				key = ~toSortableBits(table.getPriceDifference(row));
+			} else {
+				key = ~toSortableBits(Math.abs(table.getPriceDifference(row)));
+			}
+			keys[count++] = (long) key << 32 | row;
+		}
+		return count;
+	}
+
+	/**
+	 * Ranks every city in the table.
+	 * 
+	 * @param table
+	 *            price table
+	 * @param order
+	 *            one of {@link #ORDER_PRICE_TODAY}, {@link #ORDER_CHANGE} or
+	 *            {@link #ORDER_ABSOLUTE_CHANGE}
+	 * @param directory
+	 *            directory used to find the region of each city
+	 * @param regionPosition
+	 *            position of the region header in the directory or -1 for
+	 *            every region.
+	 * @param now
+	 *            current time in milliseconds since epoch
+	 * @param rows
+	 *            receives the ranked table rows. Must be at least as long as
+	 *            the table.
+	 * @return number of ranked rows.
+	 */
+	public int rank(final CityPriceTable table, final int order,
+			final CityDirectory directory, final int regionPosition,
+			final long now, final int[] rows) {
+		final int count = buildKeys(table, order, directory, regionPosition,
+				now);
+		Arrays.sort(keys, 0, count);
+		for (int i = 0; i < count; ++i) {
+			rows[i] = (int) keys[i];
+		}
+		return count;
+	}
+
+	/**
+	 * Ranks the top <code>k</code> cities in the table. This keeps a bounded
+	 * max-heap of the best <code>k</code> keys in place so it costs
+	 * <code>O(n log k)</code> rather than sorting every city.
+	 * 
+	 * @param table
+	 *            price table
+	 * @param order
+	 *            one of {@link #ORDER_PRICE_TODAY}, {@link #ORDER_CHANGE} or
+	 *            {@link #ORDER_ABSOLUTE_CHANGE}
+	 * @param directory
+	 *            directory used to find the region of each city
+	 * @param regionPosition
+	 *            position of the region header in the directory or -1 for
+	 *            every region.
+	 * @param now
+	 *            current time in milliseconds since epoch
+	 * @param k
+	 *            maximum number of rows
+	 * @param rows
+	 *            receives the ranked table rows. Must be at least
+	 *            <code>k</code> long.
+	 * @return number of ranked rows.
+	 */
+	public int topK(final CityPriceTable table, final int order,
+			final CityDirectory directory, final int regionPosition,
+			final long now, final int k, final int[] rows) {
+		final int count = buildKeys(table, order, directory, regionPosition,
+				now);
+		if (k <= 0) {
+			return 0;
+		}
+		int size = 0;
+		for (int i = 0; i < count; ++i) {
+			final long key = keys[i];
+			if (size < k) {
+				// sift up into the heap at the front of the buffer
+				int j = size++;
+				while (j > 0) {
+					final int parent = (j - 1) >>> 1;
+					if (keys[parent] >= key) {
+						break;
+					}
+					keys[j] = keys[parent];
+					j = parent;
+				}
+				keys[j] = key;
+			} else if (key < keys[0]) {
+				siftDown(key, size);
+			}
+		}
+		// removing the largest each time leaves the heap sorted ascending
+		for (int end = size - 1; end > 0; --end) {
+			final long largest = keys[0];
+			siftDown(keys[end], end);
+			keys[end] = largest;
+		}
+		for (int i = 0; i < size; ++i) {
+			rows[i] = (int) keys[i];
+		}
+		return size;
+	}
+
+	/**
+	 * Places the key at the root of the max-heap and moves it down to where it
+	 * belongs.
+	 * 
+	 * @param key
+	 *            key
+	 * @param size
+	 *            heap size
+	 */
+	private void siftDown(final long key, final int size) {
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && keys[child + 1] > keys[child]) {
+				++child;
+			}
+			if (keys[child] <= key) {
+				break;
+			}
+			keys[i] = keys[child];
+			i = child;
+		}
+		keys[i] = key;
+	}
+}
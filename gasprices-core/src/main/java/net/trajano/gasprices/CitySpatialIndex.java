@@ -0,0 +1,403 @@
+package net.trajano.gasprices;
+
+/**
+ * <p>
+ * This is an immutable k-d tree over the city locations used to find the
+ * cities nearest to the device. It is built from a list of entries in the
+ * form <code>id=latitude,longitude</code>.
+ * </p>
+ * <p>
+ * Locations are converted to points on the unit sphere so the straight line
+ * distance between two points increases with the distance along the surface
+ * and there are no special cases at the poles or the date line. The tree is
+ * stored implicitly in arrays: every range of the arrays is split at its
+ * middle element which is the median of the range along the axis for the
+ * depth.
+ * </p>
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class CitySpatialIndex {
+	/**
+	 * State of a nearest-k query. The matches are kept in a bounded max-heap
+	 * ordered by distance so the farthest match is replaced first.
+	 */
+	private static final class Query {
+		private final int capacity;
+
+		private final double[] distances;
+
+		private final int[] points;
+
+		private int size;
+
+		private final double x;
+
+		private final double y;
+
+		private final double z;
+
+		Query(final double[] point, final int capacity) {
+			x = point[0];
+			y = point[1];
+			z = point[2];
+			this.capacity = capacity;
+			distances = new double[capacity];
+			points = new int[capacity];
+		}
+
+		/**
+		 * Adds the point if it is nearer than the farthest match.
+		 * 
+		 * @param point
+		 *            point index
+		 * @param distance
+		 *            squared distance
+		 */
+		void offer(final int point, final double distance) {
+			if (size < capacity) {
+				int i = size++;
+				while (i > 0) {
+					final int parent = (i - 1) >>> 1;
+					if (distances[parent] >= distance) {
+						break;
+					}
+					distances[i] = distances[parent];
+					points[i] = points[parent];
+					i = parent;
+				}
+				distances[i] = distance;
+				points[i] = point;
+			} else if (distance < distances[0]) {
+				siftDown(point, distance);
+			}
+		}
+
+		/**
+		 * Removes the farthest match.
+		 * 
+		 * @return point index of the farthest match.
+		 */
+		int poll() {
+			final int point = points[0];
+			--size;
+			if (size > 0) {
+				siftDown(points[size], distances[size]);
+			}
+			return point;
+		}
+
+		/**
+		 * Places the point at the root of the heap and moves it down to where
+		 * it belongs.
+		 * 
+		 * @param point
+		 *            point index
+		 * @param distance
+		 *            squared distance
+		 */
+		private void siftDown(final int point, final double distance) {
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= size) {
+					break;
+				}
+				if (child + 1 < size && distances[child + 1] > distances[child]) {
+					++child;
+				}
+				if (distances[child] <= distance) {
+					break;
+				}
+				distances[i] = distances[child];
+				points[i] = points[child];
+				i = child;
+			}
+			distances[i] = distance;
+			points[i] = point;
+		}
+
+		/**
+		 * Squared distance of the farthest match or infinity if there are
+		 * fewer than the requested number of matches.
+		 * 
+		 * @return squared distance
+		 */
+		double worst() {
+			if (size < capacity) {
+				return Double.POSITIVE_INFINITY;
+			}
+			return distances[0];
+		}
+	}
+
+	/**
+	 * Number of cities that are requested at first when looking for the
+	 * nearest city that is in the directory. It is increased if none of them
+	 * are in the directory.
+	 */
+	private static final int NEAREST_CANDIDATES = 4;
+
+	private static int[] parseIds(final String[] entries) {
+		final int[] ids = new int[entries.length];
+		for (int i = 0; i < entries.length; ++i) {
+			ids[i] = Integer.parseInt(entries[i].substring(0,
+					entries[i].indexOf('=')));
+		}
+		return ids;
+	}
+
+	private static double[] parseLatitudes(final String[] entries) {
+		final double[] latitudes = new double[entries.length];
+		for (int i = 0; i < entries.length; ++i) {
+			latitudes[i] = Double.parseDouble(entries[i].substring(
+					entries[i].indexOf('=') + 1, entries[i].indexOf(',')));
+		}
+		return latitudes;
+	}
+
+	private static double[] parseLongitudes(final String[] entries) {
+		final double[] longitudes = new double[entries.length];
+		for (int i = 0; i < entries.length; ++i) {
+			longitudes[i] = Double.parseDouble(entries[i].substring(entries[i]
+					.indexOf(',') + 1));
+		}
+		return longitudes;
+	}
+
+	/**
+	 * Converts the location to a point on the unit sphere.
+	 * 
+	 * @param latitude
+	 *            latitude in degrees
+	 * @param longitude
+	 *            longitude in degrees
+	 * @return x, y, z coordinates.
+	 */
+	private static double[] toPoint(final double latitude,
+			final double longitude) {
+		final double phi = Math.toRadians(latitude);
+		final double lambda = Math.toRadians(longitude);
+		return new double[] { Math.cos(phi) * Math.cos(lambda),
+				Math.cos(phi) * Math.sin(lambda), Math.sin(phi) };
+	}
+
+	/**
+	 * Point coordinates in tree order. The coordinates of point
+	 * <code>i</code> are at <code>3 * i</code> to <code>3 * i + 2</code>.
+	 */
+	private final double[] coordinates;
+
+	/**
+	 * City IDs in tree order.
+	 */
+	private final int[] ids;
+
+	/**
+	 * Builds the index from <code>id=latitude,longitude</code> entries.
+	 * 
+	 * @param entries
+	 *            entries
+	 */
+	public CitySpatialIndex(final String[] entries) {
+		this(parseIds(entries), parseLatitudes(entries),
+				parseLongitudes(entries));
+	}
+
+	/**
+	 * Builds the index from parallel arrays.
+	 * 
+	 * @param cityIds
+	 *            city IDs
+	 * @param latitudes
+	 *            latitudes in degrees
+	 * @param longitudes
+	 *            longitudes in degrees
+	 */
+	public CitySpatialIndex(final int[] cityIds, final double[] latitudes,
+			final double[] longitudes) {
+		final int count = cityIds.length;
+		ids = new int[count];
+		System.arraycopy(cityIds, 0, ids, 0, count);
+		coordinates = new double[count * 3];
+		for (int i = 0; i < count; ++i) {
+			final double[] point = toPoint(latitudes[i], longitudes[i]);
+			System.arraycopy(point, 0, coordinates, i * 3, 3);
+		}
+		build(0, count, 0);
+	}
+
+	/**
+	 * Arranges the range so the middle element is the median along the axis
+	 * and does the same for the ranges on either side of it with the next
+	 * axis.
+	 * 
+	 * @param low
+	 *            start of the range inclusive
+	 * @param high
+	 *            end of the range exclusive
+	 * @param axis
+	 *            axis to split on
+	 */
+	private void build(final int low, final int high, final int axis) {
+		if (high - low < 2) {
+			return;
+		}
+		final int mid = (low + high) >>> 1;
+		select(low, high - 1, mid, axis);
+		final int nextAxis = (axis + 1) % 3;
+		build(low, mid, nextAxis);
+		build(mid + 1, high, nextAxis);
+	}
+
+	private double distance(final int point, final Query query) {
+		final double dx = coordinates[point * 3] - query.x;
+		final double dy = coordinates[point * 3 + 1] - query.y;
+		final double dz = coordinates[point * 3 + 2] - query.z;
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	/**
+	 * Finds the city nearest to the location that is in the directory.
+	 * 
+	 * @param latitude
+	 *            latitude in degrees
+	 * @param longitude
+	 *            longitude in degrees
+	 * @param directory
+	 *            directory
+	 * @return city ID or -1 if none of the cities in the index are in the
+	 *         directory.
+	 */
+	public long findNearestCityId(final double latitude,
+			final double longitude, final CityDirectory directory) {
+		int candidates = NEAREST_CANDIDATES;
+		while (true) {
+			final int[] nearest = nearest(latitude, longitude, candidates);
+			for (final int cityId : nearest) {
+				if (directory.contains(cityId)) {
+					return cityId;
+				}
+			}
+			if (nearest.length < candidates) {
+				return -1;
+			}
+			candidates *= 4;
+		}
+	}
+
+	/**
+	 * Finds the cities nearest to the location. This visits
+	 * <code>O(log n)</code> nodes for evenly distributed cities.
+	 * 
+	 * @param latitude
+	 *            latitude in degrees
+	 * @param longitude
+	 *            longitude in degrees
+	 * @param k
+	 *            maximum number of cities to return
+	 * @return city IDs ordered from nearest to farthest.
+	 */
+	public int[] nearest(final double latitude, final double longitude,
+			final int k) {
+		final int capacity = Math.min(k, ids.length);
+		if (capacity <= 0) {
+			return new int[0];
+		}
+		final Query query = new Query(toPoint(latitude, longitude), capacity);
+		search(0, ids.length, 0, query);
+		final int[] result = new int[query.size];
+		for (int i = query.size - 1; i >= 0; --i) {
+			result[i] = ids[query.poll()];
+		}
+		return result;
+	}
+
+	private void search(final int low, final int high, final int axis,
+			final Query query) {
+		if (low >= high) {
+			return;
+		}
+		final int mid = (low + high) >>> 1;
+		query.offer(mid, distance(mid, query));
+		final double q = axis == 0 ? query.x : axis == 1 ? query.y : query.z;
+		final double diff = q - coordinates[mid * 3 + axis];
+		final int nextAxis = (axis + 1) % 3;
+		if (diff < 0) {
+			search(low, mid, nextAxis, query);
+			if (diff * diff < query.worst()) {
+				search(mid + 1, high, nextAxis, query);
+			}
+		} else {
+			search(mid + 1, high, nextAxis, query);
+			if (diff * diff < query.worst()) {
+				search(low, mid, nextAxis, query);
+			}
+		}
+	}
+
+	/**
+	 * Partially sorts the range so the element at <code>k</code> is the one
+	 * that would be there if the range was sorted along the axis.
+	 * 
+	 * @param left
+	 *            start of the range inclusive
+	 * @param right
+	 *            end of the range inclusive
+	 * @param k
+	 *            position to select
+	 * @param axis
+	 *            axis
+	 */
+	private void select(final int left, final int right, final int k,
+			final int axis) {
+		int l = left;
+		int r = right;
+		while (l < r) {
+			final double pivot = coordinates[((l + r) >>> 1) * 3 + axis];
+			int i = l;
+			int j = r;
+			while (i <= j) {
+				while (coordinates[i * 3 + axis] < pivot) {
+					++i;
+				}
+				while (coordinates[j * 3 + axis] > pivot) {
+					--j;
+				}
+				if (i <= j) {
+					swap(i, j);
+					++i;
+					--j;
+				}
+			}
+			if (k <= j) {
+				r = j;
+			} else if (k >= i) {
+				l = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Number of cities in the index.
+	 * 
+	 * @return city count
+	 */
+	public int size() {
+		return ids.length;
+	}
+
+	private void swap(final int i, final int j) {
+		final int id = ids[i];
+		ids[i] = ids[j];
+		ids[j] = id;
+		for (int axis = 0; axis < 3; ++axis) {
+			final double c = coordinates[i * 3 + axis];
+			coordinates[i * 3 + axis] = coordinates[j * 3 + axis];
+			coordinates[j * 3 + axis] = c;
+		}
+	}
+}
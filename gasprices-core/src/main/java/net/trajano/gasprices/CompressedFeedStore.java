@@ -0,0 +1,127 @@
+package net.trajano.gasprices;
+
+import java.io.BufferedInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * <p>
+ * This stores the formatted feed text that is shown in the feed view in a
+ * deflate compressed file rather than the preferences. Keeping it out of the
+ * preferences means the preferences XML that is rewritten on every change and
+ * read on every cold start does not carry a copy of the feed. The feed is
+ * mostly indentation and repeated keys so it compresses well.
+ * </p>
+ * <p>
+ * The text is decompressed as it is read by {@link #open(File)} so only the
+ * part of the feed that is scrolled to needs to be decompressed.
+ * </p>
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class CompressedFeedStore {
+	/**
+	 * Size of the buffers around the file streams.
+	 */
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * Name of the file in the data directory that stores the feed.
+	 */
+	private static final String PERSISTED_FILE_NAME = "feed.json.deflate"; // $NON-NLS-1$
+
+	/**
+	 * Checks if the feed has been stored.
+	 * 
+	 * @param directory
+	 *            data directory
+	 * @return <code>true</code> if the feed has been stored.
+	 */
+	public static boolean exists(final File directory) {
+		return new File(directory, PERSISTED_FILE_NAME).exists();
+	}
+
+	/**
+	 * Opens the stored feed. The text is decompressed as it is read. This
+	 * performs disk access so it should not be called from the main thread.
+	 * 
+	 * @param directory
+	 *            data directory
+	 * @return a reader over the feed text or <code>null</code> if the feed has
+	 *         not been stored. The caller must close it.
+	 * @throws IOException
+	 */
+	public static Reader open(final File directory) throws IOException {
+		try {
+			return new InputStreamReader(new InflaterInputStream(
+					new BufferedInputStream(new FileInputStream(new File(
+							directory, PERSISTED_FILE_NAME)), BUFFER_SIZE)),
+					"UTF-8");
+		} catch (final FileNotFoundException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Creates an {@link ReaderFeedSource.Opener} that opens the stored feed
+	 * using {@link #open(File)}.
+	 * 
+	 * @param directory
+	 *            data directory
+	 * @return the opener.
+	 */
+	public static ReaderFeedSource.Opener opener(final File directory) {
+		return new ReaderFeedSource.Opener() {
+
+			@Override
+			public Reader open() throws IOException {
+				return CompressedFeedStore.open(directory);
+			}
+		};
+	}
+
+	/**
+	 * Stores the feed text compressed with {@link Deflater#BEST_SPEED}. This
+	 * performs disk access so it must not be called from the main thread.
+	 * 
+	 * @param directory
+	 *            data directory
+	 * @param text
+	 *            feed text
+	 */
+	public static void write(final File directory, final String text) {
+		final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			PersistedFile.write(directory, PERSISTED_FILE_NAME,
+					new PersistedFile.Content() {
+
+						@Override
+						public void write(final DataOutputStream out)
+								throws IOException {
+							final Writer writer = new OutputStreamWriter(
+									new DeflaterOutputStream(out, deflater,
+											BUFFER_SIZE), "UTF-8");
+							writer.write(text);
+							writer.close();
+						}
+					});
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private CompressedFeedStore() {
+
+	}
+}
@@ -0,0 +1,440 @@
+package net.trajano.gasprices;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+/**
+ * <p>
+ * This keeps the outcome of the last {@link #CAPACITY} update attempts so
+ * intermittent failures are not lost when the next attempt succeeds. A
+ * failure records the time, the {@link PipelineMetrics} stage, the exception
+ * class, the HTTP status, the latency and an excerpt and hash of the payload
+ * rather than the whole payload.
+ * </p>
+ * <p>
+ * The attempts are kept in parallel primitive ring buffers so appending is
+ * constant time. Successes are kept as well so the failure rate over the
+ * recent attempts can be used to decide when to retry.
+ * </p>
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class FailureLog {
+	/**
+	 * Number of attempts kept.
+	 */
+	public static final int CAPACITY = 64;
+
+	/**
+	 * Maximum number of characters of the payload that are kept.
+	 */
+	public static final int EXCERPT_LENGTH = 160;
+
+	/**
+	 * Process wide instance.
+	 */
+	private static volatile FailureLog instance;
+
+	/**
+	 * Name of the file in the data directory that stores the log.
+	 */
+	private static final String PERSISTED_FILE_NAME = "failures.bin"; // $NON-NLS-1$
+
+	/**
+	 * Format version of {@link #PERSISTED_FILE_NAME}.
+	 */
+	private static final int PERSISTED_VERSION = 1;
+
+	/**
+	 * Stage recorded for a successful attempt.
+	 */
+	public static final int SUCCESS = -1;
+
+	/**
+	 * Gets the log. On the first call it is read from
+	 * {@link #PERSISTED_FILE_NAME}. This performs disk access on the first call
+	 * so it should not be called from the main thread.
+	 * 
+	 * @param directory
+	 *            data directory
+	 * @return the log.
+	 */
+	public static FailureLog getInstance(final File directory) {
+		FailureLog log = instance;
+		if (log == null) {
+			synchronized (FailureLog.class) {
+				log = instance;
+				if (log == null) {
+					log = restore(directory);
+					instance = log;
+				}
+			}
+		}
+		return log;
+	}
+
+	/**
+	 * Reads the log from {@link #PERSISTED_FILE_NAME}. The log is empty if it
+	 * was not persisted or is not readable. This performs disk access so it
+	 * should not be called from the main thread.
+	 * 
+	 * @param directory
+	 *            data directory the log is read from and written to
+	 * @return the log.
+	 */
+	public static FailureLog restore(final File directory) {
+		final FailureLog log = new FailureLog(directory);
+		try {
+			final DataInputStream in = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(new File(
+							directory, PERSISTED_FILE_NAME))));
+			try {
+				if (in.readInt() != PERSISTED_VERSION) {
+					return log;
+				}
+				final long attemptCount = in.readLong();
+				final int size = in.readInt();
+				log.attemptCount = attemptCount - size;
+				for (int age = size - 1; age >= 0; --age) {
+					final long time = in.readLong();
+					final int stage = in.readByte();
+					final int httpStatus = in.readShort();
+					final int latencyMillis = in.readInt();
+					if (stage == SUCCESS) {
+						log.append(time, stage, httpStatus, latencyMillis,
+								null, 0, 0, null);
+					} else {
+						log.append(time, stage, httpStatus, latencyMillis,
+								in.readUTF(), in.readInt(), in.readInt(),
+								in.readUTF());
+					}
+				}
+			} finally {
+				in.close();
+			}
+		} catch (final FileNotFoundException e) {
+			return log;
+		} catch (final IOException e) {
+			GasPricesLog.e(e.getMessage());
+			return new FailureLog(directory);
+		}
+		return log;
+	}
+
+	/**
+	 * Number of attempts recorded. This is not limited to {@link #CAPACITY}.
+	 */
+	private long attemptCount;
+
+	/**
+	 * Data directory the log is persisted to.
+	 */
+	private final File directory;
+
+	/**
+	 * Payload excerpts of the failures.
+	 */
+	private final String[] excerpts = new String[CAPACITY];
+
+	/**
+	 * Exception class names of the failures.
+	 */
+	private final String[] failureClassNames = new String[CAPACITY];
+
+	/**
+	 * HTTP status of the attempts or 0 if no response was received.
+	 */
+	private final short[] httpStatuses = new short[CAPACITY];
+
+	/**
+	 * Latency of the attempts in milliseconds.
+	 */
+	private final int[] latencies = new int[CAPACITY];
+
+	/**
+	 * {@link String#hashCode()} of the whole payload of the failures.
+	 */
+	private final int[] payloadHashes = new int[CAPACITY];
+
+	/**
+	 * Length of the whole payload of the failures.
+	 */
+	private final int[] payloadLengths = new int[CAPACITY];
+
+	/**
+	 * Stages of the attempts, {@link #SUCCESS} if the attempt succeeded.
+	 */
+	private final byte[] stages = new byte[CAPACITY];
+
+	/**
+	 * Times of the attempts in milliseconds since epoch.
+	 */
+	private final long[] times = new long[CAPACITY];
+
+	private FailureLog(final File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Adds an attempt, replacing the oldest one if the log is full.
+	 */
+	private void append(final long time, final int stage,
+			final int httpStatus, final long latencyMillis,
+			final String failureClassName, final int payloadLength,
+			final int payloadHash, final String excerpt) {
+		final int i = (int) (attemptCount % CAPACITY);
+		times[i] = time;
+		stages[i] = (byte) stage;
+		httpStatuses[i] = (short) httpStatus;
+		latencies[i] = (int) Math.min(Integer.MAX_VALUE, latencyMillis);
+		failureClassNames[i] = failureClassName;
+		payloadLengths[i] = payloadLength;
+		payloadHashes[i] = payloadHash;
+		excerpts[i] = excerpt;
+		++attemptCount;
+	}
+
+	/**
+	 * Number of attempts recorded since the log was created.
+	 * 
+	 * @return attempt count
+	 */
+	public synchronized long getAttemptCount() {
+		return attemptCount;
+	}
+
+	/**
+	 * Number of failures since the last successful attempt that is kept.
+	 * 
+	 * @return consecutive failure count
+	 */
+	public synchronized int getConsecutiveFailureCount() {
+		final int size = size();
+		int count = 0;
+		while (count < size && stages[index(count)] != SUCCESS) {
+			++count;
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the exception class name of an attempt.
+	 * 
+	 * @param age
+	 *            0 for the latest attempt up to {@link #size()} - 1 for the
+	 *            oldest that is kept
+	 * @return class name or <code>null</code> if the attempt succeeded
+	 */
+	public synchronized String getFailureClassName(final int age) {
+		return failureClassNames[index(age)];
+	}
+
+	/**
+	 * Fraction of the recent attempts that failed.
+	 * 
+	 * @param attempts
+	 *            number of recent attempts to consider. Only the attempts that
+	 *            are kept are considered.
+	 * @return failure rate from 0 to 1, 0 if there are no attempts
+	 */
+	public synchronized float getFailureRate(final int attempts) {
+		final int considered = Math.min(attempts, size());
+		if (considered <= 0) {
+			return 0;
+		}
+		int failures = 0;
+		for (int age = 0; age < considered; ++age) {
+			if (stages[index(age)] != SUCCESS) {
+				++failures;
+			}
+		}
+		return (float) failures / considered;
+	}
+
+	/**
+	 * Gets the HTTP status of an attempt.
+	 * 
+	 * @param age
+	 *            0 for the latest attempt
+	 * @return HTTP status or 0 if it is not known
+	 */
+	public synchronized int getHttpStatus(final int age) {
+		return httpStatuses[index(age)];
+	}
+
+	/**
+	 * Gets the latency of an attempt.
+	 * 
+	 * @param age
+	 *            0 for the latest attempt
+	 * @return latency in milliseconds
+	 */
+	public synchronized int getLatencyMillis(final int age) {
+		return latencies[index(age)];
+	}
+
+	/**
+	 * Gets the start of the payload of a failure.
+	 * 
+	 * @param age
+	 *            0 for the latest attempt
+	 * @return up to {@link #EXCERPT_LENGTH} characters of the payload or
+	 *         <code>null</code> if the attempt succeeded
+	 */
+	public synchronized String getPayloadExcerpt(final int age) {
+		return excerpts[index(age)];
+	}
+
+	/**
+	 * Gets the hash of the payload of a failure. Failures with the same
+	 * payload have the same hash.
+	 * 
+	 * @param age
+	 *            0 for the latest attempt
+	 * @return {@link String#hashCode()} of the whole payload or 0 if the
+	 *         attempt succeeded
+	 */
+	public synchronized int getPayloadHash(final int age) {
+		return payloadHashes[index(age)];
+	}
+
+	/**
+	 * Gets the length of the payload of a failure.
+	 * 
+	 * @param age
+	 *            0 for the latest attempt
+	 * @return length of the whole payload in characters
+	 */
+	public synchronized int getPayloadLength(final int age) {
+		return payloadLengths[index(age)];
+	}
+
+	/**
+	 * Gets the stage of an attempt.
+	 * 
+	 * @param age
+	 *            0 for the latest attempt
+	 * @return {@link PipelineMetrics} stage that failed or {@link #SUCCESS}
+	 */
+	public synchronized int getStage(final int age) {
+		return stages[index(age)];
+	}
+
+	/**
+	 * Gets the time of an attempt.
+	 * 
+	 * @param age
+	 *            0 for the latest attempt
+	 * @return time in milliseconds since epoch
+	 */
+	public synchronized long getTime(final int age) {
+		return times[index(age)];
+	}
+
+	/**
+	 * Gets the position of an attempt in the ring buffers.
+	 * 
+	 * @param age
+	 *            0 for the latest attempt
+	 * @return index
+	 */
+	private int index(final int age) {
+		if (age < 0 || age >= size()) {
+			throw new IndexOutOfBoundsException("age " + age);
+		}
+		return (int) ((attemptCount - 1 - age) % CAPACITY);
+	}
+
+	/**
+	 * Writes the log to {@link #PERSISTED_FILE_NAME}.
+	 */
+	private void persist() {
+		PersistedFile.write(directory, PERSISTED_FILE_NAME,
+				new PersistedFile.Content() {
+
+					@Override
+					public void write(final DataOutputStream out)
+							throws IOException {
+						final int size = size();
+						out.writeInt(PERSISTED_VERSION);
+						out.writeLong(attemptCount);
+						out.writeInt(size);
+						for (int age = size - 1; age >= 0; --age) {
+							final int i = index(age);
+							out.writeLong(times[i]);
+							out.writeByte(stages[i]);
+							out.writeShort(httpStatuses[i]);
+							out.writeInt(latencies[i]);
+							if (stages[i] != SUCCESS) {
+								out.writeUTF(failureClassNames[i]);
+								out.writeInt(payloadLengths[i]);
+								out.writeInt(payloadHashes[i]);
+								out.writeUTF(excerpts[i]);
+							}
+						}
+					}
+				});
+	}
+
+	/**
+	 * Records a failed attempt and persists the log. If the error is a
+	 * {@link FeedException} its stage, HTTP status and payload are recorded,
+	 * otherwise the stage is {@link PipelineMetrics#STAGE_UPDATE}. This
+	 * performs disk access so it must not be called from the main thread.
+	 * 
+	 * @param time
+	 *            time of the attempt in milliseconds since epoch
+	 * @param latencyMillis
+	 *            latency of the attempt in milliseconds
+	 * @param error
+	 *            error
+	 */
+	public synchronized void recordFailure(final long time,
+			final long latencyMillis, final IOException error) {
+		if (error instanceof FeedException) {
+			final FeedException feedException = (FeedException) error;
+			final String payload = feedException.getPayload();
+			append(time, feedException.getStage(),
+					feedException.getHttpStatus(), latencyMillis,
+					feedException.getFailureClassName(), payload.length(),
+					payload.hashCode(), payload.substring(0,
+							Math.min(EXCERPT_LENGTH, payload.length())));
+		} else {
+			append(time, PipelineMetrics.STAGE_UPDATE, 0, latencyMillis, error
+					.getClass().getName(), 0, 0, "");
+		}
+		persist();
+	}
+
+	/**
+	 * Records a successful attempt and persists the log. This performs disk
+	 * access so it must not be called from the main thread.
+	 * 
+	 * @param time
+	 *            time of the attempt in milliseconds since epoch
+	 * @param latencyMillis
+	 *            latency of the attempt in milliseconds
+	 */
+	public synchronized void recordSuccess(final long time,
+			final long latencyMillis) {
+		append(time, SUCCESS, HttpURLConnection.HTTP_OK, latencyMillis, null,
+				0, 0, null);
+		persist();
+	}
+
+	/**
+	 * Number of attempts that are kept.
+	 * 
+	 * @return attempt count, at most {@link #CAPACITY}
+	 */
+	public synchronized int size() {
+		return (int) Math.min(CAPACITY, attemptCount);
+	}
+}
@@ -0,0 +1,220 @@
+package net.trajano.gasprices;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * <p>
+ * This decodes the city records of the <code>gasprices</code> array into
+ * columns. The array is split into chunks that are decoded in parallel. Each
+ * chunk writes to its own range of the columns, so the result is in feed
+ * order and is the same for any number of threads.
+ * </p>
+ * <p>
+ * The records are only read while decoding, which is safe to do from several
+ * threads as long as nothing modifies the array.
+ * </p>
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class FeedDecoder {
+	/**
+	 * Number of chunks per thread. More than one evens out chunks that take
+	 * longer.
+	 */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	/**
+	 * Smallest chunk. Feeds smaller than this are decoded on the calling
+	 * thread.
+	 */
+	private static final int MIN_CHUNK_SIZE = 512;
+
+	/**
+	 * Number of threads to use by default. This is the number of available
+	 * processors.
+	 * 
+	 * @return thread count
+	 */
+	public static int getDefaultThreadCount() {
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * City data JSON string of each record.
+	 */
+	private final String[] cityData;
+
+	private final int[] cityIds;
+
+	/**
+	 * Display name of each record.
+	 */
+	private final String[] cityNames;
+
+	private final JSONArray gasPrices;
+
+	private final long[] priceDates;
+
+	private final float[] priceDifferences;
+
+	private final float[] regularPrices;
+
+	/**
+	 * Constructs the decoder.
+	 * 
+	 * @param gasPrices
+	 *            <code>gasprices</code> array of the feed
+	 */
+	public FeedDecoder(final JSONArray gasPrices) {
+		this.gasPrices = gasPrices;
+		final int count = gasPrices.length();
+		cityIds = new int[count];
+		cityNames = new String[count];
+		cityData = new String[count];
+		regularPrices = new float[count];
+		priceDifferences = new float[count];
+		priceDates = new long[count];
+	}
+
+	/**
+	 * Decodes the records.
+	 * 
+	 * @param threadCount
+	 *            maximum number of threads
+	 * @throws JSONException
+	 *             if a record is not valid
+	 */
+	public void decode(final int threadCount) throws JSONException {
+		final int count = cityIds.length;
+		final int chunkSize = Math.max(MIN_CHUNK_SIZE, (count + threadCount
+				* CHUNKS_PER_THREAD - 1)
+				/ (threadCount * CHUNKS_PER_THREAD));
+		if (threadCount <= 1 || count <= chunkSize) {
+			decodeRange(0, count);
+			return;
+		}
+		final ExecutorService executor = Executors
+				.newFixedThreadPool(threadCount);
+		try {
+			final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (int start = 0; start < count; start += chunkSize) {
+				final int chunkStart = start;
+				final int chunkEnd = Math.min(count, start + chunkSize);
+				futures.add(executor.submit(new Callable<Void>() {
+
+					@Override
+					public Void call() throws JSONException {
+						decodeRange(chunkStart, chunkEnd);
+						return null;
+					}
+				}));
+			}
+			for (final Future<Void> future : futures) {
+				future.get();
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof JSONException) {
+				throw (JSONException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Decodes a range of records.
+	 * 
+	 * @param start
+	 *            first record
+	 * @param end
+	 *            one past the last record
+	 * @throws JSONException
+	 *             if a record is not valid
+	 */
+	private void decodeRange(final int start, final int end)
+			throws JSONException {
+		for (int i = start; i < end; ++i) {
+			final JSONObject record = gasPrices.getJSONObject(i);
+			final CityInfo cityInfo = new CityInfo(record);
+			cityIds[i] = (int) record.getLong("city_id");
+			cityNames[i] = cityInfo.getName();
+			cityData[i] = record.toString();
+			regularPrices[i] = cityInfo.isTomorrowsGasPriceAvailable() ? cityInfo
+					.getTomorrowsGasPrice() : cityInfo.getCurrentGasPrice();
+			priceDifferences[i] = (float) cityInfo.getPriceDifference();
+			priceDates[i] = cityInfo.getPriceDate().getTime();
+		}
+	}
+
+	/**
+	 * Number of records.
+	 * 
+	 * @return record count
+	 */
+	public int getCityCount() {
+		return cityIds.length;
+	}
+
+	/**
+	 * Gets the JSON string of the record.
+	 * 
+	 * @param i
+	 *            record index
+	 * @return city data
+	 */
+	public String getCityData(final int i) {
+		return cityData[i];
+	}
+
+	/**
+	 * Gets the city ID of the record.
+	 * 
+	 * @param i
+	 *            record index
+	 * @return city ID
+	 */
+	public int getCityId(final int i) {
+		return cityIds[i];
+	}
+
+	/**
+	 * Gets the display name of the record.
+	 * 
+	 * @param i
+	 *            record index
+	 * @return city name
+	 */
+	public String getCityName(final int i) {
+		return cityNames[i];
+	}
+
+	/**
+	 * Builds the price table from the decoded records.
+	 * 
+	 * @return the price table.
+	 */
+	public CityPriceTable toPriceTable() {
+		final CityPriceTable.Builder builder = new CityPriceTable.Builder(
+				cityIds.length);
+		for (int i = 0; i < cityIds.length; ++i) {
+			builder.add(cityIds[i], regularPrices[i], priceDifferences[i],
+					priceDates[i]);
+		}
+		return builder.build();
+	}
+}
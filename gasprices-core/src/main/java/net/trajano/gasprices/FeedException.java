@@ -0,0 +1,91 @@
+package net.trajano.gasprices;
+
+import java.io.IOException;
+
+/**
+ * This is thrown by {@link GetDataUtil} when getting the feed fails. It
+ * records the {@link PipelineMetrics} stage that failed, the HTTP status if
+ * one was received and the payload if one was read so the failure can be
+ * added to the {@link FailureLog} without downloading the feed again.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class FeedException extends IOException {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * HTTP status or 0 if no response was received.
+	 */
+	private final int httpStatus;
+
+	/**
+	 * Payload that was read or an empty string.
+	 */
+	private final String payload;
+
+	/**
+	 * Stage that failed.
+	 */
+	private final int stage;
+
+	/**
+	 * Constructs the exception.
+	 * 
+	 * @param message
+	 *            message
+	 * @param cause
+	 *            cause, may be <code>null</code>
+	 * @param stage
+	 *            {@link PipelineMetrics} stage that failed
+	 * @param httpStatus
+	 *            HTTP status or 0 if no response was received
+	 * @param payload
+	 *            payload that was read, may be <code>null</code>
+	 */
+	public FeedException(final String message, final Throwable cause,
+			final int stage, final int httpStatus, final String payload) {
+		super(message, cause);
+		this.stage = stage;
+		this.httpStatus = httpStatus;
+		this.payload = payload == null ? "" : payload;
+	}
+
+	/**
+	 * Name of the class of the exception that caused the failure. This is the
+	 * class of the cause if there is one.
+	 * 
+	 * @return class name
+	 */
+	public String getFailureClassName() {
+		return getCause() == null ? getClass().getName() : getCause()
+				.getClass().getName();
+	}
+
+	/**
+	 * HTTP status.
+	 * 
+	 * @return HTTP status or 0 if no response was received.
+	 */
+	public int getHttpStatus() {
+		return httpStatus;
+	}
+
+	/**
+	 * Payload that was read.
+	 * 
+	 * @return payload or an empty string.
+	 */
+	public String getPayload() {
+		return payload;
+	}
+
+	/**
+	 * Stage that failed.
+	 * 
+	 * @return {@link PipelineMetrics} stage
+	 */
+	public int getStage() {
+		return stage;
+	}
+}
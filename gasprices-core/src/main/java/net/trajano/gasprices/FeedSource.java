@@ -0,0 +1,74 @@
+package net.trajano.gasprices;
+
+/**
+ * This provides the feed text to {@link FeedLineAdapter} one row at a time.
+ * Rows are indexed incrementally so the amount of work done up front does
+ * not depend on the size of the feed. Implementations must be thread safe as
+ * rows are read from a background thread for highlighting.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public interface FeedSource {
+	/**
+	 * Maximum number of characters in a row. Longer lines are split into
+	 * multiple rows so an unformatted feed that is on a single line still
+	 * pages.
+	 */
+	int MAX_ROW_LENGTH = 200;
+
+	/**
+	 * Finds the first row at or after the given row that contains the text
+	 * ignoring case. This will index more rows as needed.
+	 * 
+	 * @param text
+	 *            text to search for
+	 * @param fromRow
+	 *            row to start from
+	 * @return the row or -1 if not found.
+	 */
+	int find(String text, int fromRow);
+
+	/**
+	 * Returns the text of an indexed row.
+	 * 
+	 * @param row
+	 *            row number, must be less than {@link #getRowCount()}.
+	 * @return the row text without the line terminator.
+	 */
+	String getRow(int row);
+
+	/**
+	 * Number of rows that have been indexed so far.
+	 * 
+	 * @return
+	 */
+	int getRowCount();
+
+	/**
+	 * Indexes up to the specified number of additional rows.
+	 * 
+	 * @param maxRows
+	 *            maximum number of rows to index.
+	 * @return the number of rows that were indexed.
+	 */
+	int indexMore(int maxRows);
+
+	/**
+	 * Checks if all the rows have been indexed.
+	 * 
+	 * @return
+	 */
+	boolean isComplete();
+
+	/**
+	 * Returns the text of an indexed row only if it is available without
+	 * reading the feed so it can be called from the UI thread.
+	 *
+	 * @param row
+	 *            row number, must be less than {@link #getRowCount()}.
+	 * @return the row text without the line terminator or <code>null</code>
+	 *         if it would have to be read.
+	 */
+	String peekRow(int row);
+}
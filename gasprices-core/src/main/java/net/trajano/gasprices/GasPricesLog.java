@@ -0,0 +1,441 @@
+package net.trajano.gasprices;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>
+ * This is the logging facade for the application. Messages are parameterized
+ * with <code>{}</code> placeholders that are only replaced when the level is
+ * enabled, so a disabled call does not build a string. The overloads take up
+ * to three arguments without varargs and the <code>long</code> overloads do
+ * not box, so a disabled call does not allocate either. When more arguments
+ * are needed the call should be guarded with {@link #isLoggable(int)}.
+ * </p>
+ * <p>
+ * Levels below {@link #MIN_LEVEL} are removed at compile time. The level
+ * above that is set at run time with {@link #setLevel(int)}. Messages are
+ * written to {@link java.util.logging} until another {@link Sink} is set.
+ * </p>
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class GasPricesLog {
+	/**
+	 * Writes to a {@link java.util.logging.Logger}.
+	 */
+	private static final class LoggerSink implements Sink {
+		private final Logger logger = Logger.getLogger(TAG);
+
+		@Override
+		public void write(final int level, final String message,
+				final Throwable throwable) {
+			final Level loggerLevel;
+			if (level >= ERROR) {
+				loggerLevel = Level.SEVERE;
+			} else if (level >= WARN) {
+				loggerLevel = Level.WARNING;
+			} else if (level >= INFO) {
+				loggerLevel = Level.INFO;
+			} else {
+				loggerLevel = Level.FINE;
+			}
+			logger.log(loggerLevel, message, throwable);
+		}
+	}
+
+	/**
+	 * Receives the messages that are enabled.
+	 */
+	public interface Sink {
+		/**
+		 * Writes a message.
+		 * 
+		 * @param level
+		 *            level
+		 * @param message
+		 *            formatted message
+		 * @param throwable
+		 *            throwable, may be <code>null</code>
+		 */
+		void write(int level, String message, Throwable throwable);
+	}
+
+	/**
+	 * Debug level. The value matches <code>android.util.Log.DEBUG</code>.
+	 */
+	public static final int DEBUG = 3;
+
+	/**
+	 * Error level. The value matches <code>android.util.Log.ERROR</code>.
+	 */
+	public static final int ERROR = 6;
+
+	/**
+	 * Info level. The value matches <code>android.util.Log.INFO</code>.
+	 */
+	public static final int INFO = 4;
+
+	/**
+	 * Current level.
+	 */
+	private static volatile int level = INFO;
+
+	/**
+	 * Lowest level that is compiled in. Raising this to {@link #INFO} makes the
+	 * debug calls empty so they are removed by the compiler.
+	 */
+	public static final int MIN_LEVEL = DEBUG;
+
+	/**
+	 * Placeholder for the arguments.
+	 */
+	private static final String PLACEHOLDER = "{}";
+
+	/**
+	 * Current sink.
+	 */
+	private static volatile Sink sink = new LoggerSink();
+
+	/**
+	 * Tag of the messages.
+	 */
+	public static final String TAG = "GasPrices";
+
+	/**
+	 * Warning level. The value matches <code>android.util.Log.WARN</code>.
+	 */
+	public static final int WARN = 5;
+
+	/**
+	 * Logs a debug message.
+	 * 
+	 * @param message
+	 *            message
+	 */
+	public static void d(final String message) {
+		if (DEBUG >= MIN_LEVEL && DEBUG >= level) {
+			sink.write(DEBUG, message, null);
+		}
+	}
+
+	/**
+	 * Logs a debug message.
+	 * 
+	 * @param format
+	 *            message with a placeholder
+	 * @param arg
+	 *            argument
+	 */
+	public static void d(final String format, final long arg) {
+		if (DEBUG >= MIN_LEVEL && DEBUG >= level) {
+			write(DEBUG, format, 1, Long.valueOf(arg), null, null, null);
+		}
+	}
+
+	/**
+	 * Logs a debug message.
+	 * 
+	 * @param format
+	 *            message with two placeholders
+	 * @param arg1
+	 *            first argument
+	 * @param arg2
+	 *            second argument
+	 */
+	public static void d(final String format, final long arg1, final long arg2) {
+		if (DEBUG >= MIN_LEVEL && DEBUG >= level) {
+			write(DEBUG, format, 2, Long.valueOf(arg1), Long.valueOf(arg2),
+					null, null);
+		}
+	}
+
+	/**
+	 * Logs a debug message.
+	 * 
+	 * @param format
+	 *            message with three placeholders
+	 * @param arg1
+	 *            first argument
+	 * @param arg2
+	 *            second argument
+	 * @param arg3
+	 *            third argument
+	 */
+	public static void d(final String format, final long arg1,
+			final long arg2, final long arg3) {
+		if (DEBUG >= MIN_LEVEL && DEBUG >= level) {
+			write(DEBUG, format, 3, Long.valueOf(arg1), Long.valueOf(arg2),
+					Long.valueOf(arg3), null);
+		}
+	}
+
+	/**
+	 * Logs a debug message.
+	 * 
+	 * @param format
+	 *            message with a placeholder
+	 * @param arg
+	 *            argument
+	 */
+	public static void d(final String format, final Object arg) {
+		if (DEBUG >= MIN_LEVEL && DEBUG >= level) {
+			write(DEBUG, format, 1, arg, null, null, null);
+		}
+	}
+
+	/**
+	 * Logs a debug message.
+	 * 
+	 * @param format
+	 *            message with two placeholders
+	 * @param arg1
+	 *            first argument
+	 * @param arg2
+	 *            second argument
+	 */
+	public static void d(final String format, final Object arg1,
+			final Object arg2) {
+		if (DEBUG >= MIN_LEVEL && DEBUG >= level) {
+			write(DEBUG, format, 2, arg1, arg2, null, null);
+		}
+	}
+
+	/**
+	 * Logs an error message.
+	 * 
+	 * @param message
+	 *            message
+	 */
+	public static void e(final String message) {
+		if (ERROR >= MIN_LEVEL && ERROR >= level) {
+			sink.write(ERROR, message, null);
+		}
+	}
+
+	/**
+	 * Logs an error message.
+	 * 
+	 * @param format
+	 *            message with a placeholder
+	 * @param arg
+	 *            argument
+	 */
+	public static void e(final String format, final Object arg) {
+		if (ERROR >= MIN_LEVEL && ERROR >= level) {
+			write(ERROR, format, 1, arg, null, null, null);
+		}
+	}
+
+	/**
+	 * Logs an error message.
+	 * 
+	 * @param format
+	 *            message with two placeholders
+	 * @param arg1
+	 *            first argument
+	 * @param arg2
+	 *            second argument
+	 */
+	public static void e(final String format, final Object arg1,
+			final Object arg2) {
+		if (ERROR >= MIN_LEVEL && ERROR >= level) {
+			write(ERROR, format, 2, arg1, arg2, null, null);
+		}
+	}
+
+	/**
+	 * Logs an error message with the throwable.
+	 * 
+	 * @param message
+	 *            message
+	 * @param throwable
+	 *            throwable
+	 */
+	public static void e(final String message, final Throwable throwable) {
+		if (ERROR >= MIN_LEVEL && ERROR >= level) {
+			sink.write(ERROR, message, throwable);
+		}
+	}
+
+	/**
+	 * Gets where the messages are written.
+	 * 
+	 * @return the sink.
+	 */
+	public static Sink getSink() {
+		return sink;
+	}
+
+	/**
+	 * Logs an info message.
+	 * 
+	 * @param message
+	 *            message
+	 */
+	public static void i(final String message) {
+		if (INFO >= MIN_LEVEL && INFO >= level) {
+			sink.write(INFO, message, null);
+		}
+	}
+
+	/**
+	 * Logs an info message.
+	 * 
+	 * @param format
+	 *            message with a placeholder
+	 * @param arg
+	 *            argument
+	 */
+	public static void i(final String format, final long arg) {
+		if (INFO >= MIN_LEVEL && INFO >= level) {
+			write(INFO, format, 1, Long.valueOf(arg), null, null, null);
+		}
+	}
+
+	/**
+	 * Logs an info message.
+	 * 
+	 * @param format
+	 *            message with two placeholders
+	 * @param arg1
+	 *            first argument
+	 * @param arg2
+	 *            second argument
+	 */
+	public static void i(final String format, final long arg1, final long arg2) {
+		if (INFO >= MIN_LEVEL && INFO >= level) {
+			write(INFO, format, 2, Long.valueOf(arg1), Long.valueOf(arg2),
+					null, null);
+		}
+	}
+
+	/**
+	 * Logs an info message.
+	 * 
+	 * @param format
+	 *            message with a placeholder
+	 * @param arg
+	 *            argument
+	 */
+	public static void i(final String format, final Object arg) {
+		if (INFO >= MIN_LEVEL && INFO >= level) {
+			write(INFO, format, 1, arg, null, null, null);
+		}
+	}
+
+	/**
+	 * Checks if a level is enabled. This is used to guard calls that need more
+	 * arguments than the overloads take.
+	 * 
+	 * @param messageLevel
+	 *            level
+	 * @return <code>true</code> if messages of the level are written.
+	 */
+	public static boolean isLoggable(final int messageLevel) {
+		return messageLevel >= MIN_LEVEL && messageLevel >= level;
+	}
+
+	/**
+	 * Sets the lowest level that is written.
+	 * 
+	 * @param level
+	 *            level
+	 */
+	public static void setLevel(final int level) {
+		GasPricesLog.level = level;
+	}
+
+	/**
+	 * Sets where the messages are written.
+	 * 
+	 * @param sink
+	 *            sink
+	 */
+	public static void setSink(final Sink sink) {
+		GasPricesLog.sink = sink;
+	}
+
+	/**
+	 * Logs a warning.
+	 * 
+	 * @param message
+	 *            message
+	 */
+	public static void w(final String message) {
+		if (WARN >= MIN_LEVEL && WARN >= level) {
+			sink.write(WARN, message, null);
+		}
+	}
+
+	/**
+	 * Logs a warning.
+	 * 
+	 * @param format
+	 *            message with a placeholder
+	 * @param arg
+	 *            argument
+	 */
+	public static void w(final String format, final Object arg) {
+		if (WARN >= MIN_LEVEL && WARN >= level) {
+			write(WARN, format, 1, arg, null, null, null);
+		}
+	}
+
+	/**
+	 * Logs a warning with the throwable.
+	 * 
+	 * @param message
+	 *            message
+	 * @param throwable
+	 *            throwable
+	 */
+	public static void w(final String message, final Throwable throwable) {
+		if (WARN >= MIN_LEVEL && WARN >= level) {
+			sink.write(WARN, message, throwable);
+		}
+	}
+
+	/**
+	 * Replaces the placeholders with the arguments and writes the message.
+	 * Only called when the level is enabled. Placeholders without an argument
+	 * are kept.
+	 * 
+	 * @param messageLevel
+	 *            level
+	 * @param format
+	 *            message with placeholders
+	 * @param argCount
+	 *            number of arguments
+	 * @param arg1
+	 *            first argument
+	 * @param arg2
+	 *            second argument
+	 * @param arg3
+	 *            third argument
+	 * @param throwable
+	 *            throwable, may be <code>null</code>
+	 */
+	private static void write(final int messageLevel, final String format,
+			final int argCount, final Object arg1, final Object arg2,
+			final Object arg3, final Throwable throwable) {
+		final Object[] args = { arg1, arg2, arg3 };
+		final StringBuilder b = new StringBuilder(format.length() + 32);
+		int start = 0;
+		for (int i = 0; i < argCount; ++i) {
+			final int placeholder = format.indexOf(PLACEHOLDER, start);
+			if (placeholder == -1) {
+				break;
+			}
+			b.append(format, start, placeholder).append(args[i]);
+			start = placeholder + PLACEHOLDER.length();
+		}
+		b.append(format, start, format.length());
+		sink.write(messageLevel, b.toString(), throwable);
+	}
+
+	private GasPricesLog() {
+
+	}
+}
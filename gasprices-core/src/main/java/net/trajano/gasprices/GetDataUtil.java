@@ -0,0 +1,227 @@
+package net.trajano.gasprices;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+public final class GetDataUtil {
+	/**
+	 * Size of the buffer used to read the response.
+	 */
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * Location of the gas price data.
+	 */
+	private static final String FEED_URL = "http://www.tomorrowsgaspricetoday.com/mobile/json_mobile_data.php"; // $NON-NLS-1$
+
+	/**
+	 * Connect and read timeout in milliseconds.
+	 */
+	private static final int TIMEOUT_MILLIS = 30000;
+
+	/**
+	 * Copies the stream into the buffer.
+	 * 
+	 * @param in
+	 *            stream
+	 * @param buffer
+	 *            buffer
+	 * @throws IOException
+	 */
+	private static void copy(final InputStream in,
+			final ByteArrayOutputStream buffer) throws IOException {
+		final byte[] b = new byte[BUFFER_SIZE];
+		int n = in.read(b);
+		while (n != -1) {
+			buffer.write(b, 0, n);
+			n = in.read(b);
+		}
+	}
+
+	/**
+	 * This will connect to the Internet to get the gas price data and return
+	 * the parsed {@link JSONObject}. This will throw an {@link IOException} if
+	 * there is an error parsing the data because there isn't anything that can
+	 * be done if there is a parse error, but the {@link IOException} is still
+	 * thrown for any communication errors.
+	 * 
+	 * @return a parsed JSONObject.
+	 * @throws IOException
+	 *             I/O error.
+	 */
+	public static JSONObject getGasPricesDataFromInternet() throws IOException {
+		return getGasPricesDataFromInternet(new URL(FEED_URL));
+	}
+
+	/**
+	 * This gets the gas price data from the specified location rather than
+	 * the site. This is used to test against a local server.
+	 * 
+	 * @param url
+	 *            location of the data
+	 * @return a parsed JSONObject.
+	 * @throws IOException
+	 *             I/O error.
+	 */
+	public static JSONObject getGasPricesDataFromInternet(final URL url)
+			throws IOException {
+		return parseGasPricesData(getRawGasPricesDataFromInternet(url));
+	}
+
+	/**
+	 * This connects to the site to get the data as is. Used for the situation
+	 * where an error had occured.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public static String getRawGasPricesDataFromInternet() throws IOException {
+		return getRawGasPricesDataFromInternet(new URL(FEED_URL));
+	}
+
+	/**
+	 * This gets the data as is from the specified location. The first
+	 * character of the data is skipped since it breaks the parsing. Responses
+	 * other than 200, responses shorter than their content length and empty
+	 * responses are treated as errors.
+	 * 
+	 * @param url
+	 *            location of the data
+	 * @return the data without the first character.
+	 * @throws IOException
+	 */
+	public static String getRawGasPricesDataFromInternet(final URL url)
+			throws IOException {
+		final PipelineMetrics metrics = PipelineMetrics.getInstance();
+		final HttpURLConnection urlConnection = (HttpURLConnection) url
+				.openConnection();
+		try {
+			urlConnection.setConnectTimeout(TIMEOUT_MILLIS);
+			urlConnection.setReadTimeout(TIMEOUT_MILLIS);
+			// Asking for gzip explicitly means it has to be decompressed here
+			// on every platform.
+			urlConnection.setRequestProperty("Accept-Encoding", "gzip");
+			final long connectStart = PipelineMetrics.start();
+			try {
+				urlConnection.connect();
+			} catch (final IOException e) {
+				metrics.recordError(PipelineMetrics.STAGE_CONNECT);
+				throw new FeedException(e.getMessage(), e,
+						PipelineMetrics.STAGE_CONNECT, 0, null);
+			}
+			metrics.record(PipelineMetrics.STAGE_CONNECT, connectStart, 0);
+			final long downloadStart = PipelineMetrics.start();
+			final String data;
+			final int contentLength = urlConnection.getContentLength();
+			final ByteArrayOutputStream buffer = new ByteArrayOutputStream(
+					contentLength > 0 ? contentLength : BUFFER_SIZE);
+			int responseCode = 0;
+			try {
+				responseCode = urlConnection.getResponseCode();
+				if (responseCode != HttpURLConnection.HTTP_OK) {
+					throw new IOException("Unexpected response " + responseCode);
+				}
+				readBody(urlConnection, buffer);
+				final int byteCount = buffer.size();
+				if ("gzip".equalsIgnoreCase(urlConnection.getContentEncoding())) {
+					final InputStream gzipIn = new GZIPInputStream(
+							new ByteArrayInputStream(buffer.toByteArray()));
+					buffer.reset();
+					try {
+						copy(gzipIn, buffer);
+					} finally {
+						gzipIn.close();
+					}
+				}
+				data = buffer.toString("UTF-8");
+				if (data.length() == 0) {
+					throw new IOException("Empty response");
+				}
+				metrics.record(PipelineMetrics.STAGE_DOWNLOAD, downloadStart,
+						byteCount);
+			} catch (final IOException e) {
+				metrics.recordError(PipelineMetrics.STAGE_DOWNLOAD);
+				throw new FeedException(e.getMessage(), e,
+						PipelineMetrics.STAGE_DOWNLOAD, responseCode,
+						buffer.toString("UTF-8"));
+			}
+			return data.substring(1);
+		} finally {
+			urlConnection.disconnect();
+		}
+	}
+
+	/**
+	 * Parses the gas price data as returned by
+	 * {@link #getRawGasPricesDataFromInternet()}.
+	 * 
+	 * @param jsonData
+	 *            raw data
+	 * @return a parsed JSONObject.
+	 * @throws IOException
+	 *             if the data is not a JSON object.
+	 */
+	public static JSONObject parseGasPricesData(final String jsonData)
+			throws IOException {
+		final PipelineMetrics metrics = PipelineMetrics.getInstance();
+		final long start = PipelineMetrics.start();
+		try {
+			final Object value = new JSONTokener(jsonData).nextValue();
+			if (value instanceof JSONObject) {
+				metrics.record(PipelineMetrics.STAGE_PARSE, start,
+						jsonData.length());
+				return (JSONObject) value;
+			} else {
+				metrics.recordError(PipelineMetrics.STAGE_PARSE);
+				throw new FeedException("Did not get a proper JSON object",
+						null, PipelineMetrics.STAGE_PARSE,
+						HttpURLConnection.HTTP_OK, jsonData);
+			}
+		} catch (final JSONException e) {
+			metrics.recordError(PipelineMetrics.STAGE_PARSE);
+			throw new FeedException(e.getMessage(), e,
+					PipelineMetrics.STAGE_PARSE, HttpURLConnection.HTTP_OK,
+					jsonData);
+		}
+	}
+
+	/**
+	 * Reads the body of a successful response as it was sent.
+	 * 
+	 * @param urlConnection
+	 *            connection
+	 * @param buffer
+	 *            receives the body. What was read is kept if there is an
+	 *            error.
+	 * @throws IOException
+	 *             if the response is shorter than its content length.
+	 */
+	private static void readBody(final HttpURLConnection urlConnection,
+			final ByteArrayOutputStream buffer) throws IOException {
+		final int contentLength = urlConnection.getContentLength();
+		final InputStream in = urlConnection.getInputStream();
+		try {
+			copy(in, buffer);
+		} finally {
+			in.close();
+		}
+		if (contentLength >= 0 && buffer.size() != contentLength) {
+			throw new IOException("Truncated response, got " + buffer.size()
+					+ " of " + contentLength + " bytes");
+		}
+	}
+
+	private GetDataUtil() {
+
+	}
+
+}
@@ -0,0 +1,217 @@
+package net.trajano.gasprices;
+
+/**
+ * <p>
+ * This is a lenient tokenizer used for syntax highlighting JSON text one row
+ * at a time. It does not validate the structure, it only classifies the
+ * characters in a row. Strings may span rows so the state at the end of a row
+ * is returned and must be passed in when tokenizing the next row.
+ * </p>
+ * <p>
+ * The tokens are stored in a reusable primitive array so tokenizing does not
+ * allocate once the array is large enough.
+ * </p>
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class JsonTokenizer {
+	/**
+	 * Outside of a string.
+	 */
+	public static final int STATE_DEFAULT = 0;
+
+	/**
+	 * Inside a string.
+	 */
+	public static final int STATE_STRING = 1;
+
+	/**
+	 * Inside a string immediately after a backslash.
+	 */
+	public static final int STATE_STRING_ESCAPE = 2;
+
+	/**
+	 * Characters that are not valid JSON or an unterminated string.
+	 */
+	public static final int TOKEN_ERROR = 5;
+
+	/**
+	 * String that is followed by a colon.
+	 */
+	public static final int TOKEN_KEY = 1;
+
+	/**
+	 * <code>true</code>, <code>false</code> or <code>null</code>.
+	 */
+	public static final int TOKEN_LITERAL = 4;
+
+	/**
+	 * Number.
+	 */
+	public static final int TOKEN_NUMBER = 3;
+
+	/**
+	 * String value.
+	 */
+	public static final int TOKEN_STRING = 2;
+
+	/**
+	 * Checks if the string ending at the offset is followed by a colon.
+	 */
+	private static boolean isKey(final CharSequence row, final int stringEnd) {
+		int i = stringEnd;
+		while (i < row.length() && Character.isWhitespace(row.charAt(i))) {
+			++i;
+		}
+		return i < row.length() && row.charAt(i) == ':';
+	}
+
+	private static boolean isLiteral(final CharSequence row, final int start,
+			final int end) {
+		return regionEquals(row, start, end, "true")
+				|| regionEquals(row, start, end, "false")
+				|| regionEquals(row, start, end, "null");
+	}
+
+	private static boolean isNumberChar(final char c) {
+		return c >= '0' && c <= '9' || c == '-' || c == '+' || c == '.'
+				|| c == 'e' || c == 'E';
+	}
+
+	private static boolean regionEquals(final CharSequence row,
+			final int start, final int end, final String word) {
+		if (end - start != word.length()) {
+			return false;
+		}
+		for (int i = start; i < end; ++i) {
+			if (row.charAt(i) != word.charAt(i - start)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Scans to the end of a string.
+	 * 
+	 * @param row
+	 *            row text
+	 * @param start
+	 *            offset after the opening quote
+	 * @param escaped
+	 *            <code>true</code> if the first character is escaped.
+	 * @return the offset after the closing quote or the negated state if the
+	 *         string continues past the end of the row.
+	 */
+	private static int scanString(final CharSequence row, final int start,
+			final boolean escaped) {
+		boolean escape = escaped;
+		for (int i = start; i < row.length(); ++i) {
+			final char c = row.charAt(i);
+			if (escape) {
+				escape = false;
+			} else if (c == '\\') {
+				escape = true;
+			} else if (c == '"') {
+				return i + 1;
+			}
+		}
+		return escape ? -STATE_STRING_ESCAPE : -STATE_STRING;
+	}
+
+	/**
+	 * Number of tokens found in the last row.
+	 */
+	private int tokenCount;
+
+	/**
+	 * Tokens as triplets of start, end and type.
+	 */
+	private int[] tokens = new int[3 * 16];
+
+	private void addToken(final int start, final int end, final int type) {
+		if (tokenCount * 3 == tokens.length) {
+			final int[] newTokens = new int[tokens.length * 2];
+			System.arraycopy(tokens, 0, newTokens, 0, tokens.length);
+			tokens = newTokens;
+		}
+		tokens[tokenCount * 3] = start;
+		tokens[tokenCount * 3 + 1] = end;
+		tokens[tokenCount * 3 + 2] = type;
+		++tokenCount;
+	}
+
+	public int getTokenCount() {
+		return tokenCount;
+	}
+
+	public int getTokenEnd(final int token) {
+		return tokens[token * 3 + 1];
+	}
+
+	public int getTokenStart(final int token) {
+		return tokens[token * 3];
+	}
+
+	public int getTokenType(final int token) {
+		return tokens[token * 3 + 2];
+	}
+
+	/**
+	 * Tokenizes a row. The tokens are available through
+	 * {@link #getTokenCount()} until the next call.
+	 * 
+	 * @param row
+	 *            row text
+	 * @param state
+	 *            state at the start of the row
+	 * @return the state at the end of the row.
+	 */
+	public int tokenize(final CharSequence row, final int state) {
+		tokenCount = 0;
+		final int length = row.length();
+		int i = 0;
+		if (state != STATE_DEFAULT) {
+			final int end = scanString(row, 0, state == STATE_STRING_ESCAPE);
+			if (end < 0) {
+				addToken(0, length, TOKEN_STRING);
+				return -end;
+			}
+			addToken(0, end, isKey(row, end) ? TOKEN_KEY : TOKEN_STRING);
+			i = end;
+		}
+		while (i < length) {
+			final char c = row.charAt(i);
+			if (c == '"') {
+				final int end = scanString(row, i + 1, false);
+				if (end < 0) {
+					addToken(i, length, TOKEN_STRING);
+					return -end;
+				}
+				addToken(i, end, isKey(row, end) ? TOKEN_KEY : TOKEN_STRING);
+				i = end;
+			} else if (isNumberChar(c) && !Character.isLetter(c)) {
+				final int start = i;
+				while (i < length && isNumberChar(row.charAt(i))) {
+					++i;
+				}
+				addToken(start, i, TOKEN_NUMBER);
+			} else if (Character.isLetter(c)) {
+				final int start = i;
+				while (i < length && Character.isLetter(row.charAt(i))) {
+					++i;
+				}
+				addToken(start, i, isLiteral(row, start, i) ? TOKEN_LITERAL
+						: TOKEN_ERROR);
+			} else if (Character.isWhitespace(c) || c == '{' || c == '}'
+					|| c == '[' || c == ']' || c == ',' || c == ':') {
+				++i;
+			} else {
+				addToken(i, i + 1, TOKEN_ERROR);
+				++i;
+			}
+		}
+		return STATE_DEFAULT;
+	}
+}
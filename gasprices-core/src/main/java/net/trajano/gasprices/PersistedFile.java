@@ -0,0 +1,74 @@
+package net.trajano.gasprices;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes the files that are read back when the application starts. The data
+ * is written to a temporary file first and renamed so a partially written file
+ * is never read. Errors are logged rather than thrown since a file that is not
+ * written is built again from the feed.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class PersistedFile {
+	/**
+	 * Writes the data of the file.
+	 */
+	public interface Content {
+		/**
+		 * Writes the data. The stream is closed after this returns, any
+		 * stream that wraps it must be flushed or closed.
+		 * 
+		 * @param out
+		 *            buffered stream to the temporary file
+		 * @throws IOException
+		 *             I/O error
+		 */
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	/**
+	 * Suffix of the temporary file.
+	 */
+	private static final String TEMP_FILE_SUFFIX = ".tmp"; // $NON-NLS-1$
+
+	/**
+	 * Writes the file. This performs disk access so it must not be called from
+	 * the main thread.
+	 * 
+	 * @param directory
+	 *            directory to write the file to
+	 * @param fileName
+	 *            file name
+	 * @param content
+	 *            writes the data
+	 */
+	public static void write(final File directory, final String fileName,
+			final Content content) {
+		final File file = new File(directory, fileName);
+		final File tempFile = new File(directory, fileName + TEMP_FILE_SUFFIX);
+		try {
+			final DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tempFile)));
+			try {
+				content.write(out);
+			} finally {
+				out.close();
+			}
+			if (!tempFile.renameTo(file)) {
+				GasPricesLog.e("unable to rename {} to {}", tempFile, file);
+			}
+		} catch (final IOException e) {
+			GasPricesLog.e(e.getMessage());
+		}
+	}
+
+	private PersistedFile() {
+
+	}
+}
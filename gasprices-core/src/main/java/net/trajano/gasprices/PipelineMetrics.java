@@ -0,0 +1,273 @@
+package net.trajano.gasprices;
+
+/**
+ * <p>
+ * This records how long each stage of an update takes along with a count for
+ * the stage, such as the bytes downloaded or the records stored, and how many
+ * times the stage failed. Durations come from {@link System#nanoTime()} which
+ * is monotonic so changes to the wall clock do not affect them.
+ * </p>
+ * <p>
+ * The last {@link #CAPACITY} samples of each stage are kept in fixed size
+ * primitive ring buffers so recording a sample does not allocate. Stages are
+ * <code>int</code> constants rather than an enum for the same reason.
+ * </p>
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class PipelineMetrics {
+	/**
+	 * Number of samples kept per stage.
+	 */
+	public static final int CAPACITY = 32;
+
+	/**
+	 * Nanoseconds in a millisecond.
+	 */
+	private static final double NANOS_PER_MILLI = 1000000.0;
+
+	/**
+	 * Process wide instance.
+	 */
+	private static final PipelineMetrics INSTANCE = new PipelineMetrics();
+
+	/**
+	 * Writing the preferences with apply or commit. The count is not used.
+	 */
+	public static final int STAGE_APPLY = 4;
+
+	/**
+	 * Resolving the host and connecting. The count is not used.
+	 */
+	public static final int STAGE_CONNECT = 0;
+
+	/**
+	 * Number of stages.
+	 */
+	public static final int STAGE_COUNT = 7;
+
+	/**
+	 * Waiting for and reading the response. The count is the number of bytes
+	 * received.
+	 */
+	public static final int STAGE_DOWNLOAD = 1;
+
+	/**
+	 * Parsing the JSON. The count is the number of characters parsed.
+	 */
+	public static final int STAGE_PARSE = 2;
+
+	/**
+	 * Decoding the records and putting them in the editor. The count is the
+	 * number of records.
+	 */
+	public static final int STAGE_STORE = 3;
+
+	/**
+	 * The whole update. The count is not used.
+	 */
+	public static final int STAGE_UPDATE = 6;
+
+	/**
+	 * Working out which widgets to refresh and requesting the refresh. The
+	 * count is the number of widgets refreshed.
+	 */
+	public static final int STAGE_WIDGETS = 5;
+
+	/**
+	 * Gets the process wide instance.
+	 * 
+	 * @return the metrics.
+	 */
+	public static PipelineMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Reads the monotonic clock. Pass the result to
+	 * {@link #record(int, long, long)} when the stage ends.
+	 * 
+	 * @return time in nanoseconds
+	 */
+	public static long start() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Converts a duration from {@link #start()} or the getters to
+	 * milliseconds.
+	 * 
+	 * @param nanos
+	 *            duration in nanoseconds
+	 * @return duration in milliseconds
+	 */
+	public static double toMillis(final long nanos) {
+		return nanos / NANOS_PER_MILLI;
+	}
+
+	/**
+	 * Counts of the samples, {@link #CAPACITY} per stage.
+	 */
+	private final long[] counts = new long[STAGE_COUNT * CAPACITY];
+
+	/**
+	 * Durations of the samples in nanoseconds, {@link #CAPACITY} per stage.
+	 */
+	private final long[] durations = new long[STAGE_COUNT * CAPACITY];
+
+	/**
+	 * Number of times each stage failed.
+	 */
+	private final long[] errorCounts = new long[STAGE_COUNT];
+
+	/**
+	 * Number of samples recorded for each stage. This is not limited to
+	 * {@link #CAPACITY}.
+	 */
+	private final long[] sampleCounts = new long[STAGE_COUNT];
+
+	private PipelineMetrics() {
+	}
+
+	/**
+	 * Gets the count of a sample.
+	 * 
+	 * @param stage
+	 *            stage
+	 * @param age
+	 *            0 for the latest sample up to {@link #getSampleCount(int)}
+	 *            - 1 for the oldest that is kept
+	 * @return count
+	 */
+	public synchronized long getCount(final int stage, final int age) {
+		return counts[index(stage, age)];
+	}
+
+	/**
+	 * Gets the duration of a sample.
+	 * 
+	 * @param stage
+	 *            stage
+	 * @param age
+	 *            0 for the latest sample up to {@link #getSampleCount(int)}
+	 *            - 1 for the oldest that is kept
+	 * @return duration in nanoseconds
+	 */
+	public synchronized long getDurationNanos(final int stage, final int age) {
+		return durations[index(stage, age)];
+	}
+
+	/**
+	 * Number of times the stage failed since the process started.
+	 * 
+	 * @param stage
+	 *            stage
+	 * @return error count
+	 */
+	public synchronized long getErrorCount(final int stage) {
+		return errorCounts[stage];
+	}
+
+	/**
+	 * Longest duration of the samples that are kept.
+	 * 
+	 * @param stage
+	 *            stage
+	 * @return duration in nanoseconds or 0 if there are no samples
+	 */
+	public synchronized long getMaxDurationNanos(final int stage) {
+		long max = 0;
+		final int sampleCount = getSampleCount(stage);
+		for (int age = 0; age < sampleCount; ++age) {
+			max = Math.max(max, durations[index(stage, age)]);
+		}
+		return max;
+	}
+
+	/**
+	 * Mean duration of the samples that are kept.
+	 * 
+	 * @param stage
+	 *            stage
+	 * @return duration in nanoseconds or 0 if there are no samples
+	 */
+	public synchronized long getMeanDurationNanos(final int stage) {
+		final int sampleCount = getSampleCount(stage);
+		if (sampleCount == 0) {
+			return 0;
+		}
+		long total = 0;
+		for (int age = 0; age < sampleCount; ++age) {
+			total += durations[index(stage, age)];
+		}
+		return total / sampleCount;
+	}
+
+	/**
+	 * Number of samples of the stage that are kept.
+	 * 
+	 * @param stage
+	 *            stage
+	 * @return sample count, at most {@link #CAPACITY}
+	 */
+	public synchronized int getSampleCount(final int stage) {
+		return (int) Math.min(CAPACITY, sampleCounts[stage]);
+	}
+
+	/**
+	 * Number of samples recorded for the stage since the process started.
+	 * 
+	 * @param stage
+	 *            stage
+	 * @return sample count
+	 */
+	public synchronized long getTotalSampleCount(final int stage) {
+		return sampleCounts[stage];
+	}
+
+	/**
+	 * Gets the position of a sample in the ring buffers.
+	 * 
+	 * @param stage
+	 *            stage
+	 * @param age
+	 *            0 for the latest sample
+	 * @return index
+	 */
+	private int index(final int stage, final int age) {
+		if (age < 0 || age >= getSampleCount(stage)) {
+			throw new IndexOutOfBoundsException("age " + age);
+		}
+		return stage * CAPACITY
+				+ (int) ((sampleCounts[stage] - 1 - age) % CAPACITY);
+	}
+
+	/**
+	 * Records a sample.
+	 * 
+	 * @param stage
+	 *            stage
+	 * @param startNanos
+	 *            value of {@link #start()} when the stage started
+	 * @param count
+	 *            count for the stage
+	 */
+	public synchronized void record(final int stage, final long startNanos,
+			final long count) {
+		final int i = stage * CAPACITY + (int) (sampleCounts[stage] % CAPACITY);
+		durations[i] = System.nanoTime() - startNanos;
+		counts[i] = count;
+		++sampleCounts[stage];
+	}
+
+	/**
+	 * Records a failure of the stage.
+	 * 
+	 * @param stage
+	 *            stage
+	 */
+	public synchronized void recordError(final int stage) {
+		++errorCounts[stage];
+	}
+}
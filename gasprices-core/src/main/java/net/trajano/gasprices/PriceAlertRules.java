@@ -0,0 +1,295 @@
+package net.trajano.gasprices;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * <p>
+ * This is an immutable set of price alert rules. A rule triggers when
+ * tomorrow's price of a city changes by more than a threshold. A positive
+ * threshold triggers on a rise, a negative threshold triggers on a fall.
+ * </p>
+ * <p>
+ * Rules are kept as two parallel arrays ordered by city ID so they are small
+ * to store and the rules of a city are found with a binary search. Only the
+ * cities that changed in a snapshot are evaluated so the cost depends on the
+ * number of changed cities rather than the number of rules.
+ * </p>
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class PriceAlertRules {
+	/**
+	 * No rules.
+	 */
+	public static final PriceAlertRules EMPTY = new PriceAlertRules(
+			new int[0], new float[0]);
+
+	/**
+	 * Process wide instance.
+	 */
+	private static volatile PriceAlertRules instance;
+
+	/**
+	 * Name of the file in the data directory that stores the rules.
+	 */
+	private static final String PERSISTED_FILE_NAME = "price_alerts.bin"; // $NON-NLS-1$
+
+	/**
+	 * Format version of {@link #PERSISTED_FILE_NAME}.
+	 */
+	private static final int PERSISTED_VERSION = 1;
+
+	/**
+	 * Gets the rules. On the first call they are read from
+	 * {@link #PERSISTED_FILE_NAME}. This performs disk access on the first call
+	 * so it should not be called from the main thread.
+	 * 
+	 * @param directory
+	 *            data directory
+	 * @return the rules.
+	 */
+	public static PriceAlertRules getInstance(final File directory) {
+		PriceAlertRules rules = instance;
+		if (rules == null) {
+			synchronized (PriceAlertRules.class) {
+				rules = instance;
+				if (rules == null) {
+					rules = restore(directory);
+					instance = rules;
+				}
+			}
+		}
+		return rules;
+	}
+
+	/**
+	 * Reads the rules from {@link #PERSISTED_FILE_NAME}.
+	 * 
+	 * @param directory
+	 *            data directory
+	 * @return the persisted rules or {@link #EMPTY} if they are not available.
+	 */
+	private static PriceAlertRules restore(final File directory) {
+		try {
+			final DataInputStream in = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(new File(
+							directory, PERSISTED_FILE_NAME))));
+			try {
+				if (in.readInt() != PERSISTED_VERSION) {
+					return EMPTY;
+				}
+				final int count = in.readInt();
+				final int[] cityIds = new int[count];
+				final float[] thresholds = new float[count];
+				for (int i = 0; i < count; ++i) {
+					cityIds[i] = in.readInt();
+					thresholds[i] = in.readFloat();
+				}
+				return new PriceAlertRules(cityIds, thresholds);
+			} finally {
+				in.close();
+			}
+		} catch (final FileNotFoundException e) {
+			return EMPTY;
+		} catch (final IOException e) {
+			GasPricesLog.e(e.getMessage());
+			return EMPTY;
+		}
+	}
+
+	/**
+	 * Replaces the process wide rules and persists them. This performs disk
+	 * access so it must not be called from the main thread.
+	 * 
+	 * @param directory
+	 *            data directory
+	 * @param rules
+	 *            new rules
+	 */
+	public static void update(final File directory,
+			final PriceAlertRules rules) {
+		synchronized (PriceAlertRules.class) {
+			rules.persist(directory);
+			instance = rules;
+		}
+	}
+
+	/**
+	 * City IDs in ascending order.
+	 */
+	private final int[] cityIds;
+
+	/**
+	 * Threshold in cents of each rule in {@link #cityIds}.
+	 */
+	private final float[] thresholds;
+
+	private PriceAlertRules(final int[] cityIds, final float[] thresholds) {
+		this.cityIds = cityIds;
+		this.thresholds = thresholds;
+	}
+
+	/**
+	 * Finds the first rule of the city.
+	 * 
+	 * @param cityId
+	 *            city ID
+	 * @return the index of the first rule of the city or where it would be
+	 *         inserted.
+	 */
+	private int lowerBound(final int cityId) {
+		int low = 0;
+		int high = cityIds.length;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (cityIds[mid] < cityId) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Evaluates the rules of the cities that changed.
+	 * 
+	 * @param table
+	 *            price table of the new snapshot
+	 * @param changedCityIds
+	 *            IDs of the cities that changed
+	 * @param now
+	 *            current time in milliseconds since epoch used to determine if
+	 *            tomorrow's price is available
+	 * @param triggeredCityIds
+	 *            receives the IDs of the cities that have at least one
+	 *            triggered rule. Must be at least as long as
+	 *            <code>changedCityIds</code>.
+	 * @return number of triggered cities.
+	 */
+	public int evaluate(final CityPriceTable table,
+			final long[] changedCityIds, final long now,
+			final long[] triggeredCityIds) {
+		int count = 0;
+		if (cityIds.length == 0) {
+			return count;
+		}
+		for (final long cityId : changedCityIds) {
+			final int row = table.indexOf(cityId);
+			if (row == -1 || !table.isTomorrowsPriceAvailable(row, now)) {
+				continue;
+			}
+			final float change = table.getPriceDifference(row);
+			for (int i = lowerBound((int) cityId); i < cityIds.length
+					&& cityIds[i] == cityId; ++i) {
+				if (thresholds[i] > 0 && change > thresholds[i]
+						|| thresholds[i] < 0 && change < thresholds[i]) {
+					triggeredCityIds[count++] = cityId;
+					break;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Writes the rules to {@link #PERSISTED_FILE_NAME}.
+	 * 
+	 * @param directory
+	 *            data directory
+	 */
+	private void persist(final File directory) {
+		PersistedFile.write(directory, PERSISTED_FILE_NAME,
+				new PersistedFile.Content() {
+
+					@Override
+					public void write(final DataOutputStream out)
+							throws IOException {
+						out.writeInt(PERSISTED_VERSION);
+						out.writeInt(cityIds.length);
+						for (int i = 0; i < cityIds.length; ++i) {
+							out.writeInt(cityIds[i]);
+							out.writeFloat(thresholds[i]);
+						}
+					}
+				});
+	}
+
+	/**
+	 * Number of rules.
+	 * 
+	 * @return rule count
+	 */
+	public int size() {
+		return cityIds.length;
+	}
+
+	/**
+	 * Creates a copy of the rules with a rule added. Rules of the city with
+	 * the same threshold are not duplicated.
+	 * 
+	 * @param cityId
+	 *            city ID
+	 * @param threshold
+	 *            threshold in cents. Positive to trigger when the price rises
+	 *            by more than the threshold, negative to trigger when it falls
+	 *            by more than its magnitude.
+	 * @return the new rules.
+	 */
+	public PriceAlertRules with(final long cityId, final float threshold) {
+		if (threshold == 0 || Float.isNaN(threshold)) {
+			throw new IllegalArgumentException("threshold must not be zero");
+		}
+		int i = lowerBound((int) cityId);
+		while (i < cityIds.length && cityIds[i] == cityId) {
+			if (thresholds[i] == threshold) {
+				return this;
+			}
+			++i;
+		}
+		final int[] newCityIds = new int[cityIds.length + 1];
+		final float[] newThresholds = new float[cityIds.length + 1];
+		System.arraycopy(cityIds, 0, newCityIds, 0, i);
+		System.arraycopy(thresholds, 0, newThresholds, 0, i);
+		newCityIds[i] = (int) cityId;
+		newThresholds[i] = threshold;
+		System.arraycopy(cityIds, i, newCityIds, i + 1, cityIds.length - i);
+		System.arraycopy(thresholds, i, newThresholds, i + 1,
+				cityIds.length - i);
+		return new PriceAlertRules(newCityIds, newThresholds);
+	}
+
+	/**
+	 * Creates a copy of the rules without any of the rules of the city.
+	 * 
+	 * @param cityId
+	 *            city ID
+	 * @return the new rules.
+	 */
+	public PriceAlertRules without(final long cityId) {
+		final int start = lowerBound((int) cityId);
+		int end = start;
+		while (end < cityIds.length && cityIds[end] == cityId) {
+			++end;
+		}
+		if (start == end) {
+			return this;
+		}
+		final int count = cityIds.length - (end - start);
+		final int[] newCityIds = new int[count];
+		final float[] newThresholds = new float[count];
+		System.arraycopy(cityIds, 0, newCityIds, 0, start);
+		System.arraycopy(thresholds, 0, newThresholds, 0, start);
+		System.arraycopy(cityIds, end, newCityIds, start, cityIds.length - end);
+		System.arraycopy(thresholds, end, newThresholds, start,
+				cityIds.length - end);
+		return new PriceAlertRules(newCityIds, newThresholds);
+	}
+}
@@ -0,0 +1,222 @@
+package net.trajano.gasprices;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>
+ * This is an immutable view of the result of the last update: the prices of
+ * every city, the {@link RegionAggregates} of those prices, when it was
+ * updated, when the next update is due and whether it failed. The current
+ * snapshot is held in an {@link AtomicReference}. Writers publish a whole new
+ * snapshot so readers always see values that belong together, and reading it
+ * does not allocate or touch the disk once it is loaded.
+ * </p>
+ * <p>
+ * Every snapshot that is published has a higher generation than the one it
+ * replaces.
+ * </p>
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class PriceSnapshot {
+	/**
+	 * Loads the snapshot that was stored by the previous process.
+	 */
+	public interface Loader {
+		/**
+		 * Loads the stored snapshot. This is called once per process and may
+		 * perform disk access.
+		 * 
+		 * @return the stored snapshot. This is derived from {@link #EMPTY}.
+		 */
+		PriceSnapshot load();
+	}
+
+	/**
+	 * Current snapshot. This is <code>null</code> until it is first loaded.
+	 */
+	private static final AtomicReference<PriceSnapshot> CURRENT = new AtomicReference<PriceSnapshot>();
+
+	/**
+	 * Snapshot used before anything is loaded.
+	 */
+	public static final PriceSnapshot EMPTY = new PriceSnapshot(0,
+			CityPriceTable.EMPTY, RegionAggregates.EMPTY, 0, Long.MIN_VALUE,
+			false, null);
+
+	/**
+	 * Gets the current snapshot. On the first call it is loaded using the
+	 * loader. This may perform disk access on the first call so it should not
+	 * be called from the main thread.
+	 * 
+	 * @param loader
+	 *            loads the stored snapshot if none has been loaded yet
+	 * @return the current snapshot.
+	 */
+	public static PriceSnapshot getInstance(final Loader loader) {
+		final PriceSnapshot snapshot = CURRENT.get();
+		if (snapshot != null) {
+			return snapshot;
+		}
+		CURRENT.compareAndSet(null, loader.load());
+		return CURRENT.get();
+	}
+
+	/**
+	 * Replaces the current snapshot if it has not been replaced by another
+	 * writer since <code>expected</code> was read.
+	 * 
+	 * @param expected
+	 *            snapshot the new one was derived from
+	 * @param snapshot
+	 *            new snapshot
+	 * @return <code>true</code> if it was published, <code>false</code> if
+	 *         another snapshot was published first and the change has to be
+	 *         derived from that one.
+	 */
+	public static boolean publish(final PriceSnapshot expected,
+			final PriceSnapshot snapshot) {
+		return CURRENT.compareAndSet(expected, snapshot);
+	}
+
+	private final boolean dataPresent;
+
+	private final long generation;
+
+	/**
+	 * Error message of the last update. This is <code>null</code> if it did
+	 * not fail.
+	 */
+	private final String lastError;
+
+	/**
+	 * Last updated time in milliseconds since epoch.
+	 */
+	private final long lastUpdated;
+
+	/**
+	 * Next update time in milliseconds since epoch.
+	 */
+	private final long nextUpdateTime;
+
+	private final RegionAggregates regionAggregates;
+
+	private final CityPriceTable table;
+
+	private PriceSnapshot(final long generation, final CityPriceTable table,
+			final RegionAggregates regionAggregates, final long lastUpdated,
+			final long nextUpdateTime, final boolean dataPresent,
+			final String lastError) {
+		this.generation = generation;
+		this.table = table;
+		this.regionAggregates = regionAggregates;
+		this.lastUpdated = lastUpdated;
+		this.nextUpdateTime = nextUpdateTime;
+		this.dataPresent = dataPresent;
+		this.lastError = lastError;
+	}
+
+	/**
+	 * Generation of the snapshot. This is the last updated time when the
+	 * snapshot is loaded and increases with every snapshot that is published.
+	 * 
+	 * @return generation
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Error message of the last update.
+	 * 
+	 * @return the message or <code>null</code> if the last update did not
+	 *         fail.
+	 */
+	public String getLastError() {
+		return lastError;
+	}
+
+	/**
+	 * Last updated time.
+	 * 
+	 * @return time in milliseconds since epoch
+	 */
+	public long getLastUpdated() {
+		return lastUpdated;
+	}
+
+	/**
+	 * Next update time.
+	 * 
+	 * @return time in milliseconds since epoch
+	 */
+	public long getNextUpdateTime() {
+		return nextUpdateTime;
+	}
+
+	/**
+	 * Per region aggregates of the prices in {@link #getTable()}. Use
+	 * {@link RegionAggregates#at(long)} to get them for the current time.
+	 * 
+	 * @return region aggregates
+	 */
+	public RegionAggregates getRegionAggregates() {
+		return regionAggregates;
+	}
+
+	/**
+	 * Prices of every city.
+	 * 
+	 * @return price table
+	 */
+	public CityPriceTable getTable() {
+		return table;
+	}
+
+	/**
+	 * Checks if feed data has been stored.
+	 * 
+	 * @return <code>true</code> if there is data.
+	 */
+	public boolean isDataPresent() {
+		return dataPresent;
+	}
+
+	/**
+	 * Checks if the last update failed.
+	 * 
+	 * @return <code>true</code> if there is an error.
+	 */
+	public boolean isError() {
+		return lastError != null;
+	}
+
+	/**
+	 * Derives a new snapshot from this one. The generation is the last
+	 * updated time if that is higher, otherwise it is one more than the
+	 * generation of this snapshot.
+	 * 
+	 * @param newTable
+	 *            prices of every city
+	 * @param newRegionAggregates
+	 *            per region aggregates of <code>newTable</code>
+	 * @param newLastUpdated
+	 *            last updated time in milliseconds since epoch
+	 * @param newNextUpdateTime
+	 *            next update time in milliseconds since epoch
+	 * @param newDataPresent
+	 *            <code>true</code> if feed data has been stored
+	 * @param newLastError
+	 *            error message or <code>null</code> if the update did not fail
+	 * @return the new snapshot.
+	 */
+	public PriceSnapshot with(final CityPriceTable newTable,
+			final RegionAggregates newRegionAggregates,
+			final long newLastUpdated, final long newNextUpdateTime,
+			final boolean newDataPresent, final String newLastError) {
+		return new PriceSnapshot(Math.max(generation + 1, newLastUpdated),
+				newTable, newRegionAggregates, newLastUpdated,
+				newNextUpdateTime, newDataPresent, newLastError);
+	}
+}
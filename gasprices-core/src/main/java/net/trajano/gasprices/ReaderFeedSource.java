@@ -0,0 +1,421 @@
+package net.trajano.gasprices;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * <p>
+ * {@link FeedSource} over feed text that is read as rows are indexed, such as
+ * the decompressed text from {@link CompressedFeedStore}. Only the offset of
+ * each indexed row and a window of at most {@link #WINDOW_SIZE} characters of
+ * the text are kept, so the memory used does not depend on the size of the
+ * feed. Rows before the window are read again by opening the text from the
+ * start.
+ * </p>
+ * <p>
+ * The reader is closed when the end of the text is reached or when the source
+ * is closed. Access is synchronized so rows can be read by the highlighter
+ * thread while the list indexes more.
+ * </p>
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class ReaderFeedSource implements FeedSource, Closeable {
+	/**
+	 * Opens the feed text from the start.
+	 */
+	public interface Opener {
+		/**
+		 * Opens the feed text from the start.
+		 * 
+		 * @return a reader over the feed text or <code>null</code> if it is no
+		 *         longer available.
+		 * @throws IOException
+		 *             I/O error
+		 */
+		Reader open() throws IOException;
+	}
+
+	/**
+	 * Number of characters read at a time.
+	 */
+	private static final int READ_SIZE = 4096;
+
+	/**
+	 * Maximum number of characters of the text that are kept.
+	 */
+	public static final int WINDOW_SIZE = 16 * READ_SIZE;
+
+	/**
+	 * Buffer the reader reads into.
+	 */
+	private final char[] buffer = new char[READ_SIZE];
+
+	/**
+	 * <code>true</code> once the source is closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * Length of the text. This is -1 until the end of the text is reached.
+	 */
+	private int endOffset = -1;
+
+	/**
+	 * Offset where the next row to be indexed starts.
+	 */
+	private int indexedOffset;
+
+	/**
+	 * Opens the text.
+	 */
+	private final Opener opener;
+
+	/**
+	 * Reader of the text after the window. This is <code>null</code> if it
+	 * has not been opened, the end of the text is reached or the source is
+	 * closed.
+	 */
+	private Reader reader;
+
+	/**
+	 * Number of rows that have been indexed.
+	 */
+	private int rowCount;
+
+	/**
+	 * Start offset of each row in the text. The end of a row is the start of
+	 * the next row or {@link #indexedOffset} for the last row with line
+	 * terminators removed.
+	 */
+	private int[] rowStarts = new int[256];
+
+	/**
+	 * Text from {@link #windowStart} up to where the reader is.
+	 */
+	private final StringBuilder window = new StringBuilder(WINDOW_SIZE);
+
+	/**
+	 * Offset of the first character of {@link #window} in the text.
+	 */
+	private int windowStart;
+
+	/**
+	 * Constructs the source. The text is opened when the first row is
+	 * indexed.
+	 * 
+	 * @param opener
+	 *            opens the feed text. Each reader it returns is closed by the
+	 *            source.
+	 */
+	public ReaderFeedSource(final Opener opener) {
+		this.opener = opener;
+	}
+
+	/**
+	 * Closes the reader and stops reading. The rows in the window are still
+	 * available, the other rows are empty.
+	 */
+	@Override
+	public synchronized void close() {
+		closeReader();
+		closed = true;
+	}
+
+	/**
+	 * Closes the current reader.
+	 */
+	private void closeReader() {
+		if (reader == null) {
+			return;
+		}
+		try {
+			reader.close();
+		} catch (final IOException e) {
+			GasPricesLog.w(e.getMessage());
+		}
+		reader = null;
+	}
+
+	/**
+	 * Makes the text from the start offset up to the end offset available in
+	 * the window. The text is opened again if the start is before the window.
+	 * Text before the start offset is dropped from the window to keep it
+	 * within {@link #WINDOW_SIZE}. A read error is treated as the end of the
+	 * text.
+	 * 
+	 * @param start
+	 *            start offset
+	 * @param end
+	 *            end offset, at most {@link #WINDOW_SIZE} after the start.
+	 * @return the end offset of the text that is available, which is less
+	 *         than the requested end if the end of the text was reached.
+	 */
+	private int fill(final int start, final int end) {
+		if (start < windowStart && !closed) {
+			closeReader();
+			window.setLength(0);
+			windowStart = 0;
+			open();
+		}
+		if (start >= windowStart + window.length()) {
+			skipTo(start);
+		}
+		while (windowStart + window.length() < end && reader != null) {
+			if (window.length() + READ_SIZE > WINDOW_SIZE) {
+				final int drop = Math.min(start - windowStart, window.length());
+				window.delete(0, drop);
+				windowStart += drop;
+			}
+			if (!read()) {
+				break;
+			}
+		}
+		return Math.min(end, windowStart + window.length());
+	}
+
+	/**
+	 * {@inheritDoc} The lock is only held for one row at a time so the rows
+	 * can be read while a search is running.
+	 */
+	@Override
+	public int find(final String searchText, final int fromRow) {
+		int row = fromRow < 0 ? 0 : fromRow;
+		while (true) {
+			if (row < getRowCount()) {
+				if (rowContains(row, searchText)) {
+					return row;
+				}
+				++row;
+			} else if (indexMore(1) == 0) {
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized String getRow(final int row) {
+		final int end = getRowEnd(row);
+		if (end < rowStarts[row]) {
+			return "";
+		}
+		return window.substring(rowStarts[row] - windowStart, end - windowStart);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Makes the row available in the window and determines its end offset
+	 * excluding the line terminator.
+	 * 
+	 * @param row
+	 *            row
+	 * @return end offset or -1 if the row is no longer available because the
+	 *         source is closed.
+	 */
+	private int getRowEnd(final int row) {
+		final int start = rowStarts[row];
+		final int rowEnd = row + 1 < rowCount ? rowStarts[row + 1]
+				: indexedOffset;
+		final int end = fill(start, rowEnd);
+		if (start < windowStart || end < rowEnd) {
+			return -1;
+		}
+		return trimLineTerminator(start, end);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized int indexMore(final int maxRows) {
+		int added = 0;
+		while (added < maxRows
+				&& fill(indexedOffset, indexedOffset + 1) > indexedOffset) {
+			if (rowCount == rowStarts.length) {
+				final int[] newRowStarts = new int[rowStarts.length * 2];
+				System.arraycopy(rowStarts, 0, newRowStarts, 0, rowCount);
+				rowStarts = newRowStarts;
+			}
+			rowStarts[rowCount++] = indexedOffset;
+			// one more than the row so the line terminator is seen
+			final int available = fill(indexedOffset, indexedOffset
+					+ MAX_ROW_LENGTH + 1);
+			final int limit = Math.min(available, indexedOffset
+					+ MAX_ROW_LENGTH);
+			int i = indexedOffset;
+			while (i < limit && window.charAt(i - windowStart) != '\n') {
+				++i;
+			}
+			indexedOffset = i < available
+					&& window.charAt(i - windowStart) == '\n' ? i + 1 : i;
+			++added;
+		}
+		return added;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized boolean isComplete() {
+		if (closed) {
+			return indexedOffset >= windowStart + window.length();
+		}
+		return endOffset != -1 && indexedOffset >= endOffset;
+	}
+
+	/**
+	 * Opens the text from the start if it has not been opened yet.
+	 */
+	private void open() {
+		if (closed || endOffset != -1 && windowStart >= endOffset) {
+			return;
+		}
+		try {
+			reader = opener.open();
+		} catch (final IOException e) {
+			GasPricesLog.e(e.getMessage());
+		}
+		if (reader == null) {
+			endOffset = windowStart;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized String peekRow(final int row) {
+		final int start = rowStarts[row];
+		final int rowEnd = row + 1 < rowCount ? rowStarts[row + 1]
+				: indexedOffset;
+		if (start < windowStart || rowEnd > windowStart + window.length()) {
+			return null;
+		}
+		return window.substring(start - windowStart,
+				trimLineTerminator(start, rowEnd) - windowStart);
+	}
+
+	/**
+	 * Reads the next characters into the window.
+	 * 
+	 * @return <code>false</code> if the end of the text is reached.
+	 */
+	private boolean read() {
+		try {
+			final int n = reader.read(buffer);
+			if (n != -1) {
+				window.append(buffer, 0, n);
+				return true;
+			}
+		} catch (final IOException e) {
+			GasPricesLog.e(e.getMessage());
+		}
+		endOffset = windowStart + window.length();
+		closeReader();
+		return false;
+	}
+
+	/**
+	 * Checks if the text at the window offset matches the search text
+	 * ignoring case the same way as
+	 * {@link String#regionMatches(boolean, int, String, int, int)}.
+	 * 
+	 * @param offset
+	 *            offset in {@link #window}
+	 * @param searchText
+	 *            search text
+	 * @return <code>true</code> if it matches.
+	 */
+	private boolean regionMatches(final int offset, final String searchText) {
+		for (int i = 0; i < searchText.length(); ++i) {
+			final char c1 = window.charAt(offset + i);
+			final char c2 = searchText.charAt(i);
+			if (c1 != c2
+					&& Character.toUpperCase(c1) != Character.toUpperCase(c2)
+					&& Character.toLowerCase(c1) != Character.toLowerCase(c2)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if the row contains the search text ignoring case.
+	 * 
+	 * @param row
+	 *            row
+	 * @param searchText
+	 *            search text
+	 * @return <code>true</code> if the row contains the text.
+	 */
+	private synchronized boolean rowContains(final int row,
+			final String searchText) {
+		final int end = getRowEnd(row);
+		for (int i = rowStarts[row]; i + searchText.length() <= end; ++i) {
+			if (regionMatches(i - windowStart, searchText)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Empties the window and reads up to the offset, opening the text if it
+	 * has not been opened yet. The window is kept if there is nothing more to
+	 * read.
+	 * 
+	 * @param offset
+	 *            offset in the text that the window starts at.
+	 */
+	private void skipTo(final int offset) {
+		if (reader == null && windowStart == 0 && window.length() == 0) {
+			open();
+		}
+		if (reader == null) {
+			return;
+		}
+		windowStart += window.length();
+		window.setLength(0);
+		while (windowStart < offset && reader != null) {
+			if (!read()) {
+				break;
+			}
+			final int drop = Math.min(offset - windowStart, window.length());
+			window.delete(0, drop);
+			windowStart += drop;
+		}
+	}
+
+	/**
+	 * Determines the end offset of the text in the window without the line
+	 * terminator.
+	 * 
+	 * @param start
+	 *            start offset of the row
+	 * @param end
+	 *            end offset of the row including the line terminator
+	 * @return end offset without the line terminator.
+	 */
+	private int trimLineTerminator(final int start, final int end) {
+		int trimmed = end;
+		while (trimmed > start
+				&& (window.charAt(trimmed - 1 - windowStart) == '\n' || window
+						.charAt(trimmed - 1 - windowStart) == '\r')) {
+			--trimmed;
+		}
+		return trimmed;
+	}
+}
@@ -0,0 +1,657 @@
+package net.trajano.gasprices;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * This is an immutable set of per region aggregates of today's price: the
+ * minimum, maximum, mean and the number of cities whose price is rising or
+ * falling. Regions are the region headers in the {@link CityDirectory}. They
+ * are kept with the {@link PriceSnapshot}.
+ * </p>
+ * <p>
+ * The contribution of every city is kept so a new snapshot only has to remove
+ * the old contribution and add the new one for the cities that changed. The
+ * minimum and maximum of a region are only recomputed from its cities when
+ * the city that held them is changed or removed.
+ * </p>
+ * <p>
+ * The contributions are the regular price, the price change and the price
+ * date so they do not depend on the time. Today's price of a city changes
+ * when its price date passes, so the aggregates are only valid until the next
+ * price date of any city. {@link #at(long)} recomputes them from the
+ * contributions once that has passed.
+ * </p>
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class RegionAggregates {
+	/**
+	 * No aggregates.
+	 */
+	public static final RegionAggregates EMPTY = new RegionAggregates(
+			new String[0], new int[0], new int[0], new float[0], new float[0],
+			new long[0], Long.MIN_VALUE, Long.MAX_VALUE, new int[0],
+			new int[0], new int[0], new double[0], new float[0], new float[0]);
+
+	/**
+	 * Name of the file that stores the aggregates for the last snapshot.
+	 */
+	private static final String PERSISTED_FILE_NAME = "region_aggregates.bin"; // $NON-NLS-1$
+
+	/**
+	 * Format version of {@link #PERSISTED_FILE_NAME}.
+	 */
+	private static final int PERSISTED_VERSION = 2;
+
+	private static double[] copyOf(final double[] source, final int length) {
+		final double[] copy = new double[length];
+		System.arraycopy(source, 0, copy, 0, Math.min(source.length, length));
+		return copy;
+	}
+
+	private static float[] copyOf(final float[] source, final int length,
+			final float fill) {
+		final float[] copy = new float[length];
+		Arrays.fill(copy, fill);
+		System.arraycopy(source, 0, copy, 0, Math.min(source.length, length));
+		return copy;
+	}
+
+	private static int[] copyOf(final int[] source, final int length) {
+		final int[] copy = new int[length];
+		System.arraycopy(source, 0, copy, 0, Math.min(source.length, length));
+		return copy;
+	}
+
+	private static long[] copyOf(final long[] source, final int length) {
+		final long[] copy = new long[length];
+		System.arraycopy(source, 0, copy, 0, Math.min(source.length, length));
+		return copy;
+	}
+
+	/**
+	 * Computes the aggregates at a time from the contributions of every city.
+	 * 
+	 * @param regionNames
+	 *            region names
+	 * @param cityIds
+	 *            city IDs in ascending order
+	 * @param cityRegions
+	 *            region index of each city
+	 * @param cityRegularPrices
+	 *            regular price of each city
+	 * @param cityChanges
+	 *            price change of each city
+	 * @param cityPriceDates
+	 *            price date of each city
+	 * @param now
+	 *            current time in milliseconds since epoch used to determine
+	 *            today's price
+	 * @return the aggregates.
+	 */
+	private static RegionAggregates fromContributions(
+			final String[] regionNames, final int[] cityIds,
+			final int[] cityRegions, final float[] cityRegularPrices,
+			final float[] cityChanges, final long[] cityPriceDates,
+			final long now) {
+		long validFrom = Long.MIN_VALUE;
+		long validUntil = Long.MAX_VALUE;
+		for (final long priceDate : cityPriceDates) {
+			if (priceDate > now) {
+				validUntil = Math.min(validUntil, priceDate);
+			} else {
+				validFrom = Math.max(validFrom, priceDate);
+			}
+		}
+		final int regionCount = regionNames.length;
+		final RegionAggregates aggregates = new RegionAggregates(regionNames,
+				cityIds, cityRegions, cityRegularPrices, cityChanges,
+				cityPriceDates, validFrom, validUntil, new int[regionCount],
+				new int[regionCount], new int[regionCount],
+				new double[regionCount], copyOf(new float[0], regionCount,
+						Float.POSITIVE_INFINITY), copyOf(new float[0],
+						regionCount, Float.NEGATIVE_INFINITY));
+		for (int i = 0; i < cityIds.length; ++i) {
+			aggregates.add(cityRegions[i], aggregates.getCityPrice(i),
+					cityChanges[i]);
+		}
+		return aggregates;
+	}
+
+	/**
+	 * Reads the aggregates from {@link #PERSISTED_FILE_NAME}. This performs
+	 * disk access so it must not be called from the main thread.
+	 * 
+	 * @param directory
+	 *            directory containing the file
+	 * @param now
+	 *            current time in milliseconds since epoch used to determine
+	 *            today's price
+	 * @return the persisted aggregates, {@link #EMPTY} if the file is not
+	 *         readable or <code>null</code> if they were not persisted in the
+	 *         current format so they have to be computed from the price table.
+	 */
+	public static RegionAggregates restore(final File directory,
+			final long now) {
+		try {
+			final DataInputStream in = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(new File(
+							directory, PERSISTED_FILE_NAME))));
+			try {
+				if (in.readInt() != PERSISTED_VERSION) {
+					return null;
+				}
+				final String[] regionNames = new String[in.readInt()];
+				for (int i = 0; i < regionNames.length; ++i) {
+					regionNames[i] = in.readUTF();
+				}
+				final int cityCount = in.readInt();
+				final int[] cityIds = new int[cityCount];
+				final int[] cityRegions = new int[cityCount];
+				final float[] cityRegularPrices = new float[cityCount];
+				final float[] cityChanges = new float[cityCount];
+				final long[] cityPriceDates = new long[cityCount];
+				for (int i = 0; i < cityCount; ++i) {
+					cityIds[i] = in.readInt();
+					cityRegions[i] = in.readInt();
+					cityRegularPrices[i] = in.readFloat();
+					cityChanges[i] = in.readFloat();
+					cityPriceDates[i] = in.readLong();
+				}
+				return fromContributions(regionNames, cityIds, cityRegions,
+						cityRegularPrices, cityChanges, cityPriceDates, now);
+			} finally {
+				in.close();
+			}
+		} catch (final FileNotFoundException e) {
+			return null;
+		} catch (final IOException e) {
+			GasPricesLog.e(e.getMessage());
+			return EMPTY;
+		}
+	}
+
+	/**
+	 * Price change of each city in {@link #cityIds}.
+	 */
+	private final float[] cityChanges;
+
+	/**
+	 * City IDs in ascending order.
+	 */
+	private final int[] cityIds;
+
+	/**
+	 * Price date of each city in {@link #cityIds}.
+	 */
+	private final long[] cityPriceDates;
+
+	/**
+	 * Region index of each city in {@link #cityIds}.
+	 */
+	private final int[] cityRegions;
+
+	/**
+	 * Regular price of each city in {@link #cityIds}.
+	 */
+	private final float[] cityRegularPrices;
+
+	private final int[] counts;
+
+	private final int[] fallingCounts;
+
+	private final float[] maximums;
+
+	private final float[] minimums;
+
+	private final String[] regionNames;
+
+	private final int[] risingCounts;
+
+	private final double[] sums;
+
+	/**
+	 * Earliest time the aggregates are valid for.
+	 */
+	private final long validFrom;
+
+	/**
+	 * Time the aggregates are no longer valid. This is the next price date
+	 * of any city.
+	 */
+	private final long validUntil;
+
+	private RegionAggregates(final String[] regionNames, final int[] cityIds,
+			final int[] cityRegions, final float[] cityRegularPrices,
+			final float[] cityChanges, final long[] cityPriceDates,
+			final long validFrom, final long validUntil, final int[] counts,
+			final int[] risingCounts, final int[] fallingCounts,
+			final double[] sums, final float[] minimums, final float[] maximums) {
+		this.regionNames = regionNames;
+		this.cityIds = cityIds;
+		this.cityRegions = cityRegions;
+		this.cityRegularPrices = cityRegularPrices;
+		this.cityChanges = cityChanges;
+		this.cityPriceDates = cityPriceDates;
+		this.validFrom = validFrom;
+		this.validUntil = validUntil;
+		this.counts = counts;
+		this.risingCounts = risingCounts;
+		this.fallingCounts = fallingCounts;
+		this.sums = sums;
+		this.minimums = minimums;
+		this.maximums = maximums;
+	}
+
+	/**
+	 * Adds the contribution of a city to its region.
+	 * 
+	 * @param region
+	 *            region index
+	 * @param price
+	 *            today's price
+	 * @param change
+	 *            price change
+	 */
+	private void add(final int region, final float price, final float change) {
+		++counts[region];
+		sums[region] += price;
+		if (change > 0) {
+			++risingCounts[region];
+		} else if (change < 0) {
+			++fallingCounts[region];
+		}
+		minimums[region] = Math.min(minimums[region], price);
+		maximums[region] = Math.max(maximums[region], price);
+	}
+
+	/**
+	 * Gets the aggregates of today's price at a time. This returns these
+	 * aggregates if no price date has passed since they were computed,
+	 * otherwise they are recomputed from the contributions.
+	 * 
+	 * @param now
+	 *            current time in milliseconds since epoch
+	 * @return the aggregates.
+	 */
+	public RegionAggregates at(final long now) {
+		if (now >= validFrom && now < validUntil) {
+			return this;
+		}
+		return fromContributions(regionNames, cityIds, cityRegions,
+				cityRegularPrices, cityChanges, cityPriceDates, now);
+	}
+
+	/**
+	 * Today's price of the city at the time the aggregates are valid for.
+	 * 
+	 * @param i
+	 *            index into {@link #cityIds}
+	 * @return price
+	 */
+	private float getCityPrice(final int i) {
+		if (cityPriceDates[i] >= validUntil) {
+			return cityRegularPrices[i] - cityChanges[i];
+		}
+		return cityRegularPrices[i];
+	}
+
+	/**
+	 * Number of cities in the region.
+	 * 
+	 * @param region
+	 *            region index
+	 * @return city count
+	 */
+	public int getCount(final int region) {
+		return counts[region];
+	}
+
+	/**
+	 * Number of cities in the region whose price is going down.
+	 * 
+	 * @param region
+	 *            region index
+	 * @return city count
+	 */
+	public int getFallingCount(final int region) {
+		return fallingCounts[region];
+	}
+
+	/**
+	 * Highest price today in the region.
+	 * 
+	 * @param region
+	 *            region index
+	 * @return price or {@link Float#NaN} if there are no cities.
+	 */
+	public float getMaximum(final int region) {
+		if (counts[region] == 0) {
+			return Float.NaN;
+		}
+		return maximums[region];
+	}
+
+	/**
+	 * Mean price today in the region.
+	 * 
+	 * @param region
+	 *            region index
+	 * @return price or {@link Float#NaN} if there are no cities.
+	 */
+	public float getMean(final int region) {
+		if (counts[region] == 0) {
+			return Float.NaN;
+		}
+		return (float) (sums[region] / counts[region]);
+	}
+
+	/**
+	 * Lowest price today in the region.
+	 * 
+	 * @param region
+	 *            region index
+	 * @return price or {@link Float#NaN} if there are no cities.
+	 */
+	public float getMinimum(final int region) {
+		if (counts[region] == 0) {
+			return Float.NaN;
+		}
+		return minimums[region];
+	}
+
+	/**
+	 * Number of regions.
+	 * 
+	 * @return region count
+	 */
+	public int getRegionCount() {
+		return regionNames.length;
+	}
+
+	/**
+	 * Gets the name of the region.
+	 * 
+	 * @param region
+	 *            region index
+	 * @return name
+	 */
+	public String getRegionName(final int region) {
+		return regionNames[region];
+	}
+
+	/**
+	 * Number of cities in the region whose price is going up.
+	 * 
+	 * @param region
+	 *            region index
+	 * @return city count
+	 */
+	public int getRisingCount(final int region) {
+		return risingCounts[region];
+	}
+
+	/**
+	 * Writes the aggregates to {@link #PERSISTED_FILE_NAME}. Only the city
+	 * contributions are written, the aggregates are computed from them when
+	 * they are read. This performs disk access so it must not be called from
+	 * the main thread.
+	 * 
+	 * @param directory
+	 *            directory to write the file to
+	 */
+	public void persist(final File directory) {
+		PersistedFile.write(directory, PERSISTED_FILE_NAME,
+				new PersistedFile.Content() {
+
+					@Override
+					public void write(final DataOutputStream out)
+							throws IOException {
+						out.writeInt(PERSISTED_VERSION);
+						out.writeInt(regionNames.length);
+						for (final String regionName : regionNames) {
+							out.writeUTF(regionName);
+						}
+						out.writeInt(cityIds.length);
+						for (int i = 0; i < cityIds.length; ++i) {
+							out.writeInt(cityIds[i]);
+							out.writeInt(cityRegions[i]);
+							out.writeFloat(cityRegularPrices[i]);
+							out.writeFloat(cityChanges[i]);
+							out.writeLong(cityPriceDates[i]);
+						}
+					}
+				});
+	}
+
+	/**
+	 * Recomputes the minimum and maximum of the region from its cities.
+	 * 
+	 * @param region
+	 *            region index
+	 */
+	private void recomputeExtremes(final int region) {
+		float minimum = Float.POSITIVE_INFINITY;
+		float maximum = Float.NEGATIVE_INFINITY;
+		for (int i = 0; i < cityIds.length; ++i) {
+			if (cityRegions[i] == region) {
+				final float price = getCityPrice(i);
+				minimum = Math.min(minimum, price);
+				maximum = Math.max(maximum, price);
+			}
+		}
+		minimums[region] = minimum;
+		maximums[region] = maximum;
+	}
+
+	/**
+	 * Finds the region of the city.
+	 * 
+	 * @param cityId
+	 *            city ID
+	 * @return region index or -1 if the city is not aggregated.
+	 */
+	public int regionOf(final long cityId) {
+		if (cityId < 0 || cityId > Integer.MAX_VALUE) {
+			return -1;
+		}
+		final int i = Arrays.binarySearch(cityIds, (int) cityId);
+		if (i < 0) {
+			return -1;
+		}
+		return cityRegions[i];
+	}
+
+	/**
+	 * Removes the contribution of a city from its region.
+	 * 
+	 * @param region
+	 *            region index
+	 * @param price
+	 *            today's price
+	 * @param change
+	 *            price change
+	 * @return <code>true</code> if the city held the minimum or maximum so they
+	 *         need to be recomputed.
+	 */
+	private boolean remove(final int region, final float price,
+			final float change) {
+		--counts[region];
+		sums[region] -= price;
+		if (change > 0) {
+			--risingCounts[region];
+		} else if (change < 0) {
+			--fallingCounts[region];
+		}
+		return price <= minimums[region] || price >= maximums[region];
+	}
+
+	/**
+	 * <p>
+	 * Applies the changes in a new snapshot. Only the cities that changed,
+	 * were added or were removed have their contributions updated. New cities
+	 * are placed in the region of their header in the directory and cities
+	 * without a region are not aggregated.
+	 * </p>
+	 * <p>
+	 * If there are no aggregates yet, every city in the table is treated as
+	 * added.
+	 * </p>
+	 * 
+	 * @param directory
+	 *            directory used to find the region of new cities
+	 * @param table
+	 *            price table of the new snapshot
+	 * @param changedCityIds
+	 *            IDs of the cities that changed or were added
+	 * @param removedCityIds
+	 *            IDs of the cities that are no longer in the snapshot
+	 * @param now
+	 *            current time in milliseconds since epoch used to determine
+	 *            today's price
+	 * @return the updated aggregates.
+	 */
+	public RegionAggregates update(final CityDirectory directory,
+			final CityPriceTable table, final long[] changedCityIds,
+			final long[] removedCityIds, final long now) {
+		final RegionAggregates base = at(now);
+		final int[] changed;
+		if (base.cityIds.length == 0) {
+			changed = new int[table.size()];
+			for (int row = 0; row < table.size(); ++row) {
+				changed[row] = table.getCityId(row);
+			}
+		} else {
+			changed = new int[changedCityIds.length];
+			for (int i = 0; i < changed.length; ++i) {
+				changed[i] = (int) changedCityIds[i];
+			}
+			Arrays.sort(changed);
+		}
+		final int[] removed = new int[removedCityIds.length];
+		for (int i = 0; i < removed.length; ++i) {
+			removed[i] = (int) removedCityIds[i];
+		}
+		Arrays.sort(removed);
+
+		// regions for the changed cities, regions that are new are appended
+		final int[] changedRegions = new int[changed.length];
+		String[] newRegionNames = base.regionNames;
+		for (int i = 0; i < changed.length; ++i) {
+			final int position = directory.indexOf(changed[i]);
+			final int header = position == -1 ? -1 : directory
+					.getRegionPosition(position);
+			if (header == -1) {
+				changedRegions[i] = -1;
+				continue;
+			}
+			final String regionName = directory.getName(header);
+			int region = 0;
+			while (region < newRegionNames.length
+					&& !newRegionNames[region].equals(regionName)) {
+				++region;
+			}
+			if (region == newRegionNames.length) {
+				final String[] grown = new String[region + 1];
+				System.arraycopy(newRegionNames, 0, grown, 0, region);
+				grown[region] = regionName;
+				newRegionNames = grown;
+			}
+			changedRegions[i] = region;
+		}
+
+		final int regionCount = newRegionNames.length;
+		final int capacity = base.cityIds.length + changed.length;
+		final int[] newCityIds = new int[capacity];
+		final int[] newCityRegions = new int[capacity];
+		final float[] newCityRegularPrices = new float[capacity];
+		final float[] newCityChanges = new float[capacity];
+		final long[] newCityPriceDates = new long[capacity];
+		long newValidFrom = base.validFrom;
+		long newValidUntil = base.validUntil;
+		final RegionAggregates result = new RegionAggregates(newRegionNames,
+				newCityIds, newCityRegions, newCityRegularPrices,
+				newCityChanges, newCityPriceDates, newValidFrom,
+				newValidUntil, copyOf(base.counts, regionCount), copyOf(
+						base.risingCounts, regionCount), copyOf(
+						base.fallingCounts, regionCount), copyOf(base.sums,
+						regionCount), copyOf(base.minimums, regionCount,
+						Float.POSITIVE_INFINITY), copyOf(base.maximums,
+						regionCount, Float.NEGATIVE_INFINITY));
+		final boolean[] dirty = new boolean[regionCount];
+		int count = 0;
+		int c = 0;
+		int i = 0;
+		while (i < base.cityIds.length || c < changed.length) {
+			if (c == changed.length || i < base.cityIds.length
+					&& base.cityIds[i] < changed[c]) {
+				// unchanged cities are copied unless they were removed
+				if (Arrays.binarySearch(removed, base.cityIds[i]) >= 0) {
+					dirty[base.cityRegions[i]] |= result.remove(
+							base.cityRegions[i], base.getCityPrice(i),
+							base.cityChanges[i]);
+				} else {
+					newCityIds[count] = base.cityIds[i];
+					newCityRegions[count] = base.cityRegions[i];
+					newCityRegularPrices[count] = base.cityRegularPrices[i];
+					newCityChanges[count] = base.cityChanges[i];
+					newCityPriceDates[count] = base.cityPriceDates[i];
+					++count;
+				}
+				++i;
+				continue;
+			}
+			final int cityId = changed[c++];
+			int region = changedRegions[c - 1];
+			if (i < base.cityIds.length && base.cityIds[i] == cityId) {
+				// existing cities stay in their region
+				region = base.cityRegions[i];
+				dirty[region] |= result.remove(region, base.getCityPrice(i),
+						base.cityChanges[i]);
+				++i;
+			}
+			final int row = table.indexOf(cityId);
+			if (region == -1 || row == -1
+					|| Arrays.binarySearch(removed, cityId) >= 0) {
+				continue;
+			}
+			final long priceDate = table.getPriceDate(row);
+			if (priceDate > now) {
+				newValidUntil = Math.min(newValidUntil, priceDate);
+			} else {
+				newValidFrom = Math.max(newValidFrom, priceDate);
+			}
+			final float change = table.getPriceDifference(row);
+			result.add(region, table.getCurrentPrice(row, now), change);
+			newCityIds[count] = cityId;
+			newCityRegions[count] = region;
+			newCityRegularPrices[count] = table.getRegularPrice(row);
+			newCityChanges[count] = change;
+			newCityPriceDates[count] = priceDate;
+			++count;
+		}
+
+		final RegionAggregates trimmed = new RegionAggregates(newRegionNames,
+				copyOf(newCityIds, count), copyOf(newCityRegions, count),
+				copyOf(newCityRegularPrices, count, 0), copyOf(
+						newCityChanges, count, 0), copyOf(newCityPriceDates,
+						count), newValidFrom, newValidUntil, result.counts,
+				result.risingCounts, result.fallingCounts, result.sums,
+				result.minimums, result.maximums);
+		for (int region = 0; region < regionCount; ++region) {
+			if (dirty[region]) {
+				trimmed.recomputeExtremes(region);
+			}
+		}
+		return trimmed;
+	}
+}
@@ -0,0 +1,137 @@
+package net.trajano.gasprices;
+
+/**
+ * {@link FeedSource} over feed text that is already in memory. Only the row
+ * start offsets are kept in addition to the text. Access is synchronized so
+ * rows can be read by the highlighter thread while the list indexes more.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class StringFeedSource implements FeedSource {
+	/**
+	 * Offset where the next row to be indexed starts.
+	 */
+	private int indexedOffset;
+
+	/**
+	 * Number of rows that have been indexed.
+	 */
+	private int rowCount;
+
+	/**
+	 * Start offset of each row. The end of a row is the start of the next row
+	 * or {@link #indexedOffset} for the last row with line terminators
+	 * removed.
+	 */
+	private int[] rowStarts = new int[256];
+
+	private final String text;
+
+	/**
+	 * Constructs the source.
+	 * 
+	 * @param text
+	 *            feed text, <code>null</code> is treated as empty.
+	 */
+	public StringFeedSource(final String text) {
+		this.text = text == null ? "" : text;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized int find(final String searchText, final int fromRow) {
+		int row = fromRow < 0 ? 0 : fromRow;
+		while (true) {
+			for (; row < rowCount; ++row) {
+				final int start = rowStarts[row];
+				final int end = getRowEnd(row);
+				for (int i = start; i + searchText.length() <= end; ++i) {
+					if (text.regionMatches(true, i, searchText, 0,
+							searchText.length())) {
+						return row;
+					}
+				}
+			}
+			if (indexMore(256) == 0) {
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized String getRow(final int row) {
+		return text.substring(rowStarts[row], getRowEnd(row));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Determines the end offset of the row excluding the line terminator.
+	 * 
+	 * @param row
+	 *            row
+	 * @return end offset
+	 */
+	private int getRowEnd(final int row) {
+		int end = row + 1 < rowCount ? rowStarts[row + 1] : indexedOffset;
+		while (end > rowStarts[row]
+				&& (text.charAt(end - 1) == '\n' || text.charAt(end - 1) == '\r')) {
+			--end;
+		}
+		return end;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized int indexMore(final int maxRows) {
+		int added = 0;
+		final int length = text.length();
+		while (added < maxRows && indexedOffset < length) {
+			if (rowCount == rowStarts.length) {
+				final int[] newRowStarts = new int[rowStarts.length * 2];
+				System.arraycopy(rowStarts, 0, newRowStarts, 0, rowCount);
+				rowStarts = newRowStarts;
+			}
+			rowStarts[rowCount++] = indexedOffset;
+			final int limit = Math.min(length, indexedOffset + MAX_ROW_LENGTH);
+			int i = indexedOffset;
+			while (i < limit && text.charAt(i) != '\n') {
+				++i;
+			}
+			indexedOffset = i < length && text.charAt(i) == '\n' ? i + 1 : i;
+			++added;
+		}
+		return added;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized boolean isComplete() {
+		return indexedOffset >= text.length();
+	}
+
+	/**
+	 * {@inheritDoc} The text is in memory so this is the same as
+	 * {@link #getRow(int)}.
+	 */
+	@Override
+	public String peekRow(final int row) {
+		return getRow(row);
+	}
+}
@@ -0,0 +1,100 @@
+package net.trajano.gasprices;
+
+import java.util.Calendar;
+
+/**
+ * This determines when the feed is updated. There are three times for updates
+ * each day: 5pm, 8pm and midnight in the default time zone.
+ *
+ * @author Archimedes Trajano (developer@trajano.net)
+ *
+ */
+public final class UpdateSchedule {
+	/**
+	 * Hour of the evening update.
+	 */
+	private static final int EVENING_UPDATE_HOUR = 20;
+
+	/**
+	 * Hour of the first update of the day after midnight.
+	 */
+	private static final int FIRST_UPDATE_HOUR = 17;
+
+	/**
+	 * Maximum number of doublings of {@link #RETRY_DELAY_MILLIS}.
+	 */
+	private static final int MAX_RETRY_BACKOFF = 4;
+
+	/**
+	 * Number of recent attempts whose failure rate is considered.
+	 */
+	public static final int RECENT_ATTEMPTS = 10;
+
+	/**
+	 * Failure rate of the {@link #RECENT_ATTEMPTS} at which retries stop
+	 * until the next scheduled update.
+	 */
+	private static final float RETRY_FAILURE_RATE_LIMIT = 0.5f;
+
+	/**
+	 * Delay before the first retry after a failure in milliseconds.
+	 */
+	private static final long RETRY_DELAY_MILLIS = 5 * 60 * 1000L;
+
+	/**
+	 * This returns when the update should be attempted given the update
+	 * history. After a failure the update is retried after
+	 * {@link #RETRY_DELAY_MILLIS}, doubling with each consecutive failure,
+	 * unless most of the {@link #RECENT_ATTEMPTS} failed in which case it waits
+	 * for the scheduled update. A retry is never later than the scheduled
+	 * update.
+	 * 
+	 * @param scheduledTime
+	 *            next scheduled update time in milliseconds since epoch.
+	 * @param failureLog
+	 *            update history
+	 * @return the next attempt time in milliseconds since epoch.
+	 */
+	public static long nextAttemptTime(final long scheduledTime,
+			final FailureLog failureLog) {
+		final int consecutiveFailures = failureLog
+				.getConsecutiveFailureCount();
+		if (consecutiveFailures == 0
+				|| failureLog.getFailureRate(RECENT_ATTEMPTS) >= RETRY_FAILURE_RATE_LIMIT) {
+			return scheduledTime;
+		}
+		final long retryTime = failureLog.getTime(0)
+				+ (RETRY_DELAY_MILLIS << Math.min(consecutiveFailures - 1,
+						MAX_RETRY_BACKOFF));
+		return Math.min(retryTime, scheduledTime);
+	}
+
+	/**
+	 * This returns the next update time given the last update time.
+	 *
+	 * @param lastUpdateTime
+	 *            last update time in milliseconds since epoch.
+	 * @return the next update time in milliseconds since epoch.
+	 */
+	public static long nextUpdateTime(final long lastUpdateTime) {
+		final Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(lastUpdateTime);
+		final int hour = calendar.get(Calendar.HOUR_OF_DAY);
+		if (hour < FIRST_UPDATE_HOUR) {
+			calendar.set(Calendar.HOUR_OF_DAY, FIRST_UPDATE_HOUR);
+		} else if (hour < EVENING_UPDATE_HOUR) {
+			calendar.set(Calendar.HOUR_OF_DAY, EVENING_UPDATE_HOUR);
+		} else {
+			calendar.add(Calendar.DAY_OF_MONTH, 1);
+			calendar.set(Calendar.HOUR_OF_DAY, 0);
+		}
+		calendar.set(Calendar.MINUTE, 0);
+		calendar.set(Calendar.SECOND, 0);
+		calendar.set(Calendar.MILLISECOND, 0);
+		return calendar.getTimeInMillis();
+	}
+
+	private UpdateSchedule() {
+
+	}
+}
@@ -0,0 +1,89 @@
+package net.trajano.gasprices;
+
+import java.util.Arrays;
+
+/**
+ * This remembers the fingerprint of the last content pushed to each widget.
+ * It is a map from app widget ID to fingerprint stored in two sorted primitive
+ * arrays so lookups do not box or allocate.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class WidgetFingerprints {
+	/**
+	 * Returned by {@link #get(int)} when there is no fingerprint for the
+	 * widget.
+	 */
+	public static final long NONE = 0;
+
+	private long[] fingerprints = new long[8];
+
+	/**
+	 * Sorted app widget IDs.
+	 */
+	private int[] keys = new int[8];
+
+	private int size;
+
+	/**
+	 * Gets the fingerprint of the last content pushed to the widget.
+	 * 
+	 * @param appWidgetId
+	 *            app widget ID
+	 * @return the fingerprint or {@link #NONE}.
+	 */
+	public synchronized long get(final int appWidgetId) {
+		final int i = Arrays.binarySearch(keys, 0, size, appWidgetId);
+		return i < 0 ? NONE : fingerprints[i];
+	}
+
+	/**
+	 * Records the fingerprint of the content pushed to the widget.
+	 * 
+	 * @param appWidgetId
+	 *            app widget ID
+	 * @param fingerprint
+	 *            fingerprint
+	 */
+	public synchronized void put(final int appWidgetId, final long fingerprint) {
+		int i = Arrays.binarySearch(keys, 0, size, appWidgetId);
+		if (i >= 0) {
+			fingerprints[i] = fingerprint;
+			return;
+		}
+		i = -i - 1;
+		if (size == keys.length) {
+			final int[] newKeys = new int[size * 2];
+			final long[] newFingerprints = new long[size * 2];
+			System.arraycopy(keys, 0, newKeys, 0, size);
+			System.arraycopy(fingerprints, 0, newFingerprints, 0, size);
+			keys = newKeys;
+			fingerprints = newFingerprints;
+		}
+		System.arraycopy(keys, i, keys, i + 1, size - i);
+		System.arraycopy(fingerprints, i, fingerprints, i + 1, size - i);
+		keys[i] = appWidgetId;
+		fingerprints[i] = fingerprint;
+		++size;
+	}
+
+	/**
+	 * Forgets the fingerprints of the widgets so the next push is a full
+	 * update.
+	 * 
+	 * @param appWidgetIds
+	 *            app widget IDs
+	 */
+	public synchronized void remove(final int... appWidgetIds) {
+		for (final int appWidgetId : appWidgetIds) {
+			final int i = Arrays.binarySearch(keys, 0, size, appWidgetId);
+			if (i >= 0) {
+				System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+				System.arraycopy(fingerprints, i + 1, fingerprints, i, size - i
+						- 1);
+				--size;
+			}
+		}
+	}
+}
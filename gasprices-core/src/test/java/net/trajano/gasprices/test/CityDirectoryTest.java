@@ -0,0 +1,92 @@
+package net.trajano.gasprices.test;
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+import net.trajano.gasprices.CityDirectory;
+
+/**
+ * Tests the city directory.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class CityDirectoryTest extends TestCase {
+	public void testParse() {
+		final CityDirectory directory = new CityDirectory(new String[] {
+				"Greater Toronto Area", "Etobicoke=111", "Toronto=133",
+				"British Columbia", "Vancouver=123" });
+		assertEquals(5, directory.size());
+		assertEquals(3, directory.getCityCount());
+		assertTrue(directory.isHeader(0));
+		assertEquals("Greater Toronto Area", directory.getName(0));
+		assertEquals("Toronto", directory.getName(2));
+		assertEquals(133, directory.getId(2));
+		assertEquals(3, directory.getRegionPosition(4));
+		assertEquals(4, directory.indexOf(123));
+		assertEquals(1, directory.indexOf(111));
+		assertEquals(-1, directory.indexOf(-1));
+		assertEquals(-1, directory.indexOf(5));
+		assertEquals(123, directory.getValidCityId(123));
+		assertEquals(CityDirectory.DEFAULT_CITY_ID,
+				directory.getValidCityId(5));
+	}
+
+	public void testMerge() {
+		final CityDirectory directory = new CityDirectory(new String[] {
+				"Greater Toronto Area", "Etobicoke=111", "Toronto=133",
+				"British Columbia", "Vancouver=123" });
+		assertSame(directory, directory.merge(new int[] { 123, 133, 111 },
+				new String[] { "Vancouver", "Toronto", "Etobicoke" }, "Other"));
+		assertSame(directory, directory.merge(new int[0], new String[0],
+				"Other"));
+
+		final CityDirectory merged = directory.merge(new int[] { 133, 111, 7,
+				5 }, new String[] { "Toronto", "Etobicoke", "Zurich", "Aylmer" },
+				"Other");
+		assertEquals(6, merged.size());
+		assertEquals(-1, merged.indexOf(123));
+		assertEquals("Greater Toronto Area", merged.getName(0));
+		assertEquals("Other", merged.getName(3));
+		assertEquals("Aylmer", merged.getName(4));
+		assertEquals(5, merged.getId(4));
+		assertEquals(7, merged.getId(5));
+		assertEquals(3, merged.getRegionPosition(5));
+
+		final CityDirectory renamed = merged.merge(new int[] { 133, 9, 5, 7,
+				111 }, new String[] { "City of Toronto", "Barrie", "Aylmer",
+				"Zurich", "Etobicoke" }, "Other");
+		assertEquals(7, renamed.size());
+		assertEquals("City of Toronto", renamed.getName(renamed.indexOf(133)));
+		assertEquals(6, renamed.indexOf(9));
+		assertEquals(3, renamed.getRegionPosition(6));
+	}
+
+	/**
+	 * The persisted directory is restored with the same entries.
+	 */
+	public void testPersist() throws IOException {
+		final File files = File.createTempFile("gasprices", "");
+		if (!files.delete() || !files.mkdir()) {
+			throw new IOException("unable to create " + files);
+		}
+		try {
+			assertNull(CityDirectory.restore(files));
+			final CityDirectory directory = new CityDirectory(new String[] {
+					"Greater Toronto Area", "Etobicoke=111", "Toronto=133" });
+			directory.persist(files);
+			final CityDirectory restored = CityDirectory.restore(files);
+			assertEquals(directory.size(), restored.size());
+			for (int i = 0; i < directory.size(); ++i) {
+				assertEquals(directory.getId(i), restored.getId(i));
+				assertEquals(directory.getName(i), restored.getName(i));
+			}
+		} finally {
+			for (final File file : files.listFiles()) {
+				file.delete();
+			}
+			files.delete();
+		}
+	}
+}
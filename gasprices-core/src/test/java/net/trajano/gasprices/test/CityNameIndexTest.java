@@ -0,0 +1,46 @@
+package net.trajano.gasprices.test;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import net.trajano.gasprices.CityDirectory;
+import net.trajano.gasprices.CityNameIndex;
+
+/**
+ * Tests the type-ahead city name index and compares it against a linear scan.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class CityNameIndexTest extends TestCase {
+	public void testMatchesLinearScan() {
+		final CityDirectory directory = SyntheticCities.directory(20, 50);
+		final CityNameIndex index = directory.getNameIndex();
+		final String[] queries = { "b", "Mar", "queka", "fal", "falls",
+				"x", "ville", "SA LIN" };
+		for (final String query : queries) {
+			assertTrue(query, Arrays.equals(
+					SyntheticCities.linearSearch(directory, query),
+					index.search(query)));
+		}
+		assertNull(index.search(" "));
+	}
+
+	public void testNormalize() {
+		assertEquals("quebec city",
+				CityNameIndex.normalize(" Qu\u00e9bec  City "));
+		assertEquals("st catharines",
+				CityNameIndex.normalize("St. Catharines"));
+	}
+
+	public void testRegionHeadersKept() {
+		final CityDirectory directory = new CityDirectory(new String[] {
+				"Ontario", "North York=1", "Toronto=133", "Quebec",
+				"Qu\u00e9bec City=2", "New York=3" });
+		final CityNameIndex index = directory.getNameIndex();
+		assertTrue(Arrays.equals(new int[] { 0, 1, 3, 5 },
+				index.search("york")));
+		assertTrue(Arrays.equals(new int[] { 3, 4 }, index.search("que")));
+		assertEquals(0, index.search("z").length);
+	}
+}
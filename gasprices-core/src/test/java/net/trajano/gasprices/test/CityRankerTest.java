@@ -0,0 +1,96 @@
+package net.trajano.gasprices.test;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import net.trajano.gasprices.CityDirectory;
+import net.trajano.gasprices.CityPriceTable;
+import net.trajano.gasprices.CityRanker;
+
+/**
+ * Tests the city ranking.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class CityRankerTest extends TestCase {
+	/**
+	 * Price date in the past so the regular price is today's price.
+	 */
+	private static final long PAST = 0;
+
+	private CityDirectory directory;
+
+	private CityPriceTable table;
+
+	private int[] cityIds(final int[] rows, final int count) {
+		final int[] ids = new int[count];
+		for (int i = 0; i < count; ++i) {
+			ids[i] = table.getCityId(rows[i]);
+		}
+		return ids;
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		directory = new CityDirectory(new String[] { "East", "A=1", "B=2",
+				"West", "C=3", "D=4" });
+		table = new CityPriceTable.Builder(4).add(3, 120.5f, -1f, PAST)
+				.add(1, 119.9f, 2.5f, PAST).add(4, 118.0f, 0f, PAST)
+				.add(2, 125.0f, -3f, PAST).build();
+	}
+
+	public void testRank() {
+		final CityRanker ranker = new CityRanker();
+		final int[] rows = new int[table.size()];
+		int count = ranker.rank(table, CityRanker.ORDER_PRICE_TODAY,
+				directory, -1, 1, rows);
+		assertTrue(Arrays.equals(new int[] { 4, 1, 3, 2 },
+				cityIds(rows, count)));
+		count = ranker.rank(table, CityRanker.ORDER_CHANGE, directory, -1,
+				1, rows);
+		assertTrue(Arrays.equals(new int[] { 1, 4, 3, 2 },
+				cityIds(rows, count)));
+		count = ranker.rank(table, CityRanker.ORDER_ABSOLUTE_CHANGE,
+				directory, -1, 1, rows);
+		assertTrue(Arrays.equals(new int[] { 2, 1, 3, 4 },
+				cityIds(rows, count)));
+		count = ranker.rank(table, CityRanker.ORDER_PRICE_TODAY, directory,
+				3, 1, rows);
+		assertTrue(Arrays.equals(new int[] { 4, 3 }, cityIds(rows, count)));
+	}
+
+	public void testTomorrowsPrice() {
+		final CityPriceTable tomorrow = new CityPriceTable.Builder(1).add(5,
+				120f, 2f, 1000).build();
+		assertEquals(118f, tomorrow.getCurrentPrice(0, 999), 0.001f);
+		assertEquals(120f, tomorrow.getCurrentPrice(0, 1000), 0.001f);
+		assertEquals(0, tomorrow.indexOf(5));
+		assertEquals(-1, tomorrow.indexOf(6));
+	}
+
+	/**
+	 * Compares the top-k against the full ranking over 10,000 cities.
+	 */
+	public void testTopKMatchesRank() {
+		final int cityCount = 10000;
+		final CityPriceTable.Builder builder = new CityPriceTable.Builder(
+				cityCount);
+		for (int i = 1; i <= cityCount; ++i) {
+			builder.add(i, 100 + i * 7919 % 500 / 10f, i % 41 / 10f - 2, PAST);
+		}
+		table = builder.build();
+		final CityRanker ranker = new CityRanker();
+		final int[] rows = new int[cityCount];
+		final int[] topRows = new int[10];
+		for (int order = CityRanker.ORDER_PRICE_TODAY; order <= CityRanker.ORDER_ABSOLUTE_CHANGE; ++order) {
+			ranker.rank(table, order, directory, -1, 1, rows);
+			assertEquals(10, ranker.topK(table, order, directory, -1, 1, 10,
+					topRows));
+			for (int i = 0; i < 10; ++i) {
+				assertEquals(rows[i], topRows[i]);
+			}
+		}
+	}
+}
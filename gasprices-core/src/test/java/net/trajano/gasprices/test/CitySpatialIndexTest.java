@@ -0,0 +1,61 @@
+package net.trajano.gasprices.test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import net.trajano.gasprices.CityDirectory;
+import net.trajano.gasprices.CitySpatialIndex;
+
+/**
+ * Tests the nearest city index and compares it against a linear scan.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class CitySpatialIndexTest extends TestCase {
+	/**
+	 * The nearest cities found with the index are the same as the ones found
+	 * with a linear scan over 5,000 cities spread over North America.
+	 */
+	public void testMatchesLinearScan() {
+		final int cityCount = 5000;
+		final Random random = new Random(37);
+		final int[] ids = new int[cityCount];
+		final double[] latitudes = new double[cityCount];
+		final double[] longitudes = new double[cityCount];
+		for (int i = 0; i < cityCount; ++i) {
+			ids[i] = i + 1;
+			latitudes[i] = 25 + random.nextDouble() * 35;
+			longitudes[i] = -135 + random.nextDouble() * 75;
+		}
+		final CitySpatialIndex index = new CitySpatialIndex(ids, latitudes,
+				longitudes);
+		for (int i = 0; i < 200; ++i) {
+			final double latitude = 25 + random.nextDouble() * 35;
+			final double longitude = -135 + random.nextDouble() * 75;
+			assertTrue(Arrays.equals(SyntheticCities.linearNearest(ids,
+					latitudes, longitudes, latitude, longitude, 5),
+					index.nearest(latitude, longitude, 5)));
+		}
+	}
+
+	public void testNearestCity() {
+		final CitySpatialIndex index = new CitySpatialIndex(new String[] {
+				"133=43.6532,-79.3832", "123=49.2827,-123.1207",
+				"86=45.4215,-75.6972", "111=43.6205,-79.5132",
+				"244=45.5017,-73.5673" });
+		assertEquals(5, index.size());
+		assertTrue(Arrays.equals(new int[] { 133, 111 },
+				index.nearest(43.66, -79.39, 2)));
+		assertEquals(123, index.nearest(49.0, -122.0, 1)[0]);
+		assertEquals(5, index.nearest(0, 0, 10).length);
+
+		final CityDirectory directory = new CityDirectory(new String[] {
+				"Ontario", "Ottawa=86", "Etobicoke=111" });
+		assertEquals(111, index.findNearestCityId(43.66, -79.39, directory));
+		assertEquals(86, index.findNearestCityId(45.5, -73.6, directory));
+		assertEquals(-1, index.findNearestCityId(45.5, -73.6,
+				new CityDirectory(new String[0])));
+	}
+}
@@ -0,0 +1,114 @@
+package net.trajano.gasprices.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+import junit.framework.TestCase;
+import net.trajano.gasprices.FailureLog;
+import net.trajano.gasprices.FeedException;
+import net.trajano.gasprices.PipelineMetrics;
+import net.trajano.gasprices.UpdateSchedule;
+
+/**
+ * Tests the {@link FailureLog} and the retries it drives.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class FailureLogTest extends TestCase {
+	private File directory;
+
+	@Override
+	protected void setUp() throws Exception {
+		directory = File.createTempFile("gasprices", "");
+		if (!directory.delete() || !directory.mkdir()) {
+			throw new IOException("unable to create " + directory);
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		final File[] files = directory.listFiles();
+		if (files != null) {
+			for (final File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	public void testFailureRateAndWrapAround() {
+		final FailureLog log = FailureLog.restore(directory);
+		assertEquals(0f, log.getFailureRate(UpdateSchedule.RECENT_ATTEMPTS));
+		for (int i = 0; i < FailureLog.CAPACITY; ++i) {
+			log.recordSuccess(i, 10);
+		}
+		for (int i = 0; i < 3; ++i) {
+			log.recordFailure(100 + i, 20, new SocketTimeoutException());
+		}
+		assertEquals(FailureLog.CAPACITY + 3, log.getAttemptCount());
+		assertEquals(FailureLog.CAPACITY, log.size());
+		assertEquals(3, log.getConsecutiveFailureCount());
+		assertEquals(0.3f, log.getFailureRate(10), 0.0001f);
+		assertEquals(102, log.getTime(0));
+		assertEquals(3, log.getTime(FailureLog.CAPACITY - 1));
+		assertEquals(FailureLog.SUCCESS, log.getStage(3));
+		assertEquals(PipelineMetrics.STAGE_UPDATE, log.getStage(0));
+		assertEquals(SocketTimeoutException.class.getName(),
+				log.getFailureClassName(0));
+	}
+
+	public void testPersistedFailure() {
+		final StringBuilder payload = new StringBuilder("<html>");
+		for (int i = 0; i < 100; ++i) {
+			payload.append("Service Unavailable ");
+		}
+		final FailureLog log = FailureLog.restore(directory);
+		log.recordSuccess(1000, 150);
+		log.recordFailure(2000, 300, new FeedException("bad", null,
+				PipelineMetrics.STAGE_PARSE, 200, payload.toString()));
+
+		final FailureLog restored = FailureLog.restore(directory);
+		assertEquals(2, restored.getAttemptCount());
+		assertEquals(1, restored.getConsecutiveFailureCount());
+		assertEquals(2000, restored.getTime(0));
+		assertEquals(PipelineMetrics.STAGE_PARSE, restored.getStage(0));
+		assertEquals(200, restored.getHttpStatus(0));
+		assertEquals(300, restored.getLatencyMillis(0));
+		assertEquals(FeedException.class.getName(),
+				restored.getFailureClassName(0));
+		assertEquals(payload.length(), restored.getPayloadLength(0));
+		assertEquals(payload.toString().hashCode(), restored.getPayloadHash(0));
+		assertEquals(payload.substring(0, FailureLog.EXCERPT_LENGTH),
+				restored.getPayloadExcerpt(0));
+		assertEquals(FailureLog.SUCCESS, restored.getStage(1));
+		assertNull(restored.getPayloadExcerpt(1));
+	}
+
+	/**
+	 * Retries back off with consecutive failures, are never later than the
+	 * schedule and stop when most recent attempts failed.
+	 */
+	public void testRetry() {
+		final long minute = 60 * 1000L;
+		final long scheduled = 1000 * minute;
+		final FailureLog log = FailureLog.restore(directory);
+		for (int i = 0; i < 8; ++i) {
+			log.recordSuccess(i * minute, 10);
+		}
+		assertEquals(scheduled, UpdateSchedule.nextAttemptTime(scheduled, log));
+		log.recordFailure(10 * minute, 10, new IOException());
+		assertEquals(15 * minute,
+				UpdateSchedule.nextAttemptTime(scheduled, log));
+		log.recordFailure(20 * minute, 10, new IOException());
+		assertEquals(30 * minute,
+				UpdateSchedule.nextAttemptTime(scheduled, log));
+		assertEquals(25 * minute,
+				UpdateSchedule.nextAttemptTime(25 * minute, log));
+		log.recordFailure(30 * minute, 10, new IOException());
+		log.recordFailure(40 * minute, 10, new IOException());
+		log.recordFailure(50 * minute, 10, new IOException());
+		assertEquals(scheduled, UpdateSchedule.nextAttemptTime(scheduled, log));
+	}
+}
@@ -0,0 +1,45 @@
+package net.trajano.gasprices.test;
+
+import org.json.JSONArray;
+
+import junit.framework.TestCase;
+import net.trajano.gasprices.CityPriceTable;
+import net.trajano.gasprices.FeedDecoder;
+
+/**
+ * Tests the parallel feed decoder.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class FeedDecoderTest extends TestCase {
+	/**
+	 * The result is the same whether it is decoded on one thread or several.
+	 */
+	public void testDeterministic() throws Exception {
+		final JSONArray gasPrices = SyntheticFeed.feed(5000).getJSONArray(
+				"gasprices");
+		final FeedDecoder sequential = new FeedDecoder(gasPrices);
+		sequential.decode(1);
+		final FeedDecoder parallel = new FeedDecoder(gasPrices);
+		parallel.decode(4);
+		assertEquals(5000, parallel.getCityCount());
+		for (int i = 0; i < sequential.getCityCount(); ++i) {
+			assertEquals(sequential.getCityId(i), parallel.getCityId(i));
+			assertEquals(sequential.getCityName(i), parallel.getCityName(i));
+			assertEquals(sequential.getCityData(i), parallel.getCityData(i));
+		}
+		assertEquals("City 1", parallel.getCityName(0));
+		final CityPriceTable sequentialTable = sequential.toPriceTable();
+		final CityPriceTable parallelTable = parallel.toPriceTable();
+		final long now = System.currentTimeMillis();
+		for (int row = 0; row < sequentialTable.size(); ++row) {
+			assertEquals(sequentialTable.getCityId(row),
+					parallelTable.getCityId(row));
+			assertEquals(sequentialTable.getCurrentPrice(row, now),
+					parallelTable.getCurrentPrice(row, now), 0f);
+			assertEquals(sequentialTable.getPriceDifference(row),
+					parallelTable.getPriceDifference(row), 0f);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package net.trajano.gasprices.test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import junit.framework.TestCase;
+import net.trajano.gasprices.GasPricesLog;
+
+/**
+ * Tests the {@link GasPricesLog} formatting and that disabled levels do not
+ * allocate.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class GasPricesLogTest extends TestCase {
+	/**
+	 * Keeps the last message.
+	 */
+	private static final class RecordingSink implements GasPricesLog.Sink {
+		private int count;
+
+		private String message;
+
+		@Override
+		public void write(final int level, final String message,
+				final Throwable throwable) {
+			this.message = message;
+			++count;
+		}
+	}
+
+	/**
+	 * Number of calls measured.
+	 */
+	private static final int ITERATIONS = 100000;
+
+	/**
+	 * Makes the disabled calls that the hot paths make.
+	 * 
+	 * @param iterations
+	 *            number of iterations
+	 */
+	private static void logDisabled(final int iterations) {
+		final Object arg = "arg";
+		for (int i = 0; i < iterations; ++i) {
+			final long value = 1000L + i;
+			GasPricesLog.d("refreshing {} of {} widgets", value, value + 1);
+			GasPricesLog.d("finished in {} ms after {} ms, depth {}", value,
+					value, i);
+			GasPricesLog.d("started by {}", arg);
+			GasPricesLog.i("value {}", value);
+			GasPricesLog.w("warning {}", arg);
+		}
+	}
+
+	private GasPricesLog.Sink originalSink;
+
+	private RecordingSink sink;
+
+	@Override
+	protected void setUp() throws Exception {
+		originalSink = GasPricesLog.getSink();
+		sink = new RecordingSink();
+		GasPricesLog.setSink(sink);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		GasPricesLog.setSink(originalSink);
+		GasPricesLog.setLevel(GasPricesLog.INFO);
+	}
+
+	/**
+	 * Disabled calls do not reach the sink and allocate nothing. This is
+	 * measured with the allocation counter of HotSpot and skipped on VMs that
+	 * do not have one. The VM itself may allocate a few hundred bytes while
+	 * the loop is compiled, but a single object per call would be at least
+	 * 16 bytes per call so less than a byte per call means the calls do not
+	 * allocate.
+	 */
+	public void testDisabledLevelsDoNotAllocate() {
+		GasPricesLog.setLevel(GasPricesLog.ERROR);
+		final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+			return;
+		}
+		final com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) bean;
+		if (!allocations.isThreadAllocatedMemorySupported()) {
+			return;
+		}
+		allocations.setThreadAllocatedMemoryEnabled(true);
+		final long threadId = Thread.currentThread().getId();
+		for (int i = 0; i < 5; ++i) {
+			logDisabled(ITERATIONS);
+		}
+
+		final long start = allocations.getThreadAllocatedBytes(threadId);
+		final long overhead = allocations.getThreadAllocatedBytes(threadId)
+				- start;
+		final long before = allocations.getThreadAllocatedBytes(threadId);
+		logDisabled(ITERATIONS);
+		final long allocated = allocations.getThreadAllocatedBytes(threadId)
+				- before - overhead;
+
+		assertEquals(0, sink.count);
+		assertTrue(allocated + " bytes allocated", allocated < ITERATIONS);
+	}
+
+	public void testFormat() {
+		GasPricesLog.setLevel(GasPricesLog.DEBUG);
+		GasPricesLog.d("refreshing {} of {} widgets", 3, 5);
+		assertEquals("refreshing 3 of 5 widgets", sink.message);
+		GasPricesLog.e("unable to rename {} to {}", "a.tmp", "a");
+		assertEquals("unable to rename a.tmp to a", sink.message);
+		GasPricesLog.d("{} {} {}", "only one");
+		assertEquals("only one {} {}", sink.message);
+		GasPricesLog.i("no placeholder");
+		assertEquals("no placeholder", sink.message);
+		assertEquals(4, sink.count);
+	}
+
+	public void testLevels() {
+		GasPricesLog.setLevel(GasPricesLog.WARN);
+		GasPricesLog.d("debug");
+		GasPricesLog.i("info {}", 1);
+		assertEquals(0, sink.count);
+		assertFalse(GasPricesLog.isLoggable(GasPricesLog.INFO));
+		GasPricesLog.w("warn {}", "x");
+		GasPricesLog.e("error");
+		assertEquals(2, sink.count);
+		assertEquals("error", sink.message);
+	}
+}
@@ -0,0 +1,61 @@
+package net.trajano.gasprices.test;
+
+import junit.framework.TestCase;
+import net.trajano.gasprices.JsonTokenizer;
+
+/**
+ * Tests the row tokenizer used for highlighting the feed.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class JsonTokenizerTest extends TestCase {
+	/**
+	 * Keys, strings, numbers and literals are classified.
+	 */
+	public void testKeyValues() {
+		final JsonTokenizer tokenizer = new JsonTokenizer();
+		final String row = "   \"regular\": 123.9, \"x\" : \"a\\\"b\", \"y\": null";
+		assertEquals(JsonTokenizer.STATE_DEFAULT,
+				tokenizer.tokenize(row, JsonTokenizer.STATE_DEFAULT));
+		assertEquals(6, tokenizer.getTokenCount());
+		assertEquals(JsonTokenizer.TOKEN_KEY, tokenizer.getTokenType(0));
+		assertEquals("\"regular\"", row.substring(tokenizer.getTokenStart(0),
+				tokenizer.getTokenEnd(0)));
+		assertEquals(JsonTokenizer.TOKEN_NUMBER, tokenizer.getTokenType(1));
+		assertEquals(JsonTokenizer.TOKEN_KEY, tokenizer.getTokenType(2));
+		assertEquals(JsonTokenizer.TOKEN_STRING, tokenizer.getTokenType(3));
+		assertEquals("\"a\\\"b\"", row.substring(tokenizer.getTokenStart(3),
+				tokenizer.getTokenEnd(3)));
+		assertEquals(JsonTokenizer.TOKEN_KEY, tokenizer.getTokenType(4));
+		assertEquals(JsonTokenizer.TOKEN_LITERAL, tokenizer.getTokenType(5));
+	}
+
+	/**
+	 * Malformed input is flagged as an error.
+	 */
+	public void testMalformed() {
+		final JsonTokenizer tokenizer = new JsonTokenizer();
+		tokenizer.tokenize("<html>", JsonTokenizer.STATE_DEFAULT);
+		assertEquals(3, tokenizer.getTokenCount());
+		for (int i = 0; i < 3; ++i) {
+			assertEquals(JsonTokenizer.TOKEN_ERROR, tokenizer.getTokenType(i));
+		}
+	}
+
+	/**
+	 * A string that spans rows carries the state to the next row.
+	 */
+	public void testStringAcrossRows() {
+		final JsonTokenizer tokenizer = new JsonTokenizer();
+		final int state = tokenizer.tokenize("{\"city_name\":\"Tor\\",
+				JsonTokenizer.STATE_DEFAULT);
+		assertEquals(JsonTokenizer.STATE_STRING_ESCAPE, state);
+		assertEquals(JsonTokenizer.STATE_DEFAULT,
+				tokenizer.tokenize("\"onto\",1}", state));
+		assertEquals(2, tokenizer.getTokenCount());
+		assertEquals(JsonTokenizer.TOKEN_STRING, tokenizer.getTokenType(0));
+		assertEquals(6, tokenizer.getTokenEnd(0));
+		assertEquals(JsonTokenizer.TOKEN_NUMBER, tokenizer.getTokenType(1));
+	}
+}
@@ -0,0 +1,85 @@
+package net.trajano.gasprices.test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+import net.trajano.gasprices.PersistedFile;
+
+/**
+ * Tests {@link PersistedFile}.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class PersistedFileTest extends TestCase {
+	private File directory;
+
+	@Override
+	protected void setUp() throws Exception {
+		directory = File.createTempFile("gasprices", "");
+		if (!directory.delete() || !directory.mkdir()) {
+			throw new IOException("unable to create " + directory);
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		final File[] files = directory.listFiles();
+		if (files != null) {
+			for (final File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	/**
+	 * A failed write leaves the previous file in place.
+	 */
+	public void testFailedWriteKeepsFile() throws Exception {
+		testWrite();
+		PersistedFile.write(directory, "test.bin",
+				new PersistedFile.Content() {
+
+					@Override
+					public void write(final DataOutputStream out)
+							throws IOException {
+						out.writeInt(2);
+						throw new IOException("failed");
+					}
+				});
+		final DataInputStream in = new DataInputStream(new FileInputStream(
+				new File(directory, "test.bin")));
+		try {
+			assertEquals(1, in.readInt());
+		} finally {
+			in.close();
+		}
+	}
+
+	public void testWrite() throws Exception {
+		PersistedFile.write(directory, "test.bin",
+				new PersistedFile.Content() {
+
+					@Override
+					public void write(final DataOutputStream out)
+							throws IOException {
+						out.writeInt(1);
+						out.writeUTF("city");
+					}
+				});
+		assertFalse(new File(directory, "test.bin.tmp").exists());
+		final DataInputStream in = new DataInputStream(new FileInputStream(
+				new File(directory, "test.bin")));
+		try {
+			assertEquals(1, in.readInt());
+			assertEquals("city", in.readUTF());
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package net.trajano.gasprices.test;
+
+import junit.framework.TestCase;
+import net.trajano.gasprices.PipelineMetrics;
+
+/**
+ * Tests the ring buffers of {@link PipelineMetrics}. The instance is shared so
+ * the tests compare against the values before they record.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class PipelineMetricsTest extends TestCase {
+	public void testErrorCount() {
+		final PipelineMetrics metrics = PipelineMetrics.getInstance();
+		final long before = metrics.getErrorCount(PipelineMetrics.STAGE_APPLY);
+		metrics.recordError(PipelineMetrics.STAGE_APPLY);
+		metrics.recordError(PipelineMetrics.STAGE_APPLY);
+		assertEquals(before + 2,
+				metrics.getErrorCount(PipelineMetrics.STAGE_APPLY));
+	}
+
+	public void testToMillis() {
+		assertEquals(1.5, PipelineMetrics.toMillis(1500000L), 0.0);
+		assertEquals(0.0, PipelineMetrics.toMillis(0L), 0.0);
+	}
+
+	public void testWrapAround() {
+		final PipelineMetrics metrics = PipelineMetrics.getInstance();
+		final int stage = PipelineMetrics.STAGE_STORE;
+		final long before = metrics.getTotalSampleCount(stage);
+		final int recorded = PipelineMetrics.CAPACITY + 5;
+		for (int i = 0; i < recorded; ++i) {
+			metrics.record(stage, PipelineMetrics.start(), i);
+		}
+		assertEquals(before + recorded, metrics.getTotalSampleCount(stage));
+		assertEquals(PipelineMetrics.CAPACITY, metrics.getSampleCount(stage));
+		assertEquals(recorded - 1, metrics.getCount(stage, 0));
+		assertEquals(recorded - PipelineMetrics.CAPACITY,
+				metrics.getCount(stage, PipelineMetrics.CAPACITY - 1));
+		try {
+			metrics.getCount(stage, PipelineMetrics.CAPACITY);
+			fail("expected an IndexOutOfBoundsException");
+		} catch (final IndexOutOfBoundsException e) {
+			// expected
+		}
+		assertTrue(metrics.getMaxDurationNanos(stage) >= metrics
+				.getMeanDurationNanos(stage));
+		assertTrue(metrics.getMeanDurationNanos(stage) >= 0);
+	}
+}
@@ -0,0 +1,75 @@
+package net.trajano.gasprices.test;
+
+import junit.framework.TestCase;
+import net.trajano.gasprices.CityPriceTable;
+import net.trajano.gasprices.PriceAlertRules;
+
+/**
+ * Tests the price alert rules.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class PriceAlertRulesTest extends TestCase {
+	/**
+	 * Current time used for the tests. Price dates after this have tomorrow's
+	 * price.
+	 */
+	private static final long NOW = 1000;
+
+	public void testEvaluate() {
+		final PriceAlertRules rules = PriceAlertRules.EMPTY.with(1, 2f)
+				.with(2, -1f).with(3, 2f).with(2, 5f);
+		assertEquals(4, rules.size());
+		final CityPriceTable table = new CityPriceTable.Builder(4)
+				.add(1, 125f, 2.5f, NOW + 1).add(2, 120f, -1.5f, NOW + 1)
+				.add(3, 120f, 3f, NOW - 1).add(4, 120f, 9f, NOW + 1).build();
+		final long[] triggered = new long[4];
+		assertEquals(2, rules.evaluate(table, new long[] { 1, 2, 3, 4 }, NOW,
+				triggered));
+		assertEquals(1, triggered[0]);
+		assertEquals(2, triggered[1]);
+		assertEquals(0, rules.evaluate(table, new long[] { 3, 4 }, NOW,
+				triggered));
+	}
+
+	/**
+	 * Every city in the table has a rule that would trigger but only the
+	 * rules of the cities that changed are evaluated.
+	 */
+	public void testOnlyChangedCitiesEvaluated() {
+		final CityPriceTable.Builder builder = new CityPriceTable.Builder(
+				10000);
+		PriceAlertRules rules = PriceAlertRules.EMPTY;
+		for (int cityId = 1; cityId <= 10000; ++cityId) {
+			builder.add(cityId, 120f, 3f, NOW + 1);
+			rules = rules.with(cityId, 1f);
+		}
+		final CityPriceTable table = builder.build();
+		final long[] changed = new long[10];
+		for (int i = 0; i < changed.length; ++i) {
+			changed[i] = (i + 1) * 1000;
+		}
+		final long[] triggered = new long[10000];
+		assertEquals(changed.length,
+				rules.evaluate(table, changed, NOW, triggered));
+		for (int i = 0; i < changed.length; ++i) {
+			assertEquals(changed[i], triggered[i]);
+		}
+		assertEquals(0, triggered[changed.length]);
+	}
+
+	public void testWithout() {
+		final PriceAlertRules rules = PriceAlertRules.EMPTY.with(1, 2f)
+				.with(2, -1f).with(2, 5f).with(3, 2f);
+		assertSame(rules, rules.with(2, 5f));
+		assertEquals(2, rules.without(2).size());
+		assertSame(rules, rules.without(4));
+		try {
+			rules.with(5, 0f);
+			fail("zero threshold");
+		} catch (final IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
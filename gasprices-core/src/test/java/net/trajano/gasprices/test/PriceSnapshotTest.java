@@ -0,0 +1,57 @@
+package net.trajano.gasprices.test;
+
+import junit.framework.TestCase;
+import net.trajano.gasprices.CityPriceTable;
+import net.trajano.gasprices.PriceSnapshot;
+import net.trajano.gasprices.RegionAggregates;
+
+/**
+ * Tests the derivation of price snapshots and their price tables.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class PriceSnapshotTest extends TestCase {
+	/**
+	 * The generation increases even if the last updated time does not and
+	 * jumps to the last updated time when that is higher.
+	 */
+	public void testGenerationIncreases() {
+		final CityPriceTable table = new CityPriceTable.Builder(1).add(1,
+				120f, 1f, 0).build();
+		final PriceSnapshot updated = PriceSnapshot.EMPTY.with(table,
+				RegionAggregates.EMPTY, 5000, 6000, true, null);
+		assertEquals(5000, updated.getGeneration());
+		assertSame(table, updated.getTable());
+		assertSame(RegionAggregates.EMPTY, updated.getRegionAggregates());
+		assertTrue(updated.isDataPresent());
+		assertFalse(updated.isError());
+		final PriceSnapshot failed = updated.with(table,
+				RegionAggregates.EMPTY, 5000, 6000, true, "timed out");
+		assertEquals(5001, failed.getGeneration());
+		assertTrue(failed.isError());
+		assertEquals("timed out", failed.getLastError());
+		assertEquals(5000, failed.getLastUpdated());
+		assertEquals(6000, failed.getNextUpdateTime());
+		final PriceSnapshot retried = failed.with(table,
+				RegionAggregates.EMPTY, 5000, 6000, true, null);
+		assertEquals(5002, retried.getGeneration());
+		assertFalse(retried.isError());
+	}
+
+	/**
+	 * Today's price switches from yesterday's to tomorrow's price when the
+	 * next price date passes.
+	 */
+	public void testNextPriceDate() {
+		final CityPriceTable table = new CityPriceTable.Builder(3)
+				.add(1, 120f, 2f, 3000).add(2, 125f, -1f, 2000)
+				.add(3, 130f, 0f, 1000).build();
+		assertEquals(2000, table.getNextPriceDate(1500));
+		assertEquals(118f, table.getCurrentPrice(table.indexOf(1), 1999));
+		assertEquals(126f, table.getCurrentPrice(table.indexOf(2), 1999));
+		assertEquals(125f, table.getCurrentPrice(table.indexOf(2), 2000));
+		assertEquals(3000, table.getNextPriceDate(2000));
+		assertEquals(Long.MAX_VALUE, table.getNextPriceDate(3000));
+	}
+}
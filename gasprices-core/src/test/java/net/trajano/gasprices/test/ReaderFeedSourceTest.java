@@ -0,0 +1,192 @@
+package net.trajano.gasprices.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+import net.trajano.gasprices.CompressedFeedStore;
+import net.trajano.gasprices.FeedSource;
+import net.trajano.gasprices.ReaderFeedSource;
+import net.trajano.gasprices.StringFeedSource;
+
+/**
+ * Tests that {@link ReaderFeedSource} reads the feed stored by
+ * {@link CompressedFeedStore} into the same rows as {@link StringFeedSource}.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class ReaderFeedSourceTest extends TestCase {
+	/**
+	 * Indexes every row of both sources and compares them.
+	 * 
+	 * @param text
+	 *            feed text
+	 * @param source
+	 *            source being tested
+	 */
+	private static void assertSameRows(final String text,
+			final FeedSource source) {
+		final FeedSource expected = new StringFeedSource(text);
+		while (expected.indexMore(7) > 0) {
+			assertFalse(source.isComplete());
+			source.indexMore(7);
+		}
+		source.indexMore(1);
+		assertTrue(source.isComplete());
+		assertEquals(expected.getRowCount(), source.getRowCount());
+		for (int row = 0; row < expected.getRowCount(); ++row) {
+			assertEquals(expected.getRow(row), source.getRow(row));
+		}
+	}
+
+	/**
+	 * Creates an opener over the text that counts the number of times it is
+	 * opened.
+	 * 
+	 * @param text
+	 *            feed text
+	 * @param openCount
+	 *            incremented every time the text is opened
+	 * @return opener
+	 */
+	private static ReaderFeedSource.Opener opener(final String text,
+			final int[] openCount) {
+		return new ReaderFeedSource.Opener() {
+
+			@Override
+			public Reader open() {
+				++openCount[0];
+				return new StringReader(text);
+			}
+		};
+	}
+
+	private File directory;
+
+	@Override
+	protected void setUp() throws Exception {
+		directory = File.createTempFile("gasprices", "");
+		if (!directory.delete() || !directory.mkdir()) {
+			throw new IOException("unable to create " + directory);
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		final File[] files = directory.listFiles();
+		if (files != null) {
+			for (final File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	/**
+	 * Closing stops reading but keeps the text that was read.
+	 */
+	public void testClose() {
+		final StringBuilder b = new StringBuilder();
+		for (int i = 0; i < 10000; ++i) {
+			b.append("line ").append(i).append('\n');
+		}
+		final ReaderFeedSource source = new ReaderFeedSource(opener(
+				b.toString(), new int[1]));
+		assertEquals(1, source.indexMore(1));
+		source.close();
+		source.indexMore(10000);
+		assertTrue(source.isComplete());
+		assertTrue(source.getRowCount() < 10000);
+		assertEquals("line 0", source.getRow(0));
+	}
+
+	public void testFind() {
+		final StringBuilder b = new StringBuilder();
+		for (int i = 0; i < 1000; ++i) {
+			b.append("line ").append(i).append('\n');
+		}
+		final FeedSource source = new ReaderFeedSource(opener(b.toString(),
+				new int[1]));
+		source.indexMore(10);
+		assertEquals(10, source.getRowCount());
+		assertEquals(900, source.find("LINE 900", 0));
+		assertEquals("line 900", source.getRow(900));
+		assertEquals(-1, source.find("line 900", 901));
+		assertTrue(source.isComplete());
+	}
+
+	/**
+	 * Only a window of the text is kept. Rows before the window are read
+	 * again by opening the text from the start, and a search that does not
+	 * match reads the whole text once.
+	 */
+	public void testRowsBeforeWindowReopen() {
+		final StringBuilder b = new StringBuilder();
+		for (int i = 0; i < 100000; ++i) {
+			b.append("line ").append(i).append('\n');
+		}
+		final int[] openCount = new int[1];
+		final ReaderFeedSource source = new ReaderFeedSource(opener(
+				b.toString(), openCount));
+		assertEquals(-1, source.find("missing", 0));
+		assertTrue(source.isComplete());
+		assertEquals(100000, source.getRowCount());
+		assertEquals(1, openCount[0]);
+		assertEquals("line 99999", source.peekRow(99999));
+		assertNull(source.peekRow(0));
+		assertEquals("line 99999", source.getRow(99999));
+		assertEquals(1, openCount[0]);
+		assertEquals("line 0", source.getRow(0));
+		assertEquals("line 0", source.peekRow(0));
+		assertEquals(2, openCount[0]);
+		assertEquals("line 50000", source.getRow(50000));
+		assertEquals("line 50001", source.getRow(50001));
+		assertEquals(2, openCount[0]);
+		assertEquals(12345, source.find("line 12345", 0));
+		assertEquals(3, openCount[0]);
+	}
+
+	/**
+	 * Line terminators, long lines and lines of exactly
+	 * {@link FeedSource#MAX_ROW_LENGTH} are split the same way.
+	 */
+	public void testSameRowsAsString() {
+		final StringBuilder b = new StringBuilder("{\r\n   \"a\": 1\n\n");
+		for (int i = 0; i < FeedSource.MAX_ROW_LENGTH; ++i) {
+			b.append('x');
+		}
+		b.append('\n');
+		for (int i = 0; i < FeedSource.MAX_ROW_LENGTH * 30 + 10; ++i) {
+			b.append((char) ('a' + i % 26));
+		}
+		b.append("\r\n}");
+		final String text = b.toString();
+		assertSameRows(text, new ReaderFeedSource(opener(text, new int[1])));
+		assertSameRows("", new ReaderFeedSource(opener("", new int[1])));
+	}
+
+	/**
+	 * The stored feed decompresses to the same rows and is smaller than the
+	 * text.
+	 */
+	public void testStoredFeed() throws Exception {
+		assertNull(CompressedFeedStore.open(directory));
+		assertFalse(CompressedFeedStore.exists(directory));
+		final String text = SyntheticFeed.feed(200).toString(3);
+		CompressedFeedStore.write(directory, text);
+		assertTrue(CompressedFeedStore.exists(directory));
+		final File[] files = directory.listFiles();
+		assertEquals(1, files.length);
+		assertTrue(files[0].length() * 5 < text.length());
+		final ReaderFeedSource source = new ReaderFeedSource(
+				CompressedFeedStore.opener(directory));
+		try {
+			assertSameRows(text, source);
+		} finally {
+			source.close();
+		}
+	}
+}
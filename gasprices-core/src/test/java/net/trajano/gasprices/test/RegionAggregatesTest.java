@@ -0,0 +1,151 @@
+package net.trajano.gasprices.test;
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+import net.trajano.gasprices.CityDirectory;
+import net.trajano.gasprices.CityPriceTable;
+import net.trajano.gasprices.RegionAggregates;
+
+/**
+ * Tests the incremental region aggregates.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class RegionAggregatesTest extends TestCase {
+	/**
+	 * Price date in the past so the regular price is today's price.
+	 */
+	private static final long PAST = 0;
+
+	private static void assertSameAggregates(final RegionAggregates expected,
+			final RegionAggregates actual) {
+		assertEquals(expected.getRegionCount(), actual.getRegionCount());
+		for (int region = 0; region < expected.getRegionCount(); ++region) {
+			assertEquals(expected.getRegionName(region),
+					actual.getRegionName(region));
+			assertEquals(expected.getCount(region), actual.getCount(region));
+			assertEquals(expected.getRisingCount(region),
+					actual.getRisingCount(region));
+			assertEquals(expected.getFallingCount(region),
+					actual.getFallingCount(region));
+			assertEquals(expected.getMinimum(region),
+					actual.getMinimum(region), 0.001f);
+			assertEquals(expected.getMaximum(region),
+					actual.getMaximum(region), 0.001f);
+			assertEquals(expected.getMean(region), actual.getMean(region),
+					0.001f);
+		}
+	}
+
+	private CityDirectory directory;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		directory = new CityDirectory(new String[] { "East", "A=1", "B=2",
+				"West", "C=3", "D=4", "E=5" });
+	}
+
+	/**
+	 * Changes the city holding the minimum, removes the city holding the
+	 * maximum and adds a city then checks the result is the same as computing
+	 * the aggregates from scratch.
+	 */
+	public void testIncrementalMatchesFull() {
+		final CityPriceTable first = new CityPriceTable.Builder(4)
+				.add(1, 120f, 1f, PAST).add(2, 124f, -2f, PAST)
+				.add(3, 118f, 0f, PAST).add(4, 121f, 3f, PAST).build();
+		final CityPriceTable second = new CityPriceTable.Builder(4)
+				.add(1, 123f, 3f, PAST).add(3, 118f, 0f, PAST)
+				.add(4, 121f, 3f, PAST).add(5, 116f, -5f, PAST).build();
+		final RegionAggregates incremental = RegionAggregates.EMPTY.update(
+				directory, first, new long[0], new long[0], 1).update(
+				directory, second, new long[] { 5, 1 }, new long[] { 2 }, 1);
+		final RegionAggregates full = RegionAggregates.EMPTY.update(directory,
+				second, new long[0], new long[0], 1);
+		assertSameAggregates(full, incremental);
+		final int east = incremental.regionOf(1);
+		assertEquals(123f, incremental.getMaximum(east), 0.001f);
+		assertEquals(-1, incremental.regionOf(2));
+		assertEquals(116f, incremental.getMinimum(incremental.regionOf(5)),
+				0.001f);
+	}
+
+	public void testInitial() {
+		final CityPriceTable table = new CityPriceTable.Builder(4)
+				.add(1, 120f, 1f, PAST).add(2, 124f, -2f, PAST)
+				.add(3, 118f, 0f, PAST).add(4, 121f, 3f, PAST).build();
+		final RegionAggregates aggregates = RegionAggregates.EMPTY.update(
+				directory, table, new long[0], new long[0], 1);
+		assertEquals(2, aggregates.getRegionCount());
+		final int east = aggregates.regionOf(1);
+		assertEquals("East", aggregates.getRegionName(east));
+		assertEquals(east, aggregates.regionOf(2));
+		assertEquals(2, aggregates.getCount(east));
+		assertEquals(120f, aggregates.getMinimum(east), 0.001f);
+		assertEquals(124f, aggregates.getMaximum(east), 0.001f);
+		assertEquals(122f, aggregates.getMean(east), 0.001f);
+		assertEquals(1, aggregates.getRisingCount(east));
+		assertEquals(1, aggregates.getFallingCount(east));
+		final int west = aggregates.regionOf(3);
+		assertEquals(1, aggregates.getRisingCount(west));
+		assertEquals(0, aggregates.getFallingCount(west));
+		assertEquals(-1, aggregates.regionOf(5));
+	}
+
+	/**
+	 * Today's price of the cities switches to the regular price when the price
+	 * date passes, even though the table has not changed since the aggregates
+	 * were computed. The contributions survive being persisted.
+	 */
+	public void testPriceDatePasses() throws IOException {
+		final CityPriceTable table = new CityPriceTable.Builder(2)
+				.add(1, 120f, 2f, 1000).add(2, 124f, -2f, 2000).build();
+		final RegionAggregates aggregates = RegionAggregates.EMPTY.update(
+				directory, table, new long[0], new long[0], 500);
+		final int east = aggregates.regionOf(1);
+		assertSame(aggregates, aggregates.at(999));
+		assertEquals(122f, aggregates.getMean(east), 0.001f);
+		assertEquals(118f, aggregates.getMinimum(east), 0.001f);
+		final RegionAggregates afterFirst = aggregates.at(1000);
+		assertEquals(123f, afterFirst.getMean(east), 0.001f);
+		assertEquals(120f, afterFirst.getMinimum(east), 0.001f);
+		assertEquals(126f, afterFirst.getMaximum(east), 0.001f);
+		final RegionAggregates afterBoth = aggregates.at(2000);
+		assertEquals(122f, afterBoth.getMean(east), 0.001f);
+		assertSame(afterBoth, afterBoth.at(3000));
+
+		final File files = File.createTempFile("gasprices", "");
+		if (!files.delete() || !files.mkdir()) {
+			throw new IOException("unable to create " + files);
+		}
+		try {
+			assertNull(RegionAggregates.restore(files, 500));
+			aggregates.persist(files);
+			assertSameAggregates(afterFirst,
+					RegionAggregates.restore(files, 1500));
+		} finally {
+			for (final File file : files.listFiles()) {
+				file.delete();
+			}
+			files.delete();
+		}
+	}
+
+	public void testRemoveAll() {
+		final CityPriceTable first = new CityPriceTable.Builder(1).add(1,
+				120f, 1f, PAST).build();
+		final RegionAggregates aggregates = RegionAggregates.EMPTY.update(
+				directory, first, new long[0], new long[0], 1).update(
+				directory, new CityPriceTable.Builder(1).add(3, 119f, 0f, PAST)
+						.build(), new long[] { 3 }, new long[] { 1 }, 1);
+		final int east = 0;
+		assertEquals(0, aggregates.getCount(east));
+		assertTrue(Float.isNaN(aggregates.getMean(east)));
+		assertTrue(Float.isNaN(aggregates.getMinimum(east)));
+		assertEquals(1, aggregates.getCount(aggregates.regionOf(3)));
+	}
+}
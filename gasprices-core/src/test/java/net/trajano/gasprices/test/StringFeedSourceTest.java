@@ -0,0 +1,57 @@
+package net.trajano.gasprices.test;
+
+import junit.framework.TestCase;
+import net.trajano.gasprices.FeedSource;
+import net.trajano.gasprices.StringFeedSource;
+
+/**
+ * Tests the incremental row indexing of {@link StringFeedSource}.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class StringFeedSourceTest extends TestCase {
+	/**
+	 * Search indexes rows that have not been indexed yet.
+	 */
+	public void testFindIndexesMore() {
+		final StringBuilder b = new StringBuilder();
+		for (int i = 0; i < 1000; ++i) {
+			b.append("line ").append(i).append('\n');
+		}
+		final FeedSource source = new StringFeedSource(b.toString());
+		source.indexMore(10);
+		assertEquals(10, source.getRowCount());
+		assertEquals(900, source.find("LINE 900", 0));
+		assertEquals("line 900", source.getRow(900));
+		assertEquals(-1, source.find("line 900", 901));
+		assertTrue(source.isComplete());
+	}
+
+	/**
+	 * Lines longer than {@link FeedSource#MAX_ROW_LENGTH} are split.
+	 */
+	public void testLongLineSplit() {
+		final StringBuilder b = new StringBuilder();
+		for (int i = 0; i < FeedSource.MAX_ROW_LENGTH * 2 + 10; ++i) {
+			b.append('x');
+		}
+		final FeedSource source = new StringFeedSource(b.toString());
+		assertEquals(3, source.indexMore(100));
+		assertEquals(FeedSource.MAX_ROW_LENGTH, source.getRow(0).length());
+		assertEquals(10, source.getRow(2).length());
+	}
+
+	/**
+	 * Rows are split on line terminators which are not part of the row text.
+	 */
+	public void testRows() {
+		final FeedSource source = new StringFeedSource("{\r\n   \"a\": 1\n}\n");
+		assertEquals(3, source.indexMore(100));
+		assertEquals("{", source.getRow(0));
+		assertEquals("   \"a\": 1", source.getRow(1));
+		assertEquals("}", source.getRow(2));
+		assertTrue(source.isComplete());
+		assertEquals(0, source.indexMore(100));
+	}
+}
@@ -0,0 +1,483 @@
+package net.trajano.gasprices.test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URL;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <p>
+ * This is a small HTTP server on the loopback interface that serves a gas
+ * price feed in place of tomorrowsgaspricetoday.com. Faults can be injected
+ * into the response so the update pipeline can be measured when the site is
+ * slow, truncates the response, returns an error or returns something that
+ * does not parse.
+ * </p>
+ * <p>
+ * Every request receives the {@link Response} that is set at the time it
+ * arrives, whatever its path. The server only uses sockets so it runs on a
+ * plain JVM as well as on a device.
+ * </p>
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class StubFeedServer {
+	/**
+	 * The response to send and the faults to inject into it. The setters
+	 * return the response so they can be chained. A response should not be
+	 * modified after it is passed to {@link StubFeedServer#setResponse}.
+	 */
+	public static final class Response {
+		/**
+		 * Character the site puts in front of the feed. It is skipped by the
+		 * client.
+		 */
+		private static final char LEADING_CHARACTER = ' ';
+
+		/**
+		 * Creates a response with the feed as the site sends it, that is with
+		 * the leading character.
+		 * 
+		 * @param json
+		 *            feed
+		 * @return the response.
+		 */
+		public static Response feed(final String json) {
+			return raw(LEADING_CHARACTER + json);
+		}
+
+		/**
+		 * Creates a response with the text as is.
+		 * 
+		 * @param text
+		 *            body
+		 * @return the response.
+		 */
+		public static Response raw(final String text) {
+			try {
+				return new Response(text.getBytes("UTF-8"));
+			} catch (final UnsupportedEncodingException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		/**
+		 * Creates a response with a recorded feed. The recording is the body
+		 * as it was downloaded including the leading character.
+		 * 
+		 * @param recording
+		 *            recorded body
+		 * @return the response.
+		 * @throws IOException
+		 */
+		public static Response recorded(final File recording)
+				throws IOException {
+			final InputStream in = new BufferedInputStream(
+					new FileInputStream(recording));
+			try {
+				final ByteArrayOutputStream body = new ByteArrayOutputStream();
+				final byte[] b = new byte[CHUNK_SIZE];
+				int n = in.read(b);
+				while (n != -1) {
+					body.write(b, 0, n);
+					n = in.read(b);
+				}
+				return new Response(body.toByteArray());
+			} finally {
+				in.close();
+			}
+		}
+
+		private final byte[] body;
+
+		/**
+		 * Bytes sent per second. 0 is not throttled.
+		 */
+		private int bytesPerSecond;
+
+		private boolean chunked;
+
+		/**
+		 * Number of body bytes sent before the connection is reset. -1 sends
+		 * the whole body.
+		 */
+		private int disconnectAfter = -1;
+
+		private boolean gzip;
+
+		/**
+		 * Delay before the status line is sent in milliseconds.
+		 */
+		private long latencyMillis;
+
+		private int status = 200;
+
+		private Response(final byte[] body) {
+			this.body = body;
+		}
+
+		/**
+		 * Limits the rate the body is sent at.
+		 * 
+		 * @param bytesPerSecond
+		 *            bytes per second or 0 for no limit
+		 * @return itself
+		 */
+		public Response bytesPerSecond(final int bytesPerSecond) {
+			this.bytesPerSecond = bytesPerSecond;
+			return this;
+		}
+
+		/**
+		 * Sends the body with chunked transfer encoding rather than a content
+		 * length.
+		 * 
+		 * @return itself
+		 */
+		public Response chunked() {
+			chunked = true;
+			return this;
+		}
+
+		/**
+		 * Resets the connection after part of the body has been sent.
+		 * 
+		 * @param bytes
+		 *            number of body bytes to send. With gzip this counts
+		 *            compressed bytes.
+		 * @return itself
+		 */
+		public Response disconnectAfter(final int bytes) {
+			disconnectAfter = bytes;
+			return this;
+		}
+
+		/**
+		 * Compresses the body with gzip.
+		 * 
+		 * @return itself
+		 */
+		public Response gzip() {
+			gzip = true;
+			return this;
+		}
+
+		/**
+		 * Delays the response.
+		 * 
+		 * @param millis
+		 *            delay before the status line in milliseconds
+		 * @return itself
+		 */
+		public Response latency(final long millis) {
+			latencyMillis = millis;
+			return this;
+		}
+
+		/**
+		 * Sets the status code. The body is not sent for 304.
+		 * 
+		 * @param status
+		 *            status code
+		 * @return itself
+		 */
+		public Response status(final int status) {
+			this.status = status;
+			return this;
+		}
+	}
+
+	/**
+	 * Size of the chunks when the body is not throttled.
+	 */
+	private static final int CHUNK_SIZE = 8192;
+
+	/**
+	 * Number of times the throttled body is written per second.
+	 */
+	private static final int THROTTLE_SLICES_PER_SECOND = 10;
+
+	/**
+	 * Compresses the body.
+	 * 
+	 * @param body
+	 *            body
+	 * @return compressed body
+	 * @throws IOException
+	 */
+	private static byte[] gzip(final byte[] body) throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final GZIPOutputStream out = new GZIPOutputStream(buffer);
+		out.write(body);
+		out.close();
+		return buffer.toByteArray();
+	}
+
+	/**
+	 * Reads the request line and headers. The request is not otherwise
+	 * looked at.
+	 * 
+	 * @param in
+	 *            request stream
+	 * @throws IOException
+	 */
+	private static void readRequest(final InputStream in) throws IOException {
+		int lineLength = 0;
+		int c = in.read();
+		while (c != -1) {
+			if (c == '\n') {
+				if (lineLength == 0) {
+					return;
+				}
+				lineLength = 0;
+			} else if (c != '\r') {
+				++lineLength;
+			}
+			c = in.read();
+		}
+	}
+
+	private static void sleep(final long millis) throws IOException {
+		if (millis <= 0) {
+			return;
+		}
+		try {
+			Thread.sleep(millis);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted");
+		}
+	}
+
+	private final Thread acceptThread;
+
+	/**
+	 * Handles the connections.
+	 */
+	private final ExecutorService connections;
+
+	/**
+	 * Number of requests received.
+	 */
+	private final AtomicInteger requestCount = new AtomicInteger();
+
+	private volatile Response response;
+
+	private final ServerSocket serverSocket;
+
+	/**
+	 * Starts the server on a free port of the loopback interface.
+	 * 
+	 * @param response
+	 *            initial response
+	 * @throws IOException
+	 */
+	public StubFeedServer(final Response response) throws IOException {
+		this.response = response;
+		serverSocket = new ServerSocket(0, 50,
+				InetAddress.getByName("127.0.0.1"));
+		final ThreadFactory threadFactory = new ThreadFactory() {
+
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, "StubFeedServer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+		connections = Executors.newCachedThreadPool(threadFactory);
+		acceptThread = threadFactory.newThread(new Runnable() {
+
+			@Override
+			public void run() {
+				accept();
+			}
+		});
+		acceptThread.start();
+	}
+
+	/**
+	 * Accepts connections until the server is closed.
+	 */
+	private void accept() {
+		try {
+			while (true) {
+				final Socket socket = serverSocket.accept();
+				connections.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						serve(socket);
+					}
+				});
+			}
+		} catch (final IOException e) {
+			// closed
+		}
+	}
+
+	/**
+	 * Stops the server and drops the connections that are in progress.
+	 * 
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		serverSocket.close();
+		connections.shutdownNow();
+		try {
+			acceptThread.join();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Number of requests received since the server started.
+	 * 
+	 * @return request count
+	 */
+	public int getRequestCount() {
+		return requestCount.get();
+	}
+
+	/**
+	 * Location of the feed.
+	 * 
+	 * @return URL
+	 */
+	public URL getUrl() {
+		try {
+			return new URL("http", "127.0.0.1", serverSocket.getLocalPort(),
+					"/mobile/json_mobile_data.php");
+		} catch (final MalformedURLException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Sends a response on the connection.
+	 * 
+	 * @param socket
+	 *            connection
+	 */
+	private void serve(final Socket socket) {
+		try {
+			try {
+				readRequest(new BufferedInputStream(socket.getInputStream()));
+				requestCount.incrementAndGet();
+				final Response current = response;
+				sleep(current.latencyMillis);
+				final byte[] body = current.gzip ? gzip(current.body)
+						: current.body;
+				final boolean hasBody = current.status != 304;
+				final StringBuilder head = new StringBuilder();
+				head.append("HTTP/1.1 ").append(current.status)
+						.append(" Stub\r\nConnection: close\r\n");
+				if (hasBody) {
+					head.append("Content-Type: application/json\r\n");
+					if (current.gzip) {
+						head.append("Content-Encoding: gzip\r\n");
+					}
+					if (current.chunked) {
+						head.append("Transfer-Encoding: chunked\r\n");
+					} else {
+						head.append("Content-Length: ").append(body.length)
+								.append("\r\n");
+					}
+				}
+				head.append("\r\n");
+				final OutputStream out = socket.getOutputStream();
+				out.write(head.toString().getBytes("US-ASCII"));
+				out.flush();
+				if (hasBody) {
+					writeBody(socket, out, body, current);
+				}
+			} finally {
+				socket.close();
+			}
+		} catch (final IOException e) {
+			// the client went away
+		}
+	}
+
+	/**
+	 * Changes the response sent to the requests that arrive from now on.
+	 * 
+	 * @param response
+	 *            response
+	 */
+	public void setResponse(final Response response) {
+		this.response = response;
+	}
+
+	/**
+	 * Writes the body, throttling, chunking and disconnecting as configured.
+	 * 
+	 * @param socket
+	 *            connection
+	 * @param out
+	 *            connection output stream
+	 * @param body
+	 *            body
+	 * @param current
+	 *            response
+	 * @throws IOException
+	 */
+	private void writeBody(final Socket socket, final OutputStream out,
+			final byte[] body, final Response current) throws IOException {
+		final int sliceSize = current.bytesPerSecond > 0 ? Math.max(1,
+				current.bytesPerSecond / THROTTLE_SLICES_PER_SECOND)
+				: CHUNK_SIZE;
+		for (int offset = 0; offset < body.length; offset += sliceSize) {
+			int length = Math.min(sliceSize, body.length - offset);
+			final boolean disconnect = current.disconnectAfter >= 0
+					&& offset + length >= current.disconnectAfter;
+			if (disconnect) {
+				length = Math.max(0, current.disconnectAfter - offset);
+			}
+			if (current.chunked && length > 0) {
+				out.write((Integer.toHexString(length) + "\r\n")
+						.getBytes("US-ASCII"));
+			}
+			out.write(body, offset, length);
+			if (disconnect) {
+				out.flush();
+				// Reset rather than close so the client sees an error.
+				try {
+					socket.setSoLinger(true, 0);
+				} catch (final SocketException e) {
+					// closed anyway
+				}
+				return;
+			}
+			if (current.chunked) {
+				out.write('\r');
+				out.write('\n');
+			}
+			out.flush();
+			if (current.bytesPerSecond > 0) {
+				sleep(length * 1000L / current.bytesPerSecond);
+			}
+		}
+		if (current.chunked) {
+			out.write("0\r\n\r\n".getBytes("US-ASCII"));
+		}
+		out.flush();
+	}
+}
@@ -0,0 +1,88 @@
+package net.trajano.gasprices.test;
+
+import java.io.IOException;
+
+import org.json.JSONObject;
+
+import junit.framework.TestCase;
+import net.trajano.gasprices.FeedException;
+import net.trajano.gasprices.GetDataUtil;
+import net.trajano.gasprices.PipelineMetrics;
+
+/**
+ * Tests how the feed download copes with the faults injected by the
+ * {@link StubFeedServer}.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class StubFeedServerTest extends TestCase {
+	private String feed;
+
+	private StubFeedServer server;
+
+	private FeedException assertFails(final StubFeedServer.Response response) {
+		server.setResponse(response);
+		try {
+			GetDataUtil.getGasPricesDataFromInternet(server.getUrl());
+			fail("expected an error");
+			return null;
+		} catch (final FeedException e) {
+			return e;
+		} catch (final IOException e) {
+			fail("expected a FeedException");
+			return null;
+		}
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		feed = SyntheticFeed.feed(200).toString();
+		server = new StubFeedServer(StubFeedServer.Response.feed(feed));
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		server.close();
+	}
+
+	public void testChunkedGzip() throws Exception {
+		server.setResponse(StubFeedServer.Response.feed(feed).chunked().gzip());
+		final JSONObject data = GetDataUtil.getGasPricesDataFromInternet(server
+				.getUrl());
+		assertEquals(200, data.getJSONArray("gasprices").length());
+	}
+
+	public void testDisconnect() {
+		assertFails(StubFeedServer.Response.feed(feed).disconnectAfter(1000));
+		assertFails(StubFeedServer.Response.feed(feed).chunked()
+				.disconnectAfter(1000));
+	}
+
+	public void testErrorStatus() {
+		assertEquals(500,
+				assertFails(StubFeedServer.Response.feed(feed).status(500))
+						.getHttpStatus());
+		assertFails(StubFeedServer.Response.feed(feed).status(304));
+	}
+
+	public void testLatencyAndThrottling() throws Exception {
+		server.setResponse(StubFeedServer.Response.feed(feed).latency(200)
+				.bytesPerSecond(feed.length() * 2));
+		final long start = System.currentTimeMillis();
+		GetDataUtil.getGasPricesDataFromInternet(server.getUrl());
+		assertTrue(System.currentTimeMillis() - start >= 600);
+		assertEquals(1, server.getRequestCount());
+	}
+
+	/**
+	 * Without the leading character the first character of the feed is
+	 * skipped so it does not parse.
+	 */
+	public void testMissingLeadingCharacter() {
+		final FeedException e = assertFails(StubFeedServer.Response.raw(feed));
+		assertEquals(PipelineMetrics.STAGE_PARSE, e.getStage());
+		assertEquals(feed.substring(1), e.getPayload());
+		assertFails(StubFeedServer.Response.raw(""));
+	}
+}
@@ -0,0 +1,143 @@
+package net.trajano.gasprices.test;
+
+import net.trajano.gasprices.CityDirectory;
+import net.trajano.gasprices.CityNameIndex;
+import net.trajano.gasprices.CitySpatialIndex;
+
+/**
+ * Builds large city directories so the city lookups can be checked and
+ * benchmarked against the straightforward implementations they replace.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class SyntheticCities {
+	/**
+	 * Syllables used to generate city names.
+	 */
+	private static final String[] SYLLABLES = { "ba", "ton", "mar", "ville",
+			"ro", "ka", "lin", "sa", "que", "den", "por", "wick" };
+
+	/**
+	 * Builds a directory with the specified number of regions and cities per
+	 * region. Names are generated deterministically from
+	 * {@link #SYLLABLES}.
+	 * 
+	 * @param regions
+	 *            region count
+	 * @param citiesPerRegion
+	 *            cities per region
+	 * @return directory
+	 */
+	public static CityDirectory directory(final int regions,
+			final int citiesPerRegion) {
+		final String[] entries = new String[regions * (citiesPerRegion + 1)];
+		int i = 0;
+		int id = 1;
+		for (int r = 0; r < regions; ++r) {
+			entries[i++] = "Region " + r;
+			for (int c = 0; c < citiesPerRegion; ++c) {
+				final StringBuilder name = new StringBuilder();
+				int seed = id * 7919;
+				for (int s = 0; s < 3; ++s) {
+					name.append(SYLLABLES[seed % SYLLABLES.length]);
+					seed /= SYLLABLES.length;
+				}
+				name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+				if (id % 3 == 0) {
+					name.append(" Falls");
+				}
+				entries[i++] = name + "=" + id++;
+			}
+		}
+		return new CityDirectory(entries);
+	}
+
+	/**
+	 * Reference implementation of {@link CityNameIndex#search(String)} that
+	 * normalizes and checks every city name.
+	 * 
+	 * @param directory
+	 *            directory
+	 * @param query
+	 *            query
+	 * @return matching positions with their region headers.
+	 */
+	public static int[] linearSearch(final CityDirectory directory,
+			final String query) {
+		final String prefix = CityNameIndex.normalize(query);
+		final int[] result = new int[directory.size()];
+		int count = 0;
+		int lastRegion = -1;
+		for (int position = 0; position < directory.size(); ++position) {
+			if (directory.isHeader(position)) {
+				continue;
+			}
+			final String name = CityNameIndex.normalize(directory
+					.getName(position));
+			if (name.startsWith(prefix) || name.contains(" " + prefix)) {
+				final int region = directory.getRegionPosition(position);
+				if (region != lastRegion) {
+					result[count++] = region;
+					lastRegion = region;
+				}
+				result[count++] = position;
+			}
+		}
+		final int[] trimmed = new int[count];
+		System.arraycopy(result, 0, trimmed, 0, count);
+		return trimmed;
+	}
+
+	/**
+	 * Reference implementation of {@link CitySpatialIndex#nearest} that
+	 * computes the distance to every city and picks the nearest ones.
+	 * 
+	 * @param ids
+	 *            city IDs
+	 * @param latitudes
+	 *            latitude of each city
+	 * @param longitudes
+	 *            longitude of each city
+	 * @param latitude
+	 *            latitude of the query
+	 * @param longitude
+	 *            longitude of the query
+	 * @param k
+	 *            number of cities to return
+	 * @return IDs of the nearest cities, nearest first.
+	 */
+	public static int[] linearNearest(final int[] ids,
+			final double[] latitudes, final double[] longitudes,
+			final double latitude, final double longitude, final int k) {
+		final double[] distances = new double[ids.length];
+		final double phi = Math.toRadians(latitude);
+		final double lambda = Math.toRadians(longitude);
+		for (int i = 0; i < ids.length; ++i) {
+			final double p = Math.toRadians(latitudes[i]);
+			final double l = Math.toRadians(longitudes[i]);
+			final double dx = Math.cos(p) * Math.cos(l) - Math.cos(phi)
+					* Math.cos(lambda);
+			final double dy = Math.cos(p) * Math.sin(l) - Math.cos(phi)
+					* Math.sin(lambda);
+			final double dz = Math.sin(p) - Math.sin(phi);
+			distances[i] = dx * dx + dy * dy + dz * dz;
+		}
+		final int[] result = new int[k];
+		for (int j = 0; j < k; ++j) {
+			int nearest = 0;
+			for (int i = 1; i < ids.length; ++i) {
+				if (distances[i] < distances[nearest]) {
+					nearest = i;
+				}
+			}
+			result[j] = ids[nearest];
+			distances[nearest] = Double.POSITIVE_INFINITY;
+		}
+		return result;
+	}
+
+	private SyntheticCities() {
+
+	}
+}
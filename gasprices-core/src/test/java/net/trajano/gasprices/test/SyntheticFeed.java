@@ -0,0 +1,69 @@
+package net.trajano.gasprices.test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Builds gas price feeds in the same format as the one provided by
+ * tomorrowsgaspricetoday.com so tests do not need network access.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public final class SyntheticFeed {
+	/**
+	 * Builds a single city record. Prices vary deterministically with the
+	 * city ID.
+	 * 
+	 * @param cityId
+	 *            city ID
+	 * @param priceDate
+	 *            price date
+	 * @return the city record.
+	 * @throws JSONException
+	 */
+	public static JSONObject city(final long cityId, final Date priceDate)
+			throws JSONException {
+		final JSONObject city = new JSONObject();
+		city.put("city_id", cityId);
+		city.put("city_name", "City " + cityId + " Gas Prices");
+		city.put("price_date",
+				new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.ENGLISH)
+						.format(priceDate));
+		city.put("regular", 110 + cityId % 300 / 10.0);
+		city.put("price_difference", cityId % 4 / 2.0);
+		city.put("price_prefix", cityId % 2 == 0 ? "+" : "-");
+		return city;
+	}
+
+	/**
+	 * Builds a feed with the specified number of cities. City IDs start at 1
+	 * so the default city ID of 133 is present if there are enough cities.
+	 * The price date is tomorrow so the tomorrow's price is available.
+	 * 
+	 * @param cityCount
+	 *            number of cities
+	 * @return the feed.
+	 * @throws JSONException
+	 */
+	public static JSONObject feed(final int cityCount) throws JSONException {
+		final Date priceDate = new Date(System.currentTimeMillis() + 24L * 60
+				* 60 * 1000);
+		final JSONArray gasPrices = new JSONArray();
+		for (int i = 1; i <= cityCount; ++i) {
+			gasPrices.put(city(i, priceDate));
+		}
+		final JSONObject feed = new JSONObject();
+		feed.put("gasprices", gasPrices);
+		return feed;
+	}
+
+	private SyntheticFeed() {
+
+	}
+}
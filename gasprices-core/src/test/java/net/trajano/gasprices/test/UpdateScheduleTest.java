@@ -0,0 +1,49 @@
+package net.trajano.gasprices.test;
+
+import java.util.Calendar;
+
+import junit.framework.TestCase;
+import net.trajano.gasprices.UpdateSchedule;
+
+/**
+ * Tests the update schedule without the Android time classes.
+ *
+ * @author Archimedes Trajano (developer@trajano.net)
+ *
+ */
+public class UpdateScheduleTest extends TestCase {
+	private static long time(final int dayOffset, final int hour,
+			final int minute, final int second) {
+		final Calendar calendar = Calendar.getInstance();
+		calendar.set(2012, Calendar.FEBRUARY, 28, hour, minute, second);
+		calendar.set(Calendar.MILLISECOND, 0);
+		calendar.add(Calendar.DAY_OF_MONTH, dayOffset);
+		return calendar.getTimeInMillis();
+	}
+
+	public void testAfter8pm() {
+		assertEquals(time(1, 0, 0, 0),
+				UpdateSchedule.nextUpdateTime(time(0, 20, 0, 1)));
+	}
+
+	public void testAt5pm() {
+		assertEquals(time(0, 20, 0, 0),
+				UpdateSchedule.nextUpdateTime(time(0, 17, 0, 0)));
+	}
+
+	public void testBefore5pm() {
+		assertEquals(time(0, 17, 0, 0),
+				UpdateSchedule.nextUpdateTime(time(0, 16, 59, 59) + 999));
+	}
+
+	/**
+	 * The day after the 28th of February 2012 is the 29th.
+	 */
+	public void testLeapDay() {
+		final Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(UpdateSchedule.nextUpdateTime(time(0, 23,
+				30, 0)));
+		assertEquals(Calendar.FEBRUARY, calendar.get(Calendar.MONTH));
+		assertEquals(29, calendar.get(Calendar.DAY_OF_MONTH));
+	}
+}
@@ -0,0 +1,28 @@
+package net.trajano.gasprices.test;
+
+import junit.framework.TestCase;
+import net.trajano.gasprices.WidgetFingerprints;
+
+/**
+ * Tests the widget fingerprint map.
+ * 
+ * @author Archimedes Trajano (developer@trajano.net)
+ * 
+ */
+public class WidgetFingerprintsTest extends TestCase {
+	public void testPutGetRemove() {
+		final WidgetFingerprints fingerprints = new WidgetFingerprints();
+		for (int i = 100; i > 0; --i) {
+			fingerprints.put(i * 3, i);
+		}
+		assertEquals(WidgetFingerprints.NONE, fingerprints.get(4));
+		assertEquals(7, fingerprints.get(21));
+		fingerprints.put(21, 70);
+		assertEquals(70, fingerprints.get(21));
+		fingerprints.remove(21, 4, 300);
+		assertEquals(WidgetFingerprints.NONE, fingerprints.get(21));
+		assertEquals(WidgetFingerprints.NONE, fingerprints.get(300));
+		assertEquals(99, fingerprints.get(297));
+		assertEquals(1, fingerprints.get(3));
+	}
+}